@@ -187,6 +187,7 @@ public class QualityCheckEditor implements IQualityCheckEditor {
 			session = paramSession;
 		}
 		session.setFilterConfigurationMapper(fcMapper);
+		session.setIncremental(true);
 		try {
 			LocaleId tmpLoc = LocaleId.fromString(config.getProperty(CFG_SOURCELOCALE, "en"));
 			session.setSourceLocale(tmpLoc);
@@ -16,21 +16,36 @@
 
 package net.sf.okapi.common.annotation;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides annotation mechanism to the resources.
+ * <p>Most resources have no more than a few annotations, so they are held in a small array,
+ * and a map is used only past {@link #MAX_INLINE} annotations. The array is replaced rather than
+ * modified, so the annotations can be read and iterated over while they are being changed,
+ * and a clone can share the array of the original.
  */
 public class Annotations implements Iterable<IAnnotation> {
 	
-	private ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation> annotations;
+	/**
+	 * Maximum number of annotations held in the array.
+	 */
+	public static final int MAX_INLINE = 8;
+
+	private static final IAnnotation[] EMPTY = new IAnnotation[0];
+
+	// Null when the map is used
+	private volatile IAnnotation[] items;
+	private volatile ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation> annotations;
 
 	/**
 	 * Creates a new Annotations object.
 	 */
 	public Annotations () {
-		annotations = new ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation>();
+		items = EMPTY;
 	}
 	
 	/**
@@ -38,9 +53,35 @@ public class Annotations implements Iterable<IAnnotation> {
 	 * @param <T> the annotation type.
 	 * @param annotation The annotation object to set.
 	 */
-	public <T extends IAnnotation> void set (T annotation) {
-		if (annotation != null)
+	public synchronized <T extends IAnnotation> void set (T annotation) {
+		if ( annotation == null ) return;
+		IAnnotation[] current = items;
+		if ( current == null ) {
 			annotations.put(annotation.getClass(), annotation);
+			return;
+		}
+		int n = indexOf(current, annotation.getClass());
+		if ( n > -1 ) {
+			IAnnotation[] tmp = current.clone();
+			tmp[n] = annotation;
+			items = tmp;
+		}
+		else if ( current.length < MAX_INLINE ) {
+			IAnnotation[] tmp = Arrays.copyOf(current, current.length+1);
+			tmp[current.length] = annotation;
+			items = tmp;
+		}
+		else {
+			ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation> map =
+				new ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation>();
+			for ( IAnnotation ann : current ) {
+				map.put(ann.getClass(), ann);
+			}
+			map.put(annotation.getClass(), annotation);
+			// The map must be visible before the array is dropped
+			annotations = map;
+			items = null;
+		}
 	}
 	
 	/**
@@ -50,14 +91,22 @@ public class Annotations implements Iterable<IAnnotation> {
 	 * @return The found annotation, or null if no annotation of the given type was found. 
 	 */
 	public <A extends IAnnotation> A get (Class<A> annotationType) {
-		return annotationType.cast(annotations.get(annotationType) );
+		IAnnotation[] current = items;
+		if ( current == null ) {
+			ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation> map = annotations;
+			if ( map == null ) return null; // Cleared in the meantime
+			return annotationType.cast(map.get(annotationType));
+		}
+		int n = indexOf(current, annotationType);
+		return (n > -1) ? annotationType.cast(current[n]) : null;
 	}
 
 	/**
 	 * Removes all the annotations in this object.
 	 */
-	public void clear () {
-		annotations.clear();
+	public synchronized void clear () {
+		items = EMPTY;
+		annotations = null;
 	}
 	
 	/**
@@ -66,9 +115,18 @@ public class Annotations implements Iterable<IAnnotation> {
 	 * @param annotationType Type of the annotation to remove.
 	 * @return The removed annotation, or null if no annotation of the given type was found. 
 	 */
-	public <A extends IAnnotation> A remove (Class<A> annotationType) {
-		
-		return annotationType.cast(annotations.remove(annotationType));
+	public synchronized <A extends IAnnotation> A remove (Class<A> annotationType) {
+		IAnnotation[] current = items;
+		if ( current == null ) {
+			return annotationType.cast(annotations.remove(annotationType));
+		}
+		int n = indexOf(current, annotationType);
+		if ( n == -1 ) return null;
+		IAnnotation[] tmp = new IAnnotation[current.length-1];
+		System.arraycopy(current, 0, tmp, 0, n);
+		System.arraycopy(current, n+1, tmp, n, tmp.length-n);
+		items = (tmp.length == 0) ? EMPTY : tmp;
+		return annotationType.cast(current[n]);
 	}
 	
 	/**
@@ -77,10 +135,14 @@ public class Annotations implements Iterable<IAnnotation> {
 	 * @return the cloned object.
 	 */
 	@Override
-	public Annotations clone() {
+	public synchronized Annotations clone() {
 		Annotations anns = new Annotations();
-		for ( IAnnotation ann : annotations.values() ) {
-			anns.set(ann);
+		if ( items != null ) {
+			anns.items = items; // Never modified in place
+		}
+		else {
+			anns.annotations = new ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation>(annotations);
+			anns.items = null;
 		}
 		return anns;
 	}
@@ -95,7 +157,42 @@ public class Annotations implements Iterable<IAnnotation> {
 
 	@Override
 	public Iterator<IAnnotation> iterator() {
-		return annotations.values().iterator();
+		IAnnotation[] current = items;
+		if ( current == null ) {
+			ConcurrentHashMap<Class<? extends IAnnotation>, IAnnotation> map = annotations;
+			if ( map != null ) return map.values().iterator();
+			current = EMPTY; // Cleared in the meantime
+		}
+		final IAnnotation[] snapshot = current;
+		return new Iterator<IAnnotation>() {
+			private int index;
+
+			@Override
+			public boolean hasNext () {
+				return index < snapshot.length;
+			}
+
+			@Override
+			public IAnnotation next () {
+				if ( index >= snapshot.length ) throw new NoSuchElementException();
+				return snapshot[index++];
+			}
+
+			@Override
+			public void remove () {
+				if ( index == 0 ) throw new IllegalStateException();
+				Annotations.this.remove(snapshot[index-1].getClass());
+			}
+		};
 	}
-	
+
+	private static int indexOf (IAnnotation[] array,
+		Class<?> annotationType)
+	{
+		for ( int i=0; i<array.length; i++ ) {
+			if ( array[i].getClass() == annotationType ) return i;
+		}
+		return -1;
+	}
+
 }
@@ -0,0 +1,56 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Helper methods for the {@link IAppendableEncoder} implementations.
+ */
+final class AppendableUtil {
+
+	private AppendableUtil () {
+		// Static methods only
+	}
+
+	/**
+	 * Appends a range of a text as it is.
+	 * {@link Writer#append(CharSequence, int, int)} creates a sub-sequence,
+	 * so strings are written directly to writers.
+	 * @param text the text to copy.
+	 * @param start the index of the first character to copy.
+	 * @param end the index after the last character to copy.
+	 * @param output the object where to append the text.
+	 * @throws IOException if an error occurs.
+	 */
+	static void appendRange (CharSequence text,
+		int start,
+		int end,
+		Appendable output)
+		throws IOException
+	{
+		if ( start >= end ) return;
+		if (( output instanceof Writer ) && ( text instanceof String )) {
+			((Writer)output).write((String)text, start, end-start);
+		}
+		else {
+			output.append(text, start, end);
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+
+package net.sf.okapi.common.encoder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * Caches the results of {@link CharsetEncoder#canEncode(char)}, which is costly
+ * to call for each character of the output.
+ */
+final class CharsetEncoderCache {
+
+	private static final byte UNKNOWN = 0;
+	private static final byte YES = 1;
+	private static final byte NO = 2;
+
+	private final CharsetEncoder chsEnc;
+	private final byte[] results = new byte[Character.MAX_VALUE+1];
+
+	CharsetEncoderCache (CharsetEncoder chsEnc) {
+		this.chsEnc = chsEnc;
+	}
+
+	/**
+	 * Indicates if this cache is for a given charset.
+	 * @param charset the charset to check.
+	 * @return true if the encoder of this cache is for the given charset.
+	 */
+	boolean isFor (Charset charset) {
+		return chsEnc.charset().equals(charset);
+	}
+
+	/**
+	 * Gets the encoder of this cache.
+	 * @return the encoder used to fill the cache.
+	 */
+	CharsetEncoder getEncoder () {
+		return chsEnc;
+	}
+
+	/**
+	 * Indicates if a given character can be encoded.
+	 * @param value the character to check.
+	 * @return true if the character can be encoded.
+	 */
+	boolean canEncode (char value) {
+		byte res = results[value];
+		if ( res == UNKNOWN ) {
+			res = (chsEnc.canEncode(value) ? YES : NO);
+			results[value] = res;
+		}
+		return (res == YES);
+	}
+
+	/**
+	 * Indicates if a given supplementary code point can be encoded.
+	 * Those are not cached.
+	 * @param codePoint the code point to check.
+	 * @return true if the code point can be encoded.
+	 */
+	boolean canEncode (int codePoint) {
+		return chsEnc.canEncode(new String(Character.toChars(codePoint)));
+	}
+
+}
@@ -16,14 +16,16 @@
 
 package net.sf.okapi.common.encoder;
 
+import java.io.IOException;
 import java.nio.charset.CharsetEncoder;
 
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 
 /**
  * Implements {@link IEncoder} for non-specific formats. It only converts the line-breaks to the proper type.
  */
-public class DefaultEncoder implements IEncoder {
+public class DefaultEncoder implements IAppendableEncoder {
 	
 	private String lineBreak;
 	
@@ -42,6 +44,29 @@ public class DefaultEncoder implements IEncoder {
 		return text.replace("\n", lineBreak);
 	}
 
+	@Override
+	public void encode (CharSequence text,
+		int start,
+		int end,
+		EncoderContext context,
+		Appendable output)
+	{
+		try {
+			int runStart = start;
+			for ( int i=start; i<end; i++ ) {
+				if ( text.charAt(i) == '\n' ) {
+					AppendableUtil.appendRange(text, runStart, i, output);
+					output.append(lineBreak);
+					runStart = i+1;
+				}
+			}
+			AppendableUtil.appendRange(text, runStart, end, output);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
 	@Override
 	public String encode (char value,
 			EncoderContext context)
@@ -16,6 +16,7 @@
 
 package net.sf.okapi.common.encoder;
 
+import java.io.IOException;
 import java.nio.charset.CharsetEncoder;
 import java.security.InvalidParameterException;
 import java.util.Hashtable;
@@ -24,6 +25,7 @@ import java.util.Map.Entry;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.MimeTypeMapper;
 import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +34,7 @@ import org.slf4j.LoggerFactory;
  * Provides caching and lookup mechanism for the text encoders used when writing out text
  * processed by a filter.
  */
-public class EncoderManager implements IEncoder {
+public class EncoderManager implements IAppendableEncoder {
 
 	private final Logger LOGGER = LoggerFactory.getLogger(getClass());
 	
@@ -256,6 +258,50 @@ public class EncoderManager implements IEncoder {
 		}
 	}
 
+	/**
+	 * Encodes a range of a given text with the encoder currently cached, and appends the
+	 * result to a given output. If the encoder does not implement {@link IAppendableEncoder}
+	 * each character is encoded separately. If no encoder is currently cached, the text
+	 * is appended untouched.
+	 * @param text The text to encode.
+	 * @param start The index of the first character to encode.
+	 * @param end The index after the last character to encode.
+	 * @param context The context of the text: 0=text, 1=skeleton, 2=inline.
+	 * @param output The object where to append the encoded text.
+	 */
+	@Override
+	public void encode (CharSequence text,
+		int start,
+		int end,
+		EncoderContext context,
+		Appendable output)
+	{
+		if ( encoder instanceof IAppendableEncoder ) {
+			((IAppendableEncoder)encoder).encode(text, start, end, context, output);
+			return;
+		}
+		try {
+			if ( encoder == null ) {
+				AppendableUtil.appendRange(text, start, end, output);
+				return;
+			}
+			for ( int i=start; i<end; i++ ) {
+				char ch = text.charAt(i);
+				if ( Character.isHighSurrogate(ch) && ( i+1 < end )
+					&& Character.isLowSurrogate(text.charAt(i+1)) )
+				{
+					output.append(encoder.encode(Character.toCodePoint(ch, text.charAt(++i)), context));
+				}
+				else {
+					output.append(encoder.encode(ch, context));
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
 	/**
 	 * Gets the encoder currently cached by this manager.
 	 * @return The encoder currently cached by this manager, or null if there is none.
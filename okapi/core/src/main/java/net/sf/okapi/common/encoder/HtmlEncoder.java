@@ -16,16 +16,18 @@
 
 package net.sf.okapi.common.encoder;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 
 import net.sf.okapi.common.HTMLCharacterEntities;
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 
 /**
  * Implements {@link IEncoder} for HTML format.
  */
-public class HtmlEncoder implements IEncoder {
+public class HtmlEncoder implements IAppendableEncoder {
 	/**
 	 * Parameter flag for indicating that the {@link #QUOTEMODE} is defined. 
 	 */
@@ -49,6 +51,8 @@ public class HtmlEncoder implements IEncoder {
 	private String charsToCER = null;
 	private HTMLCharacterEntities entities;
 	private IParameters params;
+	private String[] escapes; // Replacements for the ASCII characters, null for no change
+	private CharsetEncoderCache encodable;
 	
 	public HtmlEncoder(String encoding, String lineBreak, QuoteMode quoteMode) {
 		super();
@@ -73,7 +77,12 @@ public class HtmlEncoder implements IEncoder {
 			chsEnc = null;
 		}
 		else {
-			chsEnc = Charset.forName(encoding).newEncoder();
+			// Keep the cache of the previous call if the charset has not changed
+			Charset charset = Charset.forName(encoding);
+			if (( encodable == null ) || !encodable.isFor(charset) ) {
+				encodable = new CharsetEncoderCache(charset.newEncoder());
+			}
+			chsEnc = encodable.getEncoder();
 		}
 
 		this.params = params;
@@ -91,6 +100,7 @@ public class HtmlEncoder implements IEncoder {
 				}
 			}		
 		}
+		escapes = null;
 	}
 
 	@Override
@@ -158,7 +168,7 @@ public class HtmlEncoder implements IEncoder {
 							continue;
 						}
 						// Else: fall back to normal character process
-						if (( chsEnc != null ) && !chsEnc.canEncode(ch) ) {
+						if (( chsEnc != null ) && !encodable.canEncode(ch) ) {
 							sbTmp.append(String.format("&#x%04x;", (int)ch));
 						}
 						else { // No encoder or char is supported
@@ -175,6 +185,77 @@ public class HtmlEncoder implements IEncoder {
 		return sbTmp.toString();
 	}
 
+	/**
+	 * Encodes a range of a given text into a given output, with the same results
+	 * as {@link #encode(char, EncoderContext)} for each character, and
+	 * {@link #encode(int, EncoderContext)} for each surrogate pair.
+	 */
+	@Override
+	public void encode (CharSequence text,
+		int start,
+		int end,
+		EncoderContext context,
+		Appendable output)
+	{
+		if ( escapes == null ) buildEscapes();
+		try {
+			int runStart = start;
+			for ( int i=start; i<end; i++ ) {
+				char ch = text.charAt(i);
+				String rep = null;
+				if ( ch < 128 ) {
+					rep = escapes[ch];
+				}
+				else if ( Character.isHighSurrogate(ch) && ( i+1 < end )
+					&& Character.isLowSurrogate(text.charAt(i+1)) )
+				{
+					int cp = Character.toCodePoint(ch, text.charAt(i+1));
+					if (( chsEnc != null ) && !encodable.canEncode(cp) ) {
+						AppendableUtil.appendRange(text, runStart, i, output);
+						output.append(String.format("&#x%x;", cp));
+						runStart = i+2;
+					}
+					i++; // Skip the low surrogate
+					continue;
+				}
+				else {
+					rep = checkCER(ch);
+					if (( rep == null ) && ( chsEnc != null ) && !encodable.canEncode(ch) ) {
+						rep = String.format("&#x%04x;", (int)ch);
+					}
+				}
+				if ( rep != null ) {
+					AppendableUtil.appendRange(text, runStart, i, output);
+					output.append(rep);
+					runStart = i+1;
+				}
+			}
+			AppendableUtil.appendRange(text, runStart, end, output);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	private void buildEscapes () {
+		String[] table = new String[128];
+		table['<'] = "&lt;";
+		table['&'] = "&amp;";
+		if (( lineBreak != null ) && !lineBreak.equals("\n") ) table['\n'] = lineBreak;
+		if ( quoteMode != QuoteMode.UNESCAPED ) table['"'] = "&quot;";
+		switch ( quoteMode ) {
+		case ALL:
+			table['\''] = "&apos;";
+			break;
+		case NUMERIC_SINGLE_QUOTES:
+			table['\''] = "&#39;";
+			break;
+		default:
+			break;
+		}
+		escapes = table;
+	}
+
 	/**
 	 * Checks if the character needs/can be represented as a CER.
 	 * @param ch the character to process.
@@ -224,7 +305,7 @@ public class HtmlEncoder implements IEncoder {
 					return cer;
 				}
 				// Else: fall back to normal character process
-				if (( chsEnc != null ) && ( !chsEnc.canEncode(value) )) {
+				if (( chsEnc != null ) && !encodable.canEncode(value) ) {
 					return String.format("&#x%04x;", (int)value);
 				}
 				else { // No encoder or char is supported
@@ -276,7 +357,7 @@ public class HtmlEncoder implements IEncoder {
 				}
 				// Else: fall back to normal character process
 				// Should be able to fold to char, supplementary case will be treated
-				if (( chsEnc != null ) && !chsEnc.canEncode((char)value) ) {
+				if (( chsEnc != null ) && !encodable.canEncode((char)value) ) {
 					return String.format("&#x%04x;", value);
 				}
 				else { // No encoder or char is supported
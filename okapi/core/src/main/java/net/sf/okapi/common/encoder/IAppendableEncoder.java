@@ -0,0 +1,46 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.encoder;
+
+/**
+ * Encoder that can write its output directly into a given {@link Appendable},
+ * without creating a string for each encoded character.
+ * <p>The result must be the same as calling {@link #encode(char, EncoderContext)}
+ * for each character of the range, in order, and appending the results (or
+ * {@link #encode(int, EncoderContext)} for each surrogate pair).
+ * Any class extending an implementation of this interface and changing the way
+ * characters are encoded must override {@link #encode(CharSequence, int, int, EncoderContext, Appendable)}
+ * as well.
+ */
+public interface IAppendableEncoder extends IEncoder {
+
+	/**
+	 * Encodes a range of a given text and appends the result to a given output.
+	 * @param text the text to encode.
+	 * @param start the index of the first character to encode.
+	 * @param end the index after the last character to encode.
+	 * @param context the context of the text: 0=text, 1=skeleton, 2=inline.
+	 * @param output the object where to append the encoded text.
+	 * @throws net.sf.okapi.common.exceptions.OkapiIOException if the output cannot be written.
+	 */
+	public void encode (CharSequence text,
+		int start,
+		int end,
+		EncoderContext context,
+		Appendable output);
+
+}
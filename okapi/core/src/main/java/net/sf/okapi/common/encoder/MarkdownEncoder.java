@@ -1,5 +1,9 @@
 package net.sf.okapi.common.encoder;
 
+import java.io.IOException;
+
+import net.sf.okapi.common.exceptions.OkapiIOException;
+
 /**
  * The Markdown filter handles newlines itself, so encoder is a no-op.
  */
@@ -12,6 +16,21 @@ public class MarkdownEncoder extends DefaultEncoder {
         return text;
     }
 
+    @Override
+    public void encode (CharSequence text,
+            int start,
+            int end,
+            EncoderContext context,
+            Appendable output)
+    {
+        try {
+            AppendableUtil.appendRange(text, start, end, output);
+        }
+        catch ( IOException e ) {
+            throw new OkapiIOException(e);
+        }
+    }
+
     @Override
     public String encode (char value,
             EncoderContext context)
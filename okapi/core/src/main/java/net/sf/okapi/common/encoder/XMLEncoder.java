@@ -16,15 +16,17 @@
 
 package net.sf.okapi.common.encoder;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 
 /**
  * Implements {@link IEncoder} for XML format.
  */
-public class XMLEncoder implements IEncoder {
+public class XMLEncoder implements IAppendableEncoder {
 
 	/**
 	 * Parameter flag for escaping the greater-than characters.
@@ -57,6 +59,8 @@ public class XMLEncoder implements IEncoder {
 	private boolean escapeLineBreak = false;
 	private QuoteMode quoteMode = QuoteMode.ALL;
 	private IParameters params;
+	private String[] escapes; // Replacements for the ASCII characters, null for no change ('>' excepted)
+	private CharsetEncoderCache encodable;
 
 	public XMLEncoder(String encoding, String lineBreak,
 			boolean escapeGT, boolean escapeNbsp, boolean escapeLineBreak,
@@ -99,7 +103,12 @@ public class XMLEncoder implements IEncoder {
 			chsEnc = null;
 		}
 		else {
-			chsEnc = Charset.forName(encoding).newEncoder();
+			// Keep the cache of the previous call if the charset has not changed
+			Charset charset = Charset.forName(encoding);
+			if (( encodable == null ) || !encodable.isFor(charset) ) {
+				encodable = new CharsetEncoderCache(charset.newEncoder());
+			}
+			chsEnc = encodable.getEncoder();
 		}
 		
 		this.params = params;		
@@ -112,6 +121,7 @@ public class XMLEncoder implements IEncoder {
 				quoteMode = QuoteMode.fromValue(params.getInteger(QUOTEMODE));
 			}
 		}
+		escapes = null;
 	}
 
 	@Override
@@ -120,13 +130,98 @@ public class XMLEncoder implements IEncoder {
 	{
 		if ( text == null ) return "";
 		
-		StringBuffer sbTmp = new StringBuffer(text.length());
-		for ( int i=0; i<text.length(); i++ ) {
-			sbTmp.append(encode(text.charAt(i), context));
-		}
+		StringBuilder sbTmp = new StringBuilder(text.length());
+		encode(text, 0, text.length(), context, sbTmp);
 		return sbTmp.toString();
 	}
 
+	/**
+	 * Encodes a range of a given text into a given output. The characters that
+	 * do not need escaping are copied by runs, and the ASCII characters are looked up
+	 * in a table built from the options.
+	 */
+	@Override
+	public void encode (CharSequence text,
+		int start,
+		int end,
+		EncoderContext context,
+		Appendable output)
+	{
+		if ( escapes == null ) buildEscapes();
+		try {
+			int runStart = start;
+			for ( int i=start; i<end; i++ ) {
+				char ch = text.charAt(i);
+				if ( ch < 128 ) {
+					String rep;
+					if ( ch == '>' ) {
+						rep = (( escapeGT || last == ']' ) ? "&gt;" : null);
+					}
+					else {
+						rep = escapes[ch];
+					}
+					if ( rep != null ) {
+						AppendableUtil.appendRange(text, runStart, i, output);
+						output.append(rep);
+						runStart = i+1;
+					}
+				}
+				else if (( ch == '\u00A0' ) && escapeNbsp ) {
+					AppendableUtil.appendRange(text, runStart, i, output);
+					output.append("&#x00a0;");
+					runStart = i+1;
+				}
+				else if ( Character.isHighSurrogate(ch) ) {
+					// Held until the next character, which may come with the next call
+					AppendableUtil.appendRange(text, runStart, i, output);
+					runStart = i+1;
+				}
+				else if ( Character.isHighSurrogate(last) ) {
+					AppendableUtil.appendRange(text, runStart, i, output);
+					int cp = Character.toCodePoint(last, ch);
+					if (( chsEnc != null ) && !encodable.canEncode(cp) ) {
+						output.append(String.format("&#x%x;", cp));
+					}
+					else {
+						output.append(last).append(ch);
+					}
+					runStart = i+1;
+				}
+				else if (( chsEnc != null ) && !encodable.canEncode(ch) ) {
+					AppendableUtil.appendRange(text, runStart, i, output);
+					output.append(String.format("&#x%04x;", (int)ch));
+					runStart = i+1;
+				}
+				last = ch;
+			}
+			AppendableUtil.appendRange(text, runStart, end, output);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	private void buildEscapes () {
+		String[] table = new String[128];
+		table['<'] = "&lt;";
+		table['&'] = "&amp;";
+		table['\r'] = "&#13;"; // In XML this is a literal not a line-break
+		if ( escapeLineBreak ) table['\n'] = "&#10;";
+		else if (( lineBreak != null ) && !lineBreak.equals("\n") ) table['\n'] = lineBreak;
+		if ( quoteMode != QuoteMode.UNESCAPED ) table['"'] = "&quot;";
+		switch ( quoteMode ) {
+		case ALL:
+			table['\''] = "&apos;";
+			break;
+		case NUMERIC_SINGLE_QUOTES:
+			table['\''] = "&#39;";
+			break;
+		default:
+			break;
+		}
+		escapes = table;
+	}
+
 	private char last = Character.MAX_VALUE;
 
 	@Override
@@ -181,15 +276,14 @@ public class XMLEncoder implements IEncoder {
 				// Combine stored surrogate with current char to make a single codepoint
 				if ( Character.isHighSurrogate(last) ) {
 					int cp = Character.toCodePoint(last, value);
-					String tmp = new String(Character.toChars(cp));
-					if (( chsEnc != null ) && !chsEnc.canEncode(tmp) ) {
+					if (( chsEnc != null ) && !encodable.canEncode(cp) ) {
 						return String.format("&#x%x;", cp);
 					}
 					else {
-						return tmp;
+						return new String(Character.toChars(cp));
 					}
 				}
-				if (( chsEnc != null ) && ( !chsEnc.canEncode(value) )) {
+				if (( chsEnc != null ) && !encodable.canEncode(value) ) {
 					return String.format("&#x%04x;", (int)value);
 				}
 				else { // No encoder or char is supported
@@ -207,11 +301,10 @@ public class XMLEncoder implements IEncoder {
 			EncoderContext context)
 	{
 		if (Character.isSupplementaryCodePoint(value) ) {
-			String tmp = new String(Character.toChars(value));
-			if (( chsEnc != null ) && !chsEnc.canEncode(tmp) ) {
+			if (( chsEnc != null ) && !encodable.canEncode(value) ) {
 				return String.format("&#x%x;", value);
 			}
-			return tmp;
+			return new String(Character.toChars(value));
 		}
 		return encode((char)value, context);
 	}
@@ -19,12 +19,16 @@ package net.sf.okapi.common.filters;
 import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.okapi.common.DefaultFilenameFilter;
 import net.sf.okapi.common.IParameters;
@@ -44,6 +48,9 @@ import org.slf4j.LoggerFactory;
  * of the machine and the value for {@link FilterConfiguration#parametersLocation} for a custom
  * configuration is filename of the parameters file. The directory where the files are
  * located is defined with the {@link #setCustomConfigurationsDirectory(String)}.
+ * <p>
+ * The mapper also keeps a pool of ready-to-use filters for each configuration: see
+ * {@link #acquireFilter(String)} and {@link #releaseFilter(String, IFilter)}.
  */
 public class FilterConfigurationMapper extends ParametersEditorMapper implements IFilterConfigurationMapper {
 	private final Logger LOGGER = LoggerFactory.getLogger(getClass());
@@ -62,6 +69,7 @@ public class FilterConfigurationMapper extends ParametersEditorMapper implements
 	private ArrayList<FilterInfo> filters;
 	private String customParmsDir;
 	private IFilter tmpFilter;
+	private final ConcurrentHashMap<String, FilterPool> pools = new ConcurrentHashMap<String, FilterPool>();
 	
 	/**
 	 * Splits a configuration identifier into a filter identifier and the parameters info.
@@ -376,6 +384,7 @@ public class FilterConfigurationMapper extends ParametersEditorMapper implements
 		File file = new File(customParmsDir + config.parametersLocation);
 		file.delete();
 		config.parameters = null;
+		pools.remove(config.configId);
 	}
 
 	@Override
@@ -392,6 +401,7 @@ public class FilterConfigurationMapper extends ParametersEditorMapper implements
 			file = new File(customParmsDir + config.configId);
 			params.save(file.getAbsolutePath());
 		}
+		pools.remove(config.configId);
 	}
 
 	@Override
@@ -570,6 +580,161 @@ public class FilterConfigurationMapper extends ParametersEditorMapper implements
 		return filter;
 	}
 
+	/**
+	 * Gets a ready-to-use filter for a given configuration. This method is thread-safe.
+	 * <p>
+	 * The filter is taken from the pool of this mapper if one is available; otherwise a new
+	 * filter is created. The parameters of the configuration are loaded only once: new filters
+	 * get a copy of the parameters already parsed, until the configuration is replaced or
+	 * its custom parameters file changes.
+	 * <p>
+	 * Give the filter back with {@link #releaseFilter(String, IFilter)} when done. The parameters of
+	 * a pooled filter must not be modified.
+	 * @param configId the identifier of the configuration of the filter.
+	 * @return the filter, or null if the configuration cannot be found.
+	 * @throws OkapiFilterCreationException if the filter could not be created.
+	 */
+	public IFilter acquireFilter (String configId) {
+		FilterConfiguration fc = configMap.get(configId);
+		if ( fc == null ) {
+			LOGGER.error("Cannot find filter configuration '{}'", configId);
+			return null;
+		}
+		File customFile = null;
+		if ( fc.custom && ( fc.parametersLocation != null )) {
+			customFile = new File(customParmsDir + fc.parametersLocation);
+		}
+
+		FilterPool pool = pools.get(configId);
+		if ( pool == null ) {
+			FilterPool newPool = new FilterPool();
+			pool = pools.putIfAbsent(configId, newPool);
+			if ( pool == null ) pool = newPool;
+		}
+
+		IFilter filter;
+		boolean loaded;
+		String data;
+		String path;
+		int generation;
+		synchronized ( pool ) {
+			if ( !pool.isValid(fc, customFile) ) {
+				pool.clear(fc, customFile);
+			}
+			filter = pool.idle.poll();
+			if ( filter != null ) pool.issued.add(filter);
+			loaded = pool.loaded;
+			data = pool.parameters;
+			path = pool.path;
+			generation = pool.generation;
+		}
+		if ( filter != null ) {
+			return filter;
+		}
+
+		if ( !loaded ) {
+			// First filter for this configuration: load the parameters the normal way
+			filter = createFilter(configId, null);
+			if ( filter == null ) return null;
+			IParameters params = filter.getParameters();
+			synchronized ( pool ) {
+				if ( pool.generation == generation ) {
+					if ( !pool.loaded ) {
+						pool.parameters = (params == null) ? null : params.toString();
+						pool.path = (params == null) ? null : params.getPath();
+						pool.loaded = true;
+					}
+					pool.issued.add(filter);
+				}
+			}
+			return filter;
+		}
+
+		// Otherwise: copy the parameters already parsed
+		filter = instantiateFilter(fc, null);
+		IParameters params = filter.getParameters();
+		if (( params != null ) && ( data != null )) {
+			params.fromString(data);
+			params.setPath(path);
+		}
+		synchronized ( pool ) {
+			if ( pool.generation == generation ) pool.issued.add(filter);
+		}
+		return filter;
+	}
+
+	/**
+	 * Gives back a filter obtained with {@link #acquireFilter(String)}. The filter is closed and
+	 * kept in the pool of this mapper for the next call to {@link #acquireFilter(String)}.
+	 * This method is thread-safe.
+	 * @param configId the identifier of the configuration used to get the filter.
+	 * @param filter the filter to give back (can be null).
+	 */
+	public void releaseFilter (String configId,
+		IFilter filter)
+	{
+		if ( filter == null ) return;
+		filter.close();
+		FilterPool pool = pools.get(configId);
+		if ( pool == null ) return; // Pool has been cleared
+		synchronized ( pool ) {
+			// Filters obtained before an invalidation are not in the set anymore, and are dropped
+			if ( pool.issued.remove(filter) ) {
+				pool.idle.push(filter);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the filters from the pool of this mapper, and discards the cached parameters.
+	 */
+	public void clearFilterPool () {
+		pools.clear();
+	}
+
+	/**
+	 * Filters and parsed parameters kept for one configuration.
+	 */
+	private static class FilterPool {
+
+		final ArrayDeque<IFilter> idle = new ArrayDeque<IFilter>();
+		// Filters handed out since the last invalidation (weak, in case they are never released)
+		final Set<IFilter> issued = Collections.newSetFromMap(new WeakHashMap<IFilter, Boolean>());
+		FilterConfiguration config;
+		File customFile;
+		long lastModified;
+		long length;
+		boolean loaded;
+		String parameters;
+		String path;
+		int generation;
+
+		boolean isValid (FilterConfiguration fc,
+			File file)
+		{
+			if ( config != fc ) return false;
+			if ( file == null ) return (customFile == null);
+			return file.equals(customFile)
+				&& ( file.lastModified() == lastModified )
+				&& ( file.length() == length );
+		}
+
+		void clear (FilterConfiguration fc,
+			File file)
+		{
+			idle.clear();
+			issued.clear();
+			generation++;
+			config = fc;
+			customFile = file;
+			lastModified = (file == null) ? 0 : file.lastModified();
+			length = (file == null) ? 0 : file.length();
+			loaded = false;
+			parameters = null;
+			path = null;
+		}
+	}
+
 	@Override
 	public List<FilterInfo> getFiltersInfo () {
 		Collections.sort(filters); // Sort before returning
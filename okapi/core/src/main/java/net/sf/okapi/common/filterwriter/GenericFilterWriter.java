@@ -45,6 +45,7 @@ import net.sf.okapi.common.resource.StartGroup;
 import net.sf.okapi.common.resource.StartSubDocument;
 import net.sf.okapi.common.resource.StartSubfilter;
 import net.sf.okapi.common.skeleton.ISkeletonWriter;
+import net.sf.okapi.common.skeleton.IStreamingSkeletonWriter;
 
 /**
  * Implements the IFilterWriter interface for filters that use the
@@ -236,41 +237,88 @@ public class GenericFilterWriter implements IFilterWriter {
 		if ( outputEncoding == null ) {
 			outputEncoding = encoding;
 		}
-		writer.write(skelWriter.processStartDocument(outputLocale,
-			outputEncoding, null, encoderManager, resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processStartDocument(outputLocale,
+				outputEncoding, null, encoderManager, resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processStartDocument(outputLocale,
+				outputEncoding, null, encoderManager, resource));
+		}
 		//parentEncoder = encoderManager.getEncoder(); // The encoder used to write StartDocument of the parent filter
 	}
 
 	protected void processEndDocument(Ending resource) throws IOException {
-		writer.write(skelWriter.processEndDocument(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processEndDocument(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processEndDocument(resource));
+		}
 	}
 
 	protected void processStartSubDocument (StartSubDocument resource) throws IOException {
-		writer.write(skelWriter.processStartSubDocument(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processStartSubDocument(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processStartSubDocument(resource));
+		}
 	}
 
 	protected void processEndSubDocument (Ending resource) throws IOException {
-		writer.write(skelWriter.processEndSubDocument(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processEndSubDocument(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processEndSubDocument(resource));
+		}
 	}
 
 	protected void processStartGroup (StartGroup resource) throws IOException {
-		writer.write(skelWriter.processStartGroup(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processStartGroup(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processStartGroup(resource));
+		}
 	}
 
 	protected void processEndGroup (Ending resource) throws IOException {
-		writer.write(skelWriter.processEndGroup(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processEndGroup(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processEndGroup(resource));
+		}
 	}
 
 	protected void processTextUnit (ITextUnit resource) throws IOException {
-		writer.write(skelWriter.processTextUnit(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processTextUnit(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processTextUnit(resource));
+		}
 	}
 
 	protected void processDocumentPart (DocumentPart resource) throws IOException {
-		writer.write(skelWriter.processDocumentPart(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processDocumentPart(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processDocumentPart(resource));
+		}
 	}
 	
 	protected void processStartSubfilter (StartSubfilter resource) throws IOException {
-		writer.write(skelWriter.processStartSubfilter(resource)); // Stores a ref to SSF
+		// Stores a ref to SSF
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processStartSubfilter(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processStartSubfilter(resource));
+		}
 		// When skelWriter refers to a SubFilterSkeletonWriter, writer.write() is called for empty strings and does nothing  
 		//skelWriter = new SubFilterSkeletonWriter(resource, parentEncoder, locale, encoding);		
 		//skelWriter = new SubFilterSkeletonWriter(resource, parentEncoder);
@@ -279,7 +327,12 @@ public class GenericFilterWriter implements IFilterWriter {
 
 	protected void processEndSubfilter (EndSubfilter resource) throws IOException {
 		//skelWriter = parentSkelWriter; // Restore the parent skeleton writer
-		writer.write(skelWriter.processEndSubfilter(resource));
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			((IStreamingSkeletonWriter)skelWriter).processEndSubfilter(resource, writer);
+		}
+		else {
+			writer.write(skelWriter.processEndSubfilter(resource));
+		}
 	}
 
 	@Override
@@ -0,0 +1,119 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader reading the characters of a {@link CharSequence} without copying them.
+ * <p>
+ * Like {@link java.io.InputStreamReader}, and unlike {@link java.io.StringReader},
+ * {@link #ready()} returns false once all the characters have been read.
+ */
+public class CharSequenceReader extends Reader {
+
+	private CharSequence chars;
+	private int position;
+	private int mark;
+
+	/**
+	 * Creates a new reader for a given character sequence.
+	 * @param chars the characters to read.
+	 */
+	public CharSequenceReader (CharSequence chars) {
+		this.chars = chars;
+	}
+
+	private void ensureOpen () throws IOException {
+		if ( chars == null ) {
+			throw new IOException("This " + getClass().getSimpleName() + " is closed");
+		}
+	}
+
+	@Override
+	public int read () throws IOException {
+		ensureOpen();
+		if ( position >= chars.length() ) return -1;
+		return chars.charAt(position++);
+	}
+
+	@Override
+	public int read (char[] cbuf,
+		int offset,
+		int len) throws IOException
+	{
+		ensureOpen();
+		if (( offset < 0 ) || ( len < 0 ) || ( len > cbuf.length - offset )) {
+			throw new IndexOutOfBoundsException();
+		}
+		if ( len == 0 ) return 0;
+		int end = Math.min(chars.length(), position + len);
+		if ( position >= end ) return -1;
+		if ( chars instanceof String ) {
+			((String)chars).getChars(position, end, cbuf, offset);
+		}
+		else if ( chars instanceof StringBuilder ) {
+			((StringBuilder)chars).getChars(position, end, cbuf, offset);
+		}
+		else {
+			for ( int i=position; i<end; i++ ) {
+				cbuf[offset++] = chars.charAt(i);
+			}
+		}
+		int n = end - position;
+		position = end;
+		return n;
+	}
+
+	@Override
+	public long skip (long n) throws IOException {
+		ensureOpen();
+		if ( n <= 0 ) return 0;
+		long toSkip = Math.min(n, chars.length() - position);
+		position += toSkip;
+		return toSkip;
+	}
+
+	@Override
+	public boolean ready () throws IOException {
+		ensureOpen();
+		return (position < chars.length());
+	}
+
+	@Override
+	public boolean markSupported () {
+		return true;
+	}
+
+	@Override
+	public void mark (int readAheadLimit) throws IOException {
+		ensureOpen();
+		mark = position;
+	}
+
+	@Override
+	public void reset () throws IOException {
+		ensureOpen();
+		position = mark;
+	}
+
+	@Override
+	public void close () {
+		chars = null;
+	}
+}
@@ -0,0 +1,228 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Resettable input stream reading a local file directly through a {@link FileChannel}.
+ * <p>
+ * Unlike {@link FileCachedInputStream}, nothing is copied: the stream reads the file at the current
+ * position, so it can be reset or re-opened at no cost whatever the size of the file.
+ * The stream is marked at the start of the file when created.
+ * <p>
+ * {@link #close()} releases the file handle, and {@link #reopen()} opens the file again
+ * at the start of the file.
+ */
+public class FileChannelInputStream extends InputStream {
+
+	/** The default size of the read buffer (64KiB). */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel fileChannel;
+	private long length;
+	/** File position of the first byte of the buffer. */
+	private long bufferStart;
+	/** The position on this stream, or -1 if the stream is closed. */
+	private long position;
+	private long mark;
+
+	/**
+	 * Creates a new stream for a given file.
+	 * @param file the file to read.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public FileChannelInputStream (File file) throws IOException {
+		this.file = file;
+		buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		open();
+	}
+
+	private void open () throws IOException {
+		randomAccessFile = new RandomAccessFile(file, "r");
+		fileChannel = randomAccessFile.getChannel();
+		length = fileChannel.size();
+		buffer.clear().limit(0);
+		bufferStart = 0;
+		position = 0;
+		mark = 0;
+	}
+
+	private void ensureOpen () throws IOException {
+		if ( position == -1 ) {
+			throw new IOException("This " + getClass().getSimpleName() + " is closed");
+		}
+	}
+
+	/**
+	 * Gets the file read by this stream.
+	 * @return the file of this stream.
+	 */
+	public File getFile () {
+		return file;
+	}
+
+	/**
+	 * Indicates if this stream is open.
+	 * @return true if the stream can be read.
+	 */
+	public boolean isOpen () {
+		return (position != -1);
+	}
+
+	/**
+	 * Makes the stream readable again after a {@link #close()}.
+	 * This method has no effect if the stream is open.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public void reopen () throws IOException {
+		if ( !isOpen() ) open();
+	}
+
+	/**
+	 * Closes the file. The stream can be re-opened with {@link #reopen()}.
+	 */
+	@Override
+	public void close () throws IOException {
+		position = -1;
+		if ( randomAccessFile != null ) {
+			randomAccessFile.close();
+			randomAccessFile = null;
+			fileChannel = null;
+		}
+	}
+
+	/**
+	 * Same as {@link #close()}: there is no temporary resource to delete.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void dispose () throws IOException {
+		close();
+	}
+
+	public long length () throws IOException {
+		ensureOpen();
+		return length;
+	}
+
+	public long position () throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	/**
+	 * Positions the input stream.
+	 * @param position the new position (will be minimized with {@link #length()}).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void position (long position) throws IOException {
+		ensureOpen();
+		this.position = Math.max(0, Math.min(position, length));
+	}
+
+	@Override
+	public int available () throws IOException {
+		ensureOpen();
+		return (int)Math.min(Integer.MAX_VALUE, length - position);
+	}
+
+	@Override
+	public int read () throws IOException {
+		ensureOpen();
+		if ( position >= length ) return -1;
+		if ( !isBuffered(position) ) fill();
+		return buffer.array()[(int)(position++ - bufferStart)] & 0xFF;
+	}
+
+	@Override
+	public int read (byte[] b,
+		int offset,
+		int len) throws IOException
+	{
+		ensureOpen();
+		if (( offset < 0 ) || ( len < 0 ) || ( len > b.length - offset )) {
+			throw new IndexOutOfBoundsException();
+		}
+		if ( len == 0 ) return 0;
+		if ( position >= length ) return -1;
+
+		if ( !isBuffered(position) ) {
+			if ( len >= buffer.capacity() ) {
+				// Large read: straight from the file into the caller's array
+				int n = fileChannel.read(ByteBuffer.wrap(b, offset, len), position);
+				if ( n <= 0 ) return -1;
+				position += n;
+				return n;
+			}
+			fill();
+		}
+		int start = (int)(position - bufferStart);
+		int n = Math.min(len, buffer.limit() - start);
+		System.arraycopy(buffer.array(), start, b, offset, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip (long n) throws IOException {
+		ensureOpen();
+		if ( n <= 0 ) return 0;
+		long toSkip = Math.min(n, length - position);
+		position += toSkip;
+		return toSkip;
+	}
+
+	@Override
+	public boolean markSupported () {
+		return true;
+	}
+
+	@Override
+	public void mark (int readlimit) {
+		mark = position;
+	}
+
+	@Override
+	public void reset () throws IOException {
+		ensureOpen();
+		position = mark;
+	}
+
+	private boolean isBuffered (long pos) {
+		return ( pos >= bufferStart ) && ( pos < bufferStart + buffer.limit() );
+	}
+
+	private void fill () throws IOException {
+		buffer.clear();
+		bufferStart = position;
+		while ( buffer.hasRemaining() ) {
+			if ( fileChannel.read(buffer, bufferStart + buffer.position()) <= 0 ) break;
+		}
+		buffer.flip();
+		if ( buffer.limit() == 0 ) {
+			throw new IOException("Unexpected end of file: " + file.getPath());
+		}
+	}
+}
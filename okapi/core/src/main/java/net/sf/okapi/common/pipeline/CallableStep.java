@@ -0,0 +1,120 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.IParameters;
+
+/**
+ * Default implementation of {@link ICallableStep}. Wraps one instance of a step
+ * and processes one {@link SortableEvent} per call, keeping its sequence number.
+ * <p>An instance must not be used by more than one thread at the same time:
+ * {@link WorkQueueStep} makes sure each wrapper is handed to a single worker.
+ */
+public class CallableStep implements ICallableStep<SortableEvent> {
+
+	private final IPipelineStep step;
+	private SortableEvent processEvent;
+
+	/**
+	 * Creates a new CallableStep object.
+	 * @param step the step instance this object wraps (it must not be shared).
+	 */
+	public CallableStep (IPipelineStep step) {
+		this.step = step;
+	}
+
+	/**
+	 * Sets the event to process on the next call to {@link #call()}.
+	 * @param processEvent the event to process.
+	 */
+	public void setProcessEvent (SortableEvent processEvent) {
+		this.processEvent = processEvent;
+	}
+
+	@Override
+	public SortableEvent call () throws Exception {
+		SortableEvent se = processEvent;
+		processEvent = null;
+		return new SortableEvent(se.getSequence(), step.handleEvent(se.getEvent()));
+	}
+
+	@Override
+	public Event processNow (Event event) {
+		return step.handleEvent(event);
+	}
+
+	@Override
+	public IPipelineStep getMainStep () {
+		return step;
+	}
+
+	@Override
+	public IParameters getParameters () {
+		return step.getParameters();
+	}
+
+	@Override
+	public void setParameters (IParameters params) {
+		step.setParameters(params);
+	}
+
+	@Override
+	public String getName () {
+		return step.getName();
+	}
+
+	@Override
+	public String getDescription () {
+		return step.getDescription();
+	}
+
+	@Override
+	public String getHelpLocation () {
+		return step.getHelpLocation();
+	}
+
+	@Override
+	public Event handleEvent (Event event) {
+		return processNow(event);
+	}
+
+	@Override
+	public boolean isDone () {
+		return step.isDone();
+	}
+
+	@Override
+	public void destroy () {
+		step.destroy();
+	}
+
+	@Override
+	public void cancel () {
+		step.cancel();
+	}
+
+	@Override
+	public boolean isLastOutputStep () {
+		return step.isLastOutputStep();
+	}
+
+	@Override
+	public void setLastOutputStep (boolean isLastStep) {
+		step.setLastOutputStep(isLastStep);
+	}
+}
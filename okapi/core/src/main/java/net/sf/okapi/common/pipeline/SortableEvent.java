@@ -0,0 +1,74 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import net.sf.okapi.common.Event;
+
+/**
+ * Associates an {@link Event} with its position in the original event stream
+ * so events processed concurrently can be put back in document order.
+ */
+public class SortableEvent implements Comparable<SortableEvent> {
+
+	private final long sequence;
+	private final Event event;
+
+	/**
+	 * Creates a new SortableEvent object.
+	 * @param sequence the position of the event in the original stream.
+	 * @param event the event.
+	 */
+	public SortableEvent (long sequence,
+		Event event)
+	{
+		this.sequence = sequence;
+		this.event = event;
+	}
+
+	/**
+	 * Gets the position of this event in the original stream.
+	 * @return the sequence number of this event.
+	 */
+	public long getSequence () {
+		return sequence;
+	}
+
+	/**
+	 * Gets the wrapped event.
+	 * @return the event.
+	 */
+	public Event getEvent () {
+		return event;
+	}
+
+	@Override
+	public int compareTo (SortableEvent other) {
+		return Long.compare(sequence, other.sequence);
+	}
+
+	@Override
+	public boolean equals (Object other) {
+		if ( this == other ) return true;
+		if ( !(other instanceof SortableEvent) ) return false;
+		return sequence == ((SortableEvent)other).sequence;
+	}
+
+	@Override
+	public int hashCode () {
+		return Long.valueOf(sequence).hashCode();
+	}
+}
@@ -0,0 +1,397 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.observer.BaseObservable;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.observer.IObserver;
+import net.sf.okapi.common.resource.MultiEvent;
+import net.sf.okapi.common.resource.RawDocument;
+
+/**
+ * Implementation of the {@link IPipeline} interface where each step runs on its own thread.
+ * <p>The steps are connected by bounded queues: a step blocks when the next one has not yet
+ * consumed the events it produced, so a slow step does not cause the events to pile up in memory.
+ * While a step waits (for example on a remote connector), the steps before and after it keep working.
+ * <p>The events seen by each step, and the events sent to the observers, are the same and in the same
+ * order as with {@link Pipeline}: MULTI_EVENT events are expanded for the following steps,
+ * the first step is called until it is done, and each following step is called with NO_OP events
+ * until it is done once the steps before it are finished.
+ * START_BATCH, END_BATCH, START_BATCH_ITEM and END_BATCH_ITEM events are sent synchronously to
+ * all the steps from the calling thread.
+ */
+public class StagedPipeline implements IPipeline, IObservable, IObserver {
+
+	/**
+	 * Default maximum number of events waiting between two steps.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 64;
+
+	private static final long POLL_TIMEOUT = 100;
+
+	// Marker sent after the last event of a step (compared by reference)
+	private static final Event END_OF_STAGE = new Event(EventType.NO_OP);
+
+	private final LinkedList<IPipelineStep> steps;
+	private final int queueSize;
+	private volatile PipelineReturnValue state;
+	private volatile boolean aborted;
+	private ExecutorService executor;
+	private String id;
+
+	/**
+	 * Creates a new StagedPipeline object with the default queue size.
+	 */
+	public StagedPipeline () {
+		this(DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * Creates a new StagedPipeline object.
+	 * @param queueSize maximum number of events waiting between two steps.
+	 */
+	public StagedPipeline (int queueSize) {
+		this.queueSize = Math.max(1, queueSize);
+		steps = new LinkedList<IPipelineStep>();
+		state = PipelineReturnValue.PAUSED;
+		id = Pipeline.DEFAULT_ID;
+	}
+
+	@Override
+	public void startBatch () {
+		state = PipelineReturnValue.RUNNING;
+		Event event = new Event(EventType.START_BATCH);
+		for ( IPipelineStep step : steps ) {
+			step.handleEvent(event);
+		}
+		notifyObservers(event);
+	}
+
+	@Override
+	public void endBatch () {
+		for ( IPipelineStep step : steps ) {
+			step.handleEvent(Event.END_BATCH_EVENT);
+		}
+		notifyObservers(Event.END_BATCH_EVENT);
+		state = PipelineReturnValue.SUCCEDED;
+	}
+
+	@Override
+	public void addStep (IPipelineStep step) {
+		steps.add(step);
+	}
+
+	@Override
+	public List<IPipelineStep> getSteps () {
+		return new LinkedList<IPipelineStep>(steps);
+	}
+
+	@Override
+	public void cancel () {
+		state = PipelineReturnValue.CANCELLED;
+	}
+
+	@Override
+	public PipelineReturnValue getState () {
+		return state;
+	}
+
+	@Override
+	public void process (RawDocument input) {
+		process(new Event(EventType.RAW_DOCUMENT, input));
+	}
+
+	@Override
+	public void process (Event input) {
+		state = PipelineReturnValue.RUNNING;
+
+		// Pre-process for this batch-item
+		Event e = new Event(EventType.START_BATCH_ITEM);
+		for ( IPipelineStep step : steps ) {
+			e = step.handleEvent(e);
+		}
+		notifyObservers(e);
+
+		if ( !steps.isEmpty() ) {
+			List<Event> inputs = new ArrayList<Event>();
+			if ( input.isMultiEvent() && !((MultiEvent)input.getResource()).isPropagateAsSingleEvent() ) {
+				for ( Event me : (MultiEvent)input.getResource() ) {
+					inputs.add(me);
+				}
+			}
+			else {
+				inputs.add(input);
+			}
+			execute(inputs);
+		}
+
+		// Post-process for this batch-item
+		e = new Event(EventType.END_BATCH_ITEM);
+		for ( IPipelineStep step : steps ) {
+			e = step.handleEvent(e);
+		}
+		notifyObservers(e);
+	}
+
+	private void execute (List<Event> inputs) {
+		aborted = false;
+		if ( executor == null ) {
+			executor = Executors.newCachedThreadPool(new StageThreadFactory(id));
+		}
+
+		// Start one stage per step, connected by bounded queues
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(steps.size());
+		BlockingQueue<Event> in = null;
+		for ( int i=0; i<steps.size(); i++ ) {
+			BlockingQueue<Event> out = (i < steps.size()-1) ? new ArrayBlockingQueue<Event>(queueSize) : null;
+			futures.add(executor.submit(new Stage(steps.get(i), inputs, in, out)));
+			in = out;
+		}
+
+		// Wait for all the stages, keeping the first error
+		Throwable error = null;
+		for ( Future<Void> f : futures ) {
+			try {
+				f.get();
+			}
+			catch ( InterruptedException e ) {
+				aborted = true;
+				Thread.currentThread().interrupt();
+				if ( error == null ) error = e;
+			}
+			catch ( ExecutionException e ) {
+				aborted = true;
+				if ( error == null ) error = e.getCause();
+			}
+		}
+
+		if ( state == PipelineReturnValue.CANCELLED ) {
+			for ( IPipelineStep step : steps ) {
+				step.cancel();
+			}
+		}
+		if ( error != null ) {
+			if ( error instanceof RuntimeException ) {
+				throw (RuntimeException)error;
+			}
+			throw new OkapiException("Error in pipeline step: "+error.getMessage(), error);
+		}
+	}
+
+	private boolean isStopped () {
+		return aborted || (state == PipelineReturnValue.CANCELLED);
+	}
+
+	/**
+	 * Runs one step on its own thread.
+	 */
+	private class Stage implements Callable<Void> {
+
+		private final IPipelineStep step;
+		private final List<Event> inputs;
+		private final BlockingQueue<Event> in;
+		private final BlockingQueue<Event> out;
+
+		Stage (IPipelineStep step,
+			List<Event> inputs,
+			BlockingQueue<Event> in,
+			BlockingQueue<Event> out)
+		{
+			this.step = step;
+			this.inputs = inputs;
+			this.in = in;
+			this.out = out;
+		}
+
+		@Override
+		public Void call () throws Exception {
+			try {
+				if ( in == null ) {
+					// First step: prime it with each input and call it until it is done
+					for ( Event input : inputs ) {
+						Event event = input;
+						while ( !isStopped() ) {
+							send(step.handleEvent(event));
+							if ( step.isDone() ) break;
+							event = Event.NOOP_EVENT;
+						}
+					}
+				}
+				else {
+					while ( true ) {
+						Event event = in.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+						if ( event == null ) {
+							if ( isStopped() ) return null;
+							continue;
+						}
+						if ( event == END_OF_STAGE ) break;
+						send(step.handleEvent(event));
+					}
+					// The previous steps are done: call this one until it is done too
+					while ( !step.isDone() && !isStopped() ) {
+						send(step.handleEvent(Event.NOOP_EVENT));
+					}
+				}
+				if ( out != null ) put(END_OF_STAGE);
+				return null;
+			}
+			catch ( Throwable e ) {
+				aborted = true;
+				if ( e instanceof Exception ) throw (Exception)e;
+				throw new OkapiException(e);
+			}
+		}
+
+		private void send (Event event) throws InterruptedException {
+			if ( event.isNoop() ) return;
+			if ( event.isMultiEvent() && !((MultiEvent)event.getResource()).isPropagateAsSingleEvent() ) {
+				for ( Event me : (MultiEvent)event.getResource() ) {
+					if ( !me.isNoop() ) deliver(me);
+				}
+			}
+			else {
+				deliver(event);
+			}
+		}
+
+		private void deliver (Event event) throws InterruptedException {
+			if ( out == null ) {
+				// Last step: notify the observers
+				notifyObservers(event);
+			}
+			else {
+				put(event);
+			}
+		}
+
+		private void put (Event event) throws InterruptedException {
+			while ( !out.offer(event, POLL_TIMEOUT, TimeUnit.MILLISECONDS) ) {
+				if ( isStopped() ) return;
+			}
+		}
+	}
+
+	@Override
+	public void destroy () {
+		for ( IPipelineStep step : steps ) {
+			step.destroy();
+		}
+		if ( executor != null ) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		state = PipelineReturnValue.DESTROYED;
+	}
+
+	@Override
+	public void clearSteps () {
+		destroy();
+		steps.clear();
+	}
+
+	@Override
+	public String getId () {
+		return id;
+	}
+
+	@Override
+	public void setId (String id) {
+		this.id = id;
+	}
+
+	private static class StageThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final String prefix;
+
+		StageThreadFactory (String pipelineId) {
+			prefix = "StagedPipeline-" + pipelineId + "-";
+		}
+
+		@Override
+		public Thread newThread (Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	//
+	// implements IObserver interface
+	//
+
+	public void update (IObservable o, Object arg) {
+		notifyObservers();
+	}
+
+	//
+	// implements IObservable interface
+	//
+
+	/**
+	 * Implements multiple inheritance via delegate pattern to an inner class
+	 *
+	 * @see IObservable
+	 * @see BaseObservable
+	 */
+	private IObservable delegatedObservable = new BaseObservable(this);
+
+	public void addObserver (IObserver observer) {
+		delegatedObservable.addObserver(observer);
+	}
+
+	public int countObservers () {
+		return delegatedObservable.countObservers();
+	}
+
+	public void deleteObserver (IObserver observer) {
+		delegatedObservable.deleteObserver(observer);
+	}
+
+	public void notifyObservers () {
+		delegatedObservable.notifyObservers();
+	}
+
+	public void notifyObservers (Object arg) {
+		delegatedObservable.notifyObservers(arg);
+	}
+
+	public void deleteObservers () {
+		delegatedObservable.deleteObservers();
+	}
+
+	public List<IObserver> getObservers () {
+		return delegatedObservable.getObservers();
+	}
+}
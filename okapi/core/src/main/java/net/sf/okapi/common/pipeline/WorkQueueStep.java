@@ -0,0 +1,357 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.resource.MultiEvent;
+
+/**
+ * Default implementation of {@link IWorkQueueStep}.
+ * <p>The main step is used as a template: it is cloned once per work queue and each clone
+ * is wrapped in a {@link CallableStep}. TEXT_UNIT events are dispatched to a fixed-size
+ * thread pool, and the results are sent back down the pipeline in their original order as a
+ * {@link MultiEvent}. All other events are first used to drain the queued text units, then they
+ * are passed synchronously to every clone and the result of the first clone is returned.
+ * <p>This is only suitable for steps that process each text unit independently:
+ * any state kept between text units is not shared between the clones.
+ */
+public class WorkQueueStep implements IWorkQueueStep<SortableEvent> {
+
+	/**
+	 * Number of text units buffered per work queue before the results are sent down the pipeline.
+	 */
+	public static final int DEFAULT_EVENTS_PER_QUEUE = 16;
+
+	private IPipelineStep mainStep;
+	private int workQueueCount;
+	private int maxQueuedEvents;
+	private LinkedList<ICallableStep<SortableEvent>> callableSteps;
+	private LinkedBlockingQueue<CallableStep> idleSteps;
+	private List<Future<SortableEvent>> queued;
+	private ExecutorService executor;
+	private long sequence;
+	private boolean drainRequested;
+
+	/**
+	 * Creates a new WorkQueueStep object. {@link #setMainStep(IPipelineStep)} and optionally
+	 * {@link #setWorkQueueCount(int)} must be called before {@link #init()}.
+	 * By default there is one work queue per available processor.
+	 */
+	public WorkQueueStep () {
+		workQueueCount = Runtime.getRuntime().availableProcessors();
+		callableSteps = new LinkedList<ICallableStep<SortableEvent>>();
+		queued = new ArrayList<Future<SortableEvent>>();
+	}
+
+	/**
+	 * Creates a new WorkQueueStep object ready to be used.
+	 * @param step the main step used as template for each work queue.
+	 * @param workQueueCount the number of work queues (and threads) to use.
+	 * @throws OkapiException if the main step cannot be cloned.
+	 */
+	public WorkQueueStep (IPipelineStep step,
+		int workQueueCount)
+	{
+		this();
+		setMainStep(step);
+		setWorkQueueCount(workQueueCount);
+		try {
+			init();
+		}
+		catch ( InstantiationException e ) {
+			throw new OkapiException("Cannot create the work queue steps.", e);
+		}
+		catch ( IllegalAccessException e ) {
+			throw new OkapiException("Cannot create the work queue steps.", e);
+		}
+	}
+
+	@Override
+	public void init () throws InstantiationException, IllegalAccessException {
+		if ( mainStep == null ) {
+			throw new OkapiException("The main step of the work queue must be set before init().");
+		}
+		destroyCallableSteps();
+		idleSteps = new LinkedBlockingQueue<CallableStep>();
+		for ( int i=0; i<workQueueCount; i++ ) {
+			IPipelineStep step = mainStep.getClass().newInstance();
+			step.setParameters(copyParameters(mainStep.getParameters()));
+			step.setLastOutputStep(mainStep.isLastOutputStep());
+			CallableStep cs = new CallableStep(step);
+			callableSteps.add(cs);
+			idleSteps.add(cs);
+		}
+		maxQueuedEvents = workQueueCount * DEFAULT_EVENTS_PER_QUEUE;
+		executor = Executors.newFixedThreadPool(workQueueCount, new WorkerThreadFactory(mainStep.getName()));
+	}
+
+	@Override
+	public IPipelineStep getMainStep () {
+		return mainStep;
+	}
+
+	@Override
+	public void setMainStep (IPipelineStep step) {
+		this.mainStep = step;
+	}
+
+	@Override
+	public LinkedList<ICallableStep<SortableEvent>> getCallableSteps () {
+		return callableSteps;
+	}
+
+	@Override
+	public int getWorkQueueCount () {
+		return workQueueCount;
+	}
+
+	@Override
+	public void setWorkQueueCount (int workQueueCount) {
+		this.workQueueCount = Math.max(1, workQueueCount);
+	}
+
+	@Override
+	public IParameters getParameters () {
+		return mainStep.getParameters();
+	}
+
+	@Override
+	public void setParameters (IParameters params) {
+		mainStep.setParameters(params);
+		for ( ICallableStep<SortableEvent> cs : callableSteps ) {
+			cs.setParameters(copyParameters(params));
+		}
+	}
+
+	@Override
+	public String getName () {
+		return mainStep.getName();
+	}
+
+	@Override
+	public String getDescription () {
+		return mainStep.getDescription();
+	}
+
+	@Override
+	public String getHelpLocation () {
+		return mainStep.getHelpLocation();
+	}
+
+	@Override
+	public Event handleEvent (Event event) {
+		switch ( event.getEventType() ) {
+		case TEXT_UNIT:
+			enqueue(event);
+			if ( queued.size() >= maxQueuedEvents ) {
+				return drain(null);
+			}
+			return Event.NOOP_EVENT;
+		case NO_OP:
+			// We are the first step and the previous steps are done: flush what is left
+			if ( drainRequested && !queued.isEmpty() ) {
+				drainRequested = false;
+				return drain(null);
+			}
+			return event;
+		default:
+			return drain(event);
+		}
+	}
+
+	@Override
+	public boolean isDone () {
+		if ( !queued.isEmpty() ) {
+			drainRequested = true;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void destroy () {
+		destroyCallableSteps();
+		mainStep.destroy();
+	}
+
+	@Override
+	public void cancel () {
+		for ( Future<SortableEvent> f : queued ) {
+			f.cancel(true);
+		}
+		queued.clear();
+		for ( ICallableStep<SortableEvent> cs : callableSteps ) {
+			cs.cancel();
+		}
+		mainStep.cancel();
+	}
+
+	@Override
+	public boolean isLastOutputStep () {
+		return mainStep.isLastOutputStep();
+	}
+
+	@Override
+	public void setLastOutputStep (boolean isLastStep) {
+		mainStep.setLastOutputStep(isLastStep);
+		for ( ICallableStep<SortableEvent> cs : callableSteps ) {
+			cs.setLastOutputStep(isLastStep);
+		}
+	}
+
+	private void enqueue (Event event) {
+		final CallableStep cs;
+		try {
+			// Blocks until one of the clones is free
+			cs = idleSteps.take();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while waiting for a work queue.", e);
+		}
+		cs.setProcessEvent(new SortableEvent(sequence++, event));
+		queued.add(executor.submit(new Callable<SortableEvent>() {
+			@Override
+			public SortableEvent call () throws Exception {
+				try {
+					return cs.call();
+				}
+				finally {
+					idleSteps.add(cs);
+				}
+			}
+		}));
+	}
+
+	/*
+	 * Waits for all queued text units, then passes the given event (if any) to every clone.
+	 * Returns the resulting events in document order.
+	 */
+	private Event drain (Event event) {
+		List<SortableEvent> results = new ArrayList<SortableEvent>(queued.size());
+		try {
+			for ( Future<SortableEvent> f : queued ) {
+				results.add(f.get());
+			}
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while waiting for the work queues.", e);
+		}
+		catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new OkapiException("Error in work queue step: "+e.getCause().getMessage(), e.getCause());
+		}
+		finally {
+			queued.clear();
+		}
+		Collections.sort(results);
+
+		List<Event> events = new ArrayList<Event>(results.size()+1);
+		for ( SortableEvent se : results ) {
+			addEvent(events, se.getEvent());
+		}
+		if ( event != null ) {
+			Event first = null;
+			for ( ICallableStep<SortableEvent> cs : callableSteps ) {
+				Event res = cs.processNow(event);
+				if ( first == null ) first = res;
+			}
+			addEvent(events, first);
+		}
+
+		if ( events.isEmpty() ) return Event.NOOP_EVENT;
+		if ( events.size() == 1 ) return events.get(0);
+		return new Event(EventType.MULTI_EVENT, new MultiEvent(events));
+	}
+
+	private void addEvent (List<Event> events,
+		Event event)
+	{
+		if (( event == null ) || event.isNoop() ) return;
+		if ( event.isMultiEvent() && !((MultiEvent)event.getResource()).isPropagateAsSingleEvent() ) {
+			for ( Event e : (MultiEvent)event.getResource() ) {
+				addEvent(events, e);
+			}
+		}
+		else {
+			events.add(event);
+		}
+	}
+
+	private IParameters copyParameters (IParameters params) {
+		if ( params == null ) return null;
+		try {
+			IParameters copy = params.getClass().newInstance();
+			copy.fromString(params.toString());
+			return copy;
+		}
+		catch ( InstantiationException e ) {
+			throw new OkapiException("Cannot copy the parameters of the work queue step.", e);
+		}
+		catch ( IllegalAccessException e ) {
+			throw new OkapiException("Cannot copy the parameters of the work queue step.", e);
+		}
+	}
+
+	private void destroyCallableSteps () {
+		if ( executor != null ) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		for ( ICallableStep<SortableEvent> cs : callableSteps ) {
+			cs.destroy();
+		}
+		callableSteps.clear();
+		queued.clear();
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final String prefix;
+
+		WorkerThreadFactory (String stepName) {
+			prefix = "WorkQueue-" + stepName + "-";
+		}
+
+		@Override
+		public Thread newThread (Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
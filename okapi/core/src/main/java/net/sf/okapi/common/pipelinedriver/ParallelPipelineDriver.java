@@ -0,0 +1,441 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipelinedriver;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.observer.IObserver;
+import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IPipelineStep;
+import net.sf.okapi.common.pipeline.Pipeline;
+import net.sf.okapi.common.resource.MultiEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of the {@link IPipelineDriver} interface that processes several batch items at the same time.
+ * <p>The steps of the pipeline are split in two parts:
+ * <ul>
+ * <li>The first steps are replicated once per worker thread (see {@link #createStepReplica(IPipelineStep)}),
+ * and each replica pipeline processes whole batch items.
+ * <li>The last {@link #setSharedStepCount(int)} steps are not replicated: they receive the events produced
+ * by the replicas, one batch item at a time and in the original batch order, on the calling thread.
+ * Steps aggregating information across the batch (for example word-count or scoping-report steps) must
+ * be placed in that shared part.
+ * </ul>
+ * <p>Observers of the pipeline are notified of START_BATCH and END_BATCH once, and of the events of each batch
+ * item in batch order, as with {@link PipelineDriver}.
+ */
+public class ParallelPipelineDriver extends PipelineDriver {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private int workerCount;
+	private int sharedStepCount;
+
+	/**
+	 * Creates a new ParallelPipelineDriver object with an empty pipeline and one worker per
+	 * available processor.
+	 */
+	public ParallelPipelineDriver () {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new ParallelPipelineDriver object with an empty pipeline.
+	 * @param workerCount number of batch items processed at the same time.
+	 */
+	public ParallelPipelineDriver (int workerCount) {
+		super();
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	/**
+	 * Gets the number of batch items processed at the same time.
+	 * @return the number of workers.
+	 */
+	public int getWorkerCount () {
+		return workerCount;
+	}
+
+	/**
+	 * Sets the number of batch items processed at the same time.
+	 * @param workerCount the number of workers.
+	 */
+	public void setWorkerCount (int workerCount) {
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	/**
+	 * Gets the number of steps at the end of the pipeline that are not replicated.
+	 * @return the number of shared steps.
+	 */
+	public int getSharedStepCount () {
+		return sharedStepCount;
+	}
+
+	/**
+	 * Sets the number of steps at the end of the pipeline that are not replicated. Those steps
+	 * see all the batch items in order, on the calling thread.
+	 * @param sharedStepCount the number of shared steps (0 by default).
+	 */
+	public void setSharedStepCount (int sharedStepCount) {
+		this.sharedStepCount = Math.max(0, sharedStepCount);
+	}
+
+	@Override
+	public void processBatch () {
+		List<IBatchItemContext> items = getBatchItems();
+		List<IPipelineStep> steps = getPipeline().getSteps();
+		int shared = Math.min(sharedStepCount, steps.size());
+		List<IPipelineStep> parallelSteps = steps.subList(0, steps.size()-shared);
+		List<IPipelineStep> sharedSteps = steps.subList(steps.size()-shared, steps.size());
+		IBatchItemContext firstItem = items.isEmpty() ? null : items.get(0);
+
+		// Shared steps are run through their own pipeline, forwarding its notifications
+		Pipeline sharedPipeline = null;
+		if ( !sharedSteps.isEmpty() ) {
+			sharedPipeline = new Pipeline();
+			for ( IPipelineStep step : sharedSteps ) {
+				sharedPipeline.addStep(step);
+			}
+			sharedPipeline.addObserver(new IObserver() {
+				@Override
+				public void update (IObservable o, Object arg) {
+					notifyPipelineObservers((Event)arg);
+				}
+			});
+		}
+		boolean collect = (sharedPipeline != null) || hasPipelineObservers();
+
+		// Create the replicas and start the batch
+		LinkedBlockingQueue<Replica> idle = new LinkedBlockingQueue<Replica>();
+		List<Replica> replicas = new ArrayList<Replica>(workerCount);
+		for ( int i=0; i<workerCount; i++ ) {
+			Replica replica = new Replica(parallelSteps, collect);
+			if ( firstItem != null ) replica.assignRuntimeParameters(firstItem);
+			replica.pipeline.startBatch();
+			replicas.add(replica);
+			idle.add(replica);
+		}
+		if ( sharedPipeline != null ) {
+			if ( firstItem != null ) assignRuntimeParameters(sharedSteps, firstItem);
+			sharedPipeline.startBatch();
+		}
+		else {
+			notifyPipelineObservers(new Event(EventType.START_BATCH));
+		}
+
+		// Run the batch items
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+		LinkedList<PendingItem> pending = new LinkedList<PendingItem>();
+		boolean completed = false;
+		try {
+			for ( IBatchItemContext item : items ) {
+				displayInput(item);
+				Replica replica = idle.take();
+				pending.add(new PendingItem(item, executor.submit(new ItemTask(replica, item, idle))));
+				// Pass on the finished items, keeping the batch order
+				while ( !pending.isEmpty()
+					&& (pending.getFirst().future.isDone() || (pending.size() > workerCount*2)) ) {
+					completeItem(pending.removeFirst(), sharedPipeline, sharedSteps);
+				}
+			}
+			while ( !pending.isEmpty() ) {
+				completeItem(pending.removeFirst(), sharedPipeline, sharedSteps);
+			}
+			completed = true;
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while processing the batch.", e);
+		}
+		finally {
+			executor.shutdownNow();
+			if ( !completed ) {
+				// Let the running items stop before their pipelines are destroyed
+				awaitTermination(executor);
+			}
+			endBatch(replicas, sharedPipeline, completed);
+		}
+	}
+
+	/**
+	 * Ends the batch for the replicas and the shared steps, and destroys the replicas.
+	 * When the batch failed, every pipeline is still ended and destroyed, and the errors
+	 * of this clean-up are logged so they do not hide the original one.
+	 */
+	private void endBatch (List<Replica> replicas,
+		Pipeline sharedPipeline,
+		boolean completed)
+	{
+		RuntimeException error = null;
+		for ( Replica replica : replicas ) {
+			try {
+				replica.pipeline.endBatch();
+			}
+			catch ( RuntimeException e ) {
+				error = cleanUpError(error, e, completed);
+			}
+			// The steps are destroyed directly: after a failure the pipeline does not list them all
+			for ( IPipelineStep step : replica.steps ) {
+				try {
+					step.destroy();
+				}
+				catch ( RuntimeException e ) {
+					error = cleanUpError(error, e, completed);
+				}
+			}
+		}
+		try {
+			if ( sharedPipeline != null ) {
+				sharedPipeline.endBatch();
+			}
+			else {
+				notifyPipelineObservers(Event.END_BATCH_EVENT);
+			}
+		}
+		catch ( RuntimeException e ) {
+			error = cleanUpError(error, e, completed);
+		}
+		if ( error != null ) {
+			throw error;
+		}
+	}
+
+	private void awaitTermination (ExecutorService executor) {
+		try {
+			while ( !executor.awaitTermination(1, TimeUnit.SECONDS) ) {
+				logger.debug("Waiting for the batch items in progress to stop.");
+			}
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private RuntimeException cleanUpError (RuntimeException first,
+		RuntimeException e,
+		boolean completed)
+	{
+		if ( !completed ) {
+			logger.warn("Error when ending the batch after a failure: {}", e.getMessage());
+			return null;
+		}
+		return (first == null) ? e : first;
+	}
+
+	/**
+	 * Creates a copy of a step for one of the worker pipelines. By default this creates a new instance
+	 * of the same class (which must have a public empty constructor) with a copy of its parameters.
+	 * Override this method to use a different step factory.
+	 * @param step the step to replicate.
+	 * @return the new step.
+	 */
+	protected IPipelineStep createStepReplica (IPipelineStep step) {
+		try {
+			IPipelineStep replica = step.getClass().newInstance();
+			IParameters params = step.getParameters();
+			if ( params != null ) {
+				IParameters copy = params.getClass().newInstance();
+				copy.fromString(params.toString());
+				replica.setParameters(copy);
+			}
+			replica.setLastOutputStep(step.isLastOutputStep());
+			return replica;
+		}
+		catch ( InstantiationException e ) {
+			throw new OkapiException(String.format("Cannot replicate the step '%s'.", step.getName()), e);
+		}
+		catch ( IllegalAccessException e ) {
+			throw new OkapiException(String.format("Cannot replicate the step '%s'.", step.getName()), e);
+		}
+	}
+
+	private void completeItem (PendingItem item,
+		Pipeline sharedPipeline,
+		List<IPipelineStep> sharedSteps)
+		throws InterruptedException
+	{
+		List<Event> events;
+		try {
+			events = item.future.get();
+		}
+		catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new OkapiException("Error when processing a batch item.", e.getCause());
+		}
+
+		if ( sharedPipeline != null ) {
+			assignRuntimeParameters(sharedSteps, item.item);
+			sharedPipeline.process(new Event(EventType.MULTI_EVENT, new MultiEvent(events)));
+		}
+		else if ( events != null ) {
+			notifyPipelineObservers(new Event(EventType.START_BATCH_ITEM));
+			for ( Event event : events ) {
+				notifyPipelineObservers(event);
+			}
+			notifyPipelineObservers(new Event(EventType.END_BATCH_ITEM));
+		}
+	}
+
+	private void assignRuntimeParameters (List<IPipelineStep> steps,
+		IBatchItemContext item)
+	{
+		for ( IPipelineStep step : steps ) {
+			PipelineDriverUtils.assignRuntimeParameters(this, step, item, null);
+		}
+	}
+
+	private boolean hasPipelineObservers () {
+		return (getPipeline() instanceof IObservable)
+			&& (((IObservable)getPipeline()).countObservers() > 0);
+	}
+
+	private void notifyPipelineObservers (Event event) {
+		if ( getPipeline() instanceof IObservable ) {
+			((IObservable)getPipeline()).notifyObservers(event);
+		}
+	}
+
+	/**
+	 * One copy of the replicated steps, with its own pipeline.
+	 */
+	private class Replica {
+
+		final Pipeline pipeline;
+		final List<IPipelineStep> steps;
+		final EventCollectorStep collector;
+
+		Replica (List<IPipelineStep> templates,
+			boolean collect)
+		{
+			pipeline = new Pipeline();
+			steps = new ArrayList<IPipelineStep>(templates.size());
+			for ( IPipelineStep template : templates ) {
+				IPipelineStep step = createStepReplica(template);
+				steps.add(step);
+				pipeline.addStep(step);
+			}
+			if ( collect ) {
+				collector = new EventCollectorStep();
+				pipeline.addStep(collector);
+			}
+			else {
+				collector = null;
+			}
+		}
+
+		void assignRuntimeParameters (IBatchItemContext item) {
+			ParallelPipelineDriver.this.assignRuntimeParameters(steps, item);
+		}
+	}
+
+	private class ItemTask implements Callable<List<Event>> {
+
+		private final Replica replica;
+		private final IBatchItemContext item;
+		private final LinkedBlockingQueue<Replica> idle;
+
+		ItemTask (Replica replica,
+			IBatchItemContext item,
+			LinkedBlockingQueue<Replica> idle)
+		{
+			this.replica = replica;
+			this.item = item;
+			this.idle = idle;
+		}
+
+		@Override
+		public List<Event> call () throws Exception {
+			try {
+				replica.assignRuntimeParameters(item);
+				if ( replica.collector != null ) {
+					replica.collector.events = new ArrayList<Event>();
+				}
+				replica.pipeline.process(item.getRawDocument(0));
+				return (replica.collector == null) ? null : replica.collector.events;
+			}
+			finally {
+				idle.add(replica);
+			}
+		}
+	}
+
+	private static class PendingItem {
+
+		final IBatchItemContext item;
+		final Future<List<Event>> future;
+
+		PendingItem (IBatchItemContext item,
+			Future<List<Event>> future)
+		{
+			this.item = item;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Last step of each replica: records the events of the current batch item.
+	 */
+	private static class EventCollectorStep extends BasePipelineStep {
+
+		List<Event> events = new ArrayList<Event>();
+
+		@Override
+		public String getName () {
+			return "Event Collector";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Records the events of a batch item.";
+		}
+
+		@Override
+		public Event handleEvent (Event event) {
+			switch ( event.getEventType() ) {
+			case START_BATCH:
+			case END_BATCH:
+			case START_BATCH_ITEM:
+			case END_BATCH_ITEM:
+			case NO_OP:
+				break;
+			default:
+				events.add(event);
+			}
+			return event;
+		}
+	}
+}
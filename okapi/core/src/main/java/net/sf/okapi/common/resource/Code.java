@@ -104,7 +104,7 @@ public class Code {
 	public static final String EXTENDED_CODE_TYPE_VALUE_DELIMITER = ":";
 
 	/**
-	 * Initial capacity for data and outerData objects.
+	 * Extra capacity for data and outerData objects when they are first appended to.
 	 * Keeping it small to save space.
 	 */
 	private static final int DATA_DEFAULT_SIZE = 10;
@@ -162,8 +162,9 @@ public class Code {
 	/**
 	 * Native data for this code.
 	 * This is used to generate the text output, except if outerData is not null.
+	 * It is a String until data is appended to the code, then a StringBuilder.
 	 */
-	protected StringBuilder data;
+	protected CharSequence data;
 	
 	/**
 	 * serialized data for this merged code.
@@ -175,8 +176,9 @@ public class Code {
 	 * Outer data. It must be null (not just empty) for data to be used.
 	 * Outer data is reserved to store inline native codes in formats that are extraction formats
 	 * such as XLIFF, TS, etc.
+	 * It is a String until outer data is appended to the code, then a StringBuilder.
 	 */
-	protected StringBuilder outerData;
+	protected CharSequence outerData;
 
 	/**
 	 * Display text that is displayed as hint to the end user.
@@ -237,6 +239,8 @@ public class Code {
 	
 	/**
 	 * Indicates if two codes-storing strings have the same codes or not.
+	 * The codes are compared by id and by the content of their data. (Before the data
+	 * were stored as strings, codes were equal only if they shared the same data object.)
 	 * @param codes1 the first codes-storing string.
 	 * @param codes2 the second codes-storing string.
 	 * @return true if both codes-storing strings are identical.
@@ -252,10 +256,10 @@ public class Code {
 			if ( code1.id != code2.id ) return false;
 			
 			if ( code1.data != null ) {
-				if ( !code1.data.equals(code2.data) ) return false;
+				if (( code2.data == null ) || !code1.data.toString().equals(code2.data.toString()) ) return false;
 			}
 			else {
-				if ( code1.data != null ) return false;
+				if ( code2.data != null ) return false;
 			}
 		}
 		return true;
@@ -341,11 +345,7 @@ public class Code {
 				}
 				
 				if ( !tmpFields[outerDataIndex].equals(TYPE_NULL) ) {
-					if (code.outerData == null) {
-						code.outerData = new StringBuilder(DATA_DEFAULT_SIZE);
-					}
-					code.outerData.setLength(0);
-					code.outerData.append(tmpFields[outerDataIndex]);
+					code.outerData = tmpFields[outerDataIndex];
 				}
 				if ( tmpFields.length > annotationIndex ) {
 					code.annotations = stringToAnnotations(tmpFields[annotationIndex]);
@@ -379,8 +379,8 @@ public class Code {
 	}
 	
 	public Code() {
-		data = new StringBuilder();
-		outerData = new StringBuilder();
+		data = "";
+		outerData = "";
 	}
 	
 	/**
@@ -401,14 +401,9 @@ public class Code {
 		if ( type == null ) this.type = TYPE_NULL;
 		else this.type = type;
 		
-		// Initialize data
-		this.data = new StringBuilder(DATA_DEFAULT_SIZE);		
-	
 		// Use "" for null data
-		if ( data == null ) {
-			data = "";
-		}
-		this.data.append(data);
+		// The builder is created only if data is appended later
+		this.data = (data == null) ? "" : data;
 	}
 	
 	/**
@@ -420,7 +415,7 @@ public class Code {
 	 */
 	private Code (TagType tagType,
 		String type,
-		StringBuilder data)
+		CharSequence data)
 	{
 		this(tagType, type, (data==null ? "" : data.toString()));
 	}
@@ -450,7 +445,7 @@ public class Code {
 	 */
 	public void append (String data) {
 		if ( data != null ) {
-			this.data.append(data);
+			this.data = append(this.data, data);
 		}
 	}
 	
@@ -461,10 +456,7 @@ public class Code {
 	public void appendOuterData (String outerData) {
 		if ( outerData == null ) return;
 		// Else: append the value
-		if ( this.outerData == null ) {
-			this.outerData = new StringBuilder(DATA_DEFAULT_SIZE);
-		}
-		this.outerData.append(outerData);
+		this.outerData = append(this.outerData, outerData);
 	}
 	
 	/**
@@ -472,7 +464,7 @@ public class Code {
 	 * @param id the identifier of the referent resource.
 	 */
 	public void appendReference (String id) {
-		this.data.append(TextFragment.makeRefMarker(id));
+		this.data = append(this.data, TextFragment.makeRefMarker(id));
 		setReferenceFlag(true);
 	}
 	
@@ -484,10 +476,41 @@ public class Code {
 	public void appendReference (String id,
 		String propertyName)
 	{
-		this.data.append(TextFragment.makeRefMarker(id, propertyName));
+		this.data = append(this.data, TextFragment.makeRefMarker(id, propertyName));
 		setReferenceFlag(true);
 	}
 	
+	/**
+	 * Appends a string to a data or outer data value, creating a builder only when needed.
+	 * @param value the current value (can be null).
+	 * @param text the string to append.
+	 * @return the new value.
+	 */
+	private static CharSequence append (CharSequence value,
+		String text)
+	{
+		if (( value == null ) || ( value.length() == 0 )) {
+			return text;
+		}
+		if ( value instanceof StringBuilder ) {
+			return ((StringBuilder)value).append(text);
+		}
+		return new StringBuilder(value.length()+text.length()+DATA_DEFAULT_SIZE).append(value).append(text);
+	}
+
+	/**
+	 * Compacts the storage of this code: the type, data, outer data and display text
+	 * are stored as strings shared with the other codes compacted with the same pool.
+	 * The code can still be modified afterwards.
+	 * @param pool the pool of strings to use, usually one for all the codes of a document.
+	 */
+	public void compact (CodeDataPool pool) {
+		type = pool.get(type);
+		data = pool.get(data.toString());
+		if ( outerData != null ) outerData = pool.get(outerData.toString());
+		if ( displayText != null ) displayText = pool.get(displayText);
+	}
+
 	/**
 	 * Gets the string representation of this code: its data.
 	 * @return the raw data of this code.
@@ -547,7 +570,7 @@ public class Code {
 	 * @return true if this code has outer data.
 	 */
 	public boolean hasOuterData () {
-		return ( !Util.isEmpty(outerData) );
+		return (( outerData != null ) && ( outerData.length() > 0 ));
 	}
 	
 	/**
@@ -560,7 +583,7 @@ public class Code {
 		Code newCode = new Code(tagType, type, data);
 		newCode.id = id;
 		newCode.originalId = originalId;
-		newCode.outerData = ((outerData == null) ? null : new StringBuilder(outerData));
+		newCode.outerData = ((outerData == null) ? null : outerData.toString());
 		newCode.displayText = displayText;
 		newCode.flag = flag;
 		newCode.mergedData = mergedData;
@@ -626,9 +649,8 @@ public class Code {
 	 * @param value the new raw data of the code.
 	 */
 	public void setData (String value) {
-		data.setLength(0);
+		data = (value == null) ? "" : value;
 		if ( value != null ) {
-			data.append(value);
 			if (value.contains(TextFragment.REFMARKER_START)) {
 				setReferenceFlag(true);
 			}
@@ -705,11 +727,7 @@ public class Code {
 			return;
 		}
 		// Else: the value needs to be set
-		if ( this.outerData == null ) {
-			this.outerData = new StringBuilder(DATA_DEFAULT_SIZE);
-		}
-		outerData.setLength(0);
-		outerData.append(value);
+		this.outerData = value;
 	}
 	
 	/**
@@ -0,0 +1,67 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.resource;
+
+import java.util.HashMap;
+
+/**
+ * Pool of the strings used by in-line codes, so identical types and data are stored only once.
+ * <p>Documents often repeat the same few codes many times (run properties, formatting tags, etc.).
+ * Use one pool per document with {@link Code#compact(CodeDataPool)},
+ * {@link TextFragment#compactCodes(CodeDataPool)} or
+ * {@link TextUnitUtil#compactCodes(ITextUnit, CodeDataPool)}, and discard it with the document.
+ * <p>Compaction is opt-in: no filter or step of the framework calls it, so it is up to the
+ * application to compact the text units it keeps in memory for a long time.
+ * <p>This class is not thread-safe.
+ */
+public class CodeDataPool {
+
+	private final HashMap<String, String> strings = new HashMap<String, String>();
+
+	/**
+	 * Gets the shared instance of a given string.
+	 * @param value the string to look up (can be null).
+	 * @return the instance of the pool equal to the given string (the string itself the first time),
+	 * or null if the given string is null.
+	 */
+	public String get (String value) {
+		if ( value == null ) return null;
+		if ( value.isEmpty() ) return "";
+		String shared = strings.get(value);
+		if ( shared == null ) {
+			strings.put(value, value);
+			return value;
+		}
+		return shared;
+	}
+
+	/**
+	 * Gets the number of distinct strings in this pool.
+	 * @return the number of strings in the pool.
+	 */
+	public int size () {
+		return strings.size();
+	}
+
+	/**
+	 * Removes all the strings from this pool. The codes already compacted are not affected.
+	 */
+	public void clear () {
+		strings.clear();
+	}
+
+}
@@ -40,7 +40,6 @@ public class Ending implements IResource, IWithAnnotations {
 	 * the corresponding starting resource: each resource has a ID are unique).
 	 */
 	public Ending (String id) {
-		annotations = new Annotations();
 		this.id = id;
 	}
 
@@ -73,6 +72,7 @@ public class Ending implements IResource, IWithAnnotations {
 	
 	@Override
 	public void setAnnotation (IAnnotation annotation) {
+		if ( annotations == null ) annotations = new Annotations();
 		annotations.set(annotation);
 	}
 
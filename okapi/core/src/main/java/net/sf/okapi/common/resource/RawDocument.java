@@ -41,7 +41,9 @@ import net.sf.okapi.common.annotation.IAnnotation;
 import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.exceptions.OkapiNotImplementedException;
 import net.sf.okapi.common.exceptions.OkapiUnsupportedEncodingException;
+import net.sf.okapi.common.io.CharSequenceReader;
 import net.sf.okapi.common.io.FileCachedInputStream;
+import net.sf.okapi.common.io.FileChannelInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,7 +65,7 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 	private String encoding = UNKOWN_ENCODING;
 	private LocaleId srcLoc;
 	private List<LocaleId> trgLocs;
-	private FileCachedInputStream createdStream;
+	private InputStream createdStream;
 	private URI inputURI;
 	private CharSequence inputCharSequence;
 	private Reader reader;
@@ -264,6 +266,8 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 	/**
 	 * Returns a Reader based on the current Stream returned from getStream(). 
 	 * <p>
+	 * For a CharSequence input, the Reader reads the characters directly, without
+	 * encoding and decoding them.
 	 * 
 	 * @return a Reader
 	 */
@@ -276,6 +280,10 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 			if (reader != null) {
 				reader.close();
 			}
+			if (inputCharSequence != null) {
+				reader = new CharSequenceReader(inputCharSequence);
+				return reader;
+			}
 			reader = new InputStreamReader(createStream(), getEncoding());					
 		} catch (UnsupportedEncodingException e) {
 			throw new OkapiUnsupportedEncodingException(String.format(
@@ -287,21 +295,24 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 		return reader;
 	}
 
-	private FileCachedInputStream createStream() throws IOException {
+	private InputStream createStream() throws IOException {
 		// try a normal reset first if this is not the first call of getStream(). But only for the case of CharSequence
 		// or URI input. We handle InputStream case a little differently below.
 		if (createdStream != null) {
 			try {
 				// should call reset here as callers may have marked the stream
 				// FIXME: we shouldn't call reset here - the caller is responsible
-				if (!createdStream.isOpen()) {
-					createdStream.reopen();
+				if (createdStream instanceof FileChannelInputStream) {
+					((FileChannelInputStream)createdStream).reopen();
+				}
+				else if (!((FileCachedInputStream)createdStream).isOpen()) {
+					((FileCachedInputStream)createdStream).reopen();
 				}
 				createdStream.reset();
 				return createdStream;
 			} catch (IOException e) {
 				try {
-					createdStream.dispose();
+					disposeStream();
 					createdStream = null;
 				} catch (IOException e2) {
 				}
@@ -321,6 +332,18 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 						"The encoding '%s' is not supported.", getEncoding()), e);
 			}
 		} else if (getInputURI() != null) {
+			// Local files are read in place: no copy, no temporary file
+			File file = getLocalFile(getInputURI());
+			if (file != null) {
+				try {
+					createdStream = new FileChannelInputStream(file);
+					return createdStream;
+				} catch (IOException e) {
+					throw new OkapiIOException(
+							"Could not open the file. The URI is OK but the file could not be opened.\n"
+							+ e.getMessage(), e);
+				}
+			}
 			URL url = null;
 			try {
 				url = getInputURI().toURL();
@@ -347,8 +370,35 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 	}
 
 	/**
-	 * Returns an InputStream based on the current input. The underlying {@link FileCachedInputStream} is reset
-	 * and reopened if needed.
+	 * Gets the local file for a given URI.
+	 * @param uri the URI to convert.
+	 * @return the file for the URI, or null if the URI is not the one of an existing local file.
+	 */
+	private File getLocalFile(URI uri) {
+		if (!"file".equalsIgnoreCase(uri.getScheme())) {
+			return null;
+		}
+		try {
+			File file = new File(uri);
+			return file.isFile() ? file : null;
+		} catch (IllegalArgumentException e) {
+			// URI with an authority, a query, etc.
+			return null;
+		}
+	}
+
+	private void disposeStream() throws IOException {
+		if (createdStream instanceof FileChannelInputStream) {
+			((FileChannelInputStream)createdStream).dispose();
+		}
+		else {
+			((FileCachedInputStream)createdStream).dispose();
+		}
+	}
+
+	/**
+	 * Returns an InputStream based on the current input. The underlying {@link FileCachedInputStream}
+	 * (or {@link FileChannelInputStream} for a local file) is reset and reopened if needed.
 	 * 
 	 * @return the InputStream
 	 * @throws OkapiIOException if there was any problem creating the steam.
@@ -582,7 +632,7 @@ public class RawDocument implements Closeable, IResource, IWithAnnotations {
 		if (createdStream != null) {
 			try {
 				createdStream.close();
-				createdStream.dispose();
+				disposeStream();
 				createdStream = null;
 			} catch (IOException e) {
 				throw new OkapiIOException("Error closing the stream created by RawDocument.", e);
@@ -1663,6 +1663,20 @@ public class TextFragment implements Appendable, CharSequence, Comparable<TextFr
 		isBalanced = false;
 	}
 
+	/**
+	 * Compacts the storage of the codes of this fragment: see {@link Code#compact(CodeDataPool)}.
+	 * @param pool the pool of strings to use, usually one for all the codes of a document.
+	 */
+	public void compactCodes (CodeDataPool pool) {
+		if ( codes == null ) return;
+		for ( Code code : codes ) {
+			code.compact(pool);
+		}
+		if ( codes instanceof ArrayList ) {
+			((ArrayList<Code>)codes).trimToSize();
+		}
+	}
+
 	/**
 	 * Removes all codes both in the Codes list and the markers.
 	 * @return this {@link TextFragment}, with the codes removed
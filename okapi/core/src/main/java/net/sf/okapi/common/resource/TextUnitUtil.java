@@ -1093,6 +1093,26 @@ public class TextUnitUtil {
 		return res;
 	}
 	
+	/**
+	 * Compacts the storage of the codes in the source and the targets of a given text unit.
+	 * @param textUnit the given text unit
+	 * @param pool the pool of strings to use, usually one for all the text units of a document.
+	 * @see Code#compact(CodeDataPool)
+	 */
+	public static void compactCodes (ITextUnit textUnit, CodeDataPool pool) {
+		compactCodes(textUnit.getSource(), pool);
+		for ( LocaleId locId : textUnit.getTargetLocales() ) {
+			compactCodes(textUnit.getTarget(locId), pool);
+		}
+	}
+
+	private static void compactCodes (TextContainer tc, CodeDataPool pool) {
+		if ( tc == null ) return;
+		for ( TextPart part : tc ) {
+			part.getContent().compactCodes(pool);
+		}
+	}
+
 	/**
 	 * Simplifies all possible tags in the source part of a given text unit resource.
 	 * @param textUnit the given text unit
@@ -16,10 +16,14 @@
 
 package net.sf.okapi.common.skeleton;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
@@ -32,6 +36,7 @@ import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
 import net.sf.okapi.common.encoder.EncoderContext;
 import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.SubFilter;
 import net.sf.okapi.common.filters.SubFilterSkeletonWriter;
 import net.sf.okapi.common.layerprovider.ILayerProvider;
@@ -58,7 +63,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Implements ISkeletonWriter for the GenericSkeleton skeleton. 
  */
-public class GenericSkeletonWriter implements ISkeletonWriter {
+public class GenericSkeletonWriter implements IStreamingSkeletonWriter {
 
 	public static final String ALLOWEMPTYOUTPUTTARGET = "allowEmptyOutputTarget";
 	
@@ -77,8 +82,14 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 	private Map<String, Referent> referents;
 	protected String outputEncoding;
 	private int referentCopies = 1; // Number of copies to have for the referents (min=1)
+	private IReferentSerializer referentSerializer; // Null to keep all referents in memory
+	private int maxReferentsInMemory;
 	private SubFilterSkeletonWriter sfWriter; // sub-filter skeleton writer
 	private boolean sfDirectOutput;
+	private char[] dataBuffer; // Buffer for writing skeleton data
+
+	// Classes for which the text units and document parts can be written directly to the output
+	private static final Map<Class<?>, Boolean> streamingClasses = new ConcurrentHashMap<Class<?>, Boolean>();
 
 //	private boolean segmentReferents = false;
 	
@@ -139,6 +150,31 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		else this.referentCopies = referentCopies;
 	}
 
+	/**
+	 * Sets the serializer to use to limit the number of referents kept in memory.
+	 * When it is set, the referents of each document are held in a {@link ReferentStore}
+	 * and the least recently used ones are written to a temporary file until they are referenced.
+	 * This must be called before the start of the document.
+	 * @param serializer the serializer to use, or null to keep all the referents in memory (the default).
+	 * @param maxInMemory the maximum number of serializable referents to keep in memory (must be at least 1).
+	 */
+	public void setReferentSerializer (IReferentSerializer serializer,
+		int maxInMemory)
+	{
+		if (( serializer != null ) && ( maxInMemory < 1 )) {
+			throw new IllegalArgumentException("The number of referents in memory must be at least 1.");
+		}
+		this.referentSerializer = serializer;
+		this.maxReferentsInMemory = maxInMemory;
+	}
+
+	private Map<String, Referent> createReferents () {
+		if ( referentSerializer == null ) {
+			return new LinkedHashMap<String, Referent>();
+		}
+		return new ReferentStore(referentSerializer, maxReferentsInMemory);
+	}
+
 	@Override
 	public String processStartDocument (LocaleId outputLocale,
 		String outputEncoding,
@@ -149,7 +185,10 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		if (isSubfilterActive()) {
 			return sfWriter.processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource);
 		}
-		referents = new LinkedHashMap<String, Referent>();
+		if ( referents instanceof ReferentStore ) {
+			referents.clear(); // Delete the temporary file of the previous document
+		}
+		referents = createReferents();
 		storageStack = new Stack<StorageList>();
 
 		this.inputLoc = resource.getLocale();
@@ -319,6 +358,282 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		return getString((GenericSkeleton)resource.getSkeleton(), EncoderContext.SKELETON);
 	}
 	
+	@Override
+	public void processStartDocument (LocaleId outputLocale,
+		String outputEncoding,
+		ILayerProvider layer,
+		EncoderManager encoderManager,
+		StartDocument resource,
+		Writer output) throws IOException
+	{
+		output.write(processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource));
+	}
+
+	@Override
+	public void processEndDocument (Ending resource,
+		Writer output) throws IOException
+	{
+		output.write(processEndDocument(resource));
+	}
+
+	@Override
+	public void processStartSubDocument (StartSubDocument resource,
+		Writer output) throws IOException
+	{
+		output.write(processStartSubDocument(resource));
+	}
+
+	@Override
+	public void processEndSubDocument (Ending resource,
+		Writer output) throws IOException
+	{
+		output.write(processEndSubDocument(resource));
+	}
+
+	@Override
+	public void processStartGroup (StartGroup resource,
+		Writer output) throws IOException
+	{
+		output.write(processStartGroup(resource));
+	}
+
+	@Override
+	public void processEndGroup (Ending resource,
+		Writer output) throws IOException
+	{
+		output.write(processEndGroup(resource));
+	}
+
+	@Override
+	public void processStartSubfilter (StartSubfilter resource,
+		Writer output) throws IOException
+	{
+		output.write(processStartSubfilter(resource));
+	}
+
+	@Override
+	public void processEndSubfilter (EndSubfilter resource,
+		Writer output) throws IOException
+	{
+		output.write(processEndSubfilter(resource));
+	}
+
+	/**
+	 * Processes the TEXT_UNIT event, writing each part of the skeleton directly
+	 * to the output instead of building the string of the whole text unit.
+	 */
+	@Override
+	public void processTextUnit (ITextUnit resource,
+		Writer output) throws IOException
+	{
+		if ( !isStreamingSupported() ) {
+			output.write(processTextUnit(resource));
+			return;
+		}
+		if (isSubfilterActive()) {
+			output.write(sfWriter.processTextUnit(resource));
+			return;
+		}
+		if ( resource.isReferent() ) {
+			referents.put(resource.getId(), new Referent(resource, referentCopies));
+			return;
+		}
+		if ( storageStack.size() > 0 ) {
+			storageStack.peek().add(resource);
+			return;
+		}
+		writeTextUnit(resource, outputLoc, EncoderContext.TEXT, output);
+	}
+
+	/**
+	 * Processes the DOCUMENT_PART event, writing each part of the skeleton directly
+	 * to the output instead of building the string of the whole document part.
+	 */
+	@Override
+	public void processDocumentPart (DocumentPart resource,
+		Writer output) throws IOException
+	{
+		if ( !isStreamingSupported() ) {
+			output.write(processDocumentPart(resource));
+			return;
+		}
+		if (isSubfilterActive()) {
+			output.write(sfWriter.processDocumentPart(resource));
+			return;
+		}
+		if ( resource.isReferent() ) {
+			referents.put(resource.getId(), new Referent(resource, referentCopies));
+			return;
+		}
+		if ( storageStack.size() > 0 ) {
+			storageStack.peek().add(resource);
+			return;
+		}
+		writeSkeleton(resource.getSkeleton(), EncoderContext.SKELETON, output);
+	}
+
+	/**
+	 * Indicates if the streaming methods for the text units and document parts can write
+	 * the skeleton parts directly to the output. This is not the case when a class overrides
+	 * one of the methods building the string output of those events without overriding the
+	 * corresponding streaming method: the string methods are then used, so the class
+	 * behaves the same way with either set of methods.
+	 * @return true if the skeleton parts can be written directly to the output.
+	 */
+	protected boolean isStreamingSupported () {
+		Boolean res = streamingClasses.get(getClass());
+		if ( res == null ) {
+			res = isStreamingOverride("processTextUnit", "processTextUnit", ITextUnit.class)
+				&& isStreamingOverride("processDocumentPart", "processDocumentPart", DocumentPart.class)
+				&& isStreamingOverride("getString", "writeSkeleton", ISkeleton.class, EncoderContext.class)
+				&& isStreamingOverride("getString", "writeTextUnit", ITextUnit.class, LocaleId.class, EncoderContext.class)
+				&& isStreamingOverride("getString", "writePart", GenericSkeletonPart.class, EncoderContext.class)
+				&& isStreamingOverride("getContent", "writeContent", ITextUnit.class, LocaleId.class, EncoderContext.class)
+				&& isStreamingOverride("getContent", "writeContent", TextFragment.class, LocaleId.class, EncoderContext.class);
+			streamingClasses.put(getClass(), res);
+		}
+		return res;
+	}
+
+	/**
+	 * Indicates if the streaming variant of a method is declared in the same class
+	 * as the string variant, or in one of its sub-classes.
+	 */
+	private boolean isStreamingOverride (String stringName,
+		String streamingName,
+		Class<?>... params)
+	{
+		Class<?>[] streamingParams = Arrays.copyOf(params, params.length+1);
+		streamingParams[params.length] = Writer.class;
+		return getDeclaringClass(stringName, params).isAssignableFrom(
+			getDeclaringClass(streamingName, streamingParams));
+	}
+
+	private Class<?> getDeclaringClass (String name,
+		Class<?>[] params)
+	{
+		for ( Class<?> cls = getClass(); cls != null; cls = cls.getSuperclass() ) {
+			try {
+				cls.getDeclaredMethod(name, params);
+				return cls;
+			}
+			catch ( NoSuchMethodException e ) {
+				// Try the super-class
+			}
+		}
+		return GenericSkeletonWriter.class;
+	}
+
+	/**
+	 * Writes the output of a given skeleton. This is the streaming variant
+	 * of {@link #getString(ISkeleton, EncoderContext)}.
+	 * @param skeleton the skeleton to write (can be null).
+	 * @param context the context flag.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writeSkeleton (ISkeleton skeleton,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( skeleton == null ) return;
+		for ( GenericSkeletonPart part : ((GenericSkeleton)skeleton).getParts() ) {
+			writePart(part, context, output);
+		}
+	}
+
+	/**
+	 * Writes the skeleton and the content of a given text unit. This is the streaming
+	 * variant of {@link #getString(ITextUnit, LocaleId, EncoderContext)}.
+	 * @param tu the text unit to process.
+	 * @param locToUse locale to output. Use null for the source, or a LocaleId
+	 * object for the target locales.
+	 * @param context the context flag.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writeTextUnit (ITextUnit tu,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		GenericSkeleton skel = (GenericSkeleton)tu.getSkeleton();
+		if ( skel == null ) { // No skeleton
+			writeContent(tu, locToUse, context, output);
+			return;
+		}
+		for ( GenericSkeletonPart part : skel.getParts() ) {
+			writePart(part, context, output);
+		}
+	}
+
+	/**
+	 * Writes a given skeleton part. This is the streaming variant of
+	 * {@link #getString(GenericSkeletonPart, EncoderContext)}: parts without reference
+	 * are copied directly to the output, and so is the content referred to by a part made
+	 * of a single content or segment placeholder. The other parts are resolved with that method.
+	 * @param part the part to write.
+	 * @param context the context flag.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writePart (GenericSkeletonPart part,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( layer == null ) {
+			if ( part.data.indexOf(TextFragment.REFMARKER_START) == -1 ) {
+				writeData(part.data, output);
+				return;
+			}
+			if ( part.parent instanceof ITextUnit ) {
+				Object[] marker = TextFragment.getRefMarker(part.data);
+				if (( marker != null ) && ( (Integer)marker[1] == 0 )
+					&& ( (Integer)marker[2] == part.data.length() ))
+				{
+					String propName = (String)marker[3];
+					if ( propName == null ) { // Self-reference to the content
+						LocaleId locToUse = getLocaleToUse(part);
+						writeContent((ITextUnit)part.parent, locToUse,
+							getContextToUse(locToUse, context), output);
+						return;
+					}
+					if ( Segment.REF_MARKER.equals(propName) ) {
+						Segment seg = getReferencedSegment(part, (String)marker[0]);
+						if ( seg == null ) {
+							output.write("-ERR:INVALID-SEGMENT-REF-");
+						}
+						else {
+							writeContent(seg.getContent(), part.getLocale(), context, output);
+						}
+						return;
+					}
+				}
+			}
+		}
+		output.write(getString(part, context));
+	}
+
+	/**
+	 * Writes a given buffer without creating a string for it.
+	 * @param data the buffer to write.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writeData (StringBuilder data,
+		Writer output) throws IOException
+	{
+		if ( dataBuffer == null ) {
+			dataBuffer = new char[4096];
+		}
+		int length = data.length();
+		for ( int start=0; start<length; start+=dataBuffer.length ) {
+			int end = Math.min(length, start+dataBuffer.length);
+			data.getChars(start, end, dataBuffer, 0);
+			output.write(dataBuffer, 0, end-start);
+		}
+	}
+
 	protected String getString (ISkeleton skeleton,
 			EncoderContext context)
 	{
@@ -358,41 +673,20 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 			// the resource holding this skeleton
 			if ( propName != null ) { // Reference to the content of the referent
 				if (Segment.REF_MARKER.equals(propName)) {
-					String segId = (String) marker[0];
-					ITextUnit tu = (ITextUnit)part.getParent();
-					LocaleId locId = part.getLocale();
-					TextContainer tc = null;
-					
-					if ( locId == null ) { // Source
-						tc = tu.getSource();
-					}
-					else { // Target
-						tc = tu.getTarget(locId);
-					}
-					Segment seg = null;
-					if ( tc != null ) {
-						seg = tc.getSegments().get(segId);
-					}
+					Segment seg = getReferencedSegment(part, (String)marker[0]);
 					if (seg == null) {
-						logger.warn("Segment reference '{}' not found.", (String)marker[0]);
 						return "-ERR:INVALID-SEGMENT-REF-";
 					}
 					
-					return getContent(seg.getContent(), locId, context);
+					return getContent(seg.getContent(), part.getLocale(), context);
 				}
 				else
 					return getString((INameable)part.parent, propName, part.locId, context);
 			}
 
 			// Set the locToUse and the contextToUse parameters
-			// If locToUse==null: it's source, so use output locale for monolingual
-			LocaleId locToUse = (part.locId==null) ? outputLoc : part.locId;
-			EncoderContext contextToUse = context;
-			if ( isMultilingual ) {
-				locToUse = part.locId;
-				// If locToUse==null: it's source, so not text in multilingual
-				contextToUse = (locToUse==null) ? EncoderContext.TEXT : context;
-			}
+			LocaleId locToUse = getLocaleToUse(part);
+			EncoderContext contextToUse = getContextToUse(locToUse, context);
 			
 			// If a parent if set, it's a reference to the content of the resource
 			// holding this skeleton. And it's always a TextUnit
@@ -437,6 +731,57 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		return sb.toString();
 	}
 
+	/**
+	 * Gets the locale to use for the content referred to by a given part.
+	 */
+	private LocaleId getLocaleToUse (GenericSkeletonPart part) {
+		if ( isMultilingual ) {
+			return part.locId;
+		}
+		// If locId==null: it's source, so use output locale for monolingual
+		return (part.locId==null) ? outputLoc : part.locId;
+	}
+
+	/**
+	 * Gets the context to use for the content referred to by a part.
+	 */
+	private EncoderContext getContextToUse (LocaleId locToUse,
+		EncoderContext context)
+	{
+		// If locToUse==null: it's source, so not text in multilingual
+		if ( isMultilingual && ( locToUse == null )) {
+			return EncoderContext.TEXT;
+		}
+		return context;
+	}
+
+	/**
+	 * Gets the segment referred to by a segment placeholder of a given part.
+	 * @return the segment, or null if it cannot be found (a warning is logged).
+	 */
+	private Segment getReferencedSegment (GenericSkeletonPart part,
+		String segId)
+	{
+		ITextUnit tu = (ITextUnit)part.getParent();
+		LocaleId locId = part.getLocale();
+		TextContainer tc = null;
+		
+		if ( locId == null ) { // Source
+			tc = tu.getSource();
+		}
+		else { // Target
+			tc = tu.getTarget(locId);
+		}
+		Segment seg = null;
+		if ( tc != null ) {
+			seg = tc.getSegments().get(segId);
+		}
+		if ( seg == null ) {
+			logger.warn("Segment reference '{}' not found.", segId);
+		}
+		return seg;
+	}
+
 	protected String getString (INameable ref,
 		String propName,
 		LocaleId locToUse,
@@ -506,39 +851,21 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		
 		// Get the right text container
 		TextContainer srcCont = tu.getSource();
-		TextContainer trgCont = null;
-		if ( locToUse != null ) { // Expects a target output
-			trgCont = tu.getTarget(locToUse);
-			// If we do not have target
-			// or if the target is empty (regardless the source)
-			if (( trgCont == null ) || trgCont.isEmpty() ) {
-				// If there is no target available
-				if ( allowEmptyOutputTarget && ( layer == null )) {
-					// If empty targets are allowed and we don't have one: create a temporary one
-					if ( trgCont == null ) {
-						trgCont = tu.createTarget(locToUse, false, IResource.CREATE_EMPTY);
-					}
-				}
-				else { // Fall back to the source
-					trgCont = srcCont;
-				}
-			}
-		}
-		else { // Use the source
-			// Set trgCont to it because that's the one driving the output
-			trgCont = srcCont;
-		}
-		// Now trgCont is either the available target or the source (fall-back case)
+		TextContainer trgCont = getOutputContainer(tu, locToUse);
 
 		if ( !tu.isTranslatable() ) {
 			context = EncoderContext.TEXT; // Keep skeleton context
 		}
 		
-		if ( srcCont.hasBeenSegmented() || !srcCont.contentIsOneSegment()
-			|| trgCont.hasBeenSegmented() || !trgCont.contentIsOneSegment() 
-			|| ( trgCont.getAnnotation(AltTranslationsAnnotation.class) != null ))
-		{
-			return getSegmentedText(srcCont, trgCont, locToUse, context, tu.isReferent(), tu.getId());
+		if ( isSegmentedOutput(srcCont, trgCont) ) {
+			StringBuilder tmp = new StringBuilder();
+			try {
+				appendSegmentedText(srcCont, trgCont, locToUse, context, tu.isReferent(), tu.getId(), tmp);
+			}
+			catch ( IOException e ) { // Not thrown by StringBuilder
+				throw new OkapiIOException(e);
+			}
+			return tmp.toString();
 		}
 
 		// Else: We have only one segment
@@ -565,15 +892,93 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		}
 	}
 
-	private String getSegmentedText (TextContainer srcCont,
+	/**
+	 * Writes the original content of a given text unit. This is the streaming variant
+	 * of {@link #getContent(ITextUnit, LocaleId, EncoderContext)}.
+	 * @param tu the text unit to process.
+	 * @param locToUse locale to output. Use null for the source, or the locale
+	 * for the target locales.
+	 * @param context the context flag.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writeContent (ITextUnit tu,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( layer != null ) {
+			output.write(getContent(tu, locToUse, context));
+			return;
+		}
+
+		// Update the encoder from the TU's MIME type
+		if ( encoderManager != null ) {
+			encoderManager.updateEncoder(tu.getMimeType());
+		}
+		TextContainer srcCont = tu.getSource();
+		TextContainer trgCont = getOutputContainer(tu, locToUse);
+		if ( !tu.isTranslatable() ) {
+			context = EncoderContext.TEXT; // Keep skeleton context
+		}
+		if ( isSegmentedOutput(srcCont, trgCont) ) {
+			appendSegmentedText(srcCont, trgCont, locToUse, context, tu.isReferent(), tu.getId(), output);
+		}
+		else {
+			writeContent(trgCont.getFirstContent(), locToUse, context, output);
+		}
+	}
+
+	/**
+	 * Gets the container driving the output of a given text unit: the target if there is one
+	 * for the given locale (created empty if needed and allowed), the source otherwise.
+	 */
+	private TextContainer getOutputContainer (ITextUnit tu,
+		LocaleId locToUse)
+	{
+		TextContainer srcCont = tu.getSource();
+		if ( locToUse == null ) { // Use the source
+			return srcCont;
+		}
+		// Expects a target output
+		TextContainer trgCont = tu.getTarget(locToUse);
+		// If we do not have target
+		// or if the target is empty (regardless the source)
+		if (( trgCont == null ) || trgCont.isEmpty() ) {
+			// If there is no target available
+			if ( allowEmptyOutputTarget && ( layer == null )) {
+				// If empty targets are allowed and we don't have one: create a temporary one
+				if ( trgCont == null ) {
+					trgCont = tu.createTarget(locToUse, false, IResource.CREATE_EMPTY);
+				}
+			}
+			else { // Fall back to the source
+				trgCont = srcCont;
+			}
+		}
+		return trgCont;
+	}
+
+	private boolean isSegmentedOutput (TextContainer srcCont,
+		TextContainer trgCont)
+	{
+		return srcCont.hasBeenSegmented() || !srcCont.contentIsOneSegment()
+			|| trgCont.hasBeenSegmented() || !trgCont.contentIsOneSegment() 
+			|| ( trgCont.getAnnotation(AltTranslationsAnnotation.class) != null );
+	}
+
+	/**
+	 * Appends the content of a segmented text unit. When the output is a writer, the content
+	 * of each fragment is written directly with {@link #writeContent(TextFragment, LocaleId, EncoderContext, Writer)}.
+	 */
+	private void appendSegmentedText (TextContainer srcCont,
 		TextContainer trgCont,
 		LocaleId locToUse,
 		EncoderContext context,
 		boolean isReferent,
-		String tuId)
+		String tuId,
+		Appendable tmp) throws IOException
 	{
-		StringBuilder tmp = new StringBuilder();
-
 		// Get the alternate-translations if available
 		AltTranslationsAnnotation atAnn = null;
 //		atAnn = trgCont.getAnnotation(AltTranslationsAnnotation.class);
@@ -613,7 +1018,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 				// Write the segment (note: srcSeg can be null)
 				if ( layer == null ) {
 					// If no layer: just write the target
-					tmp.append(getContent(trgFrag, locToUse, context));
+					appendContent(trgFrag, locToUse, context, tmp);
 				}
 				else { // If layer: write the bilingual entry
 					switch ( context ) {
@@ -647,11 +1052,22 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 			}
 			else { // Normal text fragment
 				// Target fragment is used
-				tmp.append(getContent(part.text, locToUse, context));
+				appendContent(part.text, locToUse, context, tmp);
 			}
 		}
+	}
 
-		return tmp.toString();
+	private void appendContent (TextFragment tf,
+		LocaleId locToUse,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		if ( output instanceof Writer ) { // Streaming output
+			writeContent(tf, locToUse, context, (Writer)output);
+		}
+		else {
+			output.append(getContent(tf, locToUse, context));
+		}
 	}
 
 	// This method assumes bi-lingual pairs are 1-1 and in the same order
@@ -970,36 +1386,85 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		}
 
 		// Output text with in-line codes
-		List<Code> codes = tf.getCodes();
 		StringBuilder tmp = new StringBuilder();
+		try {
+			appendCodedContent(tf, locToUse, context, tmp);
+		}
+		catch ( IOException e ) { // Not thrown by StringBuilder
+			throw new OkapiIOException(e);
+		}
+		return tmp.toString();
+	}
+
+	/**
+	 * Writes the original content of a TextFragment. This is the streaming variant of
+	 * {@link #getContent(TextFragment, LocaleId, EncoderContext)}: the text between the
+	 * in-line codes is encoded directly into the output.
+	 * @param tf the TextFragment to process.
+	 * @param locToUse locale to output. Use null for the source, or the locale
+	 * for the target locales. This is used for referenced content in inline codes.
+	 * @param context the context flag.
+	 * @param output the writer where to write.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	protected void writeContent (TextFragment tf,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( !tf.hasCode() ) {
+			// Encoded as a whole, like in getContent()
+			output.write(getContent(tf, locToUse, context));
+			return;
+		}
+		appendCodedContent(tf, locToUse, context, output);
+	}
+
+	private void appendCodedContent (TextFragment tf,
+		LocaleId locToUse,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		List<Code> codes = tf.getCodes();
 		String text = tf.getCodedText();
 		boolean inlineCdata = false;
+		// Without layer, each run of text between codes is encoded in a single call
+		boolean encodeRuns = (( encoderManager != null ) && ( layer == null ));
+		int runStart = -1;
 		Code code;
 		char ch;
 		for ( int i=0; i<text.length(); i++ ) {
 			ch = text.charAt(i);
+			if ( encodeRuns && !inlineCdata && !TextFragment.isMarker(ch) ) {
+				if ( runStart == -1 ) runStart = i;
+				continue;
+			}
+			if ( runStart != -1 ) {
+				encoderManager.encode(text, runStart, i, context, output);
+				runStart = -1;
+			}
 			switch ( ch ) {
 			case TextFragment.MARKER_OPENING:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
 				if (code.getType().equals(Code.TYPE_CDATA)) {
 					inlineCdata = true;
 				}
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			case TextFragment.MARKER_CLOSING:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
 				if (code.getType().equals(Code.TYPE_CDATA)) {
 					inlineCdata = false;
 				}
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			case TextFragment.MARKER_ISOLATED:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			default:
 				if (inlineCdata) {
-					tmp.append(ch);
+					output.append(ch);
 					break;
 				}
 				if ( Character.isHighSurrogate(ch) ) {
@@ -1007,18 +1472,18 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 					i++; // Skip low-surrogate
 					if ( encoderManager == null ) {
 						if ( layer == null ) {
-							tmp.append(new String(Character.toChars(cp)));
+							output.append(new String(Character.toChars(cp)));
 						}
 						else {
-							tmp.append(layer.encode(cp, context));
+							output.append(layer.encode(cp, context));
 						}
 					}
 					else {
 						if ( layer == null ) {
-							tmp.append(encoderManager.encode(cp, context));
+							output.append(encoderManager.encode(cp, context));
 						}
 						else {
-							tmp.append(layer.encode(
+							output.append(layer.encode(
 								encoderManager.encode(cp, context),
 								context));
 						}
@@ -1027,18 +1492,18 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 				else { // Non-supplemental case
 					if ( encoderManager == null ) {
 						if ( layer == null ) {
-							tmp.append(ch);
+							output.append(ch);
 						}
 						else {
-							tmp.append(layer.encode(ch, context));
+							output.append(layer.encode(ch, context));
 						}
 					}
 					else {
 						if ( layer == null ) {
-							tmp.append(encoderManager.encode(ch, context));
+							output.append(encoderManager.encode(ch, context));
 						}
 						else {
-							tmp.append(layer.encode(
+							output.append(layer.encode(
 								encoderManager.encode(ch, context),
 								context));
 						}
@@ -1047,7 +1512,9 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 				break;
 			}
 		}
-		return tmp.toString();
+		if ( runStart != -1 ) {
+			encoderManager.encode(text, runStart, text.length(), context, output);
+		}
 	}
 	
 	protected String expandCodeContent (Code code,
@@ -1204,7 +1671,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		IResource resource;
 		if ( event != null ) {
 			if ( referents == null ) {
-				referents = new LinkedHashMap<String, Referent>();
+				referents = createReferents();
 				storageStack = new Stack<StorageList>();
 			}
 			resource = event.getResource();
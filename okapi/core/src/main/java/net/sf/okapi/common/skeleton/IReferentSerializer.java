@@ -0,0 +1,42 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.skeleton;
+
+import net.sf.okapi.common.resource.IReferenceable;
+
+/**
+ * Converts referents to and from a compact binary form, so a {@link ReferentStore}
+ * can keep them on disk until they are referenced.
+ */
+public interface IReferentSerializer {
+
+	/**
+	 * Serializes a given referent.
+	 * @param referent the referent to serialize.
+	 * @return the serialized form of the referent, or null if this referent
+	 * cannot be serialized (it is then kept in memory).
+	 */
+	public byte[] serialize (IReferenceable referent);
+
+	/**
+	 * Re-creates a referent from its serialized form.
+	 * @param data the data returned by {@link #serialize(IReferenceable)}.
+	 * @return the new referent.
+	 */
+	public IReferenceable deserialize (byte[] data);
+
+}
@@ -0,0 +1,130 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+
+package net.sf.okapi.common.skeleton;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.layerprovider.ILayerProvider;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.EndSubfilter;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.StartSubDocument;
+import net.sf.okapi.common.resource.StartSubfilter;
+
+/**
+ * Skeleton writer that can write the output of each event directly to a given writer,
+ * instead of returning it as a string.
+ * <p>Each method writes the same output as the corresponding method of {@link ISkeletonWriter}
+ * returns. A given skeleton writer must be called with either the string methods or the
+ * streaming methods for the whole document.
+ */
+public interface IStreamingSkeletonWriter extends ISkeletonWriter {
+
+	/**
+	 * Processes the START_DOCUMENT event.
+	 * @param outputLocale the output locale. 
+	 * @param outputEncoding the name of the output charset encoding.
+	 * @param layer the layer provider to use.
+	 * @param encoderManager the encoder manager to use.
+	 * @param resource the StartDocument resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processStartDocument (LocaleId outputLocale,
+		String outputEncoding,
+		ILayerProvider layer,
+		EncoderManager encoderManager,
+		StartDocument resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the END_DOCUMENT event.
+	 * @param resource the Ending resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processEndDocument (Ending resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes a START_SUBDOCUMENT event.
+	 * @param resource the StartSubDocument resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processStartSubDocument (StartSubDocument resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the END_SUBDOCUMENT event.
+	 * @param resource the Ending resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processEndSubDocument (Ending resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the START_GROUP event.
+	 * @param resource the StartGroup resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processStartGroup (StartGroup resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the END_GROUP event.
+	 * @param resource the Ending resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processEndGroup (Ending resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the TEXT_UNIT event.
+	 * @param resource the TextUnit resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processTextUnit (ITextUnit resource,
+		Writer output) throws IOException;
+	
+	/**
+	 * Processes the DOCUMENT_PART event.
+	 * @param resource the DocumentPart resource associated with the event.
+	 * @param output the writer where to write the output corresponding to this event.
+	 * @throws IOException if an error occurs when writing the output.
+	 */
+	public void processDocumentPart (DocumentPart resource,
+		Writer output) throws IOException;
+	
+	public void processStartSubfilter (StartSubfilter resource,
+		Writer output) throws IOException;
+	
+	public void processEndSubfilter (EndSubfilter resource,
+		Writer output) throws IOException;
+
+}
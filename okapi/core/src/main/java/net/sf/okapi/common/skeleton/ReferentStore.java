@@ -0,0 +1,319 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.skeleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.sf.okapi.common.exceptions.OkapiIOException;
+
+/**
+ * Map of referents that keeps only the most recently used ones in memory.
+ * <p>When more than a given number of referents are held, the least recently used ones
+ * are serialized with a {@link IReferentSerializer} into a temporary file, and re-created
+ * when they are looked up. The remaining reference count of each referent is kept with it,
+ * so the lookups work as with an ordinary map.
+ * <p>{@link StorageList} referents, and the referents the serializer cannot handle, are
+ * always kept in memory. The temporary file is deleted when the map is cleared.
+ * <p>This class is not thread-safe.
+ */
+public class ReferentStore extends AbstractMap<String, Referent> {
+
+	private final IReferentSerializer serializer;
+	private final int maxInMemory;
+	// In memory, least recently used first
+	private final LinkedHashMap<String, Referent> recent = new LinkedHashMap<String, Referent>();
+	// In memory, never written to the file
+	private final Map<String, Referent> pinned = new HashMap<String, Referent>();
+	// In the file
+	private final Map<String, Slot> spilled = new HashMap<String, Slot>();
+	private File file;
+	private RandomAccessFile raf;
+	private long fileEnd;
+	private Set<Map.Entry<String, Referent>> entrySet;
+
+	private static class Slot {
+		final long offset;
+		final int length;
+		final int count;
+
+		Slot (long offset, int length, int count) {
+			this.offset = offset;
+			this.length = length;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Creates a new ReferentStore object.
+	 * @param serializer the serializer to use for the referents written to the temporary file.
+	 * @param maxInMemory the maximum number of serializable referents to keep in memory (must be at least 1).
+	 */
+	public ReferentStore (IReferentSerializer serializer,
+		int maxInMemory)
+	{
+		if ( serializer == null ) {
+			throw new IllegalArgumentException("The serializer must not be null.");
+		}
+		if ( maxInMemory < 1 ) {
+			throw new IllegalArgumentException("The number of referents in memory must be at least 1.");
+		}
+		this.serializer = serializer;
+		this.maxInMemory = maxInMemory;
+	}
+
+	@Override
+	public Referent put (String key,
+		Referent value)
+	{
+		Referent old = remove(key);
+		if ( value.ref instanceof StorageList ) {
+			// Still being filled when it is added
+			pinned.put(key, value);
+		}
+		else {
+			recent.put(key, value);
+			trim();
+		}
+		return old;
+	}
+
+	@Override
+	public Referent get (Object key) {
+		Referent ref = recent.remove(key);
+		if ( ref != null ) {
+			// Move it to the most recently used position
+			recent.put((String)key, ref);
+			return ref;
+		}
+		ref = pinned.get(key);
+		if ( ref != null ) return ref;
+
+		Slot slot = spilled.remove(key);
+		if ( slot == null ) return null;
+		ref = load(slot);
+		releaseSpace();
+		recent.put((String)key, ref);
+		trim();
+		return ref;
+	}
+
+	@Override
+	public Referent remove (Object key) {
+		Referent ref = recent.remove(key);
+		if ( ref != null ) return ref;
+		ref = pinned.remove(key);
+		if ( ref != null ) return ref;
+
+		Slot slot = spilled.remove(key);
+		if ( slot == null ) return null;
+		ref = load(slot);
+		releaseSpace();
+		return ref;
+	}
+
+	@Override
+	public boolean containsKey (Object key) {
+		return recent.containsKey(key) || pinned.containsKey(key) || spilled.containsKey(key);
+	}
+
+	@Override
+	public int size () {
+		return recent.size() + pinned.size() + spilled.size();
+	}
+
+	/**
+	 * Removes all the referents and deletes the temporary file.
+	 */
+	@Override
+	public void clear () {
+		recent.clear();
+		pinned.clear();
+		spilled.clear();
+		closeFile();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Referent>> entrySet () {
+		if ( entrySet == null ) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Gets the number of referents currently written in the temporary file.
+	 * @return the number of referents not held in memory.
+	 */
+	public int getSpilledCount () {
+		return spilled.size();
+	}
+
+	private void trim () {
+		while ( recent.size() > maxInMemory ) {
+			Iterator<Map.Entry<String, Referent>> iter = recent.entrySet().iterator();
+			Map.Entry<String, Referent> eldest = iter.next();
+			iter.remove();
+			spill(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	private void spill (String key,
+		Referent ref)
+	{
+		byte[] data = serializer.serialize(ref.ref);
+		if ( data == null ) {
+			pinned.put(key, ref);
+			return;
+		}
+		try {
+			if ( raf == null ) {
+				file = File.createTempFile("~ReferentStore_", null);
+				file.deleteOnExit();
+				raf = new RandomAccessFile(file, "rw");
+			}
+			raf.seek(fileEnd);
+			raf.write(data);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error when writing a referent to the temporary file.", e);
+		}
+		spilled.put(key, new Slot(fileEnd, data.length, ref.count));
+		fileEnd += data.length;
+	}
+
+	private Referent load (Slot slot) {
+		byte[] data = new byte[slot.length];
+		try {
+			raf.seek(slot.offset);
+			raf.readFully(data);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error when reading a referent from the temporary file.", e);
+		}
+		Referent ref = new Referent(serializer.deserialize(data), 1);
+		ref.count = slot.count;
+		return ref;
+	}
+
+	private void releaseSpace () {
+		// The file is re-used from the start once all its referents are gone
+		if ( spilled.isEmpty() ) {
+			fileEnd = 0;
+		}
+	}
+
+	private void closeFile () {
+		fileEnd = 0;
+		if ( raf == null ) return;
+		try {
+			raf.close();
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error when closing the temporary file.", e);
+		}
+		finally {
+			raf = null;
+			file.delete();
+			file = null;
+		}
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Referent>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Referent>> iterator () {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size () {
+			return ReferentStore.this.size();
+		}
+
+		@Override
+		public void clear () {
+			ReferentStore.this.clear();
+		}
+	}
+
+	/**
+	 * Iterates over a snapshot of the keys, without changing which referents are in memory.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, Referent>> {
+
+		private final Iterator<String> keys;
+		private String current;
+
+		EntryIterator () {
+			List<String> list = new ArrayList<String>(size());
+			list.addAll(recent.keySet());
+			list.addAll(pinned.keySet());
+			list.addAll(spilled.keySet());
+			keys = list.iterator();
+		}
+
+		@Override
+		public boolean hasNext () {
+			return keys.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, Referent> next () {
+			if ( !keys.hasNext() ) throw new NoSuchElementException();
+			current = keys.next();
+			Referent ref = recent.get(current);
+			if ( ref == null ) ref = pinned.get(current);
+			if ( ref == null ) {
+				Slot slot = spilled.get(current);
+				if ( slot == null ) throw new IllegalStateException("The map was modified during the iteration.");
+				ref = load(slot);
+			}
+			final String key = current;
+			return new AbstractMap.SimpleEntry<String, Referent>(key, ref) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Referent setValue (Referent value) {
+					put(key, value);
+					return super.setValue(value);
+				}
+			};
+		}
+
+		@Override
+		public void remove () {
+			if ( current == null ) throw new IllegalStateException();
+			if ( recent.remove(current) == null && pinned.remove(current) == null ) {
+				if ( spilled.remove(current) != null ) releaseSpace();
+			}
+			current = null;
+		}
+	}
+
+}
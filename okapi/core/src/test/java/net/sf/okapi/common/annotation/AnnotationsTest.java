@@ -0,0 +1,120 @@
+package net.sf.okapi.common.annotation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AnnotationsTest {
+
+	static class Ann implements IAnnotation {}
+	static class Ann1 extends Ann {}
+	static class Ann2 extends Ann {}
+	static class Ann3 extends Ann {}
+	static class Ann4 extends Ann {}
+	static class Ann5 extends Ann {}
+	static class Ann6 extends Ann {}
+	static class Ann7 extends Ann {}
+	static class Ann8 extends Ann {}
+	static class Ann9 extends Ann {}
+
+	private static final Ann[] ANNS = {new Ann(), new Ann1(), new Ann2(), new Ann3(),
+		new Ann4(), new Ann5(), new Ann6(), new Ann7(), new Ann8(), new Ann9()};
+
+	@Test
+	public void testSetGetRemove () {
+		Annotations anns = new Annotations();
+		assertFalse(anns.iterator().hasNext());
+		assertNull(anns.get(Ann1.class));
+
+		Ann1 a1 = new Ann1();
+		anns.set(a1);
+		anns.set(null);
+		anns.set(new Ann2());
+		assertSame(a1, anns.get(Ann1.class));
+		// The type must match exactly
+		assertNull(anns.get(Ann.class));
+
+		// Replaced, not added
+		Ann1 a1b = new Ann1();
+		anns.set(a1b);
+		assertSame(a1b, anns.get(Ann1.class));
+		assertEquals(2, count(anns));
+
+		assertSame(a1b, anns.remove(Ann1.class));
+		assertNull(anns.remove(Ann1.class));
+		assertNull(anns.get(Ann1.class));
+		assertEquals(1, count(anns));
+		anns.clear();
+		assertEquals(0, count(anns));
+	}
+
+	@Test
+	public void testManyAnnotations () {
+		Annotations anns = new Annotations();
+		for ( Ann ann : ANNS ) {
+			anns.set(ann);
+		}
+		assertTrue(ANNS.length > Annotations.MAX_INLINE);
+		assertEquals(ANNS.length, count(anns));
+		for ( Ann ann : ANNS ) {
+			assertSame(ann, anns.get(ann.getClass()));
+		}
+		assertSame(ANNS[3], anns.remove(Ann3.class));
+		assertNull(anns.get(Ann3.class));
+		assertEquals(ANNS.length-1, count(anns));
+
+		Annotations copy = anns.clone();
+		anns.clear();
+		assertEquals(0, count(anns));
+		assertEquals(ANNS.length-1, count(copy));
+		assertSame(ANNS[9], copy.get(Ann9.class));
+	}
+
+	@Test
+	public void testIteration () {
+		Annotations anns = new Annotations();
+		for ( int i=0; i<4; i++ ) {
+			anns.set(ANNS[i]);
+		}
+		// Insertion order
+		List<IAnnotation> list = new ArrayList<IAnnotation>();
+		for ( IAnnotation ann : anns ) {
+			list.add(ann);
+			// Changes do not affect the iteration in progress
+			anns.set(ANNS[5]);
+		}
+		assertEquals(4, list.size());
+		assertSame(ANNS[0], list.get(0));
+		assertSame(ANNS[3], list.get(3));
+
+		Annotations copy = anns.clone();
+		Iterator<IAnnotation> iter = anns.iterator();
+		while ( iter.hasNext() ) {
+			iter.next();
+			iter.remove();
+		}
+		assertEquals(0, count(anns));
+		// The clone is not affected
+		assertEquals(5, count(copy));
+	}
+
+	private int count (Annotations anns) {
+		int n = 0;
+		for ( Iterator<IAnnotation> iter = anns.iterator(); iter.hasNext(); iter.next() ) {
+			n++;
+		}
+		return n;
+	}
+
+}
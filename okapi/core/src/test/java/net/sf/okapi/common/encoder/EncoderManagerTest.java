@@ -78,4 +78,27 @@ public class EncoderManagerTest {
 		assertEquals(e2, em.getEncoder());
 	}
 	
+	@Test
+	public void testAppendableEncode () {
+		EncoderManager em = new EncoderManager();
+		em.setDefaultOptions(null, "UTF-8", "\n");
+		StringBuilder sb = new StringBuilder();
+		// No encoder: text unchanged
+		em.encode("<a&b>", 1, 4, EncoderContext.TEXT, sb);
+		assertEquals("a&b", sb.toString());
+
+		em.setMapping(MimeTypeMapper.XML_MIME_TYPE, XMLENCODER);
+		em.updateEncoder(MimeTypeMapper.XML_MIME_TYPE);
+		sb.setLength(0);
+		em.encode("<a&b>", 0, 5, EncoderContext.TEXT, sb);
+		assertEquals("&lt;a&amp;b>", sb.toString());
+
+		// Encoder without direct output: encoded for each character
+		em.setMapping(MimeTypeMapper.PROPERTIES_MIME_TYPE, "net.sf.okapi.common.encoder.PropertiesEncoder");
+		em.updateEncoder(MimeTypeMapper.PROPERTIES_MIME_TYPE);
+		sb.setLength(0);
+		em.encode("a=\u00e9", 0, 3, EncoderContext.TEXT, sb);
+		assertEquals(em.encode("a=\u00e9", EncoderContext.TEXT), sb.toString());
+	}
+
 }
@@ -18,8 +18,12 @@ package net.sf.okapi.common.encoder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.io.StringWriter;
+import java.nio.charset.CharsetEncoder;
 import java.security.Policy.Parameters;
 
 import net.sf.okapi.common.IParameters;
@@ -116,6 +120,119 @@ public class EncodersTest {
 		assertEquals("&quot;'", enc.encode("\"'", EncoderContext.TEXT));
 	}
 
+	@Test
+	public void testXMLEncoderAppendable () {
+		String text = "a<b>&c\"d'e\r\nf]]>g\u00a0h\u00e9\u4e00i\uD840\uDC00j";
+		DummyParameters params = new DummyParameters();
+		params.setBoolean(XMLEncoder.ESCAPENBSP, true);
+		for ( String encoding : new String[] {"UTF-8", "us-ascii", "iso-8859-1"} ) {
+			for ( QuoteMode quoteMode : QuoteMode.values() ) {
+				XMLEncoder enc = new XMLEncoder(encoding, "\r\n", false, false, false, quoteMode);
+				assertEquals(perChar(enc, text), appended(enc, text));
+			}
+			XMLEncoder enc = new XMLEncoder();
+			enc.setOptions(params, encoding, "\n");
+			assertEquals(perChar(enc, text), appended(enc, text));
+		}
+
+		XMLEncoder enc = new XMLEncoder();
+		enc.setOptions(null, "us-ascii", "\n");
+		assertEquals("x&lt;&#x20000;&#x00e9;", appended(enc, "x<\uD840\uDC00\u00e9"));
+		// Range, and state kept between calls
+		StringBuilder sb = new StringBuilder();
+		enc.encode("[]]>", 1, 3, EncoderContext.TEXT, sb);
+		enc.encode(">\uD840", 0, 2, EncoderContext.TEXT, sb);
+		enc.encode("\uDC00", 0, 1, EncoderContext.TEXT, sb);
+		assertEquals("]]&gt;&#x20000;", sb.toString());
+		// Writer output
+		StringWriter sw = new StringWriter();
+		enc.encode("a&b", 0, 3, EncoderContext.TEXT, sw);
+		assertEquals("a&amp;b", sw.toString());
+	}
+
+	@Test
+	public void testHTMLEncoderAppendable () {
+		String text = "a<b>&c\"d'e\nf]]>g\u00a0h\u00e9\u4e00i\uD840\uDC00j";
+		DummyParameters params = new DummyParameters();
+		params.setString("escapeCharacters", "\u00a0\u00e9");
+		for ( String encoding : new String[] {"utf-8", "us-ascii", "iso-8859-1"} ) {
+			for ( QuoteMode quoteMode : QuoteMode.values() ) {
+				HtmlEncoder enc = new HtmlEncoder(encoding, "\r\n", quoteMode);
+				assertEquals(perChar(enc, text), appended(enc, text));
+			}
+			HtmlEncoder enc = new HtmlEncoder();
+			enc.setOptions(params, encoding, "\n");
+			assertEquals(perChar(enc, text), appended(enc, text));
+		}
+	}
+
+	@Test
+	public void testCharsetCacheReused () {
+		// The encoder comes from the cache: the same encoder means the same cache
+		XMLEncoder xmlEnc = new XMLEncoder();
+		xmlEnc.setOptions(null, "iso-8859-1", "\n");
+		CharsetEncoder chsEnc = xmlEnc.getCharsetEncoder();
+		xmlEnc.setOptions(null, "ISO-8859-1", "\n");
+		assertSame(chsEnc, xmlEnc.getCharsetEncoder());
+		// Unicode output does not drop it
+		xmlEnc.setOptions(null, "UTF-8", "\n");
+		assertNull(xmlEnc.getCharsetEncoder());
+		xmlEnc.setOptions(null, "iso-8859-1", "\n");
+		assertSame(chsEnc, xmlEnc.getCharsetEncoder());
+		assertEquals("\u00e9&#x4e00;", appended(xmlEnc, "\u00e9\u4e00"));
+		// A new charset gets a new cache
+		xmlEnc.setOptions(null, "us-ascii", "\n");
+		assertNotSame(chsEnc, xmlEnc.getCharsetEncoder());
+		assertEquals("&#x00e9;&#x4e00;", appended(xmlEnc, "\u00e9\u4e00"));
+
+		HtmlEncoder htmlEnc = new HtmlEncoder();
+		htmlEnc.setOptions(null, "iso-8859-1", "\n");
+		chsEnc = htmlEnc.getCharsetEncoder();
+		htmlEnc.setOptions(null, "iso-8859-1", "\n");
+		assertSame(chsEnc, htmlEnc.getCharsetEncoder());
+	}
+
+	@Test
+	public void testDefaultEncodersAppendable () {
+		String text = "a<b>\nc\uD840\uDC00";
+		DefaultEncoder enc = new DefaultEncoder();
+		enc.setOptions(null, "UTF-8", "\r\n");
+		assertEquals(perChar(enc, text), appended(enc, text));
+		enc = new MarkdownEncoder();
+		enc.setOptions(null, "UTF-8", "\r\n");
+		assertEquals(text, appended(enc, text));
+		enc = new CDATAEncoder("UTF-8", "\r\n");
+		assertEquals(perChar(enc, text), appended(enc, text));
+	}
+
+	/**
+	 * Encodes a text the way the skeleton writers did for each character.
+	 */
+	private String perChar (IEncoder enc,
+		String text)
+	{
+		StringBuilder sb = new StringBuilder();
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = text.charAt(i);
+			if ( Character.isHighSurrogate(ch) ) {
+				sb.append(enc.encode(text.codePointAt(i), EncoderContext.TEXT));
+				i++;
+			}
+			else {
+				sb.append(enc.encode(ch, EncoderContext.TEXT));
+			}
+		}
+		return sb.toString();
+	}
+
+	private String appended (IAppendableEncoder enc,
+		String text)
+	{
+		StringBuilder sb = new StringBuilder();
+		enc.encode(text, 0, text.length(), EncoderContext.TEXT, sb);
+		return sb.toString();
+	}
+
 	@Test
 	public void testHTMLEncoder () {
 		HtmlEncoder enc = new HtmlEncoder();
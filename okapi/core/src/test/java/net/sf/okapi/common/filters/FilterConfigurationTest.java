@@ -2,11 +2,14 @@ package net.sf.okapi.common.filters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.List;
 
 import net.sf.okapi.common.FileLocation;
@@ -207,4 +210,43 @@ public class FilterConfigurationTest {
 			assertEquals("IParamaters",  p, cp.toString());
 		}
 	}
+
+	@Test
+	public void filterPoolTest () throws IOException {
+		File dir = Files.createTempDirectory("okapi-fcm").toFile();
+		File file = new File(dir, "okf_dummy@pool" + FilterConfigurationMapper.CONFIGFILE_EXT);
+		try {
+			Files.write(file.toPath(), "#v1\nkey=one".getBytes("UTF-8"));
+			FilterConfigurationMapper fcm = new FilterConfigurationMapper();
+			fcm.addConfigurations(DummyFilter.class.getName());
+			fcm.setCustomConfigurationsDirectory(dir.getAbsolutePath());
+			fcm.updateCustomConfigurations();
+
+			IFilter filter1 = fcm.acquireFilter("okf_dummy@pool");
+			IFilter filter2 = fcm.acquireFilter("okf_dummy@pool");
+			assertNotSame(filter1, filter2);
+			assertEquals("one", filter1.getParameters().getString("key"));
+			assertEquals("one", filter2.getParameters().getString("key"));
+			fcm.releaseFilter("okf_dummy@pool", filter1);
+			assertSame(filter1, fcm.acquireFilter("okf_dummy@pool"));
+			fcm.releaseFilter("okf_dummy@pool", filter1);
+
+			// Changing the file invalidates the pool
+			Files.write(file.toPath(), "#v1\nkey=changed".getBytes("UTF-8"));
+			IFilter filter3 = fcm.acquireFilter("okf_dummy@pool");
+			assertNotSame(filter1, filter3);
+			assertEquals("changed", filter3.getParameters().getString("key"));
+			// Filters obtained before the change are not pooled again
+			fcm.releaseFilter("okf_dummy@pool", filter2);
+			IFilter filter4 = fcm.acquireFilter("okf_dummy@pool");
+			assertNotSame(filter2, filter4);
+			assertEquals("changed", filter4.getParameters().getString("key"));
+
+			assertNull(fcm.acquireFilter("okf_unknown"));
+		}
+		finally {
+			file.delete();
+			dir.delete();
+		}
+	}
 }
@@ -0,0 +1,103 @@
+package net.sf.okapi.common.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FileChannelInputStreamTest {
+
+	private File file;
+	private byte[] data;
+
+	@Before
+	public void setUp () throws IOException {
+		// Larger than the read buffer to cover refills and direct reads
+		data = new byte[FileChannelInputStream.DEFAULT_BUFFER_SIZE * 3 + 17];
+		for ( int i=0; i<data.length; i++ ) {
+			data[i] = (byte)(i % 251);
+		}
+		file = File.createTempFile("~okapi-test_", ".bin");
+		FileOutputStream os = new FileOutputStream(file);
+		os.write(data);
+		os.close();
+	}
+
+	@After
+	public void tearDown () {
+		file.delete();
+	}
+
+	@Test
+	public void readsWholeFile () throws IOException {
+		FileChannelInputStream is = new FileChannelInputStream(file);
+		assertEquals(data.length, is.length());
+		assertArrayEquals(data, readAll(is, 1000));
+		assertEquals(-1, is.read());
+		is.reset();
+		assertArrayEquals(data, readAll(is, FileChannelInputStream.DEFAULT_BUFFER_SIZE * 2));
+		is.dispose();
+	}
+
+	@Test
+	public void singleBytesAndMark () throws IOException {
+		FileChannelInputStream is = new FileChannelInputStream(file);
+		assertTrue(is.markSupported());
+		for ( int i=0; i<100; i++ ) {
+			assertEquals(data[i] & 0xFF, is.read());
+		}
+		is.mark(0);
+		assertEquals(FileChannelInputStream.DEFAULT_BUFFER_SIZE, is.skip(FileChannelInputStream.DEFAULT_BUFFER_SIZE));
+		assertEquals(data[100+FileChannelInputStream.DEFAULT_BUFFER_SIZE] & 0xFF, is.read());
+		is.reset();
+		assertEquals(data[100] & 0xFF, is.read());
+		is.close();
+	}
+
+	@Test
+	public void closeAndReopen () throws IOException {
+		FileChannelInputStream is = new FileChannelInputStream(file);
+		is.skip(10);
+		is.close();
+		assertFalse(is.isOpen());
+		// The file is not locked once closed
+		assertTrue(file.renameTo(file));
+		is.reopen();
+		assertTrue(is.isOpen());
+		assertEquals(0, is.position());
+		assertArrayEquals(data, readAll(is, 4096));
+		is.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void readAfterClose () throws IOException {
+		FileChannelInputStream is = new FileChannelInputStream(file);
+		is.close();
+		is.read();
+	}
+
+	private byte[] readAll (InputStream is,
+		int chunk) throws IOException
+	{
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buf = new byte[chunk];
+		int n;
+		while ( (n = is.read(buf, 0, buf.length)) != -1 ) {
+			os.write(buf, 0, n);
+		}
+		return os.toByteArray();
+	}
+}
@@ -0,0 +1,203 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.resource.MultiEvent;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StagedPipelineTest {
+
+	@Test
+	public void runPipeline () {
+		IPipeline pipeline = new StagedPipeline();
+		pipeline.addStep(new Producer());
+		pipeline.addStep(new ConsumerProducer());
+		pipeline.addStep(new Consumer());
+
+		pipeline.startBatch();
+		pipeline.process(new RawDocument("DUMMY", LocaleId.fromString("en")));
+		pipeline.endBatch();
+
+		assertEquals(PipelineReturnValue.SUCCEDED, pipeline.getState());
+		pipeline.destroy();
+		assertEquals(PipelineReturnValue.DESTROYED, pipeline.getState());
+	}
+
+	@Test
+	public void pipelineObserverWithMultiEvent () {
+		IPipeline p = new StagedPipeline();
+		EventObserver o = new EventObserver();
+		((IObservable)p).addObserver(o);
+		p.addStep(new DummyMultiCustomEventStep());
+		p.addStep(new Consumer());
+
+		p.startBatch();
+		p.process(new Event(EventType.CUSTOM));
+		p.endBatch();
+		p.destroy();
+
+		List<Event> el = o.getResult();
+		assertEquals(EventType.START_BATCH, el.remove(0).getEventType());
+		assertEquals(EventType.START_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.CUSTOM, el.remove(0).getEventType());
+		assertEquals(EventType.CUSTOM, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH, el.remove(0).getEventType());
+	}
+
+	@Test
+	public void sameEventsAsPipeline () {
+		List<Event> expected = run(new Pipeline());
+		List<Event> actual = run(new StagedPipeline(3));
+		assertEquals(expected.size(), actual.size());
+		for ( int i=0; i<expected.size(); i++ ) {
+			assertEquals(expected.get(i).getEventType(), actual.get(i).getEventType());
+			if ( expected.get(i).isTextUnit() ) {
+				assertEquals(expected.get(i).getTextUnit().getId(), actual.get(i).getTextUnit().getId());
+			}
+		}
+	}
+
+	@Test(expected=OkapiException.class)
+	public void errorIsReported () {
+		IPipeline p = new StagedPipeline();
+		p.addStep(new TextUnitSplitter(20));
+		p.addStep(new BasePipelineStep() {
+			@Override
+			public String getName () {
+				return "Failing";
+			}
+			@Override
+			public String getDescription () {
+				return "Fails on the tenth text unit.";
+			}
+			@Override
+			protected Event handleTextUnit (Event event) {
+				if ( "10".equals(event.getTextUnit().getId()) ) {
+					throw new OkapiException("Failed.");
+				}
+				return event;
+			}
+		});
+		try {
+			p.startBatch();
+			p.process(new Event(EventType.CUSTOM));
+		}
+		finally {
+			p.destroy();
+		}
+	}
+
+	private List<Event> run (IPipeline p) {
+		EventObserver o = new EventObserver();
+		((IObservable)p).addObserver(o);
+		p.addStep(new TextUnitSplitter(100));
+		p.addStep(new SlowStep());
+		p.addStep(new Consumer());
+		p.startBatch();
+		p.process(new Event(EventType.CUSTOM));
+		p.endBatch();
+		p.destroy();
+		return o.getResult();
+	}
+
+	/**
+	 * Produces text units, some of them grouped in a MULTI_EVENT.
+	 */
+	private static class TextUnitSplitter extends BasePipelineStep {
+
+		private final int count;
+		private int current;
+
+		TextUnitSplitter (int count) {
+			this.count = count;
+		}
+
+		@Override
+		public String getName () {
+			return "TextUnitSplitter";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Produces text units.";
+		}
+
+		@Override
+		public Event handleEvent (Event event) {
+			if ( (event.getEventType() != EventType.CUSTOM) && !event.isNoop() ) {
+				return event;
+			}
+			if ( current % 7 == 0 ) {
+				MultiEvent me = new MultiEvent();
+				me.addEvent(createTextUnit());
+				me.addEvent(createTextUnit());
+				return new Event(EventType.MULTI_EVENT, me);
+			}
+			return createTextUnit();
+		}
+
+		private Event createTextUnit () {
+			String id = String.valueOf(current++);
+			return new Event(EventType.TEXT_UNIT, new TextUnit(id, "text" + id));
+		}
+
+		@Override
+		public boolean isDone () {
+			return current >= count;
+		}
+	}
+
+	private static class SlowStep extends BasePipelineStep {
+
+		@Override
+		public String getName () {
+			return "Slow";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Waits on each text unit.";
+		}
+
+		@Override
+		protected Event handleTextUnit (Event event) {
+			try {
+				Thread.sleep(1);
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			return event;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import java.util.Random;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextFragment;
+
+/**
+ * Upper-cases the source text of the text units, after a short random delay so that
+ * concurrent runs finish out of order.
+ */
+public class UpperCaseStep extends BasePipelineStep {
+
+	private final Random random = new Random();
+
+	@Override
+	public String getName () {
+		return "UpperCase";
+	}
+
+	@Override
+	public String getDescription () {
+		return "Upper-cases the source text with random delays.";
+	}
+
+	@Override
+	protected Event handleTextUnit (Event event) {
+		try {
+			Thread.sleep(random.nextInt(3));
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		ITextUnit tu = event.getTextUnit();
+		tu.setSourceContent(new TextFragment(tu.getSource().toString().toUpperCase()));
+		return event;
+	}
+}
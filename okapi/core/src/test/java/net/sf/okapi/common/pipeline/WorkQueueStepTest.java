@@ -0,0 +1,134 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class WorkQueueStepTest {
+
+	@Test
+	public void keepsDocumentOrder () {
+		List<Event> el = runPipeline(250, true);
+		assertEquals(EventType.START_BATCH, el.remove(0).getEventType());
+		assertEquals(EventType.START_BATCH_ITEM, el.remove(0).getEventType());
+		for ( int i=0; i<250; i++ ) {
+			ITextUnit tu = el.remove(0).getTextUnit();
+			assertEquals(String.valueOf(i), tu.getId());
+			assertEquals("TEXT" + i, tu.getSource().toString());
+		}
+		assertEquals(EventType.END_DOCUMENT, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH, el.remove(0).getEventType());
+		assertEquals(0, el.size());
+	}
+
+	@Test
+	public void drainsWhenInputEndsWithTextUnits () {
+		List<Event> el = runPipeline(21, false);
+		assertEquals(EventType.START_BATCH, el.remove(0).getEventType());
+		assertEquals(EventType.START_BATCH_ITEM, el.remove(0).getEventType());
+		for ( int i=0; i<21; i++ ) {
+			assertEquals("TEXT" + i, el.remove(0).getTextUnit().getSource().toString());
+		}
+		assertEquals(EventType.END_BATCH_ITEM, el.remove(0).getEventType());
+		assertEquals(EventType.END_BATCH, el.remove(0).getEventType());
+	}
+
+	@Test
+	public void createsCallableSteps () {
+		WorkQueueStep step = new WorkQueueStep(new UpperCaseStep(), 3);
+		assertEquals(3, step.getWorkQueueCount());
+		assertEquals(3, step.getCallableSteps().size());
+		assertEquals("UpperCase", step.getName());
+		step.destroy();
+	}
+
+	private List<Event> runPipeline (int count,
+		boolean endDocument)
+	{
+		IPipeline p = new Pipeline();
+		EventObserver o = new EventObserver();
+		((IObservable)p).addObserver(o);
+		p.addStep(new TextUnitProducer(count, endDocument));
+		p.addStep(new WorkQueueStep(new UpperCaseStep(), 4));
+		p.startBatch();
+		p.process(new Event(EventType.CUSTOM));
+		p.endBatch();
+		p.destroy();
+		return new ArrayList<Event>(o.getResult());
+	}
+
+	private static class TextUnitProducer extends BasePipelineStep {
+
+		private final int count;
+		private final boolean endDocument;
+		private int current;
+
+		TextUnitProducer (int count,
+			boolean endDocument)
+		{
+			this.count = count;
+			this.endDocument = endDocument;
+		}
+
+		@Override
+		public String getName () {
+			return "TextUnitProducer";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Produces text units.";
+		}
+
+		@Override
+		public Event handleEvent (Event event) {
+			if ( event.isStartBatchItem() || (event.getEventType() == EventType.END_BATCH_ITEM)
+				|| (event.getEventType() == EventType.START_BATCH)
+				|| (event.getEventType() == EventType.END_BATCH) ) {
+				return event;
+			}
+			if ( current < count ) {
+				TextUnit tu = new TextUnit(String.valueOf(current), "text" + current);
+				current++;
+				return new Event(EventType.TEXT_UNIT, tu);
+			}
+			current++;
+			return new Event(EventType.END_DOCUMENT, new Ending("end"));
+		}
+
+		@Override
+		public boolean isDone () {
+			return endDocument ? (current > count) : (current >= count);
+		}
+	}
+}
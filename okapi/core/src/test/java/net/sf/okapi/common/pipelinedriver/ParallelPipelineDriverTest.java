@@ -0,0 +1,282 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.pipelinedriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.observer.IObservable;
+import net.sf.okapi.common.observer.IObserver;
+import net.sf.okapi.common.pipeline.BasePipelineStep;
+import net.sf.okapi.common.pipeline.IPipeline;
+import net.sf.okapi.common.pipeline.Pipeline;
+import net.sf.okapi.common.pipeline.UpperCaseStep;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ParallelPipelineDriverTest {
+
+	private static final LocaleId ENUS = LocaleId.fromString("en-us");
+
+	@Test
+	public void sharedStepSeesItemsInOrder () {
+		ParallelPipelineDriver driver = new ParallelPipelineDriver(4);
+		CollectingStep collector = new CollectingStep();
+		driver.addStep(new ToTextUnitStep());
+		driver.addStep(new UpperCaseStep());
+		driver.addStep(collector);
+		driver.setSharedStepCount(1);
+		for ( int i=0; i<50; i++ ) {
+			driver.addBatchItem(new RawDocument("text" + i, ENUS));
+		}
+		driver.processBatch();
+
+		assertEquals(1, collector.startBatchCount);
+		assertEquals(1, collector.endBatchCount);
+		assertEquals(50, collector.texts.size());
+		for ( int i=0; i<50; i++ ) {
+			assertEquals("TEXT" + i, collector.texts.get(i));
+		}
+		driver.destroy();
+	}
+
+	@Test
+	public void observersSeeItemsInOrder () {
+		ParallelPipelineDriver driver = new ParallelPipelineDriver(3);
+		IPipeline pipeline = new Pipeline();
+		final List<Event> observed = new ArrayList<Event>();
+		((IObservable)pipeline).addObserver(new IObserver() {
+			@Override
+			public void update (IObservable o, Object arg) {
+				observed.add((Event)arg);
+			}
+		});
+		pipeline.addStep(new ToTextUnitStep());
+		pipeline.addStep(new UpperCaseStep());
+		driver.setPipeline(pipeline);
+		for ( int i=0; i<20; i++ ) {
+			driver.addBatchItem(new RawDocument("text" + i, ENUS));
+		}
+		driver.processBatch();
+
+		assertEquals(EventType.START_BATCH, observed.remove(0).getEventType());
+		for ( int i=0; i<20; i++ ) {
+			assertEquals(EventType.START_BATCH_ITEM, observed.remove(0).getEventType());
+			assertEquals("TEXT" + i, observed.remove(0).getTextUnit().getSource().toString());
+			assertEquals(EventType.END_BATCH_ITEM, observed.remove(0).getEventType());
+		}
+		assertEquals(EventType.END_BATCH, observed.remove(0).getEventType());
+		assertEquals(0, observed.size());
+	}
+
+	@Test
+	public void replicasProcessOneItemAtATime () {
+		ParallelPipelineDriver driver = new ParallelPipelineDriver(4);
+		CollectingStep collector = new CollectingStep();
+		ItemStateStep template = new ItemStateStep();
+		driver.addStep(new ToTextUnitStep());
+		driver.addStep(new UpperCaseStep());
+		driver.addStep(template);
+		driver.addStep(collector);
+		driver.setSharedStepCount(1);
+		for ( int i=0; i<40; i++ ) {
+			driver.addBatchItem(new RawDocument("text" + i, ENUS));
+		}
+		driver.processBatch();
+
+		// The template itself is not used, only its replicas
+		assertEquals(0, template.itemCount);
+		assertEquals(40, collector.texts.size());
+		for ( int i=0; i<40; i++ ) {
+			assertEquals("TEXT" + i, collector.texts.get(i));
+			// Each text unit was the first one of its batch item for the replica that numbered it
+			assertEquals("1", collector.ids.get(i));
+		}
+		driver.destroy();
+	}
+
+	@Test
+	public void replicasDestroyedWhenItemFails () {
+		FailingStep.destroyed.set(0);
+		ParallelPipelineDriver driver = new ParallelPipelineDriver(3);
+		CollectingStep collector = new CollectingStep();
+		driver.addStep(new ToTextUnitStep());
+		driver.addStep(new FailingStep());
+		driver.addStep(collector);
+		driver.setSharedStepCount(1);
+		for ( int i=0; i<20; i++ ) {
+			driver.addBatchItem(new RawDocument("text" + i, ENUS));
+		}
+		try {
+			driver.processBatch();
+			fail("The failing batch item should stop the batch.");
+		}
+		catch ( OkapiException e ) {
+			assertEquals("Cannot process text7", e.getMessage());
+		}
+		// Every replica was destroyed, and the shared steps still got the end of the batch
+		assertEquals(3, FailingStep.destroyed.get());
+		assertEquals(1, collector.endBatchCount);
+		driver.destroy();
+	}
+
+	public static class ToTextUnitStep extends BasePipelineStep {
+
+		@Override
+		public String getName () {
+			return "ToTextUnit";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Converts the raw document into a text unit.";
+		}
+
+		@Override
+		protected Event handleRawDocument (Event event) {
+			String text = event.getRawDocument().getInputCharSequence().toString();
+			return new Event(EventType.TEXT_UNIT, new TextUnit("id", text));
+		}
+	}
+
+	/**
+	 * Fails on one text unit, and counts the destroyed instances.
+	 */
+	public static class FailingStep extends BasePipelineStep {
+
+		static final AtomicInteger destroyed = new AtomicInteger();
+
+		@Override
+		public String getName () {
+			return "Failing";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Fails on the text unit 'text7'.";
+		}
+
+		@Override
+		protected Event handleTextUnit (Event event) {
+			String text = event.getTextUnit().getSource().toString();
+			if ( text.equals("text7") ) {
+				throw new OkapiException("Cannot process " + text);
+			}
+			return event;
+		}
+
+		@Override
+		public void destroy () {
+			destroyed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Numbers the text units of the current batch item, and fails if a batch item
+	 * starts before the previous one has ended.
+	 */
+	public static class ItemStateStep extends BasePipelineStep {
+
+		int itemCount;
+		private boolean inItem;
+		private int unitCount;
+
+		@Override
+		public String getName () {
+			return "ItemState";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Numbers the text units of each batch item.";
+		}
+
+		@Override
+		protected Event handleStartBatchItem (Event event) {
+			if ( inItem ) {
+				throw new IllegalStateException("Batch item started before the previous one ended.");
+			}
+			inItem = true;
+			itemCount++;
+			unitCount = 0;
+			return event;
+		}
+
+		@Override
+		protected Event handleEndBatchItem (Event event) {
+			inItem = false;
+			return event;
+		}
+
+		@Override
+		protected Event handleTextUnit (Event event) {
+			unitCount++;
+			event.getTextUnit().setId(String.valueOf(unitCount));
+			return event;
+		}
+	}
+
+	private static class CollectingStep extends BasePipelineStep {
+
+		int startBatchCount;
+		int endBatchCount;
+		List<String> texts = new ArrayList<String>();
+		List<String> ids = new ArrayList<String>();
+
+		@Override
+		public String getName () {
+			return "Collecting";
+		}
+
+		@Override
+		public String getDescription () {
+			return "Records the text units.";
+		}
+
+		@Override
+		protected Event handleStartBatch (Event event) {
+			startBatchCount++;
+			return event;
+		}
+
+		@Override
+		protected Event handleEndBatch (Event event) {
+			endBatchCount++;
+			return event;
+		}
+
+		@Override
+		protected Event handleTextUnit (Event event) {
+			texts.add(event.getTextUnit().getSource().toString());
+			ids.add(event.getTextUnit().getId());
+			return event;
+		}
+	}
+}
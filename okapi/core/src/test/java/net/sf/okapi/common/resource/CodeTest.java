@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -85,11 +86,16 @@ public class CodeTest {
     	assertNotSame(code, c2);
     	assertEquals(code.getId(), c2.getId());
     	assertEquals(code.getData(), c2.getData());
-    	assertNotSame(code.data, c2.data);
     	assertEquals(code.getTagType(), c2.getTagType());
     	assertEquals(code.getType(), c2.getType());
     	assertEquals(code.getOuterData(), c2.getOuterData());
-    	assertNotSame(code.outerData, c2.outerData);
+    	// The immutable data strings are shared, changes are not
+    	c2.append("2");
+    	c2.appendOuterData("2");
+    	assertEquals("data", code.getData());
+    	assertEquals("out1", code.getOuterData());
+    	assertEquals("data2", c2.getData());
+    	assertEquals("out12", c2.getOuterData());
     }
 
     @Test
@@ -175,4 +181,72 @@ public class CodeTest {
     	assertEquals("", code.toString());
     }
 
+    @Test
+    public void testAppendData () {
+    	Code code = new Code(TagType.OPENING, "b", "<b");
+    	Code copy = code.clone();
+    	code.append(">");
+    	code.appendOuterData("<bpt id=\"1\">");
+    	code.appendOuterData("&lt;b>");
+    	code.appendReference("ref1");
+    	assertEquals("<b>" + TextFragment.makeRefMarker("ref1"), code.getData());
+    	assertEquals("<bpt id=\"1\">&lt;b>", code.getOuterData());
+    	assertTrue(code.hasReference());
+    	// The clone is not affected
+    	assertEquals("<b", copy.getData());
+    	assertFalse(copy.hasOuterData());
+    	copy.append("/>");
+    	assertEquals("<b/>", copy.getData());
+    	assertEquals("<b>" + TextFragment.makeRefMarker("ref1"), code.getData());
+    }
+
+    @Test
+    public void testCompact () {
+    	CodeDataPool pool = new CodeDataPool();
+    	TextFragment tf1 = new TextFragment("a");
+    	tf1.append(TagType.OPENING, new String("bold"), new String("<b>"));
+    	tf1.append("b");
+    	tf1.append(TagType.CLOSING, new String("bold"), new String("</b>"));
+    	TextFragment tf2 = new TextFragment();
+    	tf2.append(TagType.OPENING, new String("bold"), "<b");
+    	tf2.getCode(0).append(">");
+    	tf2.append(TagType.CLOSING, new String("bold"), new String("</b>"));
+    	tf1.compactCodes(pool);
+    	tf2.compactCodes(pool);
+    	assertEquals(3, pool.size());
+
+    	Code code1 = tf1.getCode(0);
+    	Code code2 = tf2.getCode(0);
+    	assertEquals("<b>", code2.getData());
+    	assertSame(code1.getData(), code2.getData());
+    	assertSame(code1.getType(), code2.getType());
+    	assertSame(tf1.getCode(1).getData(), tf2.getCode(1).getData());
+
+    	// Compacted codes can still be changed independently
+    	code2.append("x");
+    	assertEquals("<b>", code1.getData());
+    	assertEquals("<b>x", code2.getData());
+    	assertEquals("a<b>b</b>", tf1.toText());
+    }
+
+    @Test
+    public void testSameCodes () {
+    	TextFragment tf1 = new TextFragment("a");
+    	tf1.append(TagType.OPENING, "bold", "<b>");
+    	tf1.append(TagType.CLOSING, "bold", "</b>");
+    	TextFragment tf2 = new TextFragment("b");
+    	tf2.append(TagType.OPENING, "bold", "<b");
+    	tf2.getCode(0).append(">");
+    	tf2.append(TagType.CLOSING, "bold", "</b>");
+    	// Same ids and same data content, even if not the same objects
+    	assertTrue(Code.sameCodes(tf1.getCodes(), tf2.getCodes()));
+
+    	tf2.getCode(1).setData("</B>");
+    	assertFalse(Code.sameCodes(tf1.getCodes(), tf2.getCodes()));
+    	tf2.getCode(1).setData("</b>");
+    	tf2.getCode(1).setId(5);
+    	assertFalse(Code.sameCodes(tf1.getCodes(), tf2.getCodes()));
+    	assertFalse(Code.sameCodes(tf1.getCodes(), tf2.getCodes().subList(0, 1)));
+    }
+
 }
@@ -1,6 +1,8 @@
 package net.sf.okapi.common.resource;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -20,7 +22,9 @@ import org.junit.runners.JUnit4;
 
 import net.sf.okapi.common.FileLocation;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
 import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.io.FileChannelInputStream;
 
 @RunWith(JUnit4.class)
 public class RawDocumentTest {
@@ -36,6 +40,30 @@ public class RawDocumentTest {
 		ir.close();
 	}
 
+	@Test
+	public void localFileIsReadInPlace() throws IOException {
+		URI uri = FileLocation.fromClass(RawDocumentTest.class).in("/test.html").asUri();
+		RawDocument rd = new RawDocument(uri, "UTF-8", locEN);
+		InputStream is = rd.getStream();
+		assertTrue(is instanceof FileChannelInputStream);
+		byte[] first = StreamUtil.inputStreamToBytes(is);
+		assertEquals(new File(uri).length(), first.length);
+		// Same content when getting the stream again
+		assertArrayEquals(first, StreamUtil.inputStreamToBytes(rd.getStream()));
+		rd.close();
+	}
+
+	@Test
+	public void getReaderWithCharSequence() throws IOException {
+		RawDocument rd = new RawDocument(new StringBuilder("text \u00e9\ud83d\ude00"), locEN);
+		assertEquals("text \u00e9\ud83d\ude00", readAll(rd.getReader()));
+		Reader reader = rd.getReader();
+		assertEquals("text \u00e9\ud83d\ude00", readAll(reader));
+		assertFalse(reader.ready()); // Same as an InputStreamReader at the end of the input
+		assertEquals("text \u00e9\ud83d\ude00", new String(StreamUtil.inputStreamToBytes(rd.getStream()), "UTF-16"));
+		rd.close();
+	}
+
 	@Test(expected = OkapiIOException.class)
 	public void getReaderWithExceptionUriNotFound() throws URISyntaxException {
 		RawDocument ir = new RawDocument(new URI("file:///home/username/bad.bad"), "UTF-8", locEN);
@@ -160,6 +188,16 @@ public class RawDocumentTest {
 		rd.close();
 	}
 
+	private String readAll (Reader reader) throws IOException {
+		StringBuilder tmp = new StringBuilder();
+		char[] buf = new char[3];
+		int n;
+		while ((n = reader.read(buf)) != -1) {
+			tmp.append(buf, 0, n);
+		}
+		return tmp.toString();
+	}
+
 	private void writeStringAndFinalize (URI outputURI,
 		RawDocument rd,
 		String text)
@@ -1,24 +1,33 @@
 package net.sf.okapi.common.skeleton;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.MimeTypeMapper;
+import net.sf.okapi.common.encoder.EncoderContext;
 import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.Ending;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Property;
 import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.StartDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.common.resource.TextPart;
 import net.sf.okapi.common.resource.TextUnit;
 
 import org.junit.Before;
@@ -491,6 +500,141 @@ public class GenericSkeletonWriterTest {
 		assertEquals(expected, result);
 	}
 
+	@Test
+	public void testStreamingOutput () throws IOException {
+		// Start
+		List<Event> events = TestUtil.createStartEvents(false, gsw, encMgt);
+		// Referent TU
+		GenericSkeleton gs1 = new GenericSkeleton();
+		gs1.add("{sub-block [");
+		ITextUnit tu1 = TestUtil.createSimpleTU();
+		tu1.setIsReferent(true);
+		gs1.addContentPlaceholder(tu1);
+		gs1.add("]}");
+		tu1.setSkeleton(gs1);
+		events.add(new Event(EventType.TEXT_UNIT, tu1));
+		// Parent
+		GenericSkeleton gs2 = new GenericSkeleton();
+		gs2.add("Start ");
+		gs2.addReference(tu1);
+		gs2.add(" end. ");
+		DocumentPart dp = new DocumentPart("dp1", false);
+		dp.setSkeleton(gs2);
+		events.add(new Event(EventType.DOCUMENT_PART, dp));
+		// TU
+		GenericSkeleton gs3 = new GenericSkeleton();
+		gs3.add("before [");
+		ITextUnit tu2 = TestUtil.createTranslatedTU();
+		gs3.addContentPlaceholder(tu2);
+		gs3.add("] after");
+		tu2.setSkeleton(gs3);
+		events.add(new Event(EventType.TEXT_UNIT, tu2));
+		// End
+		TestUtil.addEndEvents(events);
+		events = processEvents(events, false, locFR);
+
+		String expected = "Start {sub-block [text1]} end. before [target1] after";
+		assertEquals(expected, FilterTestDriver.generateOutput(events, locFR, gsw, encMgt, false));
+		assertEquals(expected, generateStreamingOutput(events, new GenericSkeletonWriter()));
+
+		// Overriding the string method without the streaming one: the override is used
+		String result = generateStreamingOutput(events, new BracketingSkeletonWriter());
+		assertEquals(FilterTestDriver.generateOutput(events, locFR, new BracketingSkeletonWriter(), encMgt, false),
+			result);
+		assertFalse(expected.equals(result));
+	}
+
+	@Test
+	public void testStreamingContent () throws IOException {
+		encMgt.setMapping(MimeTypeMapper.XML_MIME_TYPE, "net.sf.okapi.common.encoder.XMLEncoder");
+		List<Event> events = TestUtil.createStartEvents(false, gsw, encMgt);
+		// TU with in-line codes
+		GenericSkeleton gs1 = new GenericSkeleton();
+		gs1.add("<p>");
+		TextFragment tf = new TextFragment("a&b ");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		ITextUnit tu1 = new TextUnit("tu1");
+		tu1.setMimeType(MimeTypeMapper.XML_MIME_TYPE);
+		tu1.setSourceContent(tf);
+		gs1.addContentPlaceholder(tu1);
+		gs1.add("</p>");
+		tu1.setSkeleton(gs1);
+		events.add(new Event(EventType.TEXT_UNIT, tu1));
+		// Segmented TU
+		GenericSkeleton gs2 = new GenericSkeleton();
+		ITextUnit tu2 = new TextUnit("tu2");
+		tu2.setMimeType(MimeTypeMapper.XML_MIME_TYPE);
+		TextContainer tc = tu2.getSource();
+		tc.getSegments().append(new TextFragment("seg1."));
+		tc.append(new TextPart(" "));
+		tc.getSegments().append(new TextFragment("seg<2>."));
+		gs2.addContentPlaceholder(tu2);
+		tu2.setSkeleton(gs2);
+		events.add(new Event(EventType.TEXT_UNIT, tu2));
+		TestUtil.addEndEvents(events);
+		events = processEvents(events, false, locFR);
+
+		String expected = "<p>a&amp;b <b>bold</b></p>seg1. seg&lt;2>.";
+		assertEquals(expected, FilterTestDriver.generateOutput(events, locFR, gsw, encMgt, false));
+		// The content is written without getting its string
+		assertEquals(expected, generateStreamingOutput(events, new WriteContentSkeletonWriter()));
+	}
+
+	private static class BracketingSkeletonWriter extends GenericSkeletonWriter {
+		@Override
+		public String processTextUnit (ITextUnit resource) {
+			return "<" + super.processTextUnit(resource) + ">";
+		}
+	}
+
+	private static class WriteContentSkeletonWriter extends GenericSkeletonWriter {
+		@Override
+		protected String getContent (ITextUnit tu,
+			LocaleId locToUse,
+			EncoderContext context)
+		{
+			throw new AssertionError("Content string requested for " + tu.getId());
+		}
+
+		@Override
+		protected void writeContent (ITextUnit tu,
+			LocaleId locToUse,
+			EncoderContext context,
+			Writer output) throws IOException
+		{
+			super.writeContent(tu, locToUse, context, output);
+		}
+	}
+
+	private String generateStreamingOutput (List<Event> events,
+		IStreamingSkeletonWriter writer) throws IOException
+	{
+		StringWriter output = new StringWriter();
+		for ( Event event : events ) {
+			switch ( event.getEventType() ) {
+			case START_DOCUMENT:
+				writer.processStartDocument(locFR, "UTF-8", null, encMgt,
+					(StartDocument)event.getResource(), output);
+				break;
+			case END_DOCUMENT:
+				writer.processEndDocument((Ending)event.getResource(), output);
+				break;
+			case TEXT_UNIT:
+				writer.processTextUnit(event.getTextUnit(), output);
+				break;
+			case DOCUMENT_PART:
+				writer.processDocumentPart(event.getDocumentPart(), output);
+				break;
+			default:
+				break;
+			}
+		}
+		writer.close();
+		return output.toString();
+	}
+
 	protected Event processEvent(Event event, GenericSkeletonSimplifier rs) {
 		return event;
 	}
@@ -0,0 +1,136 @@
+package net.sf.okapi.common.skeleton;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.filters.FilterTestDriver;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.IReferenceable;
+import net.sf.okapi.common.resource.StartGroup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ReferentStoreTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Serializes document parts with a plain skeleton only.
+	 */
+	static class DocumentPartSerializer implements IReferentSerializer {
+		int written;
+
+		@Override
+		public byte[] serialize (IReferenceable referent) {
+			if ( !(referent instanceof DocumentPart) ) return null;
+			DocumentPart dp = (DocumentPart)referent;
+			written++;
+			return (dp.getId() + "\n" + dp.getSkeleton().toString()).getBytes(UTF8);
+		}
+
+		@Override
+		public IReferenceable deserialize (byte[] data) {
+			String text = new String(data, UTF8);
+			int n = text.indexOf('\n');
+			return new DocumentPart(text.substring(0, n), true, new GenericSkeleton(text.substring(n+1)));
+		}
+	}
+
+	@Test
+	public void testSpillAndLookup () {
+		DocumentPartSerializer serializer = new DocumentPartSerializer();
+		ReferentStore store = new ReferentStore(serializer, 2);
+		for ( int i=1; i<=5; i++ ) {
+			store.put("dp"+i, new Referent(createReferent(i), 2));
+		}
+		assertEquals(5, store.size());
+		assertEquals(3, store.getSpilledCount());
+		assertTrue(store.containsKey("dp1"));
+		assertFalse(store.containsKey("dp6"));
+		assertNull(store.get("dp6"));
+
+		// Spilled referents are re-created with their count
+		Referent ref = store.get("dp1");
+		assertEquals("dp1", ((DocumentPart)ref.ref).getId());
+		assertEquals("[skel1]", ((DocumentPart)ref.ref).getSkeleton().toString());
+		assertEquals(2, ref.count);
+		assertSame(ref, store.get("dp1"));
+		// Loading dp1 spilled the least recently used one (dp4)
+		assertEquals(3, store.getSpilledCount());
+		assertEquals(5, store.size());
+
+		assertEquals("[skel2]", ((DocumentPart)store.remove("dp2").ref).getSkeleton().toString());
+		assertEquals(4, store.size());
+		assertEquals(4, store.entrySet().size());
+		int count = 0;
+		for ( Map.Entry<String, Referent> entry : store.entrySet() ) {
+			assertEquals(entry.getKey(), ((DocumentPart)entry.getValue().ref).getId());
+			count++;
+		}
+		assertEquals(4, count);
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertNull(store.get("dp3"));
+		assertEquals(0, store.getSpilledCount());
+	}
+
+	@Test
+	public void testStorageListKeptInMemory () {
+		DocumentPartSerializer serializer = new DocumentPartSerializer();
+		ReferentStore store = new ReferentStore(serializer, 1);
+		StartGroup sg = new StartGroup(null, "sg1", true);
+		StorageList sl = new StorageList(sg);
+		store.put(sl.getId(), new Referent(sl, 1));
+		store.put("dp1", new Referent(createReferent(1), 1));
+		store.put("dp2", new Referent(createReferent(2), 1));
+		assertEquals(1, serializer.written);
+		assertSame(sl, store.get("sg1").ref);
+		store.clear();
+	}
+
+	@Test
+	public void testWriterWithSerializer () {
+		EncoderManager encMgt = new EncoderManager();
+		GenericSkeletonWriter gsw = new GenericSkeletonWriter();
+		List<Event> events = TestUtil.createStartEvents(false, gsw, encMgt);
+		GenericSkeleton main = new GenericSkeleton("start:");
+		for ( int i=1; i<=5; i++ ) {
+			DocumentPart dp = createReferent(i);
+			events.add(new Event(EventType.DOCUMENT_PART, dp));
+			main.addReference(dp);
+		}
+		main.add(":end");
+		events.add(new Event(EventType.DOCUMENT_PART, new DocumentPart("main", false, main)));
+		TestUtil.addEndEvents(events);
+
+		String expected = "start:[skel1][skel2][skel3][skel4][skel5]:end";
+		assertEquals(expected, FilterTestDriver.generateOutput(events, LocaleId.FRENCH, gsw, encMgt, false));
+
+		DocumentPartSerializer serializer = new DocumentPartSerializer();
+		gsw = new GenericSkeletonWriter();
+		gsw.setReferentSerializer(serializer, 1);
+		assertEquals(expected, FilterTestDriver.generateOutput(events, LocaleId.FRENCH, gsw, encMgt, false));
+		// Four referents spilled when added, and dp5 again when dp1 was loaded back
+		assertEquals(5, serializer.written);
+	}
+
+	private DocumentPart createReferent (int index) {
+		return new DocumentPart("dp"+index, true, new GenericSkeleton("[skel"+index+"]"));
+	}
+
+}
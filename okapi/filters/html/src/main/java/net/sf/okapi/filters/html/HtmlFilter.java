@@ -17,27 +17,27 @@
 package net.sf.okapi.filters.html;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.URL;
 import java.util.EmptyStackException;
+import java.util.LinkedHashMap;
 
 import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
 import net.htmlparser.jericho.EndTag;
 import net.htmlparser.jericho.EndTagType;
+import net.htmlparser.jericho.HTMLElementName;
 import net.htmlparser.jericho.Segment;
+import net.htmlparser.jericho.Source;
 import net.htmlparser.jericho.StartTag;
 import net.htmlparser.jericho.StartTagType;
 import net.htmlparser.jericho.Tag;
-import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.MimeTypeMapper;
 import net.sf.okapi.common.UsingParameters;
 import net.sf.okapi.common.encoder.HtmlEncoder;
-import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.PropertyTextUnitPlaceholder;
 import net.sf.okapi.common.filters.PropertyTextUnitPlaceholder.PlaceholderAccessType;
-import net.sf.okapi.common.resource.Ending;
 import net.sf.okapi.common.resource.Property;
 import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.common.resource.TextFragment;
@@ -58,8 +58,8 @@ public class HtmlFilter extends AbstractMarkupFilter {
 	private final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
 	private Parameters parameters;
-	private RawDocument tempSourceInput;
-	private File tempSourceFile;
+	private boolean needEncodingDeclaration;
+	private boolean isXHTML;
 
 	public HtmlFilter() {
 		super();
@@ -85,29 +85,8 @@ public class HtmlFilter extends AbstractMarkupFilter {
 
 	@Override
 	public void open(RawDocument input, boolean generateSkeleton) {
-		// try to detect a document encoding
-		String encoding = detectEncoding(input);
-		
 		setCurrentDocName(input.getInputURI() == null ? "" : input.getInputURI().getPath());
-		
-		// rewrite tidied file (make sure all attribute values have quotes)
-		try {
-			tempSourceInput = StreamedSourceCopy.htmlTidiedRewrite(input, isDocumentEncoding(), encoding, isBOM());
-			// file handle so we can delete this later
-			tempSourceFile = new File(tempSourceInput.getInputURI());
-		} catch (IOException e) {
-			throw new OkapiIOException("Error generating tidied source temp file", e);
-		}
-				
-		super.open(tempSourceInput, generateSkeleton);
-	}
-	
-	@Override
-	public void close() {
-		super.close();
-		if (tempSourceFile != null) {
-			tempSourceFile.delete();
-		}
+		super.open(input, generateSkeleton);
 	}
 
 	/**
@@ -122,23 +101,98 @@ public class HtmlFilter extends AbstractMarkupFilter {
 		}
 		getEventBuilder().initializeCodeFinder(getConfig().isUseCodeFinder(),
 				getConfig().getCodeFinderRules());
+		// add an encoding declaration after <head> if the document has none
+		needEncodingDeclaration = !isDocumentEncoding();
+		isXHTML = false;
 	}
-	
+
 	/**
-	 * End the current filter processing and send the {@link Ending} {@link Event}
+	 * Handle the start tag with quotes added to any attributes that don't have them, and add the missing
+	 * encoding declaration after the &lt;head&gt; tag. This is done while the document is parsed, so the
+	 * input is read only once.
 	 */
 	@Override
-	protected void endFilter() {
-		super.endFilter();
-		
-		// delete temp source file
-		if (tempSourceInput != null) {
-			tempSourceInput.close();
-			boolean success = (new File(tempSourceInput.getInputURI())).delete();
-			if (!success) {
-				LOGGER.warn("Couldn't delete HTML Filter tidied temp file");
+	protected void handleStartTag(StartTag startTag) {
+		super.handleStartTag(quoteAttributes(startTag));
+
+		if (!needEncodingDeclaration) {
+			return;
+		}
+		if (startTag.getName() == HTMLElementName.HTML) {
+			// Check for XHTML files
+			// If this is an XHTML file it does not need an added meta declaration
+			Attributes attrs = startTag.getAttributes();
+			for (int i = 0; attrs != null && i < attrs.getCount(); i++) {
+				String name = attrs.get(i).getName();
+				if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+					String xmlns = startTag.getAttributeValue(name);
+					if (xmlns == null) {
+						// It's likely HTML
+						// We can add <meta> (not <meta/>)
+					} else if (xmlns.equals("http://www.w3.org/1999/xhtml")) {
+						// It's XHTML
+						// We can add <meta/>. It should be ok with both strict and transitional XHTML
+						isXHTML = true;
+					} else {
+						// It's some other XML format
+						// We shouldn't add <meta/>
+						needEncodingDeclaration = false;
+					}
+				}
+			}
+		} else if (startTag.getName() == HTMLElementName.HEAD) {
+			// Insert the encoding declaration
+			// (If there is no <head> in the file, this is not triggered)
+			needEncodingDeclaration = false;
+			StartTag meta = parseStartTag(String.format( // Use <meta /> for HTML and XHTML
+					"<meta http-equiv=\"Content-Type\" content=\"text/html; charset=%s\"%s>",
+					getEncoding(), (isXHTML ? " /" : "")));
+			if (meta != null) {
+				preProcess(meta);
+				super.handleStartTag(meta);
+			}
+		}
+	}
+
+	/*
+	 * Get the start tag with quotes added to any attributes that don't have them.
+	 */
+	private StartTag quoteAttributes(StartTag startTag) {
+		if (!hasUnquotedAttribute(startTag)) {
+			return startTag;
+		}
+		LinkedHashMap<String, String> attributesMap = new LinkedHashMap<String, String>();
+		StartTag quoted = parseStartTag(StartTag.generateHTML(
+				startTag.getNameSegment().toString(),
+				startTag.getAttributes().populateMap(attributesMap, false),
+				startTag.isSyntacticalEmptyElementTag()));
+		return (quoted == null ? startTag : quoted);
+	}
+
+	private boolean hasUnquotedAttribute(StartTag tag) {
+		if (tag.getAttributes() != null
+				&& !tag.getAttributes().isEmpty()
+				&& tag.getTagType() != StartTagType.XML_DECLARATION
+				&& tag.getTagType() != StartTagType.DOCTYPE_DECLARATION
+				&& tag.getTagType() != StartTagType.XML_PROCESSING_INSTRUCTION) {
+
+			for (Attribute att : tag.getAttributes()) {
+				if (att.getQuoteChar() == ' ') {
+					return true;
+				}
 			}
 		}
+		return false;
+	}
+
+	/*
+	 * Parse a single generated tag. Its positions are relative to the generated text,
+	 * which is all the handlers need.
+	 */
+	private StartTag parseStartTag(String html) {
+		Source source = new Source(html);
+		source.setLogger(null);
+		return source.getFirstStartTag();
 	}
 
 	@Override
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -680,6 +681,28 @@ public class HtmlSnippetsTest {
 		assertEquals("<B><FONT SIZE=\"3\">our accomplishments</B></FONT>", tu.getSource().getFirstContent().toText());
 	}
 	
+	@Test
+	public void testUnquotedAttributes() {
+		String snippet = "<p>Text <img alt=Picture src=a.gif> <a href=x.html title='Link'>link</a></p>";
+		ArrayList<Event> events = getEvents(snippet);
+		assertEquals("Picture", FilterTestDriver.getTextUnit(events, 1).getSource().getFirstContent().toText());
+		assertEquals("<p>Text <img alt=\"Picture\" src=\"a.gif\"> <a href=\"x.html\" title=\"Link\">link</a></p>",
+			generateOutput(events, snippet, locEN));
+	}
+
+	@Test
+	public void testDeclaredEncodingInStream() throws Exception {
+		// The input is decoded once, with the declared encoding
+		String snippet = "<html><head><meta charset=\"utf-8\"></head><p>\u00a9 2017</p></html>";
+		htmlFilter.open(new RawDocument(new ByteArrayInputStream(snippet.getBytes("UTF-8")), "windows-1252", locEN));
+		ArrayList<Event> events = new ArrayList<Event>();
+		while (htmlFilter.hasNext()) {
+			events.add(htmlFilter.next());
+		}
+		htmlFilter.close();
+		assertEquals("\u00a9 2017", FilterTestDriver.getTextUnit(events, 1).getSource().getFirstContent().toText());
+	}
+
 	@Test
 	public void testInlineCdata() {
 		URL originalParameters = parameters;
@@ -217,6 +217,24 @@ public abstract class ITSFilter implements IFilter {
 		itsEng.applyRules(dataCategoriesToApply);
 	}
 	
+	/**
+	 * Creates the ITS engine for the document and loads the rules of the parameters.
+	 * This is called after {@link #initializeDocument()}.
+	 * @param variables the ITS variables to use (can be null).
+	 * @return the new ITS engine.
+	 */
+	protected ITSEngine createEngine (Map<String, String> variables) {
+		//ITSEngine engine = new ITSEngine(doc, input.getInputURI(), isHTML5, variables);
+		ITSEngine engine = new ITSEngine(doc, input.getInputURI(), input.getEncoding(), isHTML5, variables);
+		// Load the parameters file if there is one
+		if ( params != null ) {
+			if ( params.getDocument() != null ) {
+				engine.addExternalRules(params.getDocument(), params.getURI());
+			}
+		}
+		return engine;
+	}
+	
 	abstract protected void createStartDocumentSkeleton (StartDocument startDoc);
 
 	@Override
@@ -244,14 +262,7 @@ public abstract class ITSFilter implements IFilter {
 		}
 
 		// Create the ITS engine
-		//trav = new ITSEngine(doc, input.getInputURI(), isHTML5, variables);
-		trav = new ITSEngine(doc, input.getInputURI(), input.getEncoding(), isHTML5, variables);
-		// Load the parameters file if there is one
-		if ( params != null ) {
-			if ( params.getDocument() != null ) {
-				trav.addExternalRules(params.getDocument(), params.getURI());
-			}
-		}
+		trav = createEngine(variables);
 		
 		applyRules(trav);
 
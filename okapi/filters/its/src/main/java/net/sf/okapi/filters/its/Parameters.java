@@ -71,6 +71,7 @@ public class Parameters implements IParameters {
 	private static final String EXTRACTIFONLYCODES = "extractIfOnlyCodes";
 	private static final String MAPANNOTATIONS = "mapAnnotations";
 	private static final String INLINECDATA = "inlineCdata";
+	private static final String STREAMING = "streaming";
 
 	private static final String OKP_NS_PREFIX = "okp";
 	private static final String OKP_NS_URI = "okapi-framework:xmlfilter-options";
@@ -103,6 +104,7 @@ public class Parameters implements IParameters {
 	public boolean extractIfOnlyCodes;
 	public boolean mapAnnotations;
 	public boolean inlineCdata;
+	public boolean streaming; // XML only: HTML5 documents are always loaded in memory
 	// Write-only parameters
 	public boolean quoteModeDefined;
 	public int quoteMode;
@@ -283,6 +285,7 @@ public class Parameters implements IParameters {
 		extractIfOnlyCodes = true;
 		mapAnnotations = true;
 		inlineCdata = false;
+		streaming = false;
 		simplifierRules = null;
 	}
 
@@ -341,6 +344,7 @@ public class Parameters implements IParameters {
 		if ( name.equals(EXTRACTIFONLYCODES) ) return extractIfOnlyCodes;
 		if ( name.equals(MAPANNOTATIONS) ) return mapAnnotations;
 		if ( name.equals(INLINECDATA) ) return inlineCdata;
+		if ( name.equals(STREAMING) ) return streaming;
 
 		return false;
 	}
@@ -360,6 +364,7 @@ public class Parameters implements IParameters {
 		else if ( name.equals(EXTRACTIFONLYCODES) ) extractIfOnlyCodes = value;
 		else if ( name.equals(MAPANNOTATIONS) ) mapAnnotations = value;
 		else if ( name.equals(INLINECDATA) ) inlineCdata = value;
+		else if ( name.equals(STREAMING) ) streaming = value;
 	}
 
 	@Override
@@ -438,6 +443,10 @@ public class Parameters implements IParameters {
 			if ( !Util.isEmpty(tmp) ) {
 				inlineCdata = tmp.equals("yes");
 			}
+			tmp = elem.getAttribute(STREAMING);
+			if ( !Util.isEmpty(tmp) ) {
+				streaming = tmp.equals("yes");
+			}
 		}
 		// Get the code finder data
 		nl = (NodeList)xpath.evaluate("//"+OKP_NS_PREFIX+":codeFinder", doc, XPathConstants.NODESET);
@@ -40,6 +40,8 @@ import net.sf.okapi.filters.its.ITSFilter;
 import net.sf.okapi.filters.its.Parameters;
 import nu.validator.htmlparser.dom.HtmlDocumentBuilder;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -48,8 +50,14 @@ import org.w3c.its.ITSEngine;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+/**
+ * Implements the IFilter interface for HTML5 documents with ITS markup.
+ * <p>The document is always loaded in memory: HTML5 is not XML and cannot be read
+ * by the streaming engine of the XML filter, so the <code>streaming</code> option is ignored.
+ */
 @UsingParameters(Parameters.class)
 public class HTML5Filter extends ITSFilter {
+	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public HTML5Filter () {
 		super(true, MimeTypeMapper.HTML_MIME_TYPE, IProcessor.DC_ALL);
@@ -112,6 +120,9 @@ public class HTML5Filter extends ITSFilter {
 			input.setEncoding(encoding);
 		}
 		
+		if ( params.streaming ) {
+			logger.debug("Streaming is not supported for HTML5 documents, loading the document in memory.");
+		}
 		HtmlDocumentBuilder docBuilder = new HtmlDocumentBuilder();
 		try {
 			InputSource is = new InputSource(input.getStream());
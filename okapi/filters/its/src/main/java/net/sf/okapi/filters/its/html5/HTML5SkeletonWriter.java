@@ -87,9 +87,20 @@ public class HTML5SkeletonWriter extends GenericSkeletonWriter {
 		StringBuilder tmp = new StringBuilder();
 		String text = tf.getCodedText();
 		Code code;
+		// Without layer, each run of text between codes is encoded in a single call
+		boolean encodeRuns = (( encoderManager != null ) && ( layer == null ));
+		int runStart = -1;
 		char ch;
 		for ( int i=0; i<text.length(); i++ ) {
 			ch = text.charAt(i);
+			if ( encodeRuns && !TextFragment.isMarker(ch) ) {
+				if ( runStart == -1 ) runStart = i;
+				continue;
+			}
+			if ( runStart != -1 ) {
+				encoderManager.encode(text, runStart, i, context, tmp);
+				runStart = -1;
+			}
 			switch ( ch ) {
 			case TextFragment.MARKER_OPENING:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
@@ -161,6 +172,9 @@ public class HTML5SkeletonWriter extends GenericSkeletonWriter {
 				break;
 			}
 		}
+		if ( runStart != -1 ) {
+			encoderManager.encode(text, runStart, text.length(), context, tmp);
+		}
 		return tmp.toString();
 	}
 
@@ -19,6 +19,7 @@ package net.sf.okapi.filters.xml;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -44,12 +45,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.DocumentType;
 import org.w3c.its.IProcessor;
+import org.w3c.its.ITSEngine;
+import org.w3c.its.StreamingITSEngine;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 @UsingParameters(Parameters.class)
 public class XMLFilter extends ITSFilter {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
+	private DocumentBuilder docBuilder;
+	private BOMNewlineEncodingDetector detector;
+	private StreamingITSEngine streamingEngine;
 
 	public XMLFilter () {
 		super(false, MimeTypeMapper.XML_MIME_TYPE, IProcessor.DC_ALL);
@@ -172,7 +179,6 @@ public class XMLFilter extends ITSFilter {
 		fact.setExpandEntityReferences(!params.protectEntityRef);
 		
 		// Create the document builder
-		DocumentBuilder docBuilder;
 		try {
 			docBuilder = fact.newDocumentBuilder();
 		}
@@ -184,7 +190,7 @@ public class XMLFilter extends ITSFilter {
 		docBuilder.setEntityResolver(new DefaultEntityResolver());
 
 		input.setEncoding("UTF-8"); // Default for XML, other should be auto-detected
-		BOMNewlineEncodingDetector detector = new BOMNewlineEncodingDetector(input.getStream(), input.getEncoding());
+		detector = new BOMNewlineEncodingDetector(input.getStream(), input.getEncoding());
 		detector.detectBom();
 		
 		if ( detector.isAutodetected() ) {
@@ -199,6 +205,24 @@ public class XMLFilter extends ITSFilter {
 			input.setEncoding(encoding);
 		}
 		
+		if ( params.streaming ) {
+			// The document is read by the engine, this holds only the nodes being processed
+			doc = docBuilder.newDocument();
+			encoding = detector.getEncoding();
+		}
+		else {
+			parseDocument();
+		}
+		srcLang = input.getSourceLocale();
+		if ( srcLang == null ) throw new NullPointerException("Source language not set.");
+		hasUTF8BOM = detector.hasUtf8Bom();
+		lineBreak = detector.getNewlineType().toString();
+		if ( input.getInputURI() != null ) {
+			docName = input.getInputURI().getPath();
+		}
+	}
+
+	private void parseDocument () {
 		try {
 			InputSource is = new InputSource(input.getStream());
 			doc = docBuilder.parse(is);
@@ -214,13 +238,41 @@ public class XMLFilter extends ITSFilter {
 		if ( encoding == null ) {
 			encoding = detector.getEncoding();
 		}
-		srcLang = input.getSourceLocale();
-		if ( srcLang == null ) throw new NullPointerException("Source language not set.");
-		hasUTF8BOM = detector.hasUtf8Bom();
-		lineBreak = detector.getNewlineType().toString();
-		if ( input.getInputURI() != null ) {
-			docName = input.getInputURI().getPath();
+	}
+
+	@Override
+	protected ITSEngine createEngine (Map<String, String> variables) {
+		streamingEngine = null;
+		if ( !params.streaming ) {
+			return super.createEngine(variables);
+		}
+		
+		StreamingITSEngine engine = new StreamingITSEngine(doc, input.getInputURI(),
+			input.getEncoding(), variables, !params.protectEntityRef);
+		if ( params.getDocument() != null ) {
+			engine.addExternalRules(params.getDocument(), params.getURI());
+		}
+		if ( !engine.scan(input.getStream()) ) {
+			// Some rules or some markup need the whole document: fall back to the DOM
+			logger.debug("Cannot process this document in streaming mode, loading it in memory.");
+			parseDocument();
+			return super.createEngine(variables);
+		}
+		engine.setInput(input.getStream());
+		if ( engine.getInputEncoding() != null ) {
+			encoding = engine.getInputEncoding();
+		}
+		streamingEngine = engine;
+		return engine;
+	}
+
+	@Override
+	public void close () {
+		if ( streamingEngine != null ) {
+			streamingEngine.close();
+			streamingEngine = null;
 		}
+		super.close();
 	}
 
 	@Override
@@ -16,10 +16,13 @@
 
 package net.sf.okapi.filters.xml;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.encoder.EncoderContext;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.INameable;
 import net.sf.okapi.common.resource.Property;
@@ -68,25 +71,63 @@ public class XMLSkeletonWriter extends GenericSkeletonWriter {
 		}
 
 		// Output text with in-line codes
-		List<Code> codes = tf.getCodes();
 		StringBuilder tmp = new StringBuilder();
+		try {
+			appendCodedContent(tf, locToUse, context, tmp);
+		}
+		catch ( IOException e ) { // Not thrown by StringBuilder
+			throw new OkapiIOException(e);
+		}
+		return tmp.toString();
+	}
+
+	@Override
+	protected void writeContent (TextFragment tf,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( !tf.hasCode() ) {
+			output.write(getContent(tf, locToUse, context));
+			return;
+		}
+		appendCodedContent(tf, locToUse, context, output);
+	}
+
+	private void appendCodedContent (TextFragment tf,
+		LocaleId locToUse,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		List<Code> codes = tf.getCodes();
 		String text = tf.getCodedText();
 		Code code;
+		// Without layer, each run of text between codes is encoded in a single call
+		boolean encodeRuns = (( encoderManager != null ) && ( layer == null ));
+		int runStart = -1;
 		char ch;
 		for ( int i=0; i<text.length(); i++ ) {
 			ch = text.charAt(i);
+			if ( encodeRuns && !TextFragment.isMarker(ch) ) {
+				if ( runStart == -1 ) runStart = i;
+				continue;
+			}
+			if ( runStart != -1 ) {
+				encoderManager.encode(text, runStart, i, context, output);
+				runStart = -1;
+			}
 			switch ( ch ) {
 			case TextFragment.MARKER_OPENING:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			case TextFragment.MARKER_CLOSING:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			case TextFragment.MARKER_ISOLATED:
 				code = codes.get(TextFragment.toIndex(text.charAt(++i)));
-				tmp.append(expandCodeContent(code, locToUse, context));
+				output.append(expandCodeContent(code, locToUse, context));
 				break;
 			default:
 				if ( Character.isHighSurrogate(ch) ) {
@@ -94,18 +135,18 @@ public class XMLSkeletonWriter extends GenericSkeletonWriter {
 					i++; // Skip low-surrogate
 					if ( encoderManager == null ) {
 						if ( layer == null ) {
-							tmp.append(new String(Character.toChars(cp)));
+							output.append(new String(Character.toChars(cp)));
 						}
 						else {
-							tmp.append(layer.encode(cp, context));
+							output.append(layer.encode(cp, context));
 						}
 					}
 					else {
 						if ( layer == null ) {
-							tmp.append(encoderManager.encode(cp, context));
+							output.append(encoderManager.encode(cp, context));
 						}
 						else {
-							tmp.append(layer.encode(
+							output.append(layer.encode(
 								encoderManager.encode(cp, context),
 								context));
 						}
@@ -114,18 +155,18 @@ public class XMLSkeletonWriter extends GenericSkeletonWriter {
 				else { // Non-supplemental case
 					if ( encoderManager == null ) {
 						if ( layer == null ) {
-							tmp.append(ch);
+							output.append(ch);
 						}
 						else {
-							tmp.append(layer.encode(ch, context));
+							output.append(layer.encode(ch, context));
 						}
 					}
 					else {
 						if ( layer == null ) {
-							tmp.append(encoderManager.encode(ch, context));
+							output.append(encoderManager.encode(ch, context));
 						}
 						else {
-							tmp.append(layer.encode(
+							output.append(layer.encode(
 								encoderManager.encode(ch, context),
 								context));
 						}
@@ -134,9 +175,12 @@ public class XMLSkeletonWriter extends GenericSkeletonWriter {
 				break;
 			}
 		}
-		return tmp.toString();
+		if ( runStart != -1 ) {
+			encoderManager.encode(text, runStart, text.length(), context, output);
+		}
 	}
 
+
 	/**
 	 * Overrides the default behaviour to force "UTF-16" as declared XML encoding (not "UTF-16LE"
 	 * or "UTF-16BE").
@@ -67,7 +67,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	public static final String    ITS_VERSION2 = "2.0";
 	public static final String    ITS_MIMETYPE = "application/its+xml";
 	
-	private static final String   FLAGNAME = "\u00ff"; // Name of the user-data property that holds the flags
+	static final String           FLAGNAME = "\u00ff"; // Name of the user-data property that holds the flags
 	private static final String   FLAGSEP  = "\u001c"; // Separator between data categories
 	
 	// Must have '?' as many times as there are FP_XXX entries +1
@@ -76,7 +76,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 		+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP
 		+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP+FLAGSEP;
 
-	private static final String PTRFLAG = "@@"; // Flag for pointer-type attributes
+	static final String PTRFLAG = "@@"; // Flag for pointer-type attributes
 	private static final String REFFLAG = "\u0011"; // Flag for Ref vs non-Ref attributes
 
 	// Pattern to validate the pattern allowed for Allowed Characters (thanks you Shaun, Jirka and Pablo!)
@@ -145,10 +145,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 	private static final int      FP_LQRATING_DATA         = 15;
 	private static final int      FP_PROVENANCE_DATA       = 16;
 	
-	private static final int      INFOTYPE_TEXT            = 0;
-	private static final int      INFOTYPE_REF             = 1;
-	private static final int      INFOTYPE_POINTER         = 2;
-	private static final int      INFOTYPE_REFPOINTER      = 3;
+	static final int              INFOTYPE_TEXT            = 0;
+	static final int              INFOTYPE_REF             = 1;
+	static final int              INFOTYPE_POINTER         = 2;
+	static final int              INFOTYPE_REFPOINTER      = 3;
 
 	private final boolean isHTML5;
 	
@@ -161,14 +161,15 @@ public class ITSEngine implements IProcessor, ITraversal {
 	private NSContextManager nsContext;
 	private VariableResolver varResolver;
 	private XPathFactory xpFact;
-	private ArrayList<ITSRule> rules;
+	ArrayList<ITSRule> rules;
 	private Node node;
 	private boolean startTraversal;
-	private Stack<ITSTrace> trace;
+	Stack<ITSTrace> trace;
 	private boolean backTracking;
-	private boolean translatableAttributeRuleTriggered;
-	private boolean targetPointerRuleTriggered;
-	private String version;
+	boolean translatableAttributeRuleTriggered;
+	boolean targetPointerRuleTriggered;
+	String version;
+	Node scope; // If not null: only this element and its attributes can be flagged
 	private IdGenerator idGen;
 	private IdGenerator idProvGen;
 	private String docEncoding;
@@ -1327,7 +1328,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	 * Updates the trace stack.
 	 * @param newNode Node to update 
 	 */
-	private void updateTraceData (Node newNode) {
+	void updateTraceData (Node newNode) {
 		// Check if the node is null
 		if ( newNode == null ) return;
 
@@ -1487,25 +1488,32 @@ public class ITSEngine implements IProcessor, ITraversal {
 	}
 
 	private void processGlobalRules (long dataCategories) {
+		// Compile any internal global rules
+		clearInternalGlobalRules();
+		
+		if ( isHTML5 ) {
+			// For HTML5 global rules are in scripts
+			compileRulesInScripts(doc, docURI, true);
+		}
+		else { // Process normal in-document global rules
+			compileRules(doc, docURI, true);
+		}
+		
+		// Now apply the compiled rules
+		applyGlobalRules(dataCategories);
+	}
+	
+	/**
+	 * Applies the compiled global rules to the whole document.
+	 * @param dataCategories the data categories to apply.
+	 */
+	void applyGlobalRules (long dataCategories) {
 		try {
-			// Compile any internal global rules
-			clearInternalGlobalRules();
-			
-			if ( isHTML5 ) {
-				// For HTML5 global rules are in scripts
-				compileRulesInScripts(doc, docURI, true);
-			}
-			else { // Process normal in-document global rules
-				compileRules(doc, docURI, true);
-			}
-			
-			// Now apply the compiled rules
 		    for ( ITSRule rule : rules ) {
 		    	// Check if we should apply this type of rule
 		    	if ( (dataCategories & rule.ruleType) == 0 ) continue;
 		    	
 		    	// Get the selected nodes for the rule
-		    	String data1;
 				XPathExpression expr = xpath.compile(rule.selector);
 				NodeList NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				
@@ -1514,311 +1522,322 @@ public class ITSEngine implements IProcessor, ITraversal {
 				// always override existing flag. override should be set to false
 				// only for default attributes.
 				for ( int i=0; i<NL.getLength(); i++ ) {
-					if ( rule.ruleType == IProcessor.DC_TRANSLATE ) {
-						setFlag(NL.item(i), FP_TRANSLATE, (rule.flag ? 'y' : 'n'), true);
-						// Set the hasTranslatabledattribute flag if it is an attribute node
-						if ( NL.item(i).getNodeType() == Node.ATTRIBUTE_NODE ) {
-							if ( rule.flag ) translatableAttributeRuleTriggered = true; 
-						}
-						if ( rule.idValue != null ) { // For deprecated extension
-							setFlag(NL.item(i), FP_IDVALUE_DATA, resolveExpressionAsString(NL.item(i), rule.idValue), true);							
-						}
-						// For deprecated extension
-						setFlag(NL.item(i), FP_PRESERVEWS, (rule.preserveWS ? 'y' : '?'), true);
-					}
-					
-					else if ( rule.ruleType == IProcessor.DC_DIRECTIONALITY ) {
-						setFlag(NL.item(i), FP_DIRECTIONALITY,
-							String.valueOf(rule.value).charAt(0), true);
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_WITHINTEXT ) {
-						setFlag(NL.item(i), FP_WITHINTEXT,
-							String.valueOf(rule.value).charAt(0), true);
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_TERMINOLOGY ) {
-						if ( !rule.flag ) {
-							setFlag(NL.item(i), FP_TERMINOLOGY, 'n', true);
-							continue;
-						}
-						// Else it is term='yes'
-						GenericAnnotations anns = rule.annotations;
-						GenericAnnotation ann = anns.getAnnotations(GenericAnnotationType.TERM).get(0);
-						// Get and resolve 'info/infoRef'
-						data1 = ann.getString(GenericAnnotationType.TERM_INFO);
-						if ( data1 != null ) {
-							if ( data1.startsWith(PTRFLAG) ) {
-								data1 = data1.substring(PTRFLAG.length());
-								boolean ref = data1.startsWith(REFFLAG);
-								if ( ref ) data1 = data1.substring(REFFLAG.length());
-								data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(NL.item(i), data1);
-							}
-							ann.setString(GenericAnnotationType.TERM_INFO, data1);
-						}
-						// There is no confidence in the global rule
-						// Decorate the node with the resolved annotation data
-						setFlag(NL.item(i), FP_TERMINOLOGY, 'y', true);
-						setFlag(NL.item(i), FP_TERMINOLOGY_DATA, anns.toString(), true);
-					}
+					applyGlobalRule(rule, NL.item(i));
+				}
+		    }
+		}
+		catch ( XPathExpressionException e ) {
+			throw new OkapiException(e);
+		}
+	}
+	
+	/**
+	 * Applies the action of a given global rule to one of the nodes it selects.
+	 * @param rule the rule to apply.
+	 * @param target the node selected by the rule.
+	 */
+	void applyGlobalRule (ITSRule rule,
+		Node target)
+	{
+		String data1;
+		if ( rule.ruleType == IProcessor.DC_TRANSLATE ) {
+			setFlag(target, FP_TRANSLATE, (rule.flag ? 'y' : 'n'), true);
+			// Set the hasTranslatabledattribute flag if it is an attribute node
+			if ( target.getNodeType() == Node.ATTRIBUTE_NODE ) {
+				if ( rule.flag ) translatableAttributeRuleTriggered = true; 
+			}
+			if ( rule.idValue != null ) { // For deprecated extension
+				setFlag(target, FP_IDVALUE_DATA, resolveExpressionAsString(target, rule.idValue), true);							
+			}
+			// For deprecated extension
+			setFlag(target, FP_PRESERVEWS, (rule.preserveWS ? 'y' : '?'), true);
+		}
+		
+		else if ( rule.ruleType == IProcessor.DC_DIRECTIONALITY ) {
+			setFlag(target, FP_DIRECTIONALITY,
+				String.valueOf(rule.value).charAt(0), true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_WITHINTEXT ) {
+			setFlag(target, FP_WITHINTEXT,
+				String.valueOf(rule.value).charAt(0), true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_TERMINOLOGY ) {
+			if ( !rule.flag ) {
+				setFlag(target, FP_TERMINOLOGY, 'n', true);
+				return;
+			}
+			// Else it is term='yes'
+			GenericAnnotations anns = rule.annotations;
+			GenericAnnotation ann = anns.getAnnotations(GenericAnnotationType.TERM).get(0);
+			// Get and resolve 'info/infoRef'
+			data1 = ann.getString(GenericAnnotationType.TERM_INFO);
+			if ( data1 != null ) {
+				if ( data1.startsWith(PTRFLAG) ) {
+					data1 = data1.substring(PTRFLAG.length());
+					boolean ref = data1.startsWith(REFFLAG);
+					if ( ref ) data1 = data1.substring(REFFLAG.length());
+					data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(target, data1);
+				}
+				ann.setString(GenericAnnotationType.TERM_INFO, data1);
+			}
+			// There is no confidence in the global rule
+			// Decorate the node with the resolved annotation data
+			setFlag(target, FP_TERMINOLOGY, 'y', true);
+			setFlag(target, FP_TERMINOLOGY_DATA, anns.toString(), true);
+		}
 
-					else if ( rule.ruleType == IProcessor.DC_LOCNOTE ) {
-						boolean setFlag = true;
-						switch ( rule.infoType ) {
-						case INFOTYPE_TEXT:
-							setFlag(NL.item(i), FP_LOCNOTE_DATA, rule.info, true);
-							break;
-						case INFOTYPE_POINTER:
-							String value = resolvePointer(NL.item(i), rule.info);
-							if ( value != null ) setFlag(NL.item(i), FP_LOCNOTE_DATA, value, true);
-							else setFlag = false;
-							break;
-						case INFOTYPE_REF:
-							setFlag(NL.item(i), FP_LOCNOTE_DATA, GenericAnnotationType.REF_PREFIX+rule.info, true);
-							break;
-						case INFOTYPE_REFPOINTER:
-							value = resolvePointer(NL.item(i), rule.info);
-							if ( value != null ) setFlag(NL.item(i), FP_LOCNOTE_DATA, GenericAnnotationType.REF_PREFIX+value, true);
-							else  setFlag = false;
-							break;
-						}
-						if ( setFlag ) {
-							setFlag(NL.item(i), FP_LOCNOTE, (rule.flag ? 'a' : 'd'), true); // Type alert or description
-						}
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_LANGINFO ) {
-						String value = resolvePointer(NL.item(i), rule.info);
-						if ( value != null ) {
-							setFlag(NL.item(i), FP_LANGINFO, 'y', true);
-							setFlag(NL.item(i), FP_LANGINFO_DATA, value, true);
-						}
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_EXTERNALRES ) {
-						String value = resolvePointer(NL.item(i), rule.info);
-						if ( value != null ) {
-							setFlag(NL.item(i), FP_EXTERNALRES, 'y', true);
-							setFlag(NL.item(i), FP_EXTERNALRES_DATA, value, true);
-						}
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_LOCFILTER ) {
-						setFlag(NL.item(i), FP_LOCFILTER, 'y', true);
-						setFlag(NL.item(i), FP_LOCFILTER_DATA, rule.info, true);
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_PRESERVESPACE ) {
-						// For new ITS 2.0 rule, but deprecated extension still supported in DC_PRESERVESPACE case
-						setFlag(NL.item(i), FP_PRESERVEWS, (rule.preserveWS ? 'y' : '?'), true);
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_IDVALUE ) {
-						// For new ITS 2.0 rule, but deprecated extension still supported in DC_TRANSLATE case
-						if ( rule.idValue != null ) {
-							setFlag(NL.item(i), FP_IDVALUE_DATA, resolveExpressionAsString(NL.item(i), rule.idValue), true);							
-						}
+		else if ( rule.ruleType == IProcessor.DC_LOCNOTE ) {
+			boolean setFlag = true;
+			switch ( rule.infoType ) {
+			case INFOTYPE_TEXT:
+				setFlag(target, FP_LOCNOTE_DATA, rule.info, true);
+				break;
+			case INFOTYPE_POINTER:
+				String value = resolvePointer(target, rule.info);
+				if ( value != null ) setFlag(target, FP_LOCNOTE_DATA, value, true);
+				else setFlag = false;
+				break;
+			case INFOTYPE_REF:
+				setFlag(target, FP_LOCNOTE_DATA, GenericAnnotationType.REF_PREFIX+rule.info, true);
+				break;
+			case INFOTYPE_REFPOINTER:
+				value = resolvePointer(target, rule.info);
+				if ( value != null ) setFlag(target, FP_LOCNOTE_DATA, GenericAnnotationType.REF_PREFIX+value, true);
+				else  setFlag = false;
+				break;
+			}
+			if ( setFlag ) {
+				setFlag(target, FP_LOCNOTE, (rule.flag ? 'a' : 'd'), true); // Type alert or description
+			}
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_LANGINFO ) {
+			String value = resolvePointer(target, rule.info);
+			if ( value != null ) {
+				setFlag(target, FP_LANGINFO, 'y', true);
+				setFlag(target, FP_LANGINFO_DATA, value, true);
+			}
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_EXTERNALRES ) {
+			String value = resolvePointer(target, rule.info);
+			if ( value != null ) {
+				setFlag(target, FP_EXTERNALRES, 'y', true);
+				setFlag(target, FP_EXTERNALRES_DATA, value, true);
+			}
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_LOCFILTER ) {
+			setFlag(target, FP_LOCFILTER, 'y', true);
+			setFlag(target, FP_LOCFILTER_DATA, rule.info, true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_PRESERVESPACE ) {
+			// For new ITS 2.0 rule, but deprecated extension still supported in DC_PRESERVESPACE case
+			setFlag(target, FP_PRESERVEWS, (rule.preserveWS ? 'y' : '?'), true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_IDVALUE ) {
+			// For new ITS 2.0 rule, but deprecated extension still supported in DC_TRANSLATE case
+			if ( rule.idValue != null ) {
+				setFlag(target, FP_IDVALUE_DATA, resolveExpressionAsString(target, rule.idValue), true);							
+			}
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_DOMAIN ) {
+			List<String> list = resolveExpressionAsList(target, rule.info);
+			if ( list.isEmpty() ) return;
+			// Map the values and build the final string
+			StringBuilder tmp = new StringBuilder();
+			List<String> values = null;
+			for ( String item : list ) {
+				values = fromDomainItemToValues(item, rule.map, values);
+			}
+			for ( String value : values ) {
+				if ( tmp.length() > 0 ) tmp.append(", ");
+				tmp.append(value);
+			}
+			setFlag(target, FP_DOMAIN, 'y', true);
+			setFlag(target, FP_DOMAIN_DATA, tmp.toString(), true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_TARGETPOINTER ) {
+			targetPointerRuleTriggered = true;
+			setFlag(target, FP_TARGETPOINTER, 'y', true);
+			setFlag(target, FP_TARGETPOINTER_DATA, rule.info, true);							
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_LOCQUALITYISSUE ) {
+			GenericAnnotations anns = null;
+			String oriRef = data1 = rule.info;
+			if ( data1 != null ) {
+				if ( rule.infoType == INFOTYPE_REFPOINTER) {
+					oriRef = data1 = resolvePointer(target, data1);
+				}
+				// Fetch the stand-off data
+				anns = fetchLocQualityStandoffData(data1, oriRef);
+			}
+			else {
+				// Not a stand-off annotation
+				GenericAnnotation ann = rule.annotations.getAnnotations(GenericAnnotationType.LQI).get(0);
+				anns = createLQIAnnotationSet();
+				GenericAnnotation upd = addIssueItem(anns);
+				// Get and resolve 'type'
+				data1 = ann.getString(GenericAnnotationType.LQI_TYPE);
+				if ( data1 != null ) {
+					if ( data1.startsWith(PTRFLAG) ) {
+						data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
 					}
-						
-					else if ( rule.ruleType == IProcessor.DC_DOMAIN ) {
-						List<String> list = resolveExpressionAsList(NL.item(i), rule.info);
-						if ( list.isEmpty() ) continue;
-						// Map the values and build the final string
-						StringBuilder tmp = new StringBuilder();
-						List<String> values = null;
-						for ( String item : list ) {
-							values = fromDomainItemToValues(item, rule.map, values);
-						}
-						for ( String value : values ) {
-							if ( tmp.length() > 0 ) tmp.append(", ");
-							tmp.append(value);
-						}
-						setFlag(NL.item(i), FP_DOMAIN, 'y', true);
-						setFlag(NL.item(i), FP_DOMAIN_DATA, tmp.toString(), true);
+					upd.setString(GenericAnnotationType.LQI_TYPE, data1);
+				}
+				// Get and resolve 'comment'
+				data1 = ann.getString(GenericAnnotationType.LQI_COMMENT);
+				if ( data1 != null ) {
+					if ( data1.startsWith(PTRFLAG) ) {
+						data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
 					}
-						
-					else if ( rule.ruleType == IProcessor.DC_TARGETPOINTER ) {
-						targetPointerRuleTriggered = true;
-						setFlag(NL.item(i), FP_TARGETPOINTER, 'y', true);
-						setFlag(NL.item(i), FP_TARGETPOINTER_DATA, rule.info, true);							
+					upd.setString(GenericAnnotationType.LQI_COMMENT, data1);
+				}
+				// Get and resolve 'severity'
+				data1  = ann.getString(GenericAnnotationType.LQI_SEVERITY);
+				if ( data1 != null ) {
+					if ( data1.startsWith(PTRFLAG) ) {
+						data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
 					}
-						
-					else if ( rule.ruleType == IProcessor.DC_LOCQUALITYISSUE ) {
-						GenericAnnotations anns = null;
-						String oriRef = data1 = rule.info;
-						if ( data1 != null ) {
-							if ( rule.infoType == INFOTYPE_REFPOINTER) {
-								oriRef = data1 = resolvePointer(NL.item(i), data1);
-							}
-							// Fetch the stand-off data
-							anns = fetchLocQualityStandoffData(data1, oriRef);
-						}
-						else {
-							// Not a stand-off annotation
-							GenericAnnotation ann = rule.annotations.getAnnotations(GenericAnnotationType.LQI).get(0);
-							anns = createLQIAnnotationSet();
-							GenericAnnotation upd = addIssueItem(anns);
-							// Get and resolve 'type'
-							data1 = ann.getString(GenericAnnotationType.LQI_TYPE);
-							if ( data1 != null ) {
-								if ( data1.startsWith(PTRFLAG) ) {
-									data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-								}
-								upd.setString(GenericAnnotationType.LQI_TYPE, data1);
-							}
-							// Get and resolve 'comment'
-							data1 = ann.getString(GenericAnnotationType.LQI_COMMENT);
-							if ( data1 != null ) {
-								if ( data1.startsWith(PTRFLAG) ) {
-									data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-								}
-								upd.setString(GenericAnnotationType.LQI_COMMENT, data1);
-							}
-							// Get and resolve 'severity'
-							data1  = ann.getString(GenericAnnotationType.LQI_SEVERITY);
-							if ( data1 != null ) {
-								if ( data1.startsWith(PTRFLAG) ) {
-									data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-								}
-								// Convert the string to the Double value
-								upd.setDouble(GenericAnnotationType.LQI_SEVERITY, Double.parseDouble(data1));
-							}
-							// Get and resolve 'profile reference'
-							data1 = ann.getString(GenericAnnotationType.LQI_PROFILEREF);
-							if ( data1 != null ) {
-								if ( data1.startsWith(PTRFLAG) ) {
-									data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-								}
-								upd.setString(GenericAnnotationType.LQI_PROFILEREF, data1);
-							}
-							// Get and resolve 'enabled'
-							data1 = ann.getString(GenericAnnotationType.LQI_ENABLED);
-							if ( data1 != null ) {
-								if ( data1.startsWith(PTRFLAG) ) {
-									data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-								}
-								upd.setBoolean(GenericAnnotationType.LQI_ENABLED, data1.equals("yes"));
-							}
-						}
-						validateLQIData(anns);
-						// Decorate the node with the resolved annotation data
-						setFlag(NL.item(i), FP_LQISSUE, 'y', true);
-						setFlag(NL.item(i), FP_LQISSUE_DATA, anns.toString(), true);
+					// Convert the string to the Double value
+					upd.setDouble(GenericAnnotationType.LQI_SEVERITY, Double.parseDouble(data1));
+				}
+				// Get and resolve 'profile reference'
+				data1 = ann.getString(GenericAnnotationType.LQI_PROFILEREF);
+				if ( data1 != null ) {
+					if ( data1.startsWith(PTRFLAG) ) {
+						data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
 					}
-
-					else if ( rule.ruleType == IProcessor.DC_PROVENANCE ) {
-						GenericAnnotations anns = null;
-						String oriRef = data1 = rule.info;
-						if ( data1 != null ) {
-							if ( rule.infoType == INFOTYPE_REFPOINTER) {
-								oriRef = data1 = resolvePointer(NL.item(i), data1);
-							}
-							// Fetch the stand-off data
-							anns = fetchProvenanceStandoffData(data1, oriRef);
-						}
-						else {
-							// Not a stand-off annotation
-							// There is no pointer to resove, we can re-use the same annotation
-							anns = rule.annotations;
-						}
-						// Decorate the node with the resolved annotation data
-						setFlag(NL.item(i), FP_PROVENANCE, 'y', true);
-						setFlag(NL.item(i), FP_PROVENANCE_DATA, anns.toString(), true);
+					upd.setString(GenericAnnotationType.LQI_PROFILEREF, data1);
+				}
+				// Get and resolve 'enabled'
+				data1 = ann.getString(GenericAnnotationType.LQI_ENABLED);
+				if ( data1 != null ) {
+					if ( data1.startsWith(PTRFLAG) ) {
+						data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
 					}
+					upd.setBoolean(GenericAnnotationType.LQI_ENABLED, data1.equals("yes"));
+				}
+			}
+			validateLQIData(anns);
+			// Decorate the node with the resolved annotation data
+			setFlag(target, FP_LQISSUE, 'y', true);
+			setFlag(target, FP_LQISSUE_DATA, anns.toString(), true);
+		}
+
+		else if ( rule.ruleType == IProcessor.DC_PROVENANCE ) {
+			GenericAnnotations anns = null;
+			String oriRef = data1 = rule.info;
+			if ( data1 != null ) {
+				if ( rule.infoType == INFOTYPE_REFPOINTER) {
+					oriRef = data1 = resolvePointer(target, data1);
+				}
+				// Fetch the stand-off data
+				anns = fetchProvenanceStandoffData(data1, oriRef);
+			}
+			else {
+				// Not a stand-off annotation
+				// There is no pointer to resove, we can re-use the same annotation
+				anns = rule.annotations;
+			}
+			// Decorate the node with the resolved annotation data
+			setFlag(target, FP_PROVENANCE, 'y', true);
+			setFlag(target, FP_PROVENANCE_DATA, anns.toString(), true);
+		}
 
-					else if ( rule.ruleType == IProcessor.DC_TEXTANALYSIS ) {
+		else if ( rule.ruleType == IProcessor.DC_TEXTANALYSIS ) {
 //TODO: handle case where rule is applied to several nodes (pointers must be reset)						
-						GenericAnnotations anns = rule.annotations;
-						GenericAnnotation ann = anns.getAnnotations(GenericAnnotationType.TA).get(0);
-						// Get and resolve 'classRef'
-						data1 = ann.getString(GenericAnnotationType.TA_CLASS);
-						if ( data1 != null ) {
-							if ( data1.startsWith(PTRFLAG) ) {
-								data1 = data1.substring(PTRFLAG.length());
-								boolean ref = data1.startsWith(REFFLAG);
-								if ( ref ) data1 = data1.substring(REFFLAG.length());
-								data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(NL.item(i), data1);
-							}
-							ann.setString(GenericAnnotationType.TA_CLASS, data1);
-						}
-						// Get and resolve 'source'
-						data1 = ann.getString(GenericAnnotationType.TA_SOURCE);
-						if ( data1 != null ) {
-							if ( data1.startsWith(PTRFLAG) ) {
-								data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-							}
-							ann.setString(GenericAnnotationType.TA_SOURCE, data1);
-						}
-						// Get and resolve 'ident'
-						data1  = ann.getString(GenericAnnotationType.TA_IDENT);
-						if ( data1 != null ) {
-							if ( data1.startsWith(PTRFLAG) ) {
-								data1 = data1.substring(PTRFLAG.length());
-								boolean ref = data1.startsWith(REFFLAG);
-								if ( ref ) data1 = data1.substring(REFFLAG.length());
-								data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(NL.item(i), data1);
-							}
-							ann.setString(GenericAnnotationType.TA_IDENT, data1);
-						}
-						
-						// Confidence is not in global rules
-						
-						// Decorate the node with the resolved annotation data
-						setFlag(NL.item(i), FP_TEXTANALYSIS, 'y', true);
-						setFlag(NL.item(i), FP_TEXTANALYSIS_DATA, anns.toString(), true);
-					}
-
-					else if ( rule.ruleType == IProcessor.DC_ALLOWEDCHARS ) {
-						if ( rule.infoType == INFOTYPE_POINTER ) {
-							data1 = resolvePointer(NL.item(i), rule.info);
-						}
-						else { // Direct expression
-							data1 = rule.info;
-						}
-						setFlag(NL.item(i), FP_ALLOWEDCHARS, 'y', true);
-						setFlag(NL.item(i), FP_ALLOWEDCHARS_DATA, data1, true);
-					}
-						
-					else if ( rule.ruleType == IProcessor.DC_STORAGESIZE ) {
-						GenericAnnotation ann = rule.annotations.getFirstAnnotation(GenericAnnotationType.STORAGESIZE);
-						// Create the clone (pointers need to be re-computed, etc.)
-						GenericAnnotations anns = new GenericAnnotations();
-						GenericAnnotation upd = anns.add(GenericAnnotationType.STORAGESIZE);
-						// Get and resolve 'size'
-						data1 = ann.getString(GenericAnnotationType.STORAGESIZE_SIZE);
-						if ( data1.startsWith(PTRFLAG) ) {
-							data1 = resolvePointer(NL.item(i), data1.substring(PTRFLAG.length()));
-						}
-						upd.setInteger(GenericAnnotationType.STORAGESIZE_SIZE, Integer.parseInt(data1));
-						// Get and resolve 'encoding'
-						data1 = ann.getString(GenericAnnotationType.STORAGESIZE_ENCODING);
-						if ( data1.startsWith(PTRFLAG) ) {
-							data1 = data1.substring(PTRFLAG.length());
-							data1 = resolvePointer(NL.item(i), data1);
-						}
-						upd.setString(GenericAnnotationType.STORAGESIZE_ENCODING, data1);
-						// Copy the line-break info (it's never a pointer)
-						upd.setString(GenericAnnotationType.STORAGESIZE_LINEBREAK, ann.getString(GenericAnnotationType.STORAGESIZE_LINEBREAK));
-						// set the flag and data
-						setFlag(NL.item(i), FP_STORAGESIZE, 'y', true);
-						setFlag(NL.item(i), FP_STORAGESIZE_DATA, anns.toString(), true);
-					}
+			GenericAnnotations anns = rule.annotations;
+			GenericAnnotation ann = anns.getAnnotations(GenericAnnotationType.TA).get(0);
+			// Get and resolve 'classRef'
+			data1 = ann.getString(GenericAnnotationType.TA_CLASS);
+			if ( data1 != null ) {
+				if ( data1.startsWith(PTRFLAG) ) {
+					data1 = data1.substring(PTRFLAG.length());
+					boolean ref = data1.startsWith(REFFLAG);
+					if ( ref ) data1 = data1.substring(REFFLAG.length());
+					data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(target, data1);
+				}
+				ann.setString(GenericAnnotationType.TA_CLASS, data1);
+			}
+			// Get and resolve 'source'
+			data1 = ann.getString(GenericAnnotationType.TA_SOURCE);
+			if ( data1 != null ) {
+				if ( data1.startsWith(PTRFLAG) ) {
+					data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
+				}
+				ann.setString(GenericAnnotationType.TA_SOURCE, data1);
+			}
+			// Get and resolve 'ident'
+			data1  = ann.getString(GenericAnnotationType.TA_IDENT);
+			if ( data1 != null ) {
+				if ( data1.startsWith(PTRFLAG) ) {
+					data1 = data1.substring(PTRFLAG.length());
+					boolean ref = data1.startsWith(REFFLAG);
+					if ( ref ) data1 = data1.substring(REFFLAG.length());
+					data1 = (ref ? GenericAnnotationType.REF_PREFIX : "")+resolvePointer(target, data1);
+				}
+				ann.setString(GenericAnnotationType.TA_IDENT, data1);
+			}
+			
+			// Confidence is not in global rules
+			
+			// Decorate the node with the resolved annotation data
+			setFlag(target, FP_TEXTANALYSIS, 'y', true);
+			setFlag(target, FP_TEXTANALYSIS_DATA, anns.toString(), true);
+		}
 
-					else if ( rule.ruleType == IProcessor.DC_SUBFILTER ) {
-						setFlag(NL.item(i), FP_SUBFILTER, 'y', true);
-						setFlag(NL.item(i), FP_SUBFILTER_DATA, rule.info, true);
-					}
-					
-					else if ( rule.ruleType == IProcessor.DC_MTCONFIDENCE ) {
-						setFlag(NL.item(i), FP_MTCONFIDENCE, 'y', true);
-						setFlag(NL.item(i), FP_MTCONFIDENCE_DATA, rule.info, true);
-					}
+		else if ( rule.ruleType == IProcessor.DC_ALLOWEDCHARS ) {
+			if ( rule.infoType == INFOTYPE_POINTER ) {
+				data1 = resolvePointer(target, rule.info);
+			}
+			else { // Direct expression
+				data1 = rule.info;
+			}
+			setFlag(target, FP_ALLOWEDCHARS, 'y', true);
+			setFlag(target, FP_ALLOWEDCHARS_DATA, data1, true);
+		}
+			
+		else if ( rule.ruleType == IProcessor.DC_STORAGESIZE ) {
+			GenericAnnotation ann = rule.annotations.getFirstAnnotation(GenericAnnotationType.STORAGESIZE);
+			// Create the clone (pointers need to be re-computed, etc.)
+			GenericAnnotations anns = new GenericAnnotations();
+			GenericAnnotation upd = anns.add(GenericAnnotationType.STORAGESIZE);
+			// Get and resolve 'size'
+			data1 = ann.getString(GenericAnnotationType.STORAGESIZE_SIZE);
+			if ( data1.startsWith(PTRFLAG) ) {
+				data1 = resolvePointer(target, data1.substring(PTRFLAG.length()));
+			}
+			upd.setInteger(GenericAnnotationType.STORAGESIZE_SIZE, Integer.parseInt(data1));
+			// Get and resolve 'encoding'
+			data1 = ann.getString(GenericAnnotationType.STORAGESIZE_ENCODING);
+			if ( data1.startsWith(PTRFLAG) ) {
+				data1 = data1.substring(PTRFLAG.length());
+				data1 = resolvePointer(target, data1);
+			}
+			upd.setString(GenericAnnotationType.STORAGESIZE_ENCODING, data1);
+			// Copy the line-break info (it's never a pointer)
+			upd.setString(GenericAnnotationType.STORAGESIZE_LINEBREAK, ann.getString(GenericAnnotationType.STORAGESIZE_LINEBREAK));
+			// set the flag and data
+			setFlag(target, FP_STORAGESIZE, 'y', true);
+			setFlag(target, FP_STORAGESIZE_DATA, anns.toString(), true);
+		}
 
-				}
-		    }
+		else if ( rule.ruleType == IProcessor.DC_SUBFILTER ) {
+			setFlag(target, FP_SUBFILTER, 'y', true);
+			setFlag(target, FP_SUBFILTER_DATA, rule.info, true);
 		}
-		catch ( XPathExpressionException e ) {
-			throw new OkapiException(e);
+		
+		else if ( rule.ruleType == IProcessor.DC_MTCONFIDENCE ) {
+			setFlag(target, FP_MTCONFIDENCE, 'y', true);
+			setFlag(target, FP_MTCONFIDENCE_DATA, rule.info, true);
 		}
 	}
 	
@@ -1893,7 +1912,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 //		return values;
 //	}
 	
-	private void processLocalRules (long dataCategories) {
+	void processLocalRules (long dataCategories) {
 		XPathExpression expr;
 		NodeList NL;
 		Attr attr;
@@ -3492,6 +3511,20 @@ public class ITSEngine implements IProcessor, ITraversal {
 		return list;
 	}
 			
+	/**
+	 * Indicates if a given node is outside the element currently being flagged.
+	 * There is no such restriction when the scope is not set.
+	 * @param node the node to check.
+	 * @return true if the node must not be flagged.
+	 */
+	private boolean isOutOfScope (Node node) {
+		if ( scope == null ) return false;
+		if ( node.getNodeType() == Node.ATTRIBUTE_NODE ) {
+			return (((Attr)node).getOwnerElement() != scope);
+		}
+		return (node != scope);
+	}
+	
 	/**
 	 * Sets the flag for a given node.
 	 * @param node The node to flag.
@@ -3505,6 +3538,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 		char value,
 		boolean override)
 	{
+		if ( isOutOfScope(node) ) return;
 		StringBuilder data = new StringBuilder();
 		if ( node.getUserData(FLAGNAME) == null )
 			data.append(FLAGDEFAULTDATA);
@@ -3529,6 +3563,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 		String value,
 		boolean override)
 	{
+		if ( isOutOfScope(node) ) return;
 		StringBuilder data = new StringBuilder();
 		if ( node.getUserData(FLAGNAME) == null )
 			data.append(FLAGDEFAULTDATA);
@@ -0,0 +1,725 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package org.w3c.its;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.DTD;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+import net.sf.okapi.common.Namespaces;
+import net.sf.okapi.common.annotation.GenericAnnotationType;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * ITS engine that reads the document with StAX instead of working on a fully loaded DOM.
+ * <p>The DOM document passed to the constructor holds only the nodes being traversed:
+ * the ancestors of the current node and the last child read for each of them (except
+ * within the elements flagged as terms, where the whole content is kept for the filter).
+ * The traversal returns the same nodes, in the same order, as {@link ITSEngine}.
+ * <p>The global rules are applied to each element when it is read. This is possible only
+ * for the rules that do not point to other parts of the document and whose selectors can
+ * be evaluated with the element, its attributes and its ancestors.
+ * Call {@link #scan(InputStream)} to know whether a given document can be processed this way.
+ */
+public class StreamingITSEngine extends ITSEngine {
+
+	private static final Pattern DOCTYPE = Pattern.compile("<!DOCTYPE\\s+([^\\s>\\[]+)"
+		+ "(\\s+PUBLIC\\s+(\"[^\"]*\"|'[^']*')\\s+(\"[^\"]*\"|'[^']*')|\\s+SYSTEM\\s+(\"[^\"]*\"|'[^']*'))?\\s*>");
+	private static final Pattern STEP = Pattern.compile("@?(\\*|[\\w.\\-]+(:(\\*|[\\w.\\-]+))?)");
+	private static final Pattern PREDICATE_TOKEN = Pattern.compile("\\s+|@\\*|@[\\w.\\-]+(:[\\w.\\-]+)?"
+		+ "|\\$[\\w.\\-]+(:[\\w.\\-]+)?|!=|=|\\(|\\)|,|''|-?\\d+(\\.\\d+)?"
+		+ "|(and|or)(?![\\w.\\-:])|(not|contains|starts-with)(?=\\s*\\()");
+	private static final QName XML_BASE = new QName(Namespaces.XML_NS_URI, "base");
+	private static final QName XLINK_HREF = new QName(Namespaces.XLINK_NS_URI, "href");
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private final Document doc;
+	private final URI docURI;
+	private final XMLInputFactory factory;
+	private final Map<String, XPathExpression> selectors;
+	private final Stack<Node> kept;
+	private XMLEventReader reader;
+	private String inputEncoding;
+	private long dataCategories;
+	private String rulesVersion;
+	private List<String> docVersions;
+	private Node node;
+	private boolean startTraversal;
+	private boolean backTracking;
+
+	/**
+	 * Creates a new StreamingITSEngine object.
+	 * @param doc the empty document where the nodes being traversed are created.
+	 * @param docURI the URI of the document to process.
+	 * @param docEncoding the default encoding for the document.
+	 * @param map map of the parameters key-value pairs (can be null).
+	 * @param expandEntityReferences true to replace the entity references by their content,
+	 * false to report them as entity reference nodes.
+	 */
+	public StreamingITSEngine (Document doc,
+		URI docURI,
+		String docEncoding,
+		Map<String, String> map,
+		boolean expandEntityReferences)
+	{
+		super(doc, docURI, docEncoding, false, map);
+		this.doc = doc;
+		this.docURI = docURI;
+		selectors = new HashMap<String, XPathExpression>();
+		kept = new Stack<Node>();
+		docVersions = new ArrayList<String>();
+
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, expandEntityReferences);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		// The JDK parser reports CDATA sections as plain characters unless told otherwise
+		if ( factory.isPropertySupported(REPORT_CDATA) ) {
+			factory.setProperty(REPORT_CDATA, true);
+		}
+		// Like the DOM parser of the filter: never load the external DTD
+		factory.setXMLResolver(new XMLResolver() {
+			@Override
+			public Object resolveEntity (String publicID,
+				String systemID,
+				String baseURI,
+				String namespace)
+			{
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		});
+	}
+
+	/**
+	 * Reads the whole document once to get what must be known before the traversal:
+	 * the XML and document type declarations, the ITS version and the in-document global rules.
+	 * The in-document rules are compiled after the rules already added, so any external rules
+	 * must be added before calling this method.
+	 * @param input the stream of the document (it is closed by this method).
+	 * @return true if the document can be processed in streaming mode, false if it needs
+	 * to be loaded in a DOM and processed with {@link ITSEngine}.
+	 */
+	public boolean scan (InputStream input) {
+		XMLEventReader scanner = null;
+		try {
+			scanner = factory.createXMLEventReader(input);
+			Document rulesDoc = null;
+			Node rulesNode = null; // Where to copy the content of the current its:rules element
+			Stack<List<Namespace>> namespaces = new Stack<List<Namespace>>();
+			Stack<Boolean> hasBase = new Stack<Boolean>();
+			docVersions.clear();
+
+			while ( scanner.hasNext() ) {
+				XMLEvent event = scanner.nextEvent();
+				switch ( event.getEventType() ) {
+				case XMLStreamConstants.START_DOCUMENT:
+					StartDocument sd = (StartDocument)event;
+					if ( sd.getVersion() != null ) doc.setXmlVersion(sd.getVersion());
+					doc.setXmlStandalone(sd.standaloneSet() && sd.isStandalone());
+					break;
+				case XMLStreamConstants.DTD:
+					if ( !createDocumentType(((DTD)event).getDocumentTypeDeclaration()) ) {
+						return false; // Internal subset: entities and default attributes need the DOM parser
+					}
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					StartElement start = event.asStartElement();
+					List<Namespace> list = new ArrayList<Namespace>();
+					Iterator<?> iter = start.getNamespaces();
+					while ( iter.hasNext() ) {
+						list.add((Namespace)iter.next());
+					}
+					namespaces.push(list);
+					hasBase.push((start.getAttributeByName(XML_BASE) != null)
+						|| ( !hasBase.isEmpty() && hasBase.peek() ));
+					collectVersion(start);
+
+					String localName = start.getName().getLocalPart();
+					boolean isITS = Namespaces.ITS_NS_URI.equals(start.getName().getNamespaceURI());
+					if ( rulesNode != null ) {
+						rulesNode = rulesNode.appendChild(createElement(rulesDoc, start));
+					}
+					else if ( isITS && "rules".equals(localName) ) {
+						if ( hasBase.peek() && ( start.getAttributeByName(XLINK_HREF) != null )) {
+							return false; // The location of linked rules would depend on xml:base
+						}
+						if ( rulesDoc == null ) {
+							rulesDoc = doc.getImplementation().createDocument(null, "rules", null);
+						}
+						// Declare all the namespaces in scope, they may be used in the selectors
+						Element elem = createElement(rulesDoc, start);
+						for ( List<Namespace> decls : namespaces ) {
+							for ( Namespace ns : decls ) {
+								declareNamespace(elem, ns);
+							}
+						}
+						rulesNode = rulesDoc.getDocumentElement().appendChild(elem);
+					}
+					else if ( isITS && ( "locQualityIssues".equals(localName) || "provenanceRecords".equals(localName) )) {
+						return false; // Stand-off markup can be referred to from anywhere in the document
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					namespaces.pop();
+					hasBase.pop();
+					if ( rulesNode != null ) {
+						rulesNode = rulesNode.getParentNode();
+						if ( rulesNode == rulesDoc.getDocumentElement() ) rulesNode = null;
+					}
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if ( rulesNode != null ) {
+						rulesNode.appendChild(rulesDoc.createTextNode(event.asCharacters().getData()));
+					}
+					break;
+				}
+			}
+
+			// Compile the in-document rules after the external ones
+			rulesVersion = null;
+			if ( rulesDoc != null ) {
+				version = "0"; // The versions of external and in-document rules are not compared
+				addExternalRules(rulesDoc, docURI);
+				rulesVersion = version;
+			}
+
+			for ( ITSRule rule : rules ) {
+				if ( !isStreamable(rule) ) return false;
+			}
+			return true;
+		}
+		catch ( XMLStreamException e ) {
+			throw new OkapiIOException("Parsing error.\n"+e.getMessage(), e);
+		}
+		finally {
+			close(scanner, input);
+		}
+	}
+
+	/**
+	 * Sets the stream of the document to traverse.
+	 * This must be called after {@link #scan(InputStream)} has returned true.
+	 * @param input the stream of the document (it is closed by {@link #close()}).
+	 */
+	public void setInput (InputStream input) {
+		try {
+			XMLStreamReader streamReader = factory.createXMLStreamReader(input);
+			inputEncoding = streamReader.getEncoding();
+			reader = factory.createXMLEventReader(streamReader);
+		}
+		catch ( XMLStreamException e ) {
+			throw new OkapiIOException("Parsing error.\n"+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the encoding used to read the document.
+	 * @return the encoding used to read the document, or null if it is not known.
+	 */
+	public String getInputEncoding () {
+		return inputEncoding;
+	}
+
+	/**
+	 * Closes the document being traversed.
+	 */
+	public void close () {
+		if ( reader != null ) {
+			close(reader, null);
+			reader = null;
+		}
+	}
+
+	@Override
+	public void applyRules (long dataCategories) {
+		this.dataCategories = dataCategories;
+		// The rules are applied to each element during the traversal, so the only
+		// translatable attributes we can know of are the ones of the rules
+		translatableAttributeRuleTriggered = false;
+		for ( ITSRule rule : rules ) {
+			if (( rule.ruleType == IProcessor.DC_TRANSLATE ) && rule.flag
+				&& ( (dataCategories & rule.ruleType) != 0 ) && selectsAttributes(rule.selector) ) {
+				translatableAttributeRuleTriggered = true;
+			}
+		}
+		targetPointerRuleTriggered = false;
+		version = (rulesVersion != null) ? rulesVersion : getDocumentVersion();
+	}
+
+	@Override
+	public void startTraversal () {
+		node = null;
+		trace = new Stack<ITSTrace>();
+		kept.clear();
+		startTraversal = true;
+	}
+
+	@Override
+	public boolean backTracking () {
+		return backTracking;
+	}
+
+	@Override
+	public Node nextNode () {
+		try {
+			if ( startTraversal ) {
+				startTraversal = false;
+				// Set the initial trace with default behaviors
+				ITSTrace startTrace = new ITSTrace();
+				backTracking = false;
+				startTrace.translate = true;
+				startTrace.isChildDone = true;
+				trace.push(startTrace); // For first child
+				node = readNode(doc);
+				trace.push(new ITSTrace(trace.peek(), false));
+				visit(node);
+				return node;
+			}
+			if ( node == null ) return null;
+
+			backTracking = false;
+			if ( !trace.peek().isChildDone && node.hasChildNodes() ) {
+				// Change the flag for the current node
+				ITSTrace tmp = new ITSTrace(trace.peek(), true);
+				trace.pop();
+				trace.push(tmp);
+				// The first child has been read with its parent
+				node = node.getFirstChild();
+				trace.push(new ITSTrace(trace.peek(), false));
+				visit(node);
+				return node;
+			}
+
+			Node parent = node.getParentNode();
+			Node tmpNode = (parent == null) ? null : readNode(parent);
+			if ( tmpNode == null ) {
+				node = parent;
+				trace.pop();
+				backTracking = true;
+				if ( !kept.isEmpty() && ( kept.peek() == node )) kept.pop();
+				updateTraceData(node);
+			}
+			else {
+				node = tmpNode;
+				trace.pop(); // Remove flag for previous sibling
+				trace.push(new ITSTrace(trace.peek(), false)); // Set new flag for new sibling
+				visit(node);
+			}
+			return node;
+		}
+		catch ( XMLStreamException e ) {
+			throw new OkapiIOException("Parsing error.\n"+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Indicates if a given selector can be evaluated on the elements as they are read.
+	 * This is the case when each step is an element or attribute name test and the
+	 * predicates test only attributes and variables.
+	 * @param selector the XPath expression to check.
+	 * @return true if the selector can be used in streaming mode.
+	 */
+	static boolean isStreamableSelector (String selector) {
+		// Separate the predicates from the path, and empty the literals
+		StringBuilder path = new StringBuilder();
+		List<String> predicates = new ArrayList<String>();
+		StringBuilder predicate = null;
+		char quote = 0;
+		for ( int i=0; i<selector.length(); i++ ) {
+			char ch = selector.charAt(i);
+			StringBuilder current = (predicate == null) ? path : predicate;
+			if ( quote != 0 ) {
+				if ( ch == quote ) {
+					current.append("''");
+					quote = 0;
+				}
+				continue;
+			}
+			switch ( ch ) {
+			case '\'':
+			case '"':
+				quote = ch;
+				break;
+			case '[':
+				if ( predicate != null ) return false; // Nested predicates
+				predicate = new StringBuilder();
+				break;
+			case ']':
+				if ( predicate == null ) return false;
+				predicates.add(predicate.toString());
+				predicate = null;
+				break;
+			default:
+				current.append(ch);
+			}
+		}
+		if (( quote != 0 ) || ( predicate != null )) return false;
+
+		for ( String step : path.toString().split("[/|]") ) {
+			step = step.trim();
+			if ( step.isEmpty() ) continue;
+			if ( step.equals(".") || step.equals("..") || !STEP.matcher(step).matches() ) return false;
+		}
+		for ( String text : predicates ) {
+			if ( !isStreamablePredicate(text) ) return false;
+		}
+		return true;
+	}
+
+	private static boolean isStreamablePredicate (String text) {
+		Matcher m = PREDICATE_TOKEN.matcher(text);
+		String last = null;
+		int pos = 0;
+		while ( pos < text.length() ) {
+			m.region(pos, text.length());
+			if ( !m.lookingAt() ) return false;
+			String token = m.group();
+			pos = m.end();
+			if ( token.trim().isEmpty() ) continue;
+			char first = token.charAt(0);
+			if (( first == '-' || Character.isDigit(first) ) && !"=".equals(last) && !"!=".equals(last) ) {
+				return false; // Position: depends on the preceding siblings
+			}
+			last = token;
+		}
+		return (last != null);
+	}
+
+	private static boolean selectsAttributes (String selector) {
+		return selector.replaceAll("\\[[^\\]]*\\]", "").contains("@");
+	}
+
+	private boolean isStreamable (ITSRule rule) {
+		if ( !isStreamableSelector(rule.selector) ) return false;
+		if ( rule.ruleType == IProcessor.DC_TRANSLATE ) {
+			return (rule.idValue == null);
+		}
+		if (( rule.ruleType == IProcessor.DC_DIRECTIONALITY )
+			|| ( rule.ruleType == IProcessor.DC_WITHINTEXT )
+			|| ( rule.ruleType == IProcessor.DC_LOCFILTER )
+			|| ( rule.ruleType == IProcessor.DC_PRESERVESPACE )
+			|| ( rule.ruleType == IProcessor.DC_MTCONFIDENCE ) ) {
+			return true;
+		}
+		if ( rule.ruleType == IProcessor.DC_LOCNOTE ) {
+			return (( rule.infoType == INFOTYPE_TEXT ) || ( rule.infoType == INFOTYPE_REF ));
+		}
+		if ( rule.ruleType == IProcessor.DC_ALLOWEDCHARS ) {
+			return (rule.infoType != INFOTYPE_POINTER);
+		}
+		if ( rule.ruleType == IProcessor.DC_TERMINOLOGY ) {
+			if ( !rule.flag ) return true;
+			String info = rule.annotations.getAnnotations(GenericAnnotationType.TERM).get(0)
+				.getString(GenericAnnotationType.TERM_INFO);
+			return (( info == null ) || !info.startsWith(PTRFLAG));
+		}
+		// Other rules use pointers, stand-off markup, or the content of the nodes
+		return false;
+	}
+
+	private void collectVersion (StartElement start) {
+		Attribute attr = start.getAttributeByName(new QName(Namespaces.ITS_NS_URI, "version"));
+		if (( attr == null ) && Namespaces.ITS_NS_URI.equals(start.getName().getNamespaceURI())
+			&& "span".equals(start.getName().getLocalPart()) ) {
+			attr = start.getAttributeByName(new QName("version"));
+		}
+		if ( attr != null ) docVersions.add(attr.getValue());
+	}
+
+	private String getDocumentVersion () {
+		if ( docVersions.isEmpty() ) {
+			// No version detected: we assume it's a 2.0 behavior
+			return ITS_VERSION2;
+		}
+		String value = docVersions.get(0);
+		if ( !value.equals(ITS_VERSION1) && !value.equals(ITS_VERSION2) ) {
+			throw new ITSException(String.format("Invalid or missing ITS version (\"%s\")", value));
+		}
+		if ( docVersions.size() > 1 ) {
+			throw new ITSException("More than one ITS version is defined in this document.");
+		}
+		return value;
+	}
+
+	private boolean createDocumentType (String declaration) {
+		Matcher m = DOCTYPE.matcher(declaration.trim());
+		if ( !m.matches() ) return false;
+		String publicId = unquote(m.group(3));
+		String systemId = unquote((m.group(4) != null) ? m.group(4) : m.group(5));
+		doc.appendChild(doc.getImplementation().createDocumentType(m.group(1), publicId, systemId));
+		return true;
+	}
+
+	private String unquote (String text) {
+		if ( text == null ) return null;
+		return text.substring(1, text.length()-1);
+	}
+
+	/**
+	 * Applies the global and local rules to a new element and updates the trace.
+	 * @param newNode the node that has just been read (can be null).
+	 */
+	private void visit (Node newNode) {
+		if (( newNode != null ) && ( newNode.getNodeType() == Node.ELEMENT_NODE )) {
+			flagElement((Element)newNode);
+			updateTraceData(newNode);
+			// The filter gets the text of the terms at their end
+			if ( newNode.hasChildNodes() && getTerm(null) ) {
+				kept.push(newNode);
+			}
+			return;
+		}
+		updateTraceData(newNode);
+	}
+
+	private void flagElement (Element elem) {
+		scope = elem;
+		try {
+			for ( ITSRule rule : rules ) {
+				if ( (dataCategories & rule.ruleType) == 0 ) continue;
+				XPathExpression expr = selectors.get(rule.selector);
+				if ( expr == null ) {
+					expr = getXPath().compile(rule.selector);
+					selectors.put(rule.selector, expr);
+				}
+				// The document holds only the element, its ancestors and their last children
+				NodeList list = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
+				for ( int i=0; i<list.getLength(); i++ ) {
+					Node target = list.item(i);
+					if ( target == elem ) {
+						applyGlobalRule(rule, target);
+					}
+					else if (( target.getNodeType() == Node.ATTRIBUTE_NODE )
+						&& ( ((Attr)target).getOwnerElement() == elem )) {
+						applyGlobalRule(rule, target);
+					}
+				}
+			}
+			// The local rules look at the whole document: skip them when they cannot apply
+			if ( hasLocalMarkup(elem) ) {
+				processLocalRules(dataCategories);
+			}
+		}
+		catch ( XPathExpressionException e ) {
+			throw new OkapiException(e);
+		}
+		finally {
+			scope = null;
+		}
+	}
+
+	private boolean hasLocalMarkup (Element elem) {
+		if ( Namespaces.ITS_NS_URI.equals(elem.getNamespaceURI()) ) return true;
+		NamedNodeMap attrs = elem.getAttributes();
+		for ( int i=0; i<attrs.getLength(); i++ ) {
+			String ns = attrs.item(i).getNamespaceURI();
+			if ( Namespaces.ITS_NS_URI.equals(ns) || Namespaces.XML_NS_URI.equals(ns) ) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the next child of a given node and appends it to that node.
+	 * The first child of an element is read with the element.
+	 * @param parent the node where to append the new node.
+	 * @return the new node, or null if the end of the parent has been reached.
+	 * @throws XMLStreamException if an error occurs.
+	 */
+	private Node readNode (Node parent)
+		throws XMLStreamException
+	{
+		while ( reader.hasNext() ) {
+			XMLEvent event = reader.nextEvent();
+			Node newNode;
+			switch ( event.getEventType() ) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element elem = createElement(doc, event.asStartElement());
+				append(parent, elem);
+				// Read the first child now, so hasChildNodes() is set when the element is visited
+				readNode(elem);
+				return elem;
+			case XMLStreamConstants.END_ELEMENT:
+				return null;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if ( parent == doc ) continue; // No text nodes outside the root
+				Characters chars = event.asCharacters();
+				if ( chars.isCData() ) {
+					newNode = doc.createCDATASection(chars.getData());
+					break;
+				}
+				// The parser may report a text in several parts
+				StringBuilder text = new StringBuilder(chars.getData());
+				while ( reader.peek() != null && reader.peek().isCharacters()
+					&& !reader.peek().asCharacters().isCData() ) {
+					text.append(reader.nextEvent().asCharacters().getData());
+				}
+				if ( text.length() == 0 ) continue;
+				newNode = doc.createTextNode(text.toString());
+				break;
+			case XMLStreamConstants.COMMENT:
+				newNode = doc.createComment(((Comment)event).getText());
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				ProcessingInstruction pi = (ProcessingInstruction)event;
+				newNode = doc.createProcessingInstruction(pi.getTarget(),
+					(pi.getData() == null) ? "" : pi.getData());
+				break;
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				newNode = doc.createEntityReference(((EntityReference)event).getName());
+				break;
+			default: // Start and end of document, DTD, etc.
+				continue;
+			}
+			append(parent, newNode);
+			return newNode;
+		}
+		return null;
+	}
+
+	/**
+	 * Appends a node to its parent, removing the previous siblings that are not needed any more.
+	 * @param parent the parent node.
+	 * @param newNode the node to append.
+	 */
+	private void append (Node parent,
+		Node newNode)
+	{
+		if ( kept.isEmpty() ) {
+			Node prev = parent.getLastChild();
+			while (( prev != null ) && ( prev.getNodeType() != Node.DOCUMENT_TYPE_NODE )) {
+				Node tmp = prev.getPreviousSibling();
+				parent.removeChild(prev);
+				removeFlags(prev);
+				prev = tmp;
+			}
+		}
+		parent.appendChild(newNode);
+	}
+
+	private void removeFlags (Node node) {
+		node.setUserData(FLAGNAME, null, null);
+		NamedNodeMap attrs = node.getAttributes();
+		if ( attrs != null ) {
+			for ( int i=0; i<attrs.getLength(); i++ ) {
+				attrs.item(i).setUserData(FLAGNAME, null, null);
+			}
+		}
+		for ( Node child=node.getFirstChild(); child!=null; child=child.getNextSibling() ) {
+			removeFlags(child);
+		}
+	}
+
+	private Element createElement (Document target,
+		StartElement start)
+	{
+		Element elem = target.createElementNS(getURI(start.getName()), getQualifiedName(start.getName()));
+		Iterator<?> iter = start.getNamespaces();
+		while ( iter.hasNext() ) {
+			declareNamespace(elem, (Namespace)iter.next());
+		}
+		iter = start.getAttributes();
+		while ( iter.hasNext() ) {
+			Attribute attr = (Attribute)iter.next();
+			elem.setAttributeNS(getURI(attr.getName()), getQualifiedName(attr.getName()), attr.getValue());
+		}
+		return elem;
+	}
+
+	private void declareNamespace (Element elem,
+		Namespace ns)
+	{
+		if ( ns.isDefaultNamespaceDeclaration() ) {
+			elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE,
+				ns.getNamespaceURI());
+		}
+		else {
+			elem.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+				XMLConstants.XMLNS_ATTRIBUTE+":"+ns.getPrefix(), ns.getNamespaceURI());
+		}
+	}
+
+	private String getURI (QName name) {
+		String uri = name.getNamespaceURI();
+		return (( uri == null ) || uri.isEmpty()) ? null : uri;
+	}
+
+	private String getQualifiedName (QName name) {
+		String prefix = name.getPrefix();
+		if (( prefix == null ) || prefix.isEmpty() ) return name.getLocalPart();
+		return prefix+":"+name.getLocalPart();
+	}
+
+	private void close (XMLEventReader eventReader,
+		InputStream input)
+	{
+		try {
+			if ( eventReader != null ) eventReader.close();
+			if ( input != null ) input.close();
+		}
+		catch ( XMLStreamException e ) {
+			// Nothing to do
+		}
+		catch ( IOException e ) {
+			// Nothing to do
+		}
+	}
+
+}
@@ -68,6 +68,12 @@ public class XMLFilterTest {
 	private FileLocation root;
 	private LocaleId locEN = LocaleId.fromString("en");
 
+	private static final String STREAMING_OPTIONS = "<?xml version=\"1.0\"?>\n"
+		+ "<its:rules version=\"1.0\" xmlns:its=\"http://www.w3.org/2005/11/its\""
+		+ " xmlns:okp=\"okapi-framework:xmlfilter-options\">"
+		+ "<okp:options streaming='yes'/>"
+		+ "</its:rules>";
+
 	@Before
 	public void setUp() {
 		filter = new XMLFilter();
@@ -1442,6 +1448,49 @@ public class XMLFilterTest {
 		assertEquals("{dbName}", codes.get(5).getData());
 	}
 
+	@Test
+	public void testStreamingSameAsDOM () {
+		String snippet = "<?xml version=\"1.0\"?>\n"
+			+ "<doc xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\">"
+			+ "<its:rules version=\"2.0\">"
+			+ "<its:translateRule selector=\"//code\" translate=\"no\"/>"
+			+ "<its:withinTextRule selector=\"//b\" withinText=\"yes\"/>"
+			+ "</its:rules>"
+			+ "<p>Text <b>bold</b> end <code>x</code></p>"
+			+ "<p its:translate=\"no\">Two</p><!-- c --><?pi x?>"
+			+ "<p>&lt;3 <![CDATA[<cdata>]]></p>"
+			+ "</doc>";
+		String expected = FilterTestDriver.generateOutput(getEvents(snippet),
+			filter.getEncoderManager(), locEN);
+		filter = new XMLFilter();
+		filter.getParameters().fromString(STREAMING_OPTIONS);
+		assertEquals(expected, FilterTestDriver.generateOutput(getEvents(snippet),
+			filter.getEncoderManager(), locEN));
+		ITextUnit tu = FilterTestDriver.getTextUnit(getEvents(snippet), 1);
+		assertNotNull(tu);
+		assertEquals("Text <1>bold</1> end ", fmt.setContent(tu.getSource().getFirstContent()).toString());
+	}
+
+	@Test
+	public void testStreamingFallsBackToDOM () {
+		// Pointer rules cannot be applied while streaming
+		String snippet = "<?xml version=\"1.0\"?>\n"
+			+ "<doc xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\">"
+			+ "<its:rules version=\"2.0\">"
+			+ "<its:locNoteRule selector=\"//p\" locNotePointer=\"@n\" locNoteType=\"description\"/>"
+			+ "</its:rules>"
+			+ "<p n=\"note\">Text</p>"
+			+ "</doc>";
+		filter.getParameters().fromString(STREAMING_OPTIONS);
+		ITextUnit tu = FilterTestDriver.getTextUnit(getEvents(snippet), 1);
+		assertNotNull(tu);
+		assertEquals("Text", tu.getSource().toString());
+		GenericAnnotations anns = tu.getAnnotation(GenericAnnotations.class);
+		assertNotNull(anns);
+		assertEquals("note", anns.getFirstAnnotation(GenericAnnotationType.LOCNOTE)
+			.getString(GenericAnnotationType.LOCNOTE_VALUE));
+	}
+
 	private ArrayList<Event> getEvents(String snippet) {
 		IFilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
 		fcMapper.addConfigurations(XMLFilter.class.getCanonicalName());
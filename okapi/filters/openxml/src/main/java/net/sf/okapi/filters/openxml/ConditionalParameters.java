@@ -94,6 +94,12 @@ public class ConditionalParameters extends StringParameters {
 	 */
 	private static final String POWERPOINT_INCLUDED_SLIDE_NUMBERS_ONLY = "bPreferencePowerpointIncludedSlideNumbersOnly";
 
+	/**
+	 * Parse the independent styled text parts (Word parts, slides, drawings, charts) on
+	 * worker threads, and compress the output parts on a background thread.
+	 */
+	private static final String PARALLEL_PART_PROCESSING = "bParallelPartProcessing";
+
 	public final static int MSWORD=1;
 
 	public TreeSet<String> tsComplexFieldDefinitionsToExtract;
@@ -300,6 +306,14 @@ public class ConditionalParameters extends StringParameters {
 		return getBoolean(POWERPOINT_INCLUDED_SLIDE_NUMBERS_ONLY);
 	}
 
+	public void setParallelPartProcessing(boolean bParallelPartProcessing) {
+		setBoolean(PARALLEL_PART_PROCESSING, bParallelPartProcessing);
+	}
+
+	public boolean getParallelPartProcessing() {
+		return getBoolean(PARALLEL_PART_PROCESSING);
+	}
+
 	public void reset () {
 		super.reset();
 		setTranslateDocProperties(true); // Word, Powerpoint, Excel Doc Properties
@@ -323,6 +337,7 @@ public class ConditionalParameters extends StringParameters {
 		setPowerpointIncludedSlideNumbersOnly(false); // Powerpoint: Include tsPowerpointIncludeSlideNumbers only
 		setTranslateExcelDiagramData(false);
         setTranslateExcelDrawings(false);
+		setParallelPartProcessing(false);
         tsComplexFieldDefinitionsToExtract = new TreeSet<>(); // exclude if bPreferenceTranslateExcelExcludeColors
         tsComplexFieldDefinitionsToExtract.add("HYPERLINK");
 		tsExcelExcludedColors = new TreeSet<>(); // exclude if bPreferenceTranslateExcelExcludeColors
@@ -28,6 +28,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -81,6 +86,10 @@ import org.slf4j.LoggerFactory;
  * <p>A call to createFilterWriter returns OpenXMLZipFilterWriter, which is
  * the associated writer for this filter.  OpenXMLZipFilterWriter instantiates
  * OpenXMLContentSkeletonWriter. 
+ * 
+ * <p>When {@link ConditionalParameters#getParallelPartProcessing()} is set, the
+ * styled text parts (Word parts, slides, drawings, charts) are parsed ahead on
+ * worker threads. The events are still sent in the order of the parts.
  */
 @UsingParameters(ConditionalParameters.class)
 public class OpenXMLFilter implements IFilter {
@@ -92,6 +101,23 @@ public class OpenXMLFilter implements IFilter {
 
 	private final static String MIMETYPE = MimeTypeMapper.XML_MIME_TYPE;
 	private final static String documentId = "sd";
+
+	/**
+	 * A part whose handler has been created, and possibly opened on a worker thread.
+	 */
+	private static class PendingPart {
+		final ZipEntry entry;
+		final OpenXMLPartHandler handler;
+		final String subDocumentId;
+		final Future<Event> opening; // null if the part is opened when it is reached
+
+		PendingPart (ZipEntry entry, OpenXMLPartHandler handler, String subDocumentId, Future<Event> opening) {
+			this.entry = entry;
+			this.handler = handler;
+			this.subDocumentId = subDocumentId;
+			this.opening = opening;
+		}
+	}
 	
 	private OpenXMLZipFileProxy zipFile;
 	private File tempFile;
@@ -100,6 +126,7 @@ public class OpenXMLFilter implements IFilter {
 	private URI docURI;
 	private Enumeration<? extends ZipEntry> entries;
 	private int subDocumentId;
+	private String currentSubDocumentId;
 	private LinkedList<Event> queue;
 	private LinkedList<Event> postponedEventsQueue;
 	private LocaleId srcLang;
@@ -116,6 +143,9 @@ public class OpenXMLFilter implements IFilter {
 	private XMLEventFactory eventFactory = XMLEventFactory.newInstance();
 	private RawDocument input;
 	private Map<String, String> sharedStrings;
+	private ExecutorService partExecutor;
+	private int partWindowSize;
+	private LinkedList<PendingPart> pendingParts;
 
 	public OpenXMLFilter () {
 		cparams = new ConditionalParameters(); // DWH 6-16-09
@@ -172,6 +202,12 @@ public class OpenXMLFilter implements IFilter {
 		if (currentPartHandler != null) {
 			currentPartHandler.close(); 
 		}
+
+		if (partExecutor != null) {
+			partExecutor.shutdownNow();
+			partExecutor = null;
+		}
+		pendingParts = null;
 	}
 
 	/**
@@ -421,6 +457,13 @@ public class OpenXMLFilter implements IFilter {
 			}
 			entries = nZipType.getZipFileEntries();
 			subDocumentId = 0;
+			if (cparams.getParallelPartProcessing()) {
+				int threadCount = Runtime.getRuntime().availableProcessors();
+				partExecutor = Executors.newFixedThreadPool(threadCount);
+				// Enough parts ahead to keep the workers busy, without holding the whole document
+				partWindowSize = threadCount * 2;
+				pendingParts = new LinkedList<>();
+			}
 			nextAction = NextAction.NEXTINZIP;
 			StartDocument startDoc = new StartDocument(documentId);
 			startDoc.setName(docURI.getPath());
@@ -466,6 +509,9 @@ public class OpenXMLFilter implements IFilter {
 	 * @throws XMLStreamException
 	 */
 	private Event nextInZipFile () throws IOException, XMLStreamException {
+		if (partExecutor != null) {
+			return nextPendingPart();
+		}
 		String sEntryName; // DWH 2-26-09
 		String sDocType; // DWH 2-26-09
 		while( entries.hasMoreElements() ) { // note that [Content_Types].xml is always first
@@ -479,9 +525,14 @@ public class OpenXMLFilter implements IFilter {
 			// TODO at this point I could stash the yaml params here, if I needed them, as
 			// they will be configured in the part handler (if it uses yaml).
 			nextAction = NextAction.NEXTINSUBDOC;
-			return currentPartHandler.open(documentId, String.valueOf(++subDocumentId), srcLang);
+			currentSubDocumentId = String.valueOf(++subDocumentId);
+			return currentPartHandler.open(documentId, currentSubDocumentId, srcLang);
 		}
 
+		return endOfZipEntries();
+	}
+
+	private Event endOfZipEntries() {
 		if (postponedEventsQueue.isEmpty()) {
 			// No more sub-documents: end of the ZIP document
 			return completeDocument();
@@ -492,6 +543,66 @@ public class OpenXMLFilter implements IFilter {
 		return new Event(EventType.NO_OP);
 	}
 
+	/**
+	 * Same as {@link #nextInZipFile()}, but with the styled text parts of the window
+	 * ahead of the current part opened on worker threads. The handlers are still created,
+	 * and the other parts opened, in the order of the entries on this thread: they may depend
+	 * on the parts before them (e.g. the worksheets on the shared strings).
+	 * @return an appropriate Event for the next XML file in the zip file
+	 */
+	private Event nextPendingPart () throws IOException, XMLStreamException {
+		while (pendingParts.size() < partWindowSize && entries.hasMoreElements()) {
+			ZipEntry nextEntry = entries.nextElement();
+			String sDocType = zipFile.getContentTypes().getContentType("/" + nextEntry.getName());
+			LOGGER.debug("\n\n<<<<<<< {} : {} >>>>>>>", nextEntry.getName(), sDocType);
+
+			final OpenXMLPartHandler handler = nZipType.getHandlerForFile(nextEntry, sDocType);
+			final String nextSubDocumentId = String.valueOf(++subDocumentId);
+			Future<Event> opening = null;
+			if (handler instanceof StyledTextPartHandler) {
+				opening = partExecutor.submit(new Callable<Event>() {
+					@Override
+					public Event call () throws Exception {
+						return handler.open(documentId, nextSubDocumentId, srcLang);
+					}
+				});
+			}
+			pendingParts.add(new PendingPart(nextEntry, handler, nextSubDocumentId, opening));
+		}
+
+		PendingPart part = pendingParts.poll();
+		if (part == null) {
+			return endOfZipEntries();
+		}
+		entry = part.entry;
+		currentPartHandler = part.handler;
+		currentSubDocumentId = part.subDocumentId;
+		nextAction = NextAction.NEXTINSUBDOC;
+		if (part.opening == null) {
+			return currentPartHandler.open(documentId, part.subDocumentId, srcLang);
+		}
+		try {
+			return part.opening.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while reading " + entry.getName(), e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof XMLStreamException) {
+				throw (XMLStreamException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new OkapiException("Error reading " + entry.getName(), cause);
+		}
+	}
+
 	private Event completeDocument() {
 		close();
 		Ending ending = new Ending("ed");
@@ -560,7 +671,7 @@ public class OpenXMLFilter implements IFilter {
 					return event;
 				case END_DOCUMENT:
 					// Change the END_DOCUMENT to END_SUBDOCUMENT
-					Ending ending = new Ending(String.valueOf(subDocumentId));
+					Ending ending = new Ending(currentSubDocumentId);
 					nextAction = NextAction.NEXTINZIP;
 					ZipSkeleton skel = new ZipSkeleton(
 						(GenericSkeleton)event.getResource().getSkeleton(), zipFile.getZip(), entry);
@@ -24,7 +24,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -71,6 +77,9 @@ import static net.sf.okapi.filters.openxml.DocumentType.isRelationshipsPart;
  * this filter writer handles writing out the zip file, and
  * uses OpenXMLContentSkeletonWriter to output the XML documents.
  * 
+ * <p>When {@link ConditionalParameters#getParallelPartProcessing()} is set, the
+ * entries are compressed and written to the output zip file on a background
+ * thread, in the order of the events, while the next parts are being merged.
  */
 
 public class OpenXMLZipFilterWriter implements IFilterWriter {
@@ -96,6 +105,9 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 	private XMLEventFactory eventFactory;
 	private DocumentType docType;
 	private ConditionalParameters cparams;
+	private ExecutorService zipExecutor;
+	private LinkedList<Future<Void>> zipWrites;
+	private byte[] zipBuffer; // used on the zip executor thread only
 
 	/**
 	 * We must have a no-arg constructor for the kit serialization will work.  In this
@@ -134,6 +146,9 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 		InputStream orig = null;
 		OutputStream dest = null;
 		try {
+			// The pending entries still read from the original file
+			finishZipWrites();
+
 			// Closing reference to the original input stream 
 			if (zipOriginal != null){
 				zipOriginal.close();
@@ -310,6 +325,12 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 			
 			// create zip output
 			zipOut = new ZipOutputStream(os);		
+			if (cparams != null && cparams.getParallelPartProcessing()) {
+				// A single thread: the entries of a ZipOutputStream are written one after the other
+				zipExecutor = Executors.newSingleThreadExecutor();
+				zipWrites = new LinkedList<>();
+				zipBuffer = new byte[2048];
+			}
 		}
 		catch ( FileNotFoundException e ) {
 			throw new OkapiFileNotFoundException("Existing file could not be overwritten.", e);
@@ -340,23 +361,15 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 
 			// Copy the entry data
 			try {
-				zipOut.putNextEntry(new ZipEntry(skeleton.getEntry().getName()));
-
 				// If the contents were modified by the filter, write out the new data
 				String modifiedContents = skeleton.getModifiedContents();
 
 				if (modifiedContents != null) {
-					zipOut.write(modifiedContents.getBytes(StandardCharsets.UTF_8));
+					writeZipEntry(skeleton.getEntry().getName(), modifiedContents.getBytes(StandardCharsets.UTF_8), null, null);
 				}
 				else {
-					InputStream input = zipOriginal.getInputStream(skeleton.getEntry());
-					int len;
-					while ( (len = input.read(buffer)) > 0 ) {
-						zipOut.write(buffer, 0, len);
-					}
-					input.close();
+					writeZipEntry(skeleton.getEntry().getName(), null, null, skeleton.getEntry());
 				}
-				zipOut.closeEntry();
 			}
 			catch ( IOException e ) {
 				throw new OkapiIOException("Error writing zip file entry.");
@@ -467,22 +480,96 @@ public class OpenXMLZipFilterWriter implements IFilterWriter {
 			subDocWriter.handleEvent(new Event(EventType.END_DOCUMENT, res));
 			subDocWriter.close();
 
-			// Create the new entry from the temporary output file
-			zipOut.putNextEntry(new ZipEntry(subDocEntry.getName()));
-			InputStream input = new FileInputStream(tempFile); 
-			int len;
-			while ( (len = input.read(buffer)) > 0 ) {
-				zipOut.write(buffer, 0, len);
-			}
-			input.close();
-			zipOut.closeEntry();
-			// Delete the temporary file
-			tempFile.delete();
+			// Create the new entry from the temporary output file, then delete it
+			writeZipEntry(subDocEntry.getName(), null, tempFile, null);
 		}
 		catch ( IOException e ) {
 			throw new OkapiIOException("Error closing zip output file.");
 		}
 	}
+	/**
+	 * Adds an entry to the output zip file, either right away or on the zip executor.
+	 * Exactly one of the sources of the content must be set.
+	 * @param entryName the name of the new entry
+	 * @param contents the content of the entry, or null
+	 * @param contentsFile a temporary file with the content of the entry, deleted once copied, or null
+	 * @param originalEntry the entry of the original file to copy, or null
+	 * @throws IOException if the entry cannot be written
+	 */
+	private void writeZipEntry(final String entryName, final byte[] contents, final File contentsFile,
+			final ZipEntry originalEntry) throws IOException {
+		if (zipExecutor == null) {
+			copyToZip(entryName, contents, contentsFile, originalEntry, buffer);
+			return;
+		}
+		// Report a failure of the previous entries as soon as possible
+		while (!zipWrites.isEmpty() && zipWrites.peek().isDone()) {
+			waitForZipWrite(zipWrites.poll());
+		}
+		zipWrites.add(zipExecutor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				copyToZip(entryName, contents, contentsFile, originalEntry, zipBuffer);
+				return null;
+			}
+		}));
+	}
+
+	private void copyToZip(String entryName, byte[] contents, File contentsFile, ZipEntry originalEntry,
+			byte[] copyBuffer) throws IOException {
+		zipOut.putNextEntry(new ZipEntry(entryName));
+		if (contents != null) {
+			zipOut.write(contents);
+		}
+		else {
+			InputStream input = (contentsFile != null)
+					? new FileInputStream(contentsFile) : zipOriginal.getInputStream(originalEntry);
+			try {
+				int len;
+				while ( (len = input.read(copyBuffer)) > 0 ) {
+					zipOut.write(copyBuffer, 0, len);
+				}
+			}
+			finally {
+				input.close();
+			}
+		}
+		zipOut.closeEntry();
+		if (contentsFile != null) {
+			contentsFile.delete();
+		}
+	}
+
+	/**
+	 * Waits for the entries still being written on the zip executor, then stops it.
+	 */
+	private void finishZipWrites() {
+		if (zipExecutor == null) return;
+		try {
+			while (!zipWrites.isEmpty()) {
+				waitForZipWrite(zipWrites.poll());
+			}
+		}
+		finally {
+			zipExecutor.shutdownNow();
+			zipExecutor = null;
+			zipWrites = null;
+		}
+	}
+
+	private void waitForZipWrite(Future<Void> zipWrite) {
+		try {
+			zipWrite.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OkapiIOException("Interrupted while writing the zip file.", e);
+		}
+		catch (ExecutionException e) {
+			throw new OkapiIOException("Error writing zip file entry.", e.getCause());
+		}
+	}
+
 	public void setParameters(IParameters params) // DWH 7-16-09
 	{
 		this.cparams = (ConditionalParameters)params;
@@ -30,9 +30,8 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -59,7 +58,6 @@ class SharedStringsPartHandler extends GenericPartHandler {
     private XMLEventReader xmlReader;
     private Iterator<Event> filterEventIterator;
     private String docId, subDocId;
-    private File rewrittenStringsTable;
     private int sharedStringIndex = 0;
 
     SharedStringsPartHandler(ConditionalParameters cparams, OpenXMLZipFile zipFile, ZipEntry entry, StyleDefinitions styleDefinitions, SharedStringMap sharedStringMap) {
@@ -111,12 +109,15 @@ class SharedStringsPartHandler extends GenericPartHandler {
         SharedStringsDenormalizer deno = new SharedStringsDenormalizer(zipFile.getEventFactory(), sharedStringMap);
         XMLEventReader reader = zipFile.getInputFactory().createXMLEventReader(
                 new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8));
-        rewrittenStringsTable = File.createTempFile("sharedStrings", ".xml");
-        XMLEventWriter writer = zipFile.getOutputFactory().createXMLEventWriter(
-                new OutputStreamWriter(new FileOutputStream(rewrittenStringsTable), StandardCharsets.UTF_8));
+        // The rewritten table is kept in memory: it is read back right away
+        ByteArrayOutputStream rewrittenStringsTable = new ByteArrayOutputStream();
+        OutputStreamWriter outputWriter = new OutputStreamWriter(rewrittenStringsTable, StandardCharsets.UTF_8);
+        XMLEventWriter writer = zipFile.getOutputFactory().createXMLEventWriter(outputWriter);
         deno.process(reader, writer);
+        outputWriter.flush();
 
-        InputStream is = new BufferedInputStream(new FileInputStream(rewrittenStringsTable));
+        InputStream is = new ByteArrayInputStream(rewrittenStringsTable.toByteArray());
+        rewrittenStringsTable = null;
 
         this.xmlReader = XMLInputFactory.newInstance().createXMLEventReader(is);
         try {
@@ -125,7 +126,6 @@ class SharedStringsPartHandler extends GenericPartHandler {
             if (xmlReader != null) {
                 xmlReader.close();
             }
-            rewrittenStringsTable.delete();
         }
         return createStartSubDocumentEvent(docId, subDocId);
     }
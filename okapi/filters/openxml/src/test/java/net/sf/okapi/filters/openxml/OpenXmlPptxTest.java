@@ -19,13 +19,24 @@ package net.sf.okapi.filters.openxml;
 import static net.sf.okapi.filters.openxml.CodePeekTranslator.locENUS;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.filters.FilterTestDriver;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.RawDocument;
 import org.assertj.core.api.iterable.Extractor;
@@ -352,6 +363,117 @@ public class OpenXmlPptxTest{
 		);
 	}
 
+	@Test
+	public void testParallelPartProcessing() throws Exception {
+		ConditionalParameters params = new ConditionalParameters();
+		params.setTranslatePowerpointMasters(true);
+
+		OpenXMLFilter filter = new OpenXMLFilter();
+		filter.setParameters(params);
+
+		URL url = getClass().getResource("/include-slides-w-smartart.pptx");
+
+		RawDocument doc = new RawDocument(url.toURI(), "UTF-8", locENUS);
+		ArrayList<Event> sequentialEvents = getEvents(filter, doc);
+
+		params.setParallelPartProcessing(true);
+		ArrayList<Event> parallelEvents = getEvents(filter, doc);
+
+		assertThat(parallelEvents).hasSameSizeAs(sequentialEvents);
+		for (int i = 0; i < sequentialEvents.size(); i++) {
+			Event expected = sequentialEvents.get(i);
+			Event actual = parallelEvents.get(i);
+			assertThat(actual.getEventType()).isEqualTo(expected.getEventType());
+			if (expected.getResource() != null) {
+				assertThat(actual.getResource().getId()).isEqualTo(expected.getResource().getId());
+			}
+		}
+		assertThat(FilterTestDriver.filterTextUnits(parallelEvents)).extracting(textUnitSourceExtractor())
+				.containsExactlyElementsOf(extractSources(FilterTestDriver.filterTextUnits(sequentialEvents)));
+	}
+
+	@Test
+	public void testParallelPartProcessingOutput() throws Exception {
+		ConditionalParameters params = new ConditionalParameters();
+		params.setTranslatePowerpointMasters(true);
+
+		OpenXMLFilter filter = new OpenXMLFilter();
+		filter.setParameters(params);
+
+		URL url = getClass().getResource("/include-slides-w-smartart.pptx");
+
+		RawDocument doc = new RawDocument(url.toURI(), "UTF-8", locENUS);
+		Map<String, byte[]> sequentialEntries = readEntries(writePackage(filter, doc));
+
+		// The entries are now written to the zip file on a background thread
+		params.setParallelPartProcessing(true);
+		Map<String, byte[]> parallelEntries = readEntries(writePackage(filter, doc));
+
+		List<String> originalNames = new ArrayList<>();
+		ZipFile original = new ZipFile(new File(url.toURI()));
+		try {
+			Enumeration<? extends ZipEntry> entries = original.entries();
+			while (entries.hasMoreElements()) {
+				originalNames.add(entries.nextElement().getName());
+			}
+		}
+		finally {
+			original.close();
+		}
+		assertThat(sequentialEntries.keySet()).containsOnlyElementsOf(originalNames).hasSameSizeAs(originalNames);
+		assertThat(parallelEntries.keySet()).containsExactlyElementsOf(sequentialEntries.keySet());
+		for (Map.Entry<String, byte[]> entry : sequentialEntries.entrySet()) {
+			assertThat(parallelEntries.get(entry.getKey())).as(entry.getKey()).isEqualTo(entry.getValue());
+		}
+	}
+
+	private byte[] writePackage(OpenXMLFilter filter, RawDocument doc) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		IFilterWriter writer = filter.createFilterWriter();
+		writer.setOptions(locENUS, "UTF-8");
+		writer.setOutput(output);
+		filter.open(doc, false);
+		try {
+			while (filter.hasNext()) {
+				writer.handleEvent(filter.next());
+			}
+		}
+		finally {
+			writer.close();
+			filter.close();
+		}
+		return output.toByteArray();
+	}
+
+	private Map<String, byte[]> readEntries(byte[] zipData) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zipData));
+		try {
+			ZipEntry entry;
+			while ((entry = input.getNextEntry()) != null) {
+				ByteArrayOutputStream contents = new ByteArrayOutputStream();
+				byte[] buffer = new byte[2048];
+				int len;
+				while ((len = input.read(buffer)) > 0) {
+					contents.write(buffer, 0, len);
+				}
+				entries.put(entry.getName(), contents.toByteArray());
+			}
+		}
+		finally {
+			input.close();
+		}
+		return entries;
+	}
+
+	private List<Object> extractSources(List<ITextUnit> textUnits) {
+		List<Object> sources = new ArrayList<>();
+		for (ITextUnit textUnit : textUnits) {
+			sources.add(textUnitSourceExtractor().extract(textUnit));
+		}
+		return sources;
+	}
+
 	private Extractor<ITextUnit, Object> textUnitSourceExtractor() {
 		return new Extractor<ITextUnit, Object>() {
 			@Override
@@ -16,6 +16,8 @@
 
 package net.sf.okapi.filters.xliff;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.CharsetEncoder;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -128,6 +130,23 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 
 	@Override
 	public String processTextUnit (ITextUnit resource) {
+		addStandoffAnnotations(resource);
+		return super.processTextUnit(resource);
+	}
+
+	@Override
+	public void processTextUnit (ITextUnit resource,
+		Writer output) throws IOException
+	{
+		if ( !isStreamingSupported() ) {
+			output.write(processTextUnit(resource));
+			return;
+		}
+		addStandoffAnnotations(resource);
+		super.processTextUnit(resource, output);
+	}
+
+	private void addStandoffAnnotations (ITextUnit resource) {
 		addLQIAnnotations(resource);
 		addProvAnnotations(resource);
 		addLQIAnnotations(resource.getSource());
@@ -142,7 +161,6 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 				addProvAnnotations(resource.getTarget(tgt));
 			}
 		}
-		return super.processTextUnit(resource);
 	}
 
 	@Override
@@ -384,6 +402,40 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 		return getString((GenericSkeleton)((IResource)ref).getSkeleton(), context);
 	}
 	
+	/**
+	 * Writes the parts without marker directly, and resolves the others
+	 * with {@link #getString(GenericSkeletonPart, EncoderContext)}.
+	 */
+	@Override
+	protected void writePart (GenericSkeletonPart part,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		StringBuilder data = part.getData();
+		if (( getLayer() == null )
+			&& !startsWith(data, SEGSOURCEMARKER)
+			&& !startsWith(data, ALTTRANSMARKER)
+			&& !startsWith(data, NOTEMARKER)
+			&& !startsWith(data, ITSNSDECL)
+			&& !startsWith(data, TextFragment.REFMARKER_START) )
+		{
+			writeData(data, output);
+		}
+		else {
+			output.write(getString(part, context));
+		}
+	}
+
+	private static boolean startsWith (StringBuilder data,
+		String prefix)
+	{
+		if ( data.length() < prefix.length() ) return false;
+		for ( int i=0; i<prefix.length(); i++ ) {
+			if ( data.charAt(i) != prefix.charAt(i) ) return false;
+		}
+		return true;
+	}
+	
 	@Override
 	protected String getContent (ITextUnit tu,
 		LocaleId locToUse,
@@ -398,19 +450,59 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 			context = EncoderContext.TEXT; // Keep skeleton context
 		}
 		
-		// Get the source container
 		TextContainer srcCont = tu.getSource();
+		TextContainer trgCont = getOutputContainer(tu, locToUse);
+		if ( isSegmentedOutput(tu, srcCont, trgCont, locToUse) ) {
+			return getSegmentedOutput(srcCont, trgCont, locToUse, context);
+		}
+		else {
+			return getUnsegmentedOutput(trgCont, locToUse, context);
+		}
+	}
+
+	@Override
+	protected void writeContent (ITextUnit tu,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		if ( getLayer() != null ) {
+			output.write(getContent(tu, locToUse, context));
+			return;
+		}
+
+		// Update the encoder from the TU's MIME type
+		if ( encoderManager != null ) {
+			encoderManager.updateEncoder(tu.getMimeType());
+		}
+		
+		if ( !tu.isTranslatable() ) {
+			context = EncoderContext.TEXT; // Keep skeleton context
+		}
 		
+		TextContainer srcCont = tu.getSource();
+		TextContainer trgCont = getOutputContainer(tu, locToUse);
+		if ( isSegmentedOutput(tu, srcCont, trgCont, locToUse) ) {
+			writeSegmentedOutput(srcCont, trgCont, locToUse, context, output);
+		}
+		else {
+			writeContent(getUnsegmentedContent(trgCont), locToUse, context, output);
+		}
+	}
+
+	/**
+	 * Gets the container to output for a given text unit: the source for a source output,
+	 * otherwise the target, or the source when there is no target and empty targets are not allowed.
+	 */
+	private TextContainer getOutputContainer (ITextUnit tu,
+		LocaleId locToUse)
+	{
 		// Process the case of an output for the source
 		if ( locToUse == null ) {
-			return getUnsegmentedOutput(srcCont, locToUse, context);
+			return tu.getSource();
 		}
 		
 		// Else: Case of a target output
-
-		// Determine whether we output segmentation or not
-		boolean doSegments = doSegments(tu);
-		
 		TextContainer trgCont = tu.getTarget(locToUse);
 		if ( trgCont == null || trgCont.isEmpty()) {
 			if (params.getAllowEmptyTargets()) {
@@ -419,23 +511,30 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 			else {
 				// If there is no target available
 				// We fall back to source
-				trgCont = srcCont;
+				trgCont = tu.getSource();
 			}			
 		}
+		return trgCont;
+	}
 
+	private boolean isSegmentedOutput (ITextUnit tu,
+		TextContainer srcCont,
+		TextContainer trgCont,
+		LocaleId locToUse)
+	{
+		// The source output is never segmented
+		if ( locToUse == null ) {
+			return false;
+		}
+		
 		if (XLIFFFilter.isUnsegmentedTextUnit(tu, params)) {
 			// Treat as containing no segments
-			return getUnsegmentedOutput(trgCont, locToUse, context);
+			return false;
 		}
 
 		// Process the target content: either with or without segments
 		// With layers: treat non-segmented translatable entries with existing target as segmented
-		if ( doSegments || (( getLayer() != null ) && tu.isTranslatable() && !trgCont.equals(srcCont) )) {
-			return getSegmentedOutput(srcCont, trgCont, locToUse, context);
-		}
-		else {
-			return getUnsegmentedOutput(trgCont, locToUse, context);
-		}
+		return doSegments(tu) || (( getLayer() != null ) && tu.isTranslatable() && !trgCont.equals(srcCont) );
 	}
 
 	private String getSegSourceOutput (ITextUnit tu) {
@@ -601,18 +700,21 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 		}
 	}
 	
-	private String getUnsegmentedOutput (TextContainer cont,
-		LocaleId locToUse,
-		EncoderContext context)
-	{
-		TextFragment tf = null;
+	private TextFragment getUnsegmentedContent (TextContainer cont) {
 		if ( cont.contentIsOneSegment() ) {
 			// One part that is a segment, just get the content
-			tf = cont.getFirstContent();
+			return cont.getFirstContent();
 		}
 		else { // Else: get a copy of the un-segmented entry
-			tf = cont.getUnSegmentedContentCopy();
+			return cont.getUnSegmentedContentCopy();
 		}
+	}
+
+	private String getUnsegmentedOutput (TextContainer cont,
+		LocaleId locToUse,
+		EncoderContext context)
+	{
+		TextFragment tf = getUnsegmentedContent(cont);
 		// Apply the layer if there is one
 		if ( getLayer() == null ) {
 			return getContent(tf, locToUse, context);
@@ -704,19 +806,9 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 			if ( part.isSegment() ) {
 				int lev = 0; //TODO: score values for RTF
 				Segment trgSeg = (Segment)part;
-				Segment srcSeg = srcSegs.get(trgSeg.id);
-				if ( srcSeg == null ) {
-					// A target segment without a corresponding source: give warning
-					logger.warn("No source segment found for target segment id='{}':\n\"{}\".",
-						trgSeg.id, trgSeg.text.toText());
-				}
-
+				Segment srcSeg = getSourceSegment(srcSegs, trgSeg);
 				// Opening marker
-				tmp.append(String.format("<mrk mid=\"%s\" mtype=\"seg\"", trgSeg.id));
-				// Output the live attributes
-				outputITSAttributes(trgSeg.getAnnotation(GenericAnnotations.class), params.getEscapeGT(),
-					false, tmp, locToUse, true);
-				tmp.append(">");
+				appendSegmentStart(trgSeg, locToUse, tmp);
 				// Write the segment (note: srcSeg can be null)
 				if ( getLayer() == null ) {
 					// If no layer: just write the target
@@ -763,6 +855,56 @@ public class XLIFFSkeletonWriter extends GenericSkeletonWriter {
 		return tmp.toString();
 	}
 	
+	/**
+	 * Writes the segmented output of a text unit without layer. This is the streaming
+	 * variant of {@link #getSegmentedOutput(TextContainer, TextContainer, LocaleId, EncoderContext)}.
+	 */
+	private void writeSegmentedOutput (TextContainer srcCont,
+		TextContainer trgCont,
+		LocaleId locToUse,
+		EncoderContext context,
+		Writer output) throws IOException
+	{
+		ISegments srcSegs = srcCont.getSegments();
+		for ( TextPart part : trgCont ) {
+			if ( part.isSegment() ) {
+				Segment trgSeg = (Segment)part;
+				getSourceSegment(srcSegs, trgSeg); // Warns if there is no source segment
+				StringBuilder tmp = new StringBuilder();
+				appendSegmentStart(trgSeg, locToUse, tmp);
+				output.write(tmp.toString());
+				writeContent(trgSeg.text, locToUse, context, output);
+				output.write("</mrk>");
+			}
+			else { // Normal text fragment
+				writeContent(part.text, locToUse, context, output);
+			}
+		}
+	}
+
+	private Segment getSourceSegment (ISegments srcSegs,
+		Segment trgSeg)
+	{
+		Segment srcSeg = srcSegs.get(trgSeg.id);
+		if ( srcSeg == null ) {
+			// A target segment without a corresponding source: give warning
+			logger.warn("No source segment found for target segment id='{}':\n\"{}\".",
+				trgSeg.id, trgSeg.text.toText());
+		}
+		return srcSeg;
+	}
+
+	private void appendSegmentStart (Segment trgSeg,
+		LocaleId locToUse,
+		StringBuilder tmp)
+	{
+		tmp.append(String.format("<mrk mid=\"%s\" mtype=\"seg\"", trgSeg.id));
+		// Output the live attributes
+		outputITSAttributes(trgSeg.getAnnotation(GenericAnnotations.class), params.getEscapeGT(),
+			false, tmp, locToUse, true);
+		tmp.append(">");
+	}
+	
 	private boolean doSegments (ITextUnit tu) {
 		// Do we always segment?
 		switch ( params.getOutputSegmentationType() ) {
@@ -17,6 +17,7 @@
 package net.sf.okapi.filters.xliff;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -24,12 +25,14 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -66,6 +69,8 @@ import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.filters.InputDocument;
 import net.sf.okapi.common.filters.RoundTripComparison;
 import net.sf.okapi.common.filterwriter.GenericContent;
+import net.sf.okapi.common.filterwriter.GenericFilterWriter;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.filterwriter.ITSContent;
 import net.sf.okapi.common.filterwriter.XLIFFContent;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
@@ -421,6 +426,52 @@ public class XLIFFFilterTest {
 				locFR, outSegFilter.createSkeletonWriter(), outSegFilter.getEncoderManager()));
 	}
 
+	@Test
+	public void testStreamingOutput () throws IOException {
+		String snippet = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\">"
+			+ "<file source-language=\"en\" target-language=\"fr\" datatype=\"x-test\" original=\"file.ext\">"
+			+ "<body>"
+			+ "<trans-unit id=\"1\"><source>S1. &lt;S2&gt; &amp; <g id=\"1\">S3</g></source>"
+			+ "<seg-source><mrk mid=\"0\" mtype=\"seg\">S1.</mrk> <mrk mid=\"1\" mtype=\"seg\">&lt;S2&gt; &amp; <g id=\"1\">S3</g></mrk></seg-source>"
+			+ "<target><mrk mid=\"0\" mtype=\"seg\" its:locQualityIssueComment=\"c1\">T1.</mrk> "
+			+ "<mrk mid=\"1\" mtype=\"seg\">&lt;T2&gt; &amp; <g id=\"1\">T3</g></mrk></target>"
+			+ "</trans-unit>"
+			+ "<trans-unit id=\"2\"><source>Text <x id=\"1\"/> &amp; <mrk mtype=\"x-its\" its:locQualityIssueComment=\"c2\">more</mrk></source>"
+			+ "<target>Texte <x id=\"1\"/> &amp; plus</target></trans-unit>"
+			+ "<trans-unit id=\"3\" translate=\"no\"><source>a &lt; b</source></trans-unit>"
+			+ "</body></file></xliff>";
+
+		// The XLIFF skeleton writer writes the text units without building their strings
+		assertTrue(new StreamingCheckSkeletonWriter().isStreamingSupported());
+
+		// String output
+		String expected = FilterTestDriver.generateOutput(getEvents(snippet), locFR,
+			filter.createSkeletonWriter(), filter.getEncoderManager());
+
+		// Streaming output, from new events since the writer updates the skeleton
+		List<Event> events = getEvents(snippet);
+		IFilterWriter writer = new GenericFilterWriter(filter.createSkeletonWriter(), filter.getEncoderManager());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.setOutput(output);
+		writer.setOptions(locFR, "UTF-8");
+		for ( Event event : events ) {
+			writer.handleEvent(event);
+		}
+		writer.close();
+		assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), output.toByteArray());
+	}
+
+	/**
+	 * Gives access to {@link #isStreamingSupported()} without overriding any output method.
+	 */
+	private static class StreamingCheckSkeletonWriter extends XLIFFSkeletonWriter {
+		@Override
+		protected boolean isStreamingSupported () {
+			return super.isStreamingSupported();
+		}
+	}
+
 	@Test
 	public void testGroupIds () {
 		String snippet = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
@@ -729,7 +780,7 @@ public class XLIFFFilterTest {
 	@Test
 	public void testMtConfidenceAltTrans () {
 		String snippet = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
-			+ "<xliff version=\"1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
 			+ "<file source-language=\"en\" target-language=\"fr\" datatype=\"x-test\" original=\"file.ext\">"
 			+ "<body>"
 			+ "<trans-unit id=\"1\" its:annotatorsRef=\"mt-confidence|XYZ\">"
@@ -837,7 +888,7 @@ public class XLIFFFilterTest {
 	@Test
 	public void testLQRInline () {
 		String snippet = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
-			+ "<xliff version=\"1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
 			+ "<file source-language=\"en\" target-language=\"fr\" datatype=\"x-test\" original=\"file.ext\">"
 			+ "<body>"
 			+ "<trans-unit id=\"1\" its:annotatorsRef=\"mt-confidence|XYZ\">"
@@ -867,7 +918,7 @@ public class XLIFFFilterTest {
 	@Test
 	public void testLangAndSpaceInline () {
 		String snippet = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
-			+ "<xliff version=\"1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its='http://www.w3.org/2005/11/its'>"
 			+ "<file source-language=\"en\" target-language=\"fr\" datatype=\"x-test\" original=\"file.ext\">"
 			+ "<body>"
 			+ "<trans-unit id=\"1\">"
@@ -2238,7 +2289,7 @@ public class XLIFFFilterTest {
 	@Test
 	public void testITSAnnotations () {
 		String snippet = "<?xml version=\"1.0\"?>\r"
-			+ "<xliff version=\"1.2\" xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\" "
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\" "
 			+ "xmlns:itsxlf=\""+Namespaces.ITSXLF_NS_URI+"\">\n"
 			+ "<file source-language=\"en\" target-language='fr' datatype=\"plaintext\" original=\"file.ext\"><body>"
 			+ "<trans-unit id=\"1\">\n"
@@ -2286,7 +2337,7 @@ public class XLIFFFilterTest {
 	@Test
 	public void testITSAnnotatorsRef () {
 		String snippet = "<?xml version=\"1.0\"?>\r"
-			+ "<xliff version=\"1.2\" xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\" "
+			+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\" xmlns:its=\"http://www.w3.org/2005/11/its\" its:version=\"2.0\" "
 			+ "xmlns:itsxlf=\""+Namespaces.ITSXLF_NS_URI+"\" its:annotatorsRef='text-analysis|uri1'>\n"
 			+ "<file its:annotatorsRef='mt-confidence|uri1 translate|uri2' source-language=\"en\" target-language='fr' datatype=\"plaintext\" original=\"file.ext\"><body>"
 			+ "<trans-unit id=\"1\" its:annotatorsRef='mt-confidence|uri1 translate|uri3'>\n"
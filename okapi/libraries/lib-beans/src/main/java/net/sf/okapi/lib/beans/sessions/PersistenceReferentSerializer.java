@@ -0,0 +1,86 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.beans.sessions;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.IReferenceable;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.skeleton.IReferentSerializer;
+import net.sf.okapi.lib.persistence.IPersistenceSession;
+import net.sf.okapi.lib.persistence.binary.BinaryPersistenceSession;
+
+/**
+ * Referent serializer using the beans of a persistence session, for
+ * {@link net.sf.okapi.common.skeleton.GenericSkeletonWriter#setReferentSerializer(IReferentSerializer, int)}.
+ * <p>Text units and document parts are serialized, other referents are left in memory.
+ * By default the compact form of {@link OkapiBinarySession} is used: the bytes of the
+ * binary trees are stored as they are. Other sessions store the text they write.
+ */
+public class PersistenceReferentSerializer implements IReferentSerializer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final IPersistenceSession session;
+	private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+
+	public PersistenceReferentSerializer() {
+		this(new OkapiBinarySession(false));
+	}
+
+	public PersistenceReferentSerializer(IPersistenceSession session) {
+		this.session = session;
+	}
+
+	@Override
+	public byte[] serialize(IReferenceable referent) {
+		if (!(referent instanceof ITextUnit) && !(referent instanceof DocumentPart))
+			return null;
+
+		// The class name goes first, the bean is read back with it
+		String className = referent.getClass().getName();
+		classes.put(className, referent.getClass());
+		byte[] header = (className + "\n").getBytes(UTF8);
+		byte[] content = (session instanceof BinaryPersistenceSession) ?
+				((BinaryPersistenceSession) session).writeObjectToBytes(referent) :
+				session.writeObject(referent).getBytes(UTF8);
+
+		byte[] data = new byte[header.length + content.length];
+		System.arraycopy(header, 0, data, 0, header.length);
+		System.arraycopy(content, 0, data, header.length, content.length);
+		return data;
+	}
+
+	@Override
+	public IReferenceable deserialize(byte[] data) {
+		int n = 0;
+		while (n < data.length && data[n] != '\n') n++;
+		Class<?> classRef = (n == data.length) ? null : classes.get(new String(data, 0, n, UTF8));
+		if (classRef == null)
+			throw new OkapiException("PersistenceReferentSerializer: unknown referent data");
+
+		byte[] content = Arrays.copyOfRange(data, n + 1, data.length);
+		if (session instanceof BinaryPersistenceSession)
+			return (IReferenceable) ((BinaryPersistenceSession) session).readObjectFromBytes(content, classRef);
+		return (IReferenceable) session.readObject(new String(content, UTF8), classRef);
+	}
+}
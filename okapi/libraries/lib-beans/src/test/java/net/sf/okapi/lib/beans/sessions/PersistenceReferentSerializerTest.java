@@ -0,0 +1,159 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.beans.sessions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.MimeTypeMapper;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.filters.FilterTestDriver;
+import net.sf.okapi.common.filterwriter.GenericFilterWriter;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.IReferenceable;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.common.skeleton.GenericSkeleton;
+import net.sf.okapi.common.skeleton.GenericSkeletonWriter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PersistenceReferentSerializerTest {
+
+	/**
+	 * Counts the referents actually written out.
+	 */
+	static class CountingSerializer extends PersistenceReferentSerializer {
+		int written;
+
+		@Override
+		public byte[] serialize(IReferenceable referent) {
+			byte[] data = super.serialize(referent);
+			if (data != null) written++;
+			return data;
+		}
+	}
+
+	@Test
+	public void testSpilledReferentsOutput() {
+		EncoderManager encMgt = new EncoderManager();
+		encMgt.setMapping(MimeTypeMapper.XML_MIME_TYPE, "net.sf.okapi.common.encoder.XMLEncoder");
+		List<Event> events = createEvents(new GenericSkeletonWriter(), encMgt);
+
+		String expected = "<p><a href=\"a.html\" title=\"Title &amp; <b>bold</b>\">"
+			+ "<br/>Text &amp; more</p>";
+		assertEquals(expected, FilterTestDriver.generateOutput(events, LocaleId.FRENCH,
+			new GenericSkeletonWriter(), encMgt, false));
+
+		// Keep a single referent in memory: the others go through the serializer
+		CountingSerializer serializer = new CountingSerializer();
+		GenericSkeletonWriter gsw = new GenericSkeletonWriter();
+		gsw.setReferentSerializer(serializer, 1);
+		events = createEvents(gsw, encMgt);
+		assertEquals(expected, FilterTestDriver.generateOutput(events, LocaleId.FRENCH, gsw, encMgt, false));
+		// tu1 and dp1 were spilled when added, and dp2 when dp1 was loaded back
+		assertEquals(3, serializer.written);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		PersistenceReferentSerializer serializer = new PersistenceReferentSerializer();
+		ITextUnit tu = createReferentTextUnit();
+		byte[] data = serializer.serialize(tu);
+		assertNotNull(data);
+		ITextUnit tu2 = (ITextUnit) serializer.deserialize(data);
+		assertEquals(tu.getId(), tu2.getId());
+		assertEquals(tu.isReferent(), tu2.isReferent());
+		assertEquals(tu.getSource().getFirstContent().toText(), tu2.getSource().getFirstContent().toText());
+		assertEquals(tu.getSkeleton().toString(), tu2.getSkeleton().toString());
+	}
+
+	/**
+	 * Creates the events of the document
+	 * <code>&lt;p>&lt;a href="..." title="tu1">&lt;br/>tu2&lt;/p></code>, where the anchor
+	 * and the break are document parts, the href value is a property of the anchor,
+	 * and the text units have self-referencing content placeholders.
+	 */
+	private List<Event> createEvents(GenericSkeletonWriter gsw, EncoderManager encMgt) {
+		List<Event> events = new ArrayList<Event>();
+		StartDocument sd = new StartDocument("sd");
+		sd.setEncoding("UTF-8", false);
+		sd.setLineBreak("\n");
+		sd.setLocale(LocaleId.ENGLISH);
+		sd.setMimeType(MimeTypeMapper.XML_MIME_TYPE);
+		sd.setFilterWriter(new GenericFilterWriter(gsw, encMgt));
+		events.add(new Event(EventType.START_DOCUMENT, sd));
+
+		ITextUnit tu1 = createReferentTextUnit();
+		events.add(new Event(EventType.TEXT_UNIT, tu1));
+
+		// Anchor with a property reference to itself and a reference to tu1
+		DocumentPart dp1 = new DocumentPart("dp1", true);
+		dp1.setProperty(new Property("href", "a.html", false));
+		GenericSkeleton skel = new GenericSkeleton("<a href=\"");
+		skel.addValuePlaceholder(dp1, "href", LocaleId.EMPTY);
+		skel.add("\" title=\"");
+		skel.addReference(tu1);
+		skel.add("\">");
+		dp1.setSkeleton(skel);
+		events.add(new Event(EventType.DOCUMENT_PART, dp1));
+
+		DocumentPart dp2 = new DocumentPart("dp2", true, new GenericSkeleton("<br/>"));
+		events.add(new Event(EventType.DOCUMENT_PART, dp2));
+
+		ITextUnit tu2 = new TextUnit("tu2", "Text & more");
+		skel = new GenericSkeleton("<p>");
+		skel.addReference(dp1);
+		skel.addReference(dp2);
+		skel.addContentPlaceholder(tu2);
+		skel.add("</p>");
+		tu2.setSkeleton(skel);
+		events.add(new Event(EventType.TEXT_UNIT, tu2));
+
+		events.add(new Event(EventType.END_DOCUMENT, new Ending("end")));
+		return events;
+	}
+
+	private ITextUnit createReferentTextUnit() {
+		ITextUnit tu = new TextUnit("tu1");
+		tu.setIsReferent(true);
+		TextFragment tf = tu.getSource().getFirstContent();
+		tf.append("Title & ");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		GenericSkeleton skel = new GenericSkeleton();
+		skel.addContentPlaceholder(tu);
+		tu.setSkeleton(skel);
+		return tu;
+	}
+
+}
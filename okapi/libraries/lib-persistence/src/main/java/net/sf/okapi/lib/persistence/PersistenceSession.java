@@ -451,21 +451,48 @@ public abstract class PersistenceSession implements IPersistenceSession, IObserv
 	
 	@Override
 	public <T> T readObject(String content, Class<T> classRef) {
+		return getObject(readBeanFromString(content, getObjectBeanClass(classRef)), classRef);
+	}
+	
+	@Override
+	public String writeObject(Object obj) {
+		return writeBeanToString(getObjectBean(obj));
+	}
+	
+	/**
+	 * Gets the class of the bean to read a standalone object of a given class with.
+	 * @param classRef the class of the object to read.
+	 * @return the bean class.
+	 */
+	protected Class<? extends IPersistenceBean<?>> getObjectBeanClass(Class<?> classRef) {
 		refResolver.reset(); // Clear caches
 		beanClass = beanMapper.getBeanClass(classRef);		
 		if (beanClass == null)
 			throw new OkapiException("PersistenceSession: no bean class found");
 		
-		IPersistenceBean<?> bean = readBeanFromString(content, beanClass);
+		return beanClass;
+	}
+	
+	/**
+	 * Gets the object stored in a standalone bean read with {@link #getObjectBeanClass(Class)}.
+	 * @param bean the bean that was read.
+	 * @param classRef the class of the object.
+	 * @return the object.
+	 */
+	protected <T> T getObject(IPersistenceBean<?> bean, Class<T> classRef) {
 		notifyObservers(bean);
 		refResolver.cacheBean(bean);
 		
 		return classRef.cast(bean.get(classRef, this));		
 	}
 	
-	@Override
+	/**
+	 * Creates the standalone bean for a given object, ready to be written.
+	 * @param obj the object to write.
+	 * @return the bean holding the object.
+	 */
 	@SuppressWarnings("unchecked")
-	public String writeObject(Object obj) {
+	protected IPersistenceBean<?> getObjectBean(Object obj) {
 		if (obj == null)
 			throw new IllegalArgumentException("PersistenceSession: cannot write a null object");
 
@@ -483,7 +510,7 @@ public abstract class PersistenceSession implements IPersistenceSession, IObserv
 		bean.set(obj, this);
 	
 		notifyObservers(bean);
-		return writeBeanToString(bean);
+		return bean;
 	}
 	
 //	protected Iterable<IAnnotation> getAnnotations () {
@@ -0,0 +1,74 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.persistence.binary;
+
+/**
+ * Constants of the binary session format.
+ * <p>
+ * A stream starts with {@link #SIGNATURE}, a format version byte and a flags byte.
+ * Everything after the flags byte is deflated if {@link #FLAG_COMPRESSED} is set.
+ * Then come the header values (session version, description, item class, MIME type,
+ * frames and annotations) and the items, each one introduced by {@link #ITEM} and
+ * its name, and the whole terminated by {@link #END}.
+ * <p>
+ * Values are written as a type tag followed by the value data. Integers are
+ * zig-zag variable-length numbers, strings are a character count followed by
+ * the characters in modified UTF-8 (surrogates are encoded separately, so any
+ * Java string goes through). Short strings are written once and then referred
+ * to by their index in the string table of the stream.
+ */
+final class BinaryFormat {
+
+	static final byte[] SIGNATURE = {'O', 'K', 'P', 'B'};
+	static final int FORMAT_VERSION = 1;
+
+	static final int FLAG_COMPRESSED = 0x01;
+
+	// Value tags
+	static final int NULL = 0;
+	static final int FALSE = 1;
+	static final int TRUE = 2;
+	static final int INT = 3;
+	static final int LONG = 4;
+	static final int DOUBLE = 5;
+	static final int STRING = 6; // String not in the table
+	static final int STRING_DEF = 7; // String added to the table
+	static final int STRING_REF = 8; // Index of a string in the table
+	static final int BINARY = 9;
+	static final int ARRAY = 10;
+	static final int OBJECT = 11;
+
+	// Item tags
+	static final int ITEM = 20;
+	static final int END = 21;
+
+	/**
+	 * Longest string added to the string table. Longer strings
+	 * (typically the coded text of fragments) are rarely repeated.
+	 */
+	static final int MAX_SHARED_LENGTH = 64;
+
+	/**
+	 * Maximum number of entries in the string table.
+	 */
+	static final int MAX_SHARED_STRINGS = 0x10000;
+
+	private BinaryFormat () {
+		// Constants only
+	}
+
+}
@@ -0,0 +1,363 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.persistence.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import net.sf.okapi.common.Base64;
+import net.sf.okapi.common.StreamUtil;
+import net.sf.okapi.common.annotation.Annotations;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiFileNotFoundException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.lib.persistence.IPersistenceBean;
+import net.sf.okapi.lib.persistence.PersistenceSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Persistence session storing the beans in a compact binary form.
+ * <p>
+ * The beans are the same as for {@link net.sf.okapi.lib.persistence.json.jackson.JSONPersistenceSession}:
+ * each one is turned into a JSON tree, and the tree is written with type tags instead of JSON text,
+ * with short strings (field names, code types, property names, locales...) written once per stream.
+ * Items are written and read one at a time, so the session can handle documents of any size.
+ * <p>
+ * Whether the stream is compressed is recorded in the stream itself, so the reading session
+ * does not need to be created with the same option as the writing one.
+ * Use {@link #isBinarySession(InputStream)} to tell a binary session stream from other formats.
+ */
+public abstract class BinaryPersistenceSession extends PersistenceSession {
+	public static final String MSG_BINARY_READ_EX = "BinaryPersistenceSession: error reading.";
+	public static final String MSG_BINARY_WRITE_EX = "BinaryPersistenceSession: error writing.";
+
+	private static final String MIME_TYPE = "application/octet-stream";  //$NON-NLS-1$
+
+	private ObjectMapper mapper;
+	private BinaryTreeReader reader;
+	private Inflater inflater;
+	private BinaryTreeWriter bodyWriter;
+	private OutputStream bodyOut;
+	private File bodyTemp;
+	private boolean compress;
+
+	public BinaryPersistenceSession(boolean compress) {
+		super();
+
+		this.compress = compress;
+		mapper = new ObjectMapper();
+		mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		mapper.configure(MapperFeature.USE_ANNOTATIONS, true);
+	}
+
+	/**
+	 * Indicates if a given stream holds a binary session. The stream must support
+	 * {@link InputStream#mark(int)}, its position is not changed.
+	 * @param inStream the stream to look at.
+	 * @return true if the stream starts with the binary session signature.
+	 * @throws IllegalArgumentException if the stream does not support mark.
+	 */
+	public static boolean isBinarySession(InputStream inStream) {
+		if (!inStream.markSupported())
+			throw new IllegalArgumentException("BinaryPersistenceSession: the stream must support mark");
+
+		byte[] signature = new byte[BinaryFormat.SIGNATURE.length];
+		try {
+			inStream.mark(signature.length);
+			try {
+				int n = 0;
+				while (n < signature.length) {
+					int count = inStream.read(signature, n, signature.length - n);
+					if (count < 0) return false;
+					n += count;
+				}
+			}
+			finally {
+				inStream.reset();
+			}
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+		return Arrays.equals(signature, BinaryFormat.SIGNATURE);
+	}
+
+	@Override
+	public <T extends IPersistenceBean<?>> T convert(Object object, Class<T> expectedClass) {
+		return mapper.convertValue(object, expectedClass);
+	}
+
+	@Override
+	public String getMimeType() {
+		return MIME_TYPE;
+	}
+
+	@Override
+	protected <T extends IPersistenceBean<?>> T readBean(Class<T> beanClass, String name) {
+		try {
+			int tag = reader.readTag();
+			if (tag == BinaryFormat.END)
+				return null;
+			if (tag != BinaryFormat.ITEM)
+				throw new OkapiIOException(String.format("BinaryPersistenceSession: input stream " +
+						"is broken. Item expected, but the tag was %d", tag));
+
+			String itemName = reader.readString();
+			if (itemName != null && name != null && !itemName.startsWith(name))
+				throw new OkapiIOException(String.format("BinaryPersistenceSession: input stream " +
+						"is broken. Item label should start with \"%s\", but was \"%s\"", name, itemName));
+
+			return mapper.treeToValue(reader.readNode(), beanClass);
+		} catch (JsonProcessingException e) {
+			throw new OkapiException(MSG_BINARY_READ_EX, e);
+		} catch (EOFException e) {
+			throw new OkapiIOException("BinaryPersistenceSession: input stream is broken -- unexpected EOF.", e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	@Override
+	protected void writeBean(IPersistenceBean<?> bean, String name) {
+		try {
+			bodyWriter.writeTag(BinaryFormat.ITEM);
+			bodyWriter.writeString(name);
+			bodyWriter.writeNode(mapper.valueToTree(bean));
+		} catch (IllegalArgumentException e) {
+			throw new OkapiException(MSG_BINARY_WRITE_EX, e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	@Override
+	protected void startReading(InputStream inStream) {
+		try {
+			DataInputStream dis = new DataInputStream(inStream);
+			byte[] signature = new byte[BinaryFormat.SIGNATURE.length];
+			dis.readFully(signature);
+			if (!Arrays.equals(signature, BinaryFormat.SIGNATURE))
+				throw new OkapiIOException("BinaryPersistenceSession: input stream is not a binary session");
+
+			int formatVersion = dis.readUnsignedByte();
+			if (formatVersion > BinaryFormat.FORMAT_VERSION)
+				throw new OkapiIOException(String.format("BinaryPersistenceSession: format version %d " +
+						"is not supported", formatVersion));
+			int flags = dis.readUnsignedByte();
+
+			InputStream in = inStream;
+			if ((flags & BinaryFormat.FLAG_COMPRESSED) != 0) {
+				inflater = new Inflater();
+				in = new InflaterInputStream(inStream, inflater);
+			}
+			reader = new BinaryTreeReader(in);
+
+			// Header
+			setVersion(reader.readString());
+			setDescription(reader.readString());
+			reader.readString(); // Item class
+			reader.readString(); // MIME type
+
+			// Frames
+			setFrames(mapper.treeToValue(reader.readNode(), List.class));
+
+			// Annotations
+			JsonNode annotations = reader.readNode();
+			if (!annotations.isNull()) {
+				Class<IPersistenceBean<Annotations>> beanClass = getBeanClass(Annotations.class);
+				setAnnotations(mapper.treeToValue(annotations, beanClass));
+			}
+
+			// The items have their own string table
+			reader.clearStrings();
+		} catch (JsonProcessingException e) {
+			throw new OkapiException(MSG_BINARY_READ_EX, e);
+		} catch (EOFException e) {
+			throw new OkapiIOException("BinaryPersistenceSession: input stream is broken -- unexpected EOF.", e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	@Override
+	protected void endReading(InputStream inStream) {
+		// !!! Do not close external inStream
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		reader = null;
+	}
+
+	@Override
+	protected void startWriting(OutputStream outStream) {
+		try {
+			bodyTemp = File.createTempFile("~BinaryPersistenceSession_bodyTemp", null);
+			bodyOut = new BufferedOutputStream(new FileOutputStream(bodyTemp));
+			bodyWriter = new BinaryTreeWriter(bodyOut);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	@Override
+	protected void endWriting(OutputStream outStream) {
+		// Finalize body
+		try {
+			bodyWriter.writeTag(BinaryFormat.END);
+			bodyWriter.flush();
+			bodyOut.close();
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+
+		// Header goes first: the frames are known only once the body is written
+		Deflater deflater = null;
+		try {
+			outStream.write(BinaryFormat.SIGNATURE);
+			outStream.write(BinaryFormat.FORMAT_VERSION);
+			outStream.write(compress ? BinaryFormat.FLAG_COMPRESSED : 0);
+
+			OutputStream os = outStream;
+			if (compress) {
+				deflater = new Deflater(Deflater.BEST_SPEED);
+				os = new DeflaterOutputStream(outStream, deflater);
+			}
+
+			BinaryTreeWriter headerWriter = new BinaryTreeWriter(os);
+			headerWriter.writeString(getVersion());
+			headerWriter.writeString(getDescription());
+			headerWriter.writeString(getItemClass());
+			headerWriter.writeString(getMimeType());
+			headerWriter.writeNode(mapper.valueToTree(getFrames()));
+			headerWriter.writeNode(mapper.valueToTree(getAnnotationsBean()));
+			headerWriter.flush();
+
+			InputStream bodyIn = new FileInputStream(bodyTemp);
+			try {
+				StreamUtil.copy(Channels.newChannel(bodyIn), Channels.newChannel(os), false);
+			}
+			finally {
+				bodyIn.close();
+			}
+			if (compress) {
+				((DeflaterOutputStream) os).finish();
+			}
+			os.flush();
+			// !!! Do not close external outStream
+		} catch (FileNotFoundException e) {
+			throw new OkapiFileNotFoundException(e);
+		} catch (IllegalArgumentException e) {
+			throw new OkapiException(MSG_BINARY_WRITE_EX, e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+			bodyTemp.delete();
+			bodyWriter = null;
+		}
+	}
+
+	/**
+	 * Writes a standalone object in the binary form, without the Base64 encoding
+	 * used by {@link #writeObject(Object)}.
+	 * @param obj the object to write.
+	 * @return the bytes of the object tree.
+	 */
+	public byte[] writeObjectToBytes(Object obj) {
+		return writeBeanToBytes(getObjectBean(obj));
+	}
+
+	/**
+	 * Reads a standalone object written with {@link #writeObjectToBytes(Object)}.
+	 * @param data the bytes of the object tree.
+	 * @param classRef the class of the object.
+	 * @return the object.
+	 */
+	public <T> T readObjectFromBytes(byte[] data, Class<T> classRef) {
+		return getObject(readBeanFromBytes(data, getObjectBeanClass(classRef)), classRef);
+	}
+
+	/**
+	 * Writes a standalone tree for a given bean, as Base64 text.
+	 */
+	@Override
+	protected String writeBeanToString(IPersistenceBean<?> bean) {
+		return new String(Base64.encode(writeBeanToBytes(bean)));
+	}
+
+	@Override
+	protected <T extends IPersistenceBean<?>> T readBeanFromString(
+			String content, Class<T> beanClass) {
+		return readBeanFromBytes(Base64.decode(content), beanClass);
+	}
+
+	private byte[] writeBeanToBytes(IPersistenceBean<?> bean) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			BinaryTreeWriter writer = new BinaryTreeWriter(baos);
+			writer.writeNode(mapper.valueToTree(bean));
+			writer.flush();
+			return baos.toByteArray();
+		} catch (IllegalArgumentException e) {
+			throw new OkapiException(MSG_BINARY_WRITE_EX, e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	private <T extends IPersistenceBean<?>> T readBeanFromBytes(
+			byte[] data, Class<T> beanClass) {
+		try {
+			BinaryTreeReader reader = new BinaryTreeReader(new ByteArrayInputStream(data));
+			return mapper.treeToValue(reader.readNode(), beanClass);
+		} catch (JsonProcessingException e) {
+			throw new OkapiException(MSG_BINARY_READ_EX, e);
+		} catch (IOException e) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	protected ObjectMapper getObjectMapper() {
+		return mapper;
+	}
+}
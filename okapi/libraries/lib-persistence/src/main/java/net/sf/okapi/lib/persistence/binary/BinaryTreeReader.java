@@ -0,0 +1,219 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.persistence.binary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.exceptions.OkapiIOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Reads JSON trees written by {@link BinaryTreeWriter}.
+ */
+public class BinaryTreeReader {
+
+	private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+	private final InputStream in;
+	private final List<String> strings = new ArrayList<String>();
+	private final byte[] buffer = new byte[8192];
+	private int pos;
+	private int count;
+	private char[] chars = new char[256];
+
+	public BinaryTreeReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next tree.
+	 * @return the root of the tree read.
+	 * @throws IOException if an error occurs.
+	 */
+	public JsonNode readNode() throws IOException {
+		return readNode(readTag());
+	}
+
+	/**
+	 * Reads the value of a given tag.
+	 * @param tag the tag already read.
+	 * @return the node for the value.
+	 * @throws IOException if an error occurs.
+	 */
+	public JsonNode readNode(int tag) throws IOException {
+		switch (tag) {
+		case BinaryFormat.NULL:
+			return FACTORY.nullNode();
+		case BinaryFormat.FALSE:
+			return FACTORY.booleanNode(false);
+		case BinaryFormat.TRUE:
+			return FACTORY.booleanNode(true);
+		case BinaryFormat.INT:
+			return FACTORY.numberNode((int) readVarLong());
+		case BinaryFormat.LONG:
+			return FACTORY.numberNode(readVarLong());
+		case BinaryFormat.DOUBLE:
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | readByte();
+			}
+			return FACTORY.numberNode(Double.longBitsToDouble(bits));
+		case BinaryFormat.STRING:
+		case BinaryFormat.STRING_DEF:
+		case BinaryFormat.STRING_REF:
+			return FACTORY.textNode(readString(tag));
+		case BinaryFormat.BINARY:
+			byte[] data = new byte[readLength()];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) readByte();
+			}
+			return FACTORY.binaryNode(data);
+		case BinaryFormat.ARRAY:
+			int size = readLength();
+			ArrayNode array = FACTORY.arrayNode();
+			for (int i = 0; i < size; i++) {
+				array.add(readNode());
+			}
+			return array;
+		case BinaryFormat.OBJECT:
+			int fields = readLength();
+			ObjectNode object = FACTORY.objectNode();
+			for (int i = 0; i < fields; i++) {
+				String name = readString();
+				object.set(name, readNode());
+			}
+			return object;
+		default:
+			throw new OkapiIOException(String.format("BinaryTreeReader: input stream is broken, " +
+					"unexpected tag %d", tag));
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link BinaryTreeWriter#writeString(String)}.
+	 * @return the string read (can be null).
+	 * @throws IOException if an error occurs.
+	 */
+	public String readString() throws IOException {
+		return readString(readTag());
+	}
+
+	/**
+	 * Empties the string table. To be called where the stream continues
+	 * with data from another {@link BinaryTreeWriter}.
+	 */
+	public void clearStrings() {
+		strings.clear();
+	}
+
+	public int readTag() throws IOException {
+		return readByte();
+	}
+
+	public long readVarLong() throws IOException {
+		long v = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 63) {
+				throw new OkapiIOException("BinaryTreeReader: input stream is broken, number too long");
+			}
+			b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Reads the next byte.
+	 * @return the byte read, between 0 and 255.
+	 * @throws IOException if an error occurs, or if the end of the stream is reached.
+	 */
+	public int readByte() throws IOException {
+		if (pos == count) {
+			count = in.read(buffer, 0, buffer.length);
+			pos = 0;
+			if (count <= 0) {
+				count = 0;
+				throw new EOFException("BinaryTreeReader: unexpected end of stream.");
+			}
+		}
+		return buffer[pos++] & 0xFF;
+	}
+
+	private String readString(int tag) throws IOException {
+		switch (tag) {
+		case BinaryFormat.NULL:
+			return null;
+		case BinaryFormat.STRING:
+			return readChars();
+		case BinaryFormat.STRING_DEF:
+			String text = readChars();
+			strings.add(text);
+			return text;
+		case BinaryFormat.STRING_REF:
+			int index = (int) readVarLong();
+			if (index < 0 || index >= strings.size()) {
+				throw new OkapiIOException(String.format("BinaryTreeReader: input stream is broken, " +
+						"invalid string reference %d", index));
+			}
+			return strings.get(index);
+		default:
+			throw new OkapiIOException(String.format("BinaryTreeReader: input stream is broken, " +
+					"string expected, but the tag was %d", tag));
+		}
+	}
+
+	private String readChars() throws IOException {
+		int len = readLength();
+		if (chars.length < len) {
+			chars = new char[Math.max(len, chars.length * 2)];
+		}
+		for (int i = 0; i < len; i++) {
+			int b = readByte();
+			if (b < 0x80) {
+				chars[i] = (char) b;
+			}
+			else if ((b & 0xE0) == 0xC0) {
+				chars[i] = (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+			}
+			else {
+				int b2 = readByte();
+				chars[i] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (readByte() & 0x3F));
+			}
+		}
+		return new String(chars, 0, len);
+	}
+
+	private int readLength() throws IOException {
+		long len = readVarLong();
+		if (len < 0 || len > Integer.MAX_VALUE) {
+			throw new OkapiIOException(String.format("BinaryTreeReader: input stream is broken, " +
+					"invalid length %d", len));
+		}
+		return (int) len;
+	}
+}
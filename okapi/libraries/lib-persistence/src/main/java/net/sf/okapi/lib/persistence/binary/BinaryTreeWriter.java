@@ -0,0 +1,197 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.persistence.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Writes JSON trees in the binary session format (see {@link BinaryFormat}).
+ * The string table lasts as long as the writer, so repeated property names,
+ * code types and the like are written only once per stream.
+ */
+public class BinaryTreeWriter {
+
+	private final OutputStream out;
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	private final byte[] buffer = new byte[8192];
+	private int pos;
+
+	public BinaryTreeWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a given tree.
+	 * @param node the root of the tree to write (can be null).
+	 * @throws IOException if an error occurs.
+	 */
+	public void writeNode(JsonNode node) throws IOException {
+		if (node == null || node.isNull() || node.isMissingNode()) {
+			writeTag(BinaryFormat.NULL);
+		}
+		else if (node.isObject()) {
+			writeTag(BinaryFormat.OBJECT);
+			writeVarLong(node.size());
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				writeString(field.getKey());
+				writeNode(field.getValue());
+			}
+		}
+		else if (node.isArray()) {
+			writeTag(BinaryFormat.ARRAY);
+			writeVarLong(node.size());
+			for (JsonNode child : node) {
+				writeNode(child);
+			}
+		}
+		else if (node.isTextual()) {
+			writeString(node.textValue());
+		}
+		else if (node.isBoolean()) {
+			writeTag(node.booleanValue() ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+		}
+		else if (node.isInt() || node.isShort()) {
+			writeTag(BinaryFormat.INT);
+			writeVarLong(node.intValue());
+		}
+		else if (node.isLong()) {
+			writeTag(BinaryFormat.LONG);
+			writeVarLong(node.longValue());
+		}
+		else if (node.isFloatingPointNumber() && !node.isBigDecimal()) {
+			writeTag(BinaryFormat.DOUBLE);
+			long bits = Double.doubleToLongBits(node.doubleValue());
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				writeByte((int) (bits >>> shift));
+			}
+		}
+		else if (node.isBinary()) {
+			byte[] data = node.binaryValue();
+			writeTag(BinaryFormat.BINARY);
+			writeVarLong(data.length);
+			for (byte b : data) {
+				writeByte(b);
+			}
+		}
+		else {
+			// Big numbers and POJO nodes: Jackson converts their text back when binding
+			writeString(node.asText());
+		}
+	}
+
+	/**
+	 * Writes a given string, sharing it through the string table when it is short.
+	 * @param text the string to write (can be null).
+	 * @throws IOException if an error occurs.
+	 */
+	public void writeString(String text) throws IOException {
+		if (text == null) {
+			writeTag(BinaryFormat.NULL);
+			return;
+		}
+		if (text.length() > BinaryFormat.MAX_SHARED_LENGTH) {
+			writeTag(BinaryFormat.STRING);
+			writeChars(text);
+			return;
+		}
+		Integer index = strings.get(text);
+		if (index != null) {
+			writeTag(BinaryFormat.STRING_REF);
+			writeVarLong(index);
+		}
+		else if (strings.size() < BinaryFormat.MAX_SHARED_STRINGS) {
+			strings.put(text, strings.size());
+			writeTag(BinaryFormat.STRING_DEF);
+			writeChars(text);
+		}
+		else {
+			writeTag(BinaryFormat.STRING);
+			writeChars(text);
+		}
+	}
+
+	public void writeTag(int tag) throws IOException {
+		writeByte(tag);
+	}
+
+	/**
+	 * Writes a signed number in zig-zag variable-length encoding:
+	 * small values, positive or negative, take a single byte.
+	 * @param value the value to write.
+	 * @throws IOException if an error occurs.
+	 */
+	public void writeVarLong(long value) throws IOException {
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7FL) != 0) {
+			writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		writeByte((int) v);
+	}
+
+	public void writeByte(int b) throws IOException {
+		if (pos == buffer.length) {
+			flushBuffer();
+		}
+		buffer[pos++] = (byte) b;
+	}
+
+	/**
+	 * Writes out the buffered bytes and flushes the underlying stream.
+	 * The underlying stream is not closed.
+	 * @throws IOException if an error occurs.
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	private void writeChars(String text) throws IOException {
+		int len = text.length();
+		writeVarLong(len);
+		for (int i = 0; i < len; i++) {
+			char ch = text.charAt(i);
+			if (ch != 0 && ch < 0x80) {
+				writeByte(ch);
+			}
+			else if (ch < 0x800) {
+				writeByte(0xC0 | (ch >> 6));
+				writeByte(0x80 | (ch & 0x3F));
+			}
+			else {
+				writeByte(0xE0 | (ch >> 12));
+				writeByte(0x80 | ((ch >> 6) & 0x3F));
+				writeByte(0x80 | (ch & 0x3F));
+			}
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (pos > 0) {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		}
+	}
+}
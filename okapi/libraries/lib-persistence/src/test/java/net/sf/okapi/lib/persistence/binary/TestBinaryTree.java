@@ -0,0 +1,112 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.persistence.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RunWith(JUnit4.class)
+public class TestBinaryTree {
+
+	private ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		String json = "{\"codedText\":\"Text \\ue101\\ue110bold\\ue102\\ue111 \\ud83d\\ude00\\u0000\","
+				+ "\"codes\":[{\"id\":1,\"tagType\":\"OPENING\",\"data\":\"<b>\",\"flag\":-1},"
+				+ "{\"id\":1,\"tagType\":\"CLOSING\",\"data\":\"</b>\",\"flag\":4294967296}],"
+				+ "\"ratio\":0.25,\"translatable\":true,\"preserve\":false,\"note\":null}";
+		JsonNode node = mapper.readTree(json);
+		assertEquals(node, roundTrip(node));
+	}
+
+	@Test
+	public void testStringSharing() throws IOException {
+		StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longText.append('x');
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryTreeWriter writer = new BinaryTreeWriter(out);
+		writer.writeString("type");
+		writer.writeString(longText.toString());
+		writer.flush();
+		int size = out.size();
+		writer.writeString("type");
+		writer.flush();
+		// A repeated short string is written as a reference
+		assertEquals(size + 2, out.size());
+		writer.writeString(longText.toString());
+		writer.flush();
+		// Long strings are not shared
+		assertTrue(out.size() > size + 100);
+
+		BinaryTreeReader reader = new BinaryTreeReader(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("type", reader.readString());
+		assertEquals(longText.toString(), reader.readString());
+		assertEquals("type", reader.readString());
+		assertEquals(longText.toString(), reader.readString());
+	}
+
+	@Test
+	public void testVarLong() throws IOException {
+		long[] values = {0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE,
+				Long.MAX_VALUE, Long.MIN_VALUE};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryTreeWriter writer = new BinaryTreeWriter(out);
+		for (long value : values) {
+			writer.writeVarLong(value);
+		}
+		writer.flush();
+		BinaryTreeReader reader = new BinaryTreeReader(new ByteArrayInputStream(out.toByteArray()));
+		for (long value : values) {
+			assertEquals(value, reader.readVarLong());
+		}
+	}
+
+	@Test
+	public void testSignature() {
+		byte[] data = {'O', 'K', 'P', 'B', 1, 0};
+		assertTrue(BinaryPersistenceSession.isBinarySession(
+				new BufferedInputStream(new ByteArrayInputStream(data))));
+		assertFalse(BinaryPersistenceSession.isBinarySession(
+				new BufferedInputStream(new ByteArrayInputStream("{\"header\"".getBytes()))));
+		assertFalse(BinaryPersistenceSession.isBinarySession(
+				new BufferedInputStream(new ByteArrayInputStream(new byte[] {'O', 'K'}))));
+	}
+
+	private JsonNode roundTrip(JsonNode node) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryTreeWriter writer = new BinaryTreeWriter(out);
+		writer.writeNode(node);
+		writer.flush();
+		return new BinaryTreeReader(new ByteArrayInputStream(out.toByteArray())).readNode();
+	}
+}
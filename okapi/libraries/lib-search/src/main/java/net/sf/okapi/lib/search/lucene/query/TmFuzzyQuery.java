@@ -21,11 +21,25 @@ public class TmFuzzyQuery extends Query {
 	float threshold;
 	List<Term> terms;
 	String termCountField;
+	String ngramCountField;
 
 	public TmFuzzyQuery(float threshold, String termCountField) {
+		this(threshold, termCountField, null);
+	}
+
+	/**
+	 * Creates a fuzzy query.
+	 * @param threshold the minimal score of the matches.
+	 * @param termCountField the field whose term vectors give the number of terms of each document.
+	 * @param ngramCountField the integer field holding the number of unique terms of each document
+	 * (indexed with a single term per value). Can be null. When set, the term vectors are only read
+	 * for the documents without a value.
+	 */
+	public TmFuzzyQuery(float threshold, String termCountField, String ngramCountField) {
 		this.threshold = threshold;
 		this.terms = new ArrayList<Term>();
 		this.termCountField = termCountField;
+		this.ngramCountField = ngramCountField;
 	}
 
 	public void add(Term term) {
@@ -79,7 +93,7 @@ public class TmFuzzyQuery extends Query {
 			if (terms.size() == 0)
 				return null;
 
-			return new TmFuzzyScorer(threshold, similarity, terms, reader, termCountField);
+			return new TmFuzzyScorer(threshold, similarity, terms, reader, termCountField, ngramCountField);
 		}
 
 		@Override
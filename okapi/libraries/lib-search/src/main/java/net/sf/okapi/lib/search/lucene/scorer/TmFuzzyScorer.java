@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermPositions;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Similarity;
 import org.apache.lucene.util.OpenBitSet;
@@ -35,6 +36,8 @@ public class TmFuzzyScorer extends Scorer {
 	private TIntIntHashMap scoredDocs;
 	private int uniqueTermSize;
 	private String termCountField;
+	private String ngramCountField;
+	private int[] ngramCounts;
 
 	/**
 	 * @param threshold
@@ -45,11 +48,27 @@ public class TmFuzzyScorer extends Scorer {
 	 */
 	public TmFuzzyScorer(float threshold, Similarity similarity,
 			List<Term> terms, IndexReader reader, String termCountField) throws IOException {
+		this(threshold, similarity, terms, reader, termCountField, null);
+	}
+
+	/**
+	 * @param threshold
+	 * @param similarity
+	 * @param terms
+	 * @param reader
+	 * @param termCountField field whose term vectors give the number of terms of a document
+	 * @param ngramCountField integer field with the number of unique terms of each document (can be null)
+	 * @throws IOException
+	 */
+	public TmFuzzyScorer(float threshold, Similarity similarity,
+			List<Term> terms, IndexReader reader, String termCountField,
+			String ngramCountField) throws IOException {
 		super(similarity);
 		this.reader = reader;
 		this.threshold = threshold;
 		this.terms = terms;
 		this.termCountField = termCountField;
+		this.ngramCountField = ngramCountField;
 		this.scoredDocs = new TIntIntHashMap();
 		this.currentDoc = -1;
 	}
@@ -79,6 +98,11 @@ public class TmFuzzyScorer extends Scorer {
 		}
 
 		if (docPointers.cardinality() > 0) {
+			if (ngramCountField != null) {
+				// Loaded once per reader and cached by Lucene
+				ngramCounts = FieldCache.DEFAULT.getInts(reader, ngramCountField,
+						FieldCache.NUMERIC_UTILS_INT_PARSER);
+			}
 			docPointerIterator = (OpenBitSetIterator) docPointers.iterator();
 		}
 	}
@@ -133,8 +157,13 @@ public class TmFuzzyScorer extends Scorer {
 	}
 	
 	private float calculateScore() throws IOException {
+		int termCount = (ngramCounts == null) ? 0 : ngramCounts[currentDoc];
+		if (termCount == 0) {
+			// No stored count (e.g. index created with an older version)
+			termCount = reader.getTermFreqVector(currentDoc, termCountField).size();
+		}
 		score = (float) ((2.0f * (float) scoredDocs.get(currentDoc)) / 
-					(float) (reader.getTermFreqVector(currentDoc, termCountField).size() + uniqueTermSize)) * 100.0f;
+					(float) (termCount + uniqueTermSize)) * 100.0f;
 		
 		return score;
 	}
@@ -0,0 +1,194 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+============================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable ordered set of compiled SRX rules that can be applied to a text in a single scan.
+ * <p>All the rules are merged into one pattern made of one optional look-ahead per rule, so one
+ * match attempt at a given position tells which rules match there. The SRX behavior of
+ * {@link #matchRule(CompiledRule, int, String, int[])} (the per-rule loop) is reproduced exactly:
+ * each rule resumes its search at its last break position, and when several rules give the same
+ * position the first rule of the list wins.
+ * <p>Rules using back-references or named groups cannot be renumbered inside the merged pattern:
+ * in that case all the rules are applied one by one.
+ * <p>Instances can be shared between threads.
+ */
+final class CompiledRuleSet {
+
+	// Back-references (\1, \k<name>) and named groups prevent merging
+	private static final Pattern UNMERGEABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+	private final List<CompiledRule> rules;
+	private final Pattern combined;
+	private final int[] ruleGroups;
+	private final Pattern maskRule;
+
+	/**
+	 * Creates a new rule set without mask rule.
+	 * @param rules the rules, in SRX order (highest priority first).
+	 */
+	CompiledRuleSet (List<CompiledRule> rules) {
+		this(rules, null);
+	}
+
+	/**
+	 * Creates a new rule set.
+	 * @param rules the rules, in SRX order (highest priority first).
+	 * @param maskRule the pattern of the mask rule (can be null or empty).
+	 */
+	CompiledRuleSet (List<CompiledRule> rules,
+		String maskRule)
+	{
+		this.rules = Collections.unmodifiableList(new ArrayList<CompiledRule>(rules));
+		ruleGroups = new int[this.rules.size()];
+		combined = combine();
+		if (( maskRule != null ) && ( maskRule.length() > 0 ))
+			this.maskRule = Pattern.compile(maskRule, Pattern.UNICODE_CHARACTER_CLASS);
+		else
+			this.maskRule = null;
+	}
+
+	/**
+	 * Gets the rules of this set.
+	 * @return the unmodifiable list of rules.
+	 */
+	List<CompiledRule> getRules () {
+		return rules;
+	}
+
+	/**
+	 * Gets the compiled mask rule of this set.
+	 * @return the mask rule pattern, or null if there is none.
+	 */
+	Pattern getMaskRule () {
+		return maskRule;
+	}
+
+	/**
+	 * Indicates if this set is applied in a single scan.
+	 * @return true if the rules are merged, false if they are applied one by one.
+	 */
+	boolean isMerged () {
+		return (combined != null);
+	}
+
+	/**
+	 * Applies all the rules of this set to a text.
+	 * @param text the text (without in-line code markers).
+	 * @param owners array of size text.length()+1. For each position, receives the index+1 of the
+	 * first rule matching there (0 if no rule matches). Positions already set with a lower value are kept.
+	 */
+	void match (String text,
+		int[] owners)
+	{
+		if ( rules.isEmpty() ) return;
+		if ( combined == null ) {
+			for ( int i=0; i<rules.size(); i++ ) {
+				matchRule(rules.get(i), i, text, owners);
+			}
+			return;
+		}
+
+		int count = rules.size();
+		int[] starts = new int[count]; // Where each rule resumes its search
+		boolean[] active = new boolean[count];
+		int activeCount = count;
+		for ( int r=0; r<count; r++ ) active[r] = true;
+
+		Matcher m = combined.matcher(text);
+		m.useTransparentBounds(true);
+		// The merged pattern matches the empty string at each position
+		while (( activeCount > 0 ) && m.find() ) {
+			int pos = m.start();
+			for ( int r=0; r<count; r++ ) {
+				if ( !active[r] || ( starts[r] > pos )) continue;
+				int group = ruleGroups[r];
+				if ( m.start(group) == -1 ) continue; // No match for this rule here
+				int n = pos + (m.end(group+1) - m.start(group+1));
+				if ( n <= text.length() ) {
+					claim(owners, n, r);
+				}
+				// Same stop conditions as the per-rule loop
+				int prevStart = starts[r];
+				starts[r] = n;
+				if (( n == prevStart ) || ( n == pos )) {
+					active[r] = false;
+					activeCount--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies one rule to a text, the way the SRX algorithm does: the search restarts at
+	 * each break position found.
+	 * @param rule the rule to apply.
+	 * @param index the index of the rule (its priority).
+	 * @param text the text (without in-line code markers).
+	 * @param owners see {@link #match(String, int[])}.
+	 */
+	static void matchRule (CompiledRule rule,
+		int index,
+		String text,
+		int[] owners)
+	{
+		Matcher m = rule.pattern.matcher(text);
+		m.useTransparentBounds(true);
+		int start = 0;
+		int prevStart = -1;
+		while (( start != prevStart ) && m.find(start) ) {
+			int n = m.start()+m.group(1).length();
+			// Set next start
+			prevStart = start; // Comparing with previous start avoid infinite loop for non-capturing patterns
+			start = n; // We search starting at each character (to make sure we cover the previous match too)
+			// Match the end
+			if ( n > text.length() ) continue;
+			claim(owners, n, index);
+		}
+	}
+
+	// Per SRX algorithm, the first rule matching a position is the one used
+	// see http://www.gala-global.org/oscarStandards/srx/srx20.html#Struct_classdefinitions
+	private static void claim (int[] owners,
+		int pos,
+		int index)
+	{
+		if (( owners[pos] == 0 ) || ( owners[pos] > index+1 )) {
+			owners[pos] = index+1;
+		}
+	}
+
+	private Pattern combine () {
+		if ( rules.isEmpty() ) return null;
+		StringBuilder tmp = new StringBuilder();
+		int group = 1;
+		for ( int i=0; i<rules.size(); i++ ) {
+			Pattern p = rules.get(i).pattern;
+			if ( UNMERGEABLE.matcher(p.pattern()).find() ) return null;
+			ruleGroups[i] = group;
+			tmp.append("(?:(?=(").append(p.pattern()).append(")))?");
+			group += 1 + p.matcher("").groupCount();
+		}
+		return Pattern.compile(tmp.toString(), Pattern.UNICODE_CHARACTER_CLASS);
+	}
+}
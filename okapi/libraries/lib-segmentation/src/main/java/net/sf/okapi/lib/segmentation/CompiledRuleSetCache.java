@@ -0,0 +1,126 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+============================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-safe, size-bounded cache of {@link CompiledRuleSet} objects shared by all the
+ * {@link SRXDocument} instances.
+ * <p>The key is made of the final regular expressions of the rules (as generated from the SRX
+ * document for the selected language maps) with their break flags, and the mask rule. Two documents
+ * or two locales resolving to the same rules therefore share the same compiled patterns.
+ * The least recently used entries are discarded first.
+ */
+final class CompiledRuleSetCache {
+
+	/**
+	 * Default maximum number of rule sets kept in the cache.
+	 */
+	static final int DEFAULT_MAX_SIZE = 64;
+
+	private static final CompiledRuleSetCache INSTANCE = new CompiledRuleSetCache(DEFAULT_MAX_SIZE);
+
+	private final LinkedHashMap<String, CompiledRuleSet> map;
+	private int maxSize;
+
+	CompiledRuleSetCache (int maxSize) {
+		this.maxSize = maxSize;
+		map = new LinkedHashMap<String, CompiledRuleSet>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<String, CompiledRuleSet> eldest) {
+				return size() > CompiledRuleSetCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Gets the shared cache.
+	 * @return the cache used by all SRX documents.
+	 */
+	static CompiledRuleSetCache getInstance () {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the compiled form of a list of rules, compiling it if it is not in the cache.
+	 * @param patterns the regular expressions of the rules, in priority order.
+	 * @param breaks the break flag of each rule.
+	 * @param maskRule the mask rule pattern (can be null).
+	 * @return the compiled rules.
+	 */
+	CompiledRuleSet get (List<String> patterns,
+		List<Boolean> breaks,
+		String maskRule)
+	{
+		StringBuilder tmp = new StringBuilder();
+		tmp.append(maskRule == null ? "" : maskRule).append('\u0000');
+		for ( int i=0; i<patterns.size(); i++ ) {
+			tmp.append(breaks.get(i) ? '1' : '0').append(patterns.get(i)).append('\u0000');
+		}
+		String key = tmp.toString();
+
+		CompiledRuleSet set;
+		synchronized ( map ) {
+			set = map.get(key);
+		}
+		if ( set != null ) return set;
+
+		// Compile outside the lock: two threads may compile the same set, which is harmless
+		List<CompiledRule> rules = new ArrayList<CompiledRule>(patterns.size());
+		for ( int i=0; i<patterns.size(); i++ ) {
+			rules.add(new CompiledRule(patterns.get(i), breaks.get(i)));
+		}
+		set = new CompiledRuleSet(rules, maskRule);
+		synchronized ( map ) {
+			CompiledRuleSet existing = map.get(key);
+			if ( existing != null ) return existing;
+			map.put(key, set);
+		}
+		return set;
+	}
+
+	/**
+	 * Sets the maximum number of rule sets kept in this cache.
+	 * @param maxSize the new maximum size (0 to disable caching).
+	 */
+	void setMaxSize (int maxSize) {
+		synchronized ( map ) {
+			this.maxSize = Math.max(0, maxSize);
+			if ( map.size() > this.maxSize ) map.clear();
+		}
+	}
+
+	/**
+	 * Removes all the entries of this cache.
+	 */
+	void clear () {
+		synchronized ( map ) {
+			map.clear();
+		}
+	}
+
+	int size () {
+		synchronized ( map ) {
+			return map.size();
+		}
+	}
+}
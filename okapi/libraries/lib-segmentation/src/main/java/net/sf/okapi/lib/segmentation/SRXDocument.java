@@ -22,7 +22,9 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -711,13 +713,15 @@ public class SRXDocument {
 		segmenter.setOptions(segmentSubFlows, includeStartCodes, includeEndCodes, includeIsolatedCodes,
 				oneSegmentIncludesAll, trimLeadingWS, trimTrailingWS, useJavaRegex, useIcu4JBreakRules, treatIsolatedCodesAsWhitespace);
 
+		List<String> ruleNames = new ArrayList<String>();
 		for (LanguageMap langMap : langMaps) {
 			if (Pattern.matches(langMap.pattern, languageCode.toString())) {
-				compileRules(segmenter, langMap.ruleName);
+				ruleNames.add(langMap.ruleName);
 				if (!segmenter.cascade())
 					break; // Stop at the first matching map
 			}
 		}
+		compileRules(segmenter, ruleNames);
 
 		segmenter.setLanguage(languageCode);
 		return segmenter;
@@ -752,36 +756,41 @@ public class SRXDocument {
 
 		segmenter.setOptions(segmentSubFlows, includeStartCodes, includeEndCodes, includeIsolatedCodes,
 				oneSegmentIncludesAll, trimLeadingWS, trimTrailingWS, useJavaRegex, useIcu4JBreakRules, treatIsolatedCodesAsWhitespace);
-		compileRules(segmenter, ruleName);
+		compileRules(segmenter, Collections.singletonList(ruleName));
 		segmenter.setLanguage(LocaleId.EMPTY);
 		return segmenter;
 	}
 
 	/**
-	 * Compiles a language rule into the current set of active rules.
+	 * Compiles one or more language rules and assign them to a segmenter.
+	 * The compiled rules are taken from a shared cache when the same rules have
+	 * already been compiled.
 	 * 
-	 * @param ruleName
-	 *            the name of the language rule to compile.
+	 * @param ruleNames
+	 *            the names of the language rules to compile, in order of priority.
 	 */
-	private void compileRules(SRXSegmenter segmenter, String ruleName) {
-		if (!langRules.containsKey(ruleName) && !useIcu4JBreakRules) {
-			throw new SegmentationRuleException("language rule '" + ruleName + "' not found.");
+	private void compileRules(SRXSegmenter segmenter, List<String> ruleNames) {
+		if (ruleNames.isEmpty()) {
+			return; // No matching language map
 		}
-		ArrayList<Rule> langRule = langRules.get(ruleName);
-		String pattern = null;
-		for (Rule rule : langRule) {
-			if (rule.isActive) {
-				// Replace special markers ANYCODES by inline code pattern
-				pattern = generateRuleRegex(rule);
-				pattern = pattern.replace(ANYCODE, INLINECODE_PATTERN);
-
-				// Compile and add the rule
-				segmenter.addRule(new CompiledRule(pattern, rule.isBreak));
+		List<String> patterns = new ArrayList<String>();
+		List<Boolean> breaks = new ArrayList<Boolean>();
+		for (String ruleName : ruleNames) {
+			if (!langRules.containsKey(ruleName)) {
+				if (useIcu4JBreakRules) continue;
+				throw new SegmentationRuleException("language rule '" + ruleName + "' not found.");
+			}
+			for (Rule rule : langRules.get(ruleName)) {
+				if (rule.isActive) {
+					// Replace special markers ANYCODES by inline code pattern
+					String pattern = generateRuleRegex(rule);
+					patterns.add(pattern.replace(ANYCODE, INLINECODE_PATTERN));
+					breaks.add(rule.isBreak);
+				}
 			}
 		}
-		
-		// Range rules
-		segmenter.setMaskRule(maskRule);
+		// Rules and range rules
+		segmenter.setRuleSet(CompiledRuleSetCache.getInstance().get(patterns, breaks, maskRule));
 	}
 
 	public String generateRuleRegex(Rule rule) {
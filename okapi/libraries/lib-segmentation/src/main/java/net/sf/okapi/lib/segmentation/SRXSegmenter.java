@@ -26,7 +26,6 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,8 +75,8 @@ public class SRXSegmenter implements ISegmenter {
 	private boolean trimCodes; // Extension
 	private boolean treatIsolatedCodesAsWhitespace; // Extension
 	private ArrayList<CompiledRule> rules;
+	private CompiledRuleSet ruleSet;
 	private Pattern maskRule; // Extension
-	private TreeMap<Integer, Boolean> splits;
 	private List<Integer> finalSplits;
 	private ArrayList<Integer> starts;
 	private ArrayList<Integer> ends;
@@ -94,8 +93,8 @@ public class SRXSegmenter implements ISegmenter {
 	public void reset () {
 		currentLanguageCode = null;
 		rules = new ArrayList<CompiledRule>();
+		ruleSet = null;
 		maskRule = null;
-		splits = null;
 		segmentSubFlows = true; // SRX default
 		cascade = false; // There is no SRX default for this
 		includeStartCodes = false; // SRX default
@@ -269,69 +268,72 @@ public class SRXSegmenter implements ISegmenter {
 					TextUnitUtil.removeAndReplaceCodes(codedText, ISOLATED_CODE_REPLACEMENT_TEXT) :
 					TextUnitUtil.removeCodes(codedText);
 
+		// Find the break and no-break positions: owners holds, for each position,
+		// the index+1 of the rule that applies there (0 for none)
+		int[] owners = new int[codedText.length()+1];
+		getRuleSet().match(codedText, owners);
 		// ICU4J rules are generated for each segment, must add with the normal SRX rules
-		ArrayList<CompiledRule> combinedRules = null;
-		if (useIcu4JBreakRules) {
-			combinedRules = new ArrayList<>();
-			combinedRules.addAll(rules);
-			// ICU4J break rules are always added last as we want previous "exception" SRX rules to override them if found.	
-			combinedRules.addAll(getIcu4jBreakRules(codedText));
-		} else {
-			combinedRules = rules;
-		}
-		
-		splits = new TreeMap<>();
-		Matcher m;
-		for ( CompiledRule rule : combinedRules ) {			
-			m = rule.pattern.matcher(codedText);
-			// FIXME: I think transparentbounds is what we want so that regex can peek 
-			// behind and ahead to better give context outside the matching region. 			
-			m.useTransparentBounds(true);
-			int start = 0;
-			int prevStart = -1;
-			while (( start != prevStart ) && m.find(start) ) {
-				int n = m.start()+m.group(1).length();
-
-				// Set next start
-				prevStart = start; // Comparing with previous start avoid infinite loop for non-capturing patterns
-				start = n; // We search starting at each character (to make sure we cover the previous match too)
-				
-				// Match the end
-				if ( n > codedText.length() ) continue;
-				// Already a match: Per SRX algorithm, we use the first one only
-				// see http://www.gala-global.org/oscarStandards/srx/srx20.html#Struct_classdefinitions
-				if ( splits.containsKey(n) ) continue;
-				
-				// Else add a split marker
-				splits.put(n, rule.isBreak);
+		// ICU4J break rules are always added last as we want previous "exception" SRX rules to override them if found.
+		List<CompiledRule> icu4jRules = null;
+		if ( useIcu4JBreakRules ) {
+			icu4jRules = new ArrayList<>(getIcu4jBreakRules(codedText));
+			for ( int i=0; i<icu4jRules.size(); i++ ) {
+				CompiledRuleSet.matchRule(icu4jRules.get(i), rules.size()+i, codedText, owners);
 			}
 		}
 
 		codedText = container.getCodedText(); // restore codedText after word breaks
 
 		// Adjust split positions minding the removed original codes
-		TreeMap<Integer, Boolean> oldSplits = splits;
-		splits = new TreeMap<>();
-		
-		for (Integer pos : oldSplits.keySet()) {
-			int newPos = recalcPos(codedText, pos, codePositions, origCodePositions);
-			splits.put(newPos, oldSplits.get(pos));
+		// Both the split positions and the code positions are sorted, so we walk them together
+		int[] positions = new int[owners.length];
+		boolean[] breaks = new boolean[owners.length];
+		int count = 0;
+		int maxPos = codedText.length();
+		int codeIndex = 0;
+		int numberOfNonIsolatedCodes = 0;
+		int numberOfIsolatedCodes = 0;
+		for ( int pos=0; pos<owners.length; pos++ ) {
+			if ( owners[pos] == 0 ) continue;
+			while (( codeIndex < codePositions.size() ) && ( codePositions.get(codeIndex) < pos )) {
+				switch ( Marker.asEnum(codedText.charAt(origCodePositions.get(codeIndex))) ) {
+					case OPENING:
+					case CLOSING:
+						numberOfNonIsolatedCodes++;
+						break;
+					case ISOLATED:
+						numberOfIsolatedCodes++;
+						break;
+					default:
+						// skip UNKNOWN
+						break;
+				}
+				codeIndex++;
+			}
+			int rule = owners[pos]-1;
+			positions[count] = calculateIncreasedPosition(pos, numberOfNonIsolatedCodes, numberOfIsolatedCodes);
+			breaks[count] = (rule < rules.size()) ? rules.get(rule).isBreak : icu4jRules.get(rule-rules.size()).isBreak;
+			maxPos = Math.max(maxPos, positions[count]);
+			count++;
+		}
+		// splits holds 0 for no split, 1 for a break, 2 for a no-break
+		byte[] splits = new byte[maxPos+1];
+		for ( int i=0; i<count; i++ ) {
+			splits[positions[i]] = (byte)(breaks[i] ? 1 : 2);
 		}
 		
 		// Set the additional split positions for mask-rules
 		if ( maskRule != null ) {
-			m = maskRule.matcher(codedText);
+			Matcher m = maskRule.matcher(codedText);
 			while ( m.find() ) {
 				// Remove any existing marker inside the range
 				for ( int n=m.start(); n<m.end(); n++ ) {
-					if ( splits.containsKey(n) ) {
-						splits.remove(n);
-					}
+					splits[n] = 0;
 				}
 				// Then set the start and end of the range as breaks
 				// Don't include a split at 0 because it's an implicit one
-				if ( m.start() > 0 ) splits.put(m.start(), true);
-				splits.put(m.end(), true);
+				if ( m.start() > 0 ) splits[m.start()] = 1;
+				splits[m.end()] = 1;
 			}
 		}
 		
@@ -356,8 +358,9 @@ public class SRXSegmenter implements ISegmenter {
 						
 			// All breaks are before codes, as we restore a code at its original pos, and if 
 			// there's a break at that pos, the code will always find itself after the break 
-			for (int pos : splits.keySet()) {
-				if (!splits.get(pos)) continue; // Skip non-break positions
+			for (int split=0; split<splits.length; split++) {
+				if (splits[split] != 1) continue; // Skip non-break positions
+				int pos = split;
 				// FIXME: Out of bounds error should never happen, but we are seeing it for Chinese
 				// this fix prevents a index out of bounds exception, but may be masking a
 				// bigger problem.
@@ -389,8 +392,8 @@ public class SRXSegmenter implements ISegmenter {
 			}
 		}
 		else { // Just copy the real splits
-			for ( int pos : splits.keySet() ) {
-				if ( splits.get(pos) ) finalSplits.add(pos);
+			for ( int pos=0; pos<splits.length; pos++ ) {
+				if ( splits[pos] == 1 ) finalSplits.add(pos);
 			}
 		}
 		
@@ -470,7 +473,11 @@ public class SRXSegmenter implements ISegmenter {
 	// Convert ICU4J break positions to rules so they work as any other SRX rule
 	private Collection<CompiledRule> getIcu4jBreakRules(String text) {
 		LinkedList<CompiledRule> rules = new LinkedList<>(); 	
-		// icu4jBreakIterator created when locale is set (setLanguage)
+		// icu4jBreakIterator is created the first time it is needed for the current language
+		if ( icu4jBreakIterator == null ) {
+			icu4jBreakIterator = RuleBasedBreakIterator.getSentenceInstance(
+				ULocale.createCanonical(currentLanguageCode.toBCP47()));
+		}
 		icu4jBreakIterator.setText(text);
 		// only needed to call generateRuleRegex method
 		SRXDocument d = new SRXDocument();
@@ -653,9 +660,8 @@ public class SRXSegmenter implements ISegmenter {
 
 	@Override
 	public void setLanguage (LocaleId languageCode) {
-		if (languageCode != null) {
-			icu4jBreakIterator = RuleBasedBreakIterator.getSentenceInstance(ULocale.createCanonical(languageCode.toBCP47()));
-		}
+		// The ICU4J break iterator is costly to create: do it only if the rules are used
+		icu4jBreakIterator = null;
 		currentLanguageCode = languageCode;
 	}
 	
@@ -674,8 +680,31 @@ public class SRXSegmenter implements ISegmenter {
 	 */
 	protected void addRule (CompiledRule compiledRule) {
 		rules.add(compiledRule);
+		ruleSet = null;
 	}
 	
+	/**
+	 * Gets the compiled form of the rules of this segmenter.
+	 * @return the rule set for the current rules.
+	 */
+	CompiledRuleSet getRuleSet () {
+		if ( ruleSet == null ) {
+			ruleSet = new CompiledRuleSet(rules);
+		}
+		return ruleSet;
+	}
+
+	/**
+	 * Sets all the rules of this segmenter at once, from an already compiled set.
+	 * This replaces the existing rules and mask rule.
+	 * @param ruleSet the compiled rules to use.
+	 */
+	void setRuleSet (CompiledRuleSet ruleSet) {
+		rules = new ArrayList<CompiledRule>(ruleSet.getRules());
+		maskRule = ruleSet.getMaskRule();
+		this.ruleSet = ruleSet;
+	}
+
 	/**
 	 * Sets the pattern for the mask rule.
 	 * @param pattern the new pattern to use for the mask rule.
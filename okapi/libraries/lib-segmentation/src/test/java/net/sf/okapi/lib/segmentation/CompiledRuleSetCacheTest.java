@@ -0,0 +1,88 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.okapi.common.FileLocation;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextContainer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompiledRuleSetCacheTest {
+
+	@Test
+	public void sharedBetweenDocuments () {
+		String path = FileLocation.fromClass(getClass()).in("/defaultSegmentation.srx").toString();
+		SRXDocument doc1 = new SRXDocument();
+		doc1.loadRules(path);
+		SRXDocument doc2 = new SRXDocument();
+		doc2.loadRules(path);
+
+		SRXSegmenter seg1 = (SRXSegmenter)doc1.compileLanguageRules(LocaleId.ENGLISH, null);
+		SRXSegmenter seg2 = (SRXSegmenter)doc2.compileLanguageRules(LocaleId.ENGLISH, null);
+		assertSame(seg1.getRuleSet(), seg2.getRuleSet());
+		// Locales resolving to the same rules share them too
+		SRXSegmenter seg3 = (SRXSegmenter)doc2.compileLanguageRules(LocaleId.JAPANESE, null);
+		assertSame(seg1.getRuleSet(), seg3.getRuleSet());
+		SRXSegmenter seg4 = (SRXSegmenter)doc2.compileLanguageRules(LocaleId.fromString("th"), null);
+		assertNotSame(seg1.getRuleSet(), seg4.getRuleSet());
+
+		// Segmenters sharing the rules give the same results
+		TextContainer tc1 = new TextContainer("Part 1. Part 2. Mr. Smith is here.");
+		TextContainer tc2 = new TextContainer("Part 1. Part 2. Mr. Smith is here.");
+		assertEquals(3, seg1.computeSegments(tc1));
+		assertEquals(3, seg2.computeSegments(tc2));
+		assertEquals(seg1.getRanges().toString(), seg2.getRanges().toString());
+	}
+
+	@Test
+	public void keyIncludesBreakFlagsAndMaskRule () {
+		CompiledRuleSetCache cache = new CompiledRuleSetCache(10);
+		List<String> patterns = Arrays.asList("(\\.)(\\s)");
+		CompiledRuleSet set = cache.get(patterns, Arrays.asList(true), null);
+		assertSame(set, cache.get(patterns, Arrays.asList(true), null));
+		assertNotSame(set, cache.get(patterns, Arrays.asList(false), null));
+		assertNotSame(set, cache.get(patterns, Arrays.asList(true), "\\d+"));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedIsDiscarded () {
+		CompiledRuleSetCache cache = new CompiledRuleSetCache(2);
+		List<Boolean> breaks = Arrays.asList(true);
+		CompiledRuleSet a = cache.get(Arrays.asList("(a)()"), breaks, null);
+		cache.get(Arrays.asList("(b)()"), breaks, null);
+		assertSame(a, cache.get(Arrays.asList("(a)()"), breaks, null));
+		cache.get(Arrays.asList("(c)()"), breaks, null); // Discards b
+		assertEquals(2, cache.size());
+		assertSame(a, cache.get(Arrays.asList("(a)()"), breaks, null));
+
+		cache.setMaxSize(0);
+		assertNotSame(a, cache.get(Arrays.asList("(a)()"), breaks, null));
+		assertEquals(0, cache.size());
+	}
+}
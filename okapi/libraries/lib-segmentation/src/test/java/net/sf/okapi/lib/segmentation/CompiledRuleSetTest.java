@@ -0,0 +1,107 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.segmentation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.FileLocation;
+import net.sf.okapi.common.LocaleId;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompiledRuleSetTest {
+
+	private static final String[] TEXTS = {
+		"",
+		"Text.",
+		"Part 1. Part 2.  Part 3...",
+		"Mr. Smith met Dr. Jones at 5 p.m. on Jan. 3. They talked.",
+		"Is it true?! Yes. \"Quoted.\" Next one... and (parenthesis.) End",
+		"Version 1.2.3 is out. See e.g. the notes, i.e. the details.\nNew line. Tab\tthere.",
+		"Ein Satz. Noch ein Satz z.B. hier. Der 3. Mai ist heute. Ende!",
+		"第一句。第二句！第三句？",
+		"Sentence one.   Sentence two. Sentence three.",
+		"A.B.C. D. E: f; g. H? i! J.",
+	};
+
+	@Test
+	public void sameMatchesAsPerRuleLoop () {
+		FileLocation location = FileLocation.fromClass(getClass());
+		checkDocument(location.in("/defaultSegmentation.srx").toString(), "en", "fr", "de", "ja", "zh", "it");
+		checkDocument(location.in("/language_tools_german.srx").toString(), "de");
+	}
+
+	@Test
+	public void fallsBackForBackReferences () {
+		List<CompiledRule> rules = new ArrayList<CompiledRule>();
+		rules.add(new CompiledRule("((\\w)\\2\\.)(\\s)", false));
+		rules.add(new CompiledRule("(\\.)(\\s)", true));
+		CompiledRuleSet set = new CompiledRuleSet(rules);
+		assertFalse(set.isMerged());
+		check(set, "Add aa. Then b. End");
+	}
+
+	@Test
+	public void mergesSimpleRules () {
+		List<CompiledRule> rules = new ArrayList<CompiledRule>();
+		rules.add(new CompiledRule("((?i)etc\\.)(\\s)", false));
+		rules.add(new CompiledRule("(\\.)(\\s)", true));
+		rules.add(new CompiledRule("(.|\n)()", false));
+		CompiledRuleSet set = new CompiledRuleSet(rules);
+		assertTrue(set.isMerged());
+		for ( String text : TEXTS ) {
+			check(set, text);
+		}
+		check(set, "Apples, ETC. Pears.");
+	}
+
+	private void checkDocument (String path,
+		String... locales)
+	{
+		SRXDocument doc = new SRXDocument();
+		doc.loadRules(path);
+		for ( String loc : locales ) {
+			SRXSegmenter seg = (SRXSegmenter)doc.compileLanguageRules(LocaleId.fromString(loc), null);
+			CompiledRuleSet set = seg.getRuleSet();
+			assertTrue(set.isMerged());
+			for ( String text : TEXTS ) {
+				check(set, text);
+			}
+		}
+	}
+
+	private void check (CompiledRuleSet set,
+		String text)
+	{
+		int[] expected = new int[text.length()+1];
+		List<CompiledRule> rules = set.getRules();
+		for ( int i=0; i<rules.size(); i++ ) {
+			CompiledRuleSet.matchRule(rules.get(i), i, text, expected);
+		}
+		int[] actual = new int[text.length()+1];
+		set.match(text, actual);
+		assertArrayEquals("Text: " + text, expected, actual);
+	}
+}
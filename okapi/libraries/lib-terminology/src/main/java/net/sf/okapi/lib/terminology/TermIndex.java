@@ -0,0 +1,216 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton over a list of terms: all the occurrences of all the terms in a text
+ * are found in a single pass over the text.
+ * <p>Each term is identified by its index in the list given to the constructor. Identical terms
+ * share the same state. Instances are immutable once created and can be shared between threads.
+ */
+public final class TermIndex {
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	// Trie stored as first-child/next-sibling lists, except for the root
+	private final int[] rootChildren = new int[Character.MAX_VALUE+1];
+	private char[] labels;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private int[] fail;
+	/** Nearest state on the failure chain (excluding the state itself) that ends a term. */
+	private int[] outputLink;
+	/** Index of the first term ending at each state, NONE if none. */
+	private int[] firstTerm;
+	private int[] depth;
+	private int count;
+
+	/** Next term with the same text, NONE if none. */
+	private final int[] sameTerm;
+
+	/**
+	 * Creates the index for a given list of terms.
+	 * @param terms the terms. Null and empty terms are ignored.
+	 */
+	public TermIndex (List<String> terms) {
+		int capacity = 16;
+		labels = new char[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		depth = new int[capacity];
+		Arrays.fill(rootChildren, NONE);
+		Arrays.fill(firstChild, NONE);
+		Arrays.fill(nextSibling, NONE);
+		firstTerm = new int[capacity];
+		Arrays.fill(firstTerm, NONE);
+		count = 1; // The root
+
+		sameTerm = new int[terms.size()];
+		Arrays.fill(sameTerm, NONE);
+
+		for ( int t=0; t<terms.size(); t++ ) {
+			String term = terms.get(t);
+			if (( term == null ) || ( term.length() == 0 )) continue;
+			int state = ROOT;
+			for ( int i=0; i<term.length(); i++ ) {
+				state = addChild(state, term.charAt(i));
+			}
+			// Keep the terms of each state in list order
+			if ( firstTerm[state] == NONE ) {
+				firstTerm[state] = t;
+			}
+			else {
+				int last = firstTerm[state];
+				while ( sameTerm[last] != NONE ) last = sameTerm[last];
+				sameTerm[last] = t;
+			}
+		}
+		buildLinks();
+	}
+
+	private int addChild (int state,
+		char ch)
+	{
+		int child = findChild(state, ch);
+		if ( child != NONE ) return child;
+		if ( count == labels.length ) {
+			int capacity = labels.length*2;
+			labels = Arrays.copyOf(labels, capacity);
+			firstChild = grow(firstChild, capacity);
+			nextSibling = grow(nextSibling, capacity);
+			firstTerm = grow(firstTerm, capacity);
+			depth = Arrays.copyOf(depth, capacity);
+		}
+		child = count++;
+		labels[child] = ch;
+		depth[child] = depth[state]+1;
+		if ( state == ROOT ) {
+			rootChildren[ch] = child;
+		}
+		else {
+			nextSibling[child] = firstChild[state];
+			firstChild[state] = child;
+		}
+		return child;
+	}
+
+	private static int[] grow (int[] array,
+		int capacity)
+	{
+		int size = array.length;
+		int[] res = Arrays.copyOf(array, capacity);
+		Arrays.fill(res, size, capacity, NONE);
+		return res;
+	}
+
+	private int findChild (int state,
+		char ch)
+	{
+		if ( state == ROOT ) return rootChildren[ch];
+		for ( int c=firstChild[state]; c!=NONE; c=nextSibling[c] ) {
+			if ( labels[c] == ch ) return c;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Computes the failure and output links, breadth first.
+	 */
+	private void buildLinks () {
+		fail = new int[count];
+		outputLink = new int[count];
+		Arrays.fill(outputLink, NONE);
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		for ( int ch=0; ch<rootChildren.length; ch++ ) {
+			int child = rootChildren[ch];
+			if ( child == NONE ) continue;
+			fail[child] = ROOT;
+			queue[tail++] = child;
+		}
+		while ( head < tail ) {
+			int state = queue[head++];
+			for ( int c=firstChild[state]; c!=NONE; c=nextSibling[c] ) {
+				int f = fail[state];
+				int next;
+				while (( next = findChild(f, labels[c]) ) == NONE ) {
+					if ( f == ROOT ) {
+						next = ROOT;
+						break;
+					}
+					f = fail[f];
+				}
+				fail[c] = next;
+				outputLink[c] = ( firstTerm[next] != NONE ) ? next : outputLink[next];
+				queue[tail++] = c;
+			}
+		}
+	}
+
+	/**
+	 * Finds all the occurrences of the terms in a given text, including overlapping ones.
+	 * @param text the text where to search.
+	 * @return a map where the keys are the indices of the first term of each set of identical terms
+	 * found, and the values the start positions of the occurrences, in ascending order.
+	 * Use {@link #nextSameTerm(int)} to get the other terms with the same text.
+	 */
+	public Map<Integer, List<Integer>> find (CharSequence text) {
+		Map<Integer, List<Integer>> res = new HashMap<Integer, List<Integer>>();
+		int state = ROOT;
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = text.charAt(i);
+			int next;
+			while (( next = findChild(state, ch) ) == NONE ) {
+				if ( state == ROOT ) {
+					next = ROOT;
+					break;
+				}
+				state = fail[state];
+			}
+			state = next;
+			int s = ( firstTerm[state] != NONE ) ? state : outputLink[state];
+			while ( s != NONE ) {
+				List<Integer> list = res.get(firstTerm[s]);
+				if ( list == null ) {
+					list = new ArrayList<Integer>(2);
+					res.put(firstTerm[s], list);
+				}
+				list.add(i+1-depth[s]);
+				s = outputLink[s];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Gets the next term identical to a given term.
+	 * @param term the index of the term.
+	 * @return the index of the next identical term in the list, or -1 if there is none.
+	 */
+	public int nextSameTerm (int term) {
+		return sameTerm[term];
+	}
+
+}
@@ -25,7 +25,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Range;
@@ -38,6 +41,7 @@ import net.sf.okapi.lib.terminology.IGlossaryReader;
 import net.sf.okapi.lib.terminology.LangEntry;
 import net.sf.okapi.lib.terminology.TermEntry;
 import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.TermIndex;
 import net.sf.okapi.lib.terminology.csv.CSVReader;
 import net.sf.okapi.lib.terminology.tbx.TBXReader;
 import net.sf.okapi.lib.terminology.tsv.TSVReader;
@@ -45,6 +49,9 @@ import net.sf.okapi.lib.terminology.tsv.TSVReader;
 /**
  * Very basic memory-only simple termbase.
  * This is used for prototyping the terminology interface.
+ * <p>The searches use indices of the terms, built the first time they are needed and rebuilt
+ * after the list of entries is modified through this class. Entries must not be changed
+ * directly once they have been searched.
  */
 public class SimpleTB {
 	
@@ -54,6 +61,9 @@ public class SimpleTB {
 	LocaleId trgLoc;
 	private List<Entry> entries;
 	private boolean betweenCodes;
+	// Indices, for the source and the target terms (null when they need to be built)
+	private StringIndex[] stringIndices;
+	private List<Map<String, List<Integer>>> wordIndices;
 	
 	public SimpleTB (LocaleId srcLoc,
 		LocaleId trgLoc)
@@ -65,6 +75,12 @@ public class SimpleTB {
 	
 	private void reset () {
 		entries = new ArrayList<Entry>();
+		invalidateIndices();
+	}
+	
+	private void invalidateIndices () {
+		stringIndices = null;
+		wordIndices = null;
 	}
 	
 	public void initialize (boolean stringSearch,
@@ -74,6 +90,7 @@ public class SimpleTB {
 		// In case of a string-based search: we sort the source terms: longer first
 		if ( stringSearch ) {
 			Collections.sort(entries);
+			invalidateIndices();
 		}
 	}
 	
@@ -119,12 +136,14 @@ public class SimpleTB {
 			}
 		}
 		finally {
+			invalidateIndices();
 			if ( reader != null ) reader.close();
 		}
 	}
 	
 	public void removeAll () {
 		entries.clear();
+		invalidateIndices();
 	}
 
 	public Entry addEntry (String srcTerm,
@@ -133,6 +152,7 @@ public class SimpleTB {
 		Entry ent = new Entry(srcTerm);
 		ent.setTargetTerm(trgTerm);
 		entries.add(ent);
+		invalidateIndices();
 		return ent;
 	}
 
@@ -155,8 +175,22 @@ public class SimpleTB {
 		StringBuilder text = new StringBuilder(frag);
 		Range location = new Range(0, 0);
 		
-		// For each term in the list
-		for ( Entry ent : entries ) {
+		// Find all the occurrences of all the terms in one pass
+		StringIndex stringIndex = getStringIndex(searchSource);
+		Map<Integer, List<Integer>> found = stringIndex.index.find(text);
+		List<Integer> matched = new ArrayList<Integer>(stringIndex.notIndexed);
+		Map<Integer, List<Integer>> positions = new HashMap<Integer, List<Integer>>();
+		for ( Map.Entry<Integer, List<Integer>> occurrences : found.entrySet() ) {
+			for ( int i=occurrences.getKey(); i!=-1; i=stringIndex.index.nextSameTerm(i) ) {
+				matched.add(i);
+				positions.put(i, occurrences.getValue());
+			}
+		}
+		// Process the terms in the list order, as each match is obliterated
+		Collections.sort(matched);
+		
+		for ( int index : matched ) {
+			Entry ent = entries.get(index);
 			// Select the source and target terms to search for
 			if ( searchSource ) {
 				stringToMatch = ent.getSourceTerm();
@@ -167,26 +201,126 @@ public class SimpleTB {
 				otherString = ent.getSourceTerm();
 			}
 			
-			if (( stringToMatch == null ) || ( otherString == null )) continue;
-			
-			while ( true ) {
-				if ( !isValidMatch(text, stringToMatch, location, betweenCodes) ) break;
-				// Else: Save the term
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(stringToMatch);
-				th.targetTerm = new TermEntry(otherString);
-				th.range = new Range(location.start, location.end);
-				res.add(th);
-				// Obliterate the match so we don't re-match it 
-				for ( int i=location.start; i<location.end; i++ ) {
-					text.setCharAt(i, '`');
+			if ( !positions.containsKey(index) ) {
+				// Term not indexed: search it the slow way
+				while ( true ) {
+					if ( !isValidMatch(text, stringToMatch, location, betweenCodes) ) break;
+					addHit(res, stringToMatch, otherString, location, text);
 				}
+				continue;
+			}
+			
+			for ( int n : positions.get(index) ) {
+				// Skip the occurrences overlapping a previous match (the term has no '`')
+				if ( !regionMatches(text, n, stringToMatch) ) continue;
+				// Like with indexOf(): stop at the first remaining occurrence not valid
+				if ( !isValidMatch(text, n, stringToMatch.length(), location, betweenCodes) ) break;
+				addHit(res, stringToMatch, otherString, location, text);
 			}
 		}
 		
 		return res;
 	}
 
+	private void addHit (List<TermHit> res,
+		String stringToMatch,
+		String otherString,
+		Range location,
+		StringBuilder text)
+	{
+		// Save the term
+		TermHit th = new TermHit();
+		th.sourceTerm = new TermEntry(stringToMatch);
+		th.targetTerm = new TermEntry(otherString);
+		th.range = new Range(location.start, location.end);
+		res.add(th);
+		// Obliterate the match so we don't re-match it 
+		for ( int i=location.start; i<location.end; i++ ) {
+			text.setCharAt(i, '`');
+		}
+	}
+
+	private static boolean regionMatches (StringBuilder text,
+		int start,
+		String string)
+	{
+		for ( int i=0; i<string.length(); i++ ) {
+			if ( text.charAt(start+i) != string.charAt(i) ) return false;
+		}
+		return true;
+	}
+
+	private synchronized StringIndex getStringIndex (boolean source) {
+		if ( stringIndices == null ) {
+			stringIndices = new StringIndex[2];
+		}
+		int side = source ? 0 : 1;
+		if ( stringIndices[side] == null ) {
+			List<String> terms = new ArrayList<String>(entries.size());
+			List<Integer> notIndexed = new ArrayList<Integer>();
+			for ( int i=0; i<entries.size(); i++ ) {
+				Entry ent = entries.get(i);
+				String term = source ? ent.getSourceTerm() : ent.getTargetTerm();
+				String other = source ? ent.getTargetTerm() : ent.getSourceTerm();
+				terms.add(null);
+				if (( term == null ) || ( other == null )) continue;
+				// Terms with '`' can match the obliterated text, and empty terms match everywhere
+				if (( term.length() == 0 ) || ( term.indexOf('`') != -1 )) {
+					notIndexed.add(i);
+				}
+				else {
+					terms.set(i, term);
+				}
+			}
+			stringIndices[side] = new StringIndex(new TermIndex(terms), notIndexed);
+		}
+		return stringIndices[side];
+	}
+
+	private synchronized Map<String, List<Integer>> getWordIndex (boolean source) {
+		if ( wordIndices == null ) {
+			wordIndices = new ArrayList<Map<String, List<Integer>>>(2);
+			wordIndices.add(null);
+			wordIndices.add(null);
+		}
+		int side = source ? 0 : 1;
+		if ( wordIndices.get(side) == null ) {
+			Map<String, List<Integer>> map = new HashMap<String, List<Integer>>();
+			for ( int i=0; i<entries.size(); i++ ) {
+				Entry ent = entries.get(i);
+				String term = source ? ent.getSourceTerm() : ent.getTargetTerm();
+				String other = source ? ent.getTargetTerm() : ent.getSourceTerm();
+				if (( term == null ) || ( other == null )) continue;
+				String key = term.toLowerCase();
+				List<Integer> list = map.get(key);
+				if ( list == null ) {
+					list = new ArrayList<Integer>(1);
+					map.put(key, list);
+				}
+				list.add(i);
+			}
+			wordIndices.set(side, map);
+		}
+		return wordIndices.get(side);
+	}
+
+	/**
+	 * Index of the terms of one side of the termbase for {@link SimpleTB#getExistingStrings(TextFragment, LocaleId, LocaleId)}.
+	 */
+	private static class StringIndex {
+
+		final TermIndex index;
+		/** Terms searched without the index. */
+		final List<Integer> notIndexed;
+
+		StringIndex (TermIndex index,
+			List<Integer> notIndexed)
+		{
+			this.index = index;
+			this.notIndexed = notIndexed;
+		}
+	}
+
 	/**
 	 * Searches for a given string in a text. The location parameter is updated with the position of the first 
 	 * character and the one of the character after the last one.
@@ -202,6 +336,23 @@ public class SimpleTB {
 	{
 		int n = text.indexOf(stringToMatch);
 		if ( n == -1 ) return false; // No more of that term
+		return isValidMatch(text, n, stringToMatch.length(), location, betweenCodes);
+	}
+
+	/**
+	 * Checks if a string found at a given position of a text is a valid match.
+	 * @param text Text where the string was found.
+	 * @param n the position of the string in the text.
+	 * @param length the length of the string.
+	 * @param location location of the term.
+	 * @return true if it's a match, false otherwise. If the return is true, the values in location are updated.
+	 */
+	private static boolean isValidMatch (StringBuilder text,
+		int n,
+		int length,
+		Range location,
+		boolean betweenCodes)
+	{
 		// Check "word boundaries"
 		if ( n > 0 ) {
 			int cp = text.codePointAt(n-1);
@@ -221,7 +372,7 @@ public class SimpleTB {
 			}
 		}
 		
-		int last = n+stringToMatch.length();
+		int last = n+length;
 		if ( last < text.length() ) {
 			int cp = text.codePointAt(last);
 			if (( Character.getType(cp) == Character.LOWERCASE_LETTER ) ||
@@ -263,9 +414,19 @@ public class SimpleTB {
 			}
 		}
 
+		// Look up each distinct word, then report the terms in the list order
+		Map<String, List<Integer>> words = getWordIndex(searchSource);
+		List<Integer> matched = new ArrayList<Integer>();
+		for ( String part : new HashSet<String>(parts) ) {
+			List<Integer> list = words.get(part);
+			if ( list != null ) matched.addAll(list);
+		}
+		Collections.sort(matched);
+
 		String termToMatch;
 		String otherTerm;
-		for ( Entry ent : entries ) {
+		for ( int index : matched ) {
+			Entry ent = entries.get(index);
 			if ( searchSource ) {
 				termToMatch = ent.getSourceTerm();
 				otherTerm = ent.getTargetTerm();
@@ -274,13 +435,10 @@ public class SimpleTB {
 				termToMatch = ent.getTargetTerm();
 				otherTerm = ent.getSourceTerm();
 			}
-			if (( termToMatch == null ) || ( otherTerm == null )) continue;
-			if ( parts.contains(termToMatch.toLowerCase()) ) {
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(termToMatch);
-				th.targetTerm = new TermEntry(otherTerm);
-				res.add(th);
-			}
+			TermHit th = new TermHit();
+			th.sourceTerm = new TermEntry(termToMatch);
+			th.targetTerm = new TermEntry(otherTerm);
+			res.add(th);
 		}
 		
 		return res;
@@ -347,6 +505,7 @@ public class SimpleTB {
 				ent.setdefinition(dis.readUTF());
 				entries.add(ent);
 			}
+			invalidateIndices();
 		}
 		catch ( Throwable e ) {
 			throw new OkapiIOException("Error reading.\n"+e.getMessage(), e);
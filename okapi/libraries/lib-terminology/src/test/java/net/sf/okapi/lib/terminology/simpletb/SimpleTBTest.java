@@ -0,0 +1,139 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.simpletb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Range;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.lib.terminology.TermEntry;
+import net.sf.okapi.lib.terminology.TermHit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SimpleTBTest {
+
+	private static final String[][] TERMS = {
+		{"src", "trg"},
+		{"src2", "trg2"},
+		{"Src1 src2", "Trg1 trg2"},
+		{"aa", "bb"},
+		{"a", "b"},
+		{"aaa", "bbb"},
+		{"word", "mot"},
+		{"src", "trg-dup"},
+		{"`x", "y"},
+		{"2.", "deux"},
+	};
+
+	private static final String[] TEXTS = {
+		">src2< and Src1 src2. Also: WithiWordsrcWord",
+		"aaaa aa a aaa",
+		"wordy word, word. aword word",
+		"src src2 src-src",
+		"src `x src2.",
+		"nothing here",
+		"",
+	};
+
+	@Test
+	public void sameHitsAsSequentialSearch () {
+		for ( boolean sort : new boolean[]{false, true} ) {
+			SimpleTB tb = createTB();
+			tb.initialize(sort, false);
+			for ( String text : TEXTS ) {
+				TextFragment tf = new TextFragment(text);
+				assertEquals(text, toString(sequentialSearch(sort, text)),
+					toString(tb.getExistingStrings(tf, LocaleId.ENGLISH, LocaleId.FRENCH)));
+			}
+		}
+	}
+
+	@Test
+	public void indexUpdatedWhenEntriesChange () {
+		SimpleTB tb = new SimpleTB(LocaleId.ENGLISH, LocaleId.FRENCH);
+		TextFragment tf = new TextFragment("The watch shows the time");
+		assertEquals(0, tb.getExistingStrings(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+		tb.addEntry("watch", "montre");
+		assertEquals(1, tb.getExistingStrings(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+		assertEquals(1, tb.getExistingTerms(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+		tb.addEntry("Time", "temps");
+		assertEquals(1, tb.getExistingStrings(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+		List<TermHit> hits = tb.getExistingTerms(tf, LocaleId.ENGLISH, LocaleId.FRENCH);
+		assertEquals(2, hits.size());
+		assertEquals("Time", hits.get(1).sourceTerm.getText());
+		assertEquals("montre", tb.getExistingStrings(new TextFragment("une montre"),
+			LocaleId.FRENCH, LocaleId.ENGLISH).get(0).sourceTerm.getText());
+		tb.removeAll();
+		assertEquals(0, tb.getExistingStrings(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+		assertEquals(0, tb.getExistingTerms(tf, LocaleId.ENGLISH, LocaleId.FRENCH).size());
+	}
+
+	private SimpleTB createTB () {
+		SimpleTB tb = new SimpleTB(LocaleId.ENGLISH, LocaleId.FRENCH);
+		for ( String[] pair : TERMS ) {
+			tb.addEntry(pair[0], pair[1]);
+		}
+		return tb;
+	}
+
+	// Term-by-term search, as done before the index
+	private List<TermHit> sequentialSearch (boolean sort,
+		String string)
+	{
+		List<Entry> entries = new ArrayList<Entry>();
+		for ( String[] pair : TERMS ) {
+			Entry ent = new Entry(pair[0]);
+			ent.setTargetTerm(pair[1]);
+			entries.add(ent);
+		}
+		if ( sort ) Collections.sort(entries);
+		List<TermHit> res = new ArrayList<TermHit>();
+		StringBuilder text = new StringBuilder(string);
+		Range location = new Range(0, 0);
+		for ( Entry ent : entries ) {
+			while ( SimpleTB.isValidMatch(text, ent.getSourceTerm(), location, false) ) {
+				TermHit th = new TermHit();
+				th.sourceTerm = new TermEntry(ent.getSourceTerm());
+				th.targetTerm = new TermEntry(ent.getTargetTerm());
+				th.range = new Range(location.start, location.end);
+				res.add(th);
+				for ( int i=location.start; i<location.end; i++ ) {
+					text.setCharAt(i, '`');
+				}
+			}
+		}
+		return res;
+	}
+
+	private String toString (List<TermHit> hits) {
+		List<String> list = new ArrayList<String>();
+		for ( TermHit hit : hits ) {
+			list.add(hit.sourceTerm.getText() + "=" + hit.targetTerm.getText() + hit.range);
+		}
+		return Arrays.toString(list.toArray());
+	}
+}
@@ -16,20 +16,27 @@
 
 package net.sf.okapi.lib.tkit.filter;
 
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.filters.AbstractFilter;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.lib.beans.sessions.OkapiBinarySession;
 import net.sf.okapi.lib.beans.sessions.OkapiJsonSession;
+import net.sf.okapi.lib.persistence.PersistenceSession;
+import net.sf.okapi.lib.persistence.binary.BinaryPersistenceSession;
 
 /**
  * An {@link IFilter} that returns serialized {@link Event}s generated by {@link OkapiJsonSession}
+ * or {@link OkapiBinarySession}. The format is detected from the input.
  * @author jimh
  *
  */
 public class BeanEventFilter extends AbstractFilter {
-	private OkapiJsonSession persiSession;
+	private PersistenceSession persiSession;
 	private Event currentEvent;
 
 	public BeanEventFilter() {
@@ -43,7 +50,16 @@ public class BeanEventFilter extends AbstractFilter {
 
 	@Override
 	public void open(RawDocument input, boolean generateSkeleton) {
-		persiSession.start(input.getStream());
+		InputStream inStream = new BufferedInputStream(input.getStream());
+		if (BinaryPersistenceSession.isBinarySession(inStream)) {
+			if (!(persiSession instanceof OkapiBinarySession)) {
+				persiSession = new OkapiBinarySession(true);
+			}
+		}
+		else if (!(persiSession instanceof OkapiJsonSession)) {
+			persiSession = new OkapiJsonSession(true);
+		}
+		persiSession.start(inStream);
 		currentEvent = deserializeEvent();
 	}
 
@@ -84,7 +100,7 @@ public class BeanEventFilter extends AbstractFilter {
 	}
 
 	/**
-	 * Deserializes events from JSON files
+	 * Deserializes events from JSON or binary files
 	 * 
 	 * @return null if no events are available
 	 */
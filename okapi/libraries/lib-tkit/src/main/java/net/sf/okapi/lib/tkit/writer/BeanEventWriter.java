@@ -37,10 +37,14 @@ import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.IWithAnnotations;
 import net.sf.okapi.common.skeleton.ISkeletonWriter;
+import net.sf.okapi.lib.beans.sessions.OkapiBinarySession;
 import net.sf.okapi.lib.beans.sessions.OkapiJsonSession;
+import net.sf.okapi.lib.persistence.PersistenceSession;
+import net.sf.okapi.lib.persistence.SessionState;
 
 /**
- * {@link Event} {@link FilterWriter} using {@link OkapiJsonSession}
+ * {@link Event} {@link FilterWriter} using {@link OkapiJsonSession}, or {@link OkapiBinarySession}
+ * if the binary option is set.
  * <p>
  * Serialized {@link Event}s can be deserialized using {@link SerializedEventFilter} 
  * which is an {@link IFilter} implementation.
@@ -48,7 +52,7 @@ import net.sf.okapi.lib.beans.sessions.OkapiJsonSession;
  *
  */
 public class BeanEventWriter implements IFilterWriter {
-	private OkapiJsonSession persiSession;
+	private PersistenceSession persiSession;
 	private LocaleId targetLocale;
 	private Parameters params;
 	private String outputPath;
@@ -145,13 +149,27 @@ public class BeanEventWriter implements IFilterWriter {
 		return null;
 	}
 
+	/**
+	 * Makes sure the session matches the format set in the parameters.
+	 * The session is replaced only between two documents.
+	 */
+	private void updateSession() {
+		if (persiSession.getState() != SessionState.IDLE) return;
+		if ((persiSession instanceof OkapiBinarySession) == params.isBinary()) return;
+		String description = persiSession.getDescription();
+		persiSession = params.isBinary() ? new OkapiBinarySession(true) : new OkapiJsonSession(true);
+		persiSession.setDescription(description);
+	}
+
 	protected Event processStartBatch(Event event) {
+		updateSession();
 		persiSession.setDescription(params.getMessage());
 		persiSession.serialize(event);
 		return event;
 	}
 
 	protected Event processStartDocument(Event event) {
+		updateSession();
 		if (!Util.isEmpty(outputPath)) {
 			try {
 				persiSession.start(new FileOutputStream(outputPath));
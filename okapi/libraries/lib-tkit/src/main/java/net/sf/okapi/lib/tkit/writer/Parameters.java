@@ -21,6 +21,7 @@ import net.sf.okapi.common.StringParameters;
 public class Parameters extends StringParameters {
 	static final String REMOVETARGET = "removeTarget"; //$NON-NLS-1$
 	static final String MESSAGE = "message"; //$NON-NLS-1$
+	static final String BINARY = "binary"; //$NON-NLS-1$
 	
 	public Parameters () {
 		super();
@@ -30,6 +31,7 @@ public class Parameters extends StringParameters {
 		super.reset();
 		setMessage("");
 		setRemoveTarget(true);
+		setBinary(false);
 	}
 
 	public void fromString (String data) {
@@ -51,4 +53,17 @@ public class Parameters extends StringParameters {
 	public void setRemoveTarget(boolean removeTarget) {
 		setBoolean(REMOVETARGET, removeTarget);
 	}
+
+	public boolean isBinary() {
+		return getBoolean(BINARY);
+	}
+
+	/**
+	 * Sets the session format: binary ({@link net.sf.okapi.lib.beans.sessions.OkapiBinarySession})
+	 * or JSON ({@link net.sf.okapi.lib.beans.sessions.OkapiJsonSession}, the default).
+	 * @param binary true to write the events in the binary format.
+	 */
+	public void setBinary(boolean binary) {
+		setBoolean(BINARY, binary);
+	}
 }
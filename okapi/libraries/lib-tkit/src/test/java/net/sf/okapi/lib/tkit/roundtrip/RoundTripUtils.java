@@ -16,6 +16,11 @@ public final class RoundTripUtils {
 	
 	public static List<Event> roundTripSerilaizedEvents(
 			List<Event> events, ISkeletonWriter skeletonWriter, String serializedPath, LocaleId locale) {
+		return roundTripSerilaizedEvents(events, skeletonWriter, serializedPath, locale, false);
+	}
+
+	public static List<Event> roundTripSerilaizedEvents(
+			List<Event> events, ISkeletonWriter skeletonWriter, String serializedPath, LocaleId locale, boolean binary) {
 		try (BeanEventWriter eventWriter = new BeanEventWriter();
 			 BeanEventFilter eventReader = new BeanEventFilter()) {
 			eventWriter.setOptions(locale, null);
@@ -23,6 +28,7 @@ public final class RoundTripUtils {
 			net.sf.okapi.lib.tkit.writer.Parameters p = new net.sf.okapi.lib.tkit.writer.Parameters();
 			p.setRemoveTarget(false);
 			p.setMessage("Hello!");
+			p.setBinary(binary);
 			eventWriter.setParameters(p);
 
 			// Serialize all the events
@@ -54,6 +60,10 @@ public final class RoundTripUtils {
 		return roundTripSerilaizedEvents(events, skeletonWriter, path, locale);
 	}
 	
+	public static List<Event> roundTripBinaryEvents(List<Event> events) {
+		return roundTripSerilaizedEvents(events, null, path, LocaleId.FRENCH, true);
+	}
+
 	public static List<Event> roundTripSerilaizedEvents(List<Event> events, ISkeletonWriter skeletonWriter) {
 		return roundTripSerilaizedEvents(events, skeletonWriter, path, LocaleId.FRENCH);
 	}
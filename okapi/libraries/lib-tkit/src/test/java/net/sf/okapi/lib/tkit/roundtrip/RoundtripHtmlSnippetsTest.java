@@ -1,5 +1,6 @@
 package net.sf.okapi.lib.tkit.roundtrip;
 
+import static net.sf.okapi.lib.tkit.roundtrip.RoundTripUtils.roundTripBinaryEvents;
 import static net.sf.okapi.lib.tkit.roundtrip.RoundTripUtils.roundTripSerilaizedEvents;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -262,6 +263,25 @@ public class RoundtripHtmlSnippetsTest {
 				generateOutput(roundTripSerilaizedEvents(getEvents(snippet)), snippet, locFR));
 	}
 
+	@Test
+	public void testBinarySession() {
+		String snippet = "<html><head><title>T\u00e9st</title></head>"
+			+ "<p lang=\"en\" title=\"my title\">Text <b>bold</b> <a href=\"there\"/> \ud83d\ude00 after.</p>"
+			+ "<p>Text <b>bold</b> again.</p></html>";
+		String expected = generateOutput(roundTripSerilaizedEvents(getEvents(snippet)), snippet, locFR);
+		assertEquals(expected, generateOutput(roundTripBinaryEvents(getEvents(snippet)), snippet, locFR));
+
+		List<Event> jsonEvents = roundTripSerilaizedEvents(getEvents(snippet));
+		List<Event> binaryEvents = roundTripBinaryEvents(getEvents(snippet));
+		assertEquals(jsonEvents.size(), binaryEvents.size());
+		for (int i = 1; FilterTestDriver.getTextUnit(jsonEvents, i) != null; i++) {
+			TextFragment tf1 = FilterTestDriver.getTextUnit(jsonEvents, i).getSource().getFirstContent();
+			TextFragment tf2 = FilterTestDriver.getTextUnit(binaryEvents, i).getSource().getFirstContent();
+			assertEquals(tf1.getCodedText(), tf2.getCodedText());
+			assertEquals(Code.codesToString(tf1.getCodes()), Code.codesToString(tf2.getCodes()));
+		}
+	}
+
 	@Test
 	public void testComplexEmptyElement() {
 		String snippet = "<dummy write=\"w\" readonly=\"ro\" trans=\"tu1\"/>";
@@ -19,24 +19,34 @@ package net.sf.okapi.lib.verification;
 import com.ibm.icu.lang.UCharacter;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.annotation.IssueType;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.lib.terminology.TermIndex;
 
 public class BlacklistChecker {
 
 	private ArrayList<Issue> issues;
 	private BlacklistTB ta;
 	private LocaleId loc = new LocaleId(Locale.getDefault());
+	// Compiled terms: case-sensitive ones, and case-insensitive ones (matched on the upper-cased text)
+	private TermIndex caseSensitiveIndex;
+	private TermIndex caseInsensitiveIndex;
+	private BlacklistTB compiledTB;
+	private int compiledModCount;
 
 	public void initialize (BlacklistTB termAccess) {
 		this.issues = new ArrayList<Issue>();
 		this.ta = termAccess;
+		compiledTB = null;
 	}
 
 	public void initialize (BlacklistTB termAccess, LocaleId loc) {
@@ -60,10 +70,19 @@ public class BlacklistChecker {
 		String searchTxtUpperCase = UCharacter.toUpperCase(loc.toIcuLocale(), searchTxtAsIs);
 		mrkPositions = updateMarkerPositions(mrkPositions);
 
-		for (BlackTerm bterm : termList) {
+		compile(termList);
+
+		// Find all the terms in one pass per partition, then report them in the list order
+		Map<Integer, List<Integer>> found = new HashMap<Integer, List<Integer>>();
+		collect(caseSensitiveIndex, searchTxtAsIs, found);
+		collect(caseInsensitiveIndex, searchTxtUpperCase, found);
+		List<Integer> termIndices = new ArrayList<Integer>(found.keySet());
+		Collections.sort(termIndices);
+
+		for (int termIndex : termIndices) {
+			BlackTerm bterm = termList.get(termIndex);
 			String search = bterm.doCaseSensitiveMatch ? searchTxtAsIs : searchTxtUpperCase;
-			int idx = 0;
-			while ((idx = search.indexOf(bterm.searchTerm, idx)) != -1) {
+			for (int idx : found.get(termIndex)) {
 				// check boundaries
 				if ((bterm.searchTerm.length()) != search.length() && !allowBlacklistSub) {
 					if ((idx > 0) && (idx < search.length() - bterm.searchTerm.length())) {
@@ -119,14 +138,41 @@ public class BlacklistChecker {
 				else
 					issue = new Issue(docId, subDocId, IssueType.TERMINOLOGY, tu.getId(), segment.getId(), message, 0, -1, TextFragment.fromFragmentToString(segment.text, rangeStart), TextFragment.fromFragmentToString(segment.text, rangeEnd), Issue.DISPSEVERITY_LOW, tu.getName());
 				issues.add(issue);
-
-				// iterate
-				idx++;
 			}
 		}
 		return issues.size();
 	}
 
+	/**
+	 * Compiles the list of terms, if it has not been compiled yet
+	 * or if the blacklist has been modified since.
+	 * @param termList the list of terms to compile.
+	 */
+	private void compile (List<BlackTerm> termList) {
+		if ((compiledTB == ta) && (compiledModCount == ta.getModificationCount())) return;
+		List<String> caseSensitive = new ArrayList<String>(termList.size());
+		List<String> caseInsensitive = new ArrayList<String>(termList.size());
+		for (BlackTerm bterm : termList) {
+			caseSensitive.add(bterm.doCaseSensitiveMatch ? bterm.searchTerm : null);
+			caseInsensitive.add(bterm.doCaseSensitiveMatch ? null : bterm.searchTerm);
+		}
+		caseSensitiveIndex = new TermIndex(caseSensitive);
+		caseInsensitiveIndex = new TermIndex(caseInsensitive);
+		compiledTB = ta;
+		compiledModCount = ta.getModificationCount();
+	}
+
+	private void collect (TermIndex index,
+		String text,
+		Map<Integer, List<Integer>> found)
+	{
+		for (Map.Entry<Integer, List<Integer>> entry : index.find(text).entrySet()) {
+			for (int i = entry.getKey(); i != -1; i = index.nextSameTerm(i)) {
+				found.put(i, entry.getValue());
+			}
+		}
+	}
+
 	public List<Issue> getIssues() {
 		return issues;
 	}
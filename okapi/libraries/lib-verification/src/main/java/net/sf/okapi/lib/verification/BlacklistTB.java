@@ -27,6 +27,7 @@ import net.sf.okapi.common.Util;
 class BlacklistTB {
 	
 	private List<BlackTerm> entries;
+	private int modCount;
 	private LocaleId locale = new LocaleId(Locale.getDefault());
 
 	public BlacklistTB() {
@@ -40,6 +41,7 @@ class BlacklistTB {
 
 	private void reset() {
 		entries = new ArrayList<BlackTerm>();
+		modCount++;
 	}
 
 	public void guessAndImport(File file) {
@@ -53,11 +55,21 @@ class BlacklistTB {
 	
 	public void removeAll() {
 		entries.clear();
+		modCount++;
 	}
 	
 	public List<BlackTerm> getBlacklistStrings() {
 		return entries;
 	}
+
+	/**
+	 * Gets the number of times the terms of this blacklist have been changed.
+	 * Users caching data derived from the terms can compare it to know when to update.
+	 * @return the modification count of this blacklist.
+	 */
+	int getModificationCount() {
+		return modCount;
+	}
 	
 	private void importTSV(File file) {
 		importBlacklist(new BlacklistReader(locale), file);
@@ -90,6 +102,7 @@ class BlacklistTB {
 			BlackTerm bterm = reader.next();
 			entries.add(bterm);
 		}
+		modCount++;
 	}
 
 	void loadBlacklistStream(InputStream input) {
@@ -0,0 +1,535 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.annotation.GenericAnnotations;
+import net.sf.okapi.common.annotation.IssueType;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.filters.IFilter;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartSubDocument;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextPart;
+
+/**
+ * Cache of the issues found for each text unit during the last check of a {@link QualityCheckSession}.
+ * <p>
+ * Each text unit is identified by a fingerprint of everything the checkers look at: its source and
+ * target content, the locales, the parameters of the session and the terms and blacklist files.
+ * A text unit with the same fingerprint as in the last check gets the same issues, without running
+ * the checkers again. A document that has not changed at all (same file, same filter parameters)
+ * does not need to be read again.
+ * <p>
+ * Each document is checked through its own {@link DocumentCheck}, obtained with
+ * {@link #startCheck(RawDocument, IFilter)}: several documents can be checked at the same time.
+ */
+class QualityCheckCache {
+
+	private static final String SERIALSIGNATURE = "OQCC";
+	private static final long SERIALVERSIONUID = 1L;
+
+	private final Map<URI, DocumentEntry> documents = new ConcurrentHashMap<URI, DocumentEntry>();
+	// Fingerprint of the check settings, null if the results cannot be cached
+	private volatile byte[] context;
+
+	private static class DocumentEntry {
+
+		byte[] stamp;
+		final List<TextUnitEntry> textUnits = new ArrayList<TextUnitEntry>();
+		final Map<String, TextUnitEntry> index = new HashMap<String, TextUnitEntry>();
+
+		void add (TextUnitEntry entry) {
+			textUnits.add(entry);
+			if ( !index.containsKey(entry.key) ) {
+				index.put(entry.key, entry);
+			}
+		}
+
+		List<Issue> getIssues () {
+			List<Issue> list = new ArrayList<Issue>();
+			for ( TextUnitEntry entry : textUnits ) {
+				list.addAll(entry.issues);
+			}
+			return list;
+		}
+	}
+
+	private static class TextUnitEntry {
+
+		final String key;
+		byte[] fingerprint;
+		List<Issue> issues;
+
+		TextUnitEntry (String key,
+			byte[] fingerprint)
+		{
+			this.key = key;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	/**
+	 * Check of one document against the cache. The methods are called in this order:
+	 * {@link #getIssues()}, then {@link #startDocument(StartDocument)}, then
+	 * {@link #getIssues(ITextUnit, LocaleId)} and {@link #addIssues(List, boolean)} for each text unit,
+	 * then {@link #end()}.
+	 */
+	class DocumentCheck {
+
+		private final MessageDigest digest = createDigest();
+		private final URI docId;
+		private final DocumentEntry previous;
+		private byte[] stamp;
+		private DocumentEntry current;
+		private String currentSubDocId;
+		private byte[] documentPrefix;
+		private TextUnitEntry pending;
+
+		private DocumentCheck (RawDocument rd,
+			IFilter filter)
+		{
+			docId = rd.getInputURI();
+			previous = (docId == null) ? null : documents.get(docId);
+			if (( context == null ) || ( docId == null )) return;
+			if ( !"file".equals(docId.getScheme()) ) return;
+			File file = new File(docId);
+			if ( !file.isFile() ) return;
+
+			digest.update(context);
+			update(digest, file.lastModified() + ":" + file.length());
+			update(digest, rd.getFilterConfigId());
+			update(digest, rd.getEncoding());
+			update(digest, filter.getName());
+			update(digest, (filter.getParameters() == null) ? null : filter.getParameters().toString());
+			stamp = digest.digest();
+		}
+
+		/**
+		 * Gets the issues of the last check for the document, if the document has not changed since.
+		 * @return the issues of the last check, or null if the document needs to be checked again.
+		 */
+		List<Issue> getIssues () {
+			if (( stamp != null ) && ( previous != null ) && Arrays.equals(stamp, previous.stamp) ) {
+				return previous.getIssues();
+			}
+			return null;
+		}
+
+		/**
+		 * Starts recording the results of the document.
+		 * @param sd the start of the document.
+		 */
+		void startDocument (StartDocument sd) {
+			currentSubDocId = null;
+			current = null;
+			if (( context == null ) || ( docId == null )) return;
+			current = new DocumentEntry();
+			current.stamp = stamp;
+
+			digest.reset();
+			digest.update(context);
+			update(digest, docId.toString());
+			update(digest, Boolean.toString(sd.isMultilingual()));
+			documentPrefix = digest.digest();
+		}
+
+		void startSubDocument (StartSubDocument ssd) {
+			currentSubDocId = ssd.getName();
+			if ( currentSubDocId == null ) {
+				currentSubDocId = ssd.getId();
+			}
+		}
+
+		/**
+		 * Gets the issues of the last check for a given text unit, if it has not changed since.
+		 * @param tu the text unit to check.
+		 * @param targetLocale the target locale of the session.
+		 * @return the issues of the last check, or null if the text unit needs to be checked again.
+		 */
+		List<Issue> getIssues (ITextUnit tu,
+			LocaleId targetLocale)
+		{
+			if ( current == null ) return null;
+			pending = new TextUnitEntry(currentSubDocId + "\n" + tu.getId(), getFingerprint(tu, targetLocale));
+			if (( pending.fingerprint == null ) || ( previous == null )) return null;
+			TextUnitEntry entry = previous.index.get(pending.key);
+			if (( entry != null ) && Arrays.equals(pending.fingerprint, entry.fingerprint) ) {
+				return entry.issues;
+			}
+			return null;
+		}
+
+		/**
+		 * Records the issues of the last text unit passed to {@link #getIssues(ITextUnit, LocaleId)}.
+		 * @param issues the issues of the text unit.
+		 * @param complete false if some checks could not be done: the text unit will be checked again next time.
+		 */
+		void addIssues (List<Issue> issues,
+			boolean complete)
+		{
+			if (( current == null ) || ( pending == null )) return;
+			pending.issues = issues;
+			if ( !complete ) {
+				pending.fingerprint = null;
+				current.stamp = null;
+			}
+			current.add(pending);
+			pending = null;
+		}
+
+		/**
+		 * Ends the recording of the document. Its entries replace the ones of the last check.
+		 */
+		void end () {
+			if ( current != null ) {
+				documents.put(docId, current);
+			}
+			else {
+				documents.remove(docId);
+			}
+			current = null;
+		}
+
+		private byte[] getFingerprint (ITextUnit tu,
+			LocaleId targetLocale)
+		{
+			digest.reset();
+			digest.update(documentPrefix);
+			update(digest, tu.getId());
+			update(digest, tu.getName());
+			update(digest, Boolean.toString(tu.isTranslatable()));
+			if ( !updateContainer(tu.getSource()) ) return null;
+			if ( !updateContainer(tu.getTarget(targetLocale)) ) return null;
+			return digest.digest();
+		}
+
+		/**
+		 * Adds a container to the fingerprint being computed.
+		 * @param tc the container (can be null).
+		 * @return false if the container holds existing quality annotations, that are not cached.
+		 */
+		private boolean updateContainer (TextContainer tc) {
+			if ( tc == null ) {
+				digest.update((byte)0);
+				return true;
+			}
+			if ( tc.getAnnotation(GenericAnnotations.class) != null ) return false;
+			digest.update((byte)1);
+			Property prop = tc.getProperty(Property.APPROVED);
+			update(digest, (prop == null) ? null : prop.getValue());
+			prop = tc.getProperty("hashiddentext");
+			update(digest, (prop == null) ? null : prop.getValue());
+			for ( TextPart part : tc ) {
+				update(digest, part.isSegment() ? ((Segment)part).getId() : null);
+				update(digest, part.text.getCodedText());
+				update(digest, Code.codesToString(part.text.getCodes()));
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Removes all the entries of this cache.
+	 */
+	void clear () {
+		documents.clear();
+		context = null;
+	}
+
+	/**
+	 * Starts a new check.
+	 * @param sourceLocale the source locale of the session.
+	 * @param targetLocale the target locale of the session.
+	 * @param params the parameters of the session.
+	 */
+	void startProcess (LocaleId sourceLocale,
+		LocaleId targetLocale,
+		Parameters params)
+	{
+		context = null;
+		// The content of a blacklist stream cannot be identified
+		if ( params.getCheckBlacklist() && ( params.getBlacklistStream() != null )) return;
+
+		MessageDigest digest = createDigest();
+		update(digest, sourceLocale.toString());
+		update(digest, targetLocale.toString());
+		update(digest, params.toString());
+		if ( params.getCheckTerms() ) {
+			update(digest, getFileStamp(params.getTermsPath()));
+		}
+		if ( params.getCheckBlacklist() ) {
+			update(digest, getFileStamp(params.getBlacklistPath()));
+		}
+		context = digest.digest();
+	}
+
+	/**
+	 * Starts the check of a document.
+	 * @param rd the document to check.
+	 * @param filter the filter to use for the document, its parameters are part of the fingerprint.
+	 * @return the object to use for the check of this document.
+	 */
+	DocumentCheck startCheck (RawDocument rd,
+		IFilter filter)
+	{
+		return new DocumentCheck(rd, filter);
+	}
+
+	private static MessageDigest createDigest () {
+		try {
+			return MessageDigest.getInstance("MD5");
+		}
+		catch ( NoSuchAlgorithmException e ) {
+			throw new OkapiException("Cannot create the quality check cache.", e);
+		}
+	}
+
+	private static void update (MessageDigest digest,
+		String text)
+	{
+		if ( text == null ) {
+			digest.update((byte)0);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		digest.update((byte)1);
+		digest.update(new byte[] {(byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length});
+		digest.update(bytes);
+	}
+
+	private String getFileStamp (String path) {
+		if ( Util.isEmpty(path) ) return null;
+		File file = new File(path);
+		return path + ":" + file.lastModified() + ":" + file.length();
+	}
+
+	/**
+	 * Saves this cache to a file.
+	 * @param path the path of the file.
+	 */
+	void save (String path) {
+		DataOutputStream dos = null;
+		try {
+			dos = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(path))));
+			dos.writeBytes(SERIALSIGNATURE);
+			dos.writeLong(SERIALVERSIONUID);
+
+			dos.writeInt(documents.size());
+			for ( Map.Entry<URI, DocumentEntry> doc : documents.entrySet() ) {
+				writeString(dos, doc.getKey().toString());
+				writeBytes(dos, doc.getValue().stamp);
+				dos.writeInt(doc.getValue().textUnits.size());
+				for ( TextUnitEntry entry : doc.getValue().textUnits ) {
+					writeString(dos, entry.key);
+					writeBytes(dos, entry.fingerprint);
+					dos.writeInt(entry.issues.size());
+					for ( Issue issue : entry.issues ) {
+						writeIssue(dos, issue);
+					}
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while saving the quality check cache.", e);
+		}
+		finally {
+			if ( dos != null ) {
+				try {
+					dos.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing the quality check cache.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads this cache from a file. The current entries are discarded.
+	 * @param path the path of the file.
+	 */
+	void load (String path) {
+		clear();
+		Map<URI, DocumentEntry> loaded = new HashMap<URI, DocumentEntry>();
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(path))));
+			byte[] buf = new byte[4];
+			dis.readFully(buf);
+			if ( !SERIALSIGNATURE.equals(new String(buf, StandardCharsets.US_ASCII)) ) {
+				throw new OkapiIOException("Invalid signature: This file is not a quality check cache, or is corrupted.");
+			}
+			if ( dis.readLong() != SERIALVERSIONUID ) {
+				throw new OkapiIOException("Unsupported version of quality check cache.");
+			}
+
+			int docCount = dis.readInt();
+			for ( int i=0; i<docCount; i++ ) {
+				URI docId = new URI(readString(dis));
+				DocumentEntry doc = new DocumentEntry();
+				doc.stamp = readBytes(dis);
+				int tuCount = dis.readInt();
+				for ( int j=0; j<tuCount; j++ ) {
+					TextUnitEntry entry = new TextUnitEntry(readString(dis), readBytes(dis));
+					int issueCount = dis.readInt();
+					entry.issues = new ArrayList<Issue>(issueCount);
+					for ( int k=0; k<issueCount; k++ ) {
+						entry.issues.add(readIssue(dis));
+					}
+					doc.add(entry);
+				}
+				loaded.put(docId, doc);
+			}
+			documents.putAll(loaded);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error reading the quality check cache.", e);
+		}
+		catch ( URISyntaxException e ) {
+			throw new OkapiIOException("Error reading the quality check cache.", e);
+		}
+		finally {
+			if ( dis != null ) {
+				try {
+					dis.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing the quality check cache.", e);
+				}
+			}
+		}
+	}
+
+	private void writeIssue (DataOutputStream dos,
+		Issue issue)
+		throws IOException
+	{
+		writeString(dos, issue.getDocumentURI().toString());
+		writeString(dos, issue.getSubDocumentId());
+		writeString(dos, issue.getIssueType().name());
+		writeString(dos, issue.getTuId());
+		writeString(dos, issue.getSegId());
+		writeString(dos, issue.getMessage());
+		dos.writeInt(issue.getSourceStart());
+		dos.writeInt(issue.getSourceEnd());
+		dos.writeInt(issue.getTargetStart());
+		dos.writeInt(issue.getTargetEnd());
+		dos.writeDouble(issue.getSeverity());
+		writeString(dos, issue.getTuName());
+		writeString(dos, (issue.getCodes() == null) ? null : Code.codesToString(issue.getCodes()));
+		writeString(dos, issue.getSource());
+		writeString(dos, issue.getTarget());
+	}
+
+	private Issue readIssue (DataInputStream dis)
+		throws IOException, URISyntaxException
+	{
+		URI docId = new URI(readString(dis));
+		String subDocId = readString(dis);
+		IssueType issueType = IssueType.valueOf(readString(dis));
+		String tuId = readString(dis);
+		String segId = readString(dis);
+		String message = readString(dis);
+		int srcStart = dis.readInt();
+		int srcEnd = dis.readInt();
+		int trgStart = dis.readInt();
+		int trgEnd = dis.readInt();
+		double severity = dis.readDouble();
+		String tuName = readString(dis);
+		Issue issue = new Issue(docId, subDocId, issueType, tuId, segId, message,
+			srcStart, srcEnd, trgStart, trgEnd, severity, tuName);
+		String codes = readString(dis);
+		if ( codes != null ) {
+			issue.setCodes(Code.stringToCodes(codes));
+		}
+		issue.setSource(readString(dis));
+		issue.setTarget(readString(dis));
+		issue.setEnabled(true);
+		return issue;
+	}
+
+	// Unlike writeUTF(), there is no limit on the length of the text
+	private void writeString (DataOutputStream dos,
+		String text)
+		throws IOException
+	{
+		writeBytes(dos, (text == null) ? null : text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readString (DataInputStream dis)
+		throws IOException
+	{
+		byte[] bytes = readBytes(dis);
+		return (bytes == null) ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void writeBytes (DataOutputStream dos,
+		byte[] bytes)
+		throws IOException
+	{
+		if ( bytes == null ) {
+			dos.writeInt(-1);
+			return;
+		}
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+
+	private byte[] readBytes (DataInputStream dis)
+		throws IOException
+	{
+		int length = dis.readInt();
+		if ( length == -1 ) return null;
+		byte[] bytes = new byte[length];
+		dis.readFully(bytes);
+		return bytes;
+	}
+
+}
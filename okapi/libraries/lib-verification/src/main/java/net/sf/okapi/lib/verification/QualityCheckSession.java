@@ -27,10 +27,18 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.LocaleId;
@@ -48,6 +56,8 @@ import net.sf.okapi.common.resource.StartSubDocument;
 public class QualityCheckSession {
 
 	public static final String FILE_EXTENSION = ".qcs";
+	/** Extension added to the path of a session file for its cache file. */
+	public static final String CACHE_EXTENSION = ".cache";
 	
 	private static final String SERIALSIGNATURE = "OQCS";
 	private static final long SERIALVERSIONUID = 2L;
@@ -63,9 +73,11 @@ public class QualityCheckSession {
 	private QualityChecker checker;
 	private LocaleId sourceLocale = LocaleId.ENGLISH;
 	private LocaleId targetLocale = LocaleId.FRENCH;
-	private IFilter filter;
 	private boolean modified;
 	private boolean autoRefresh;
+	private boolean incremental;
+	private int workerCount = Runtime.getRuntime().availableProcessors();
+	private final QualityCheckCache cache = new QualityCheckCache();
 
 	public QualityCheckSession() {
 		reset();
@@ -99,6 +111,43 @@ public class QualityCheckSession {
 		this.autoRefresh = autoRefresh;
 	}
 
+	/**
+	 * Gets the number of documents checked at the same time when re-checking.
+	 * @return the number of workers.
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * Sets the number of documents checked at the same time when re-checking.
+	 * The default is one per available processor. The issues do not depend on it.
+	 * @param workerCount the number of workers (1 to check one document after the other).
+	 */
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	public boolean getIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Sets the incremental mode of this session. In this mode, the issues of each text unit are kept
+	 * with a fingerprint of the text unit and of the check settings. When re-checking, the text units
+	 * with the same fingerprint get the same issues without running the checks again, and the documents
+	 * that have not changed are not read again. The cache is saved with the session, in a file with the
+	 * same path as the session and the extension {@link #CACHE_EXTENSION}.
+	 *
+	 * @param incremental true to re-check only what has changed, false to re-check everything.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		if (!incremental) {
+			cache.clear();
+		}
+	}
+
 	/**
 	 * Adds a raw document to the session. If this is the first document added
 	 * to the session, the locales of the session are automatically set to the
@@ -161,6 +210,7 @@ public class QualityCheckSession {
 		issues = new ArrayList<Issue>();
 		params = new Parameters();
 		checker = new QualityChecker();
+		cache.clear();
 	}
 
 	public void resetDisabledIssues() {
@@ -175,10 +225,9 @@ public class QualityCheckSession {
 	}
 
 	public void recheckDocument(URI docId) {
-		startProcess(sourceLocale, targetLocale);
 		RawDocument rd = rawDocs.get(docId);
 		if (rd != null) {
-			executeRecheck(rd, null);
+			recheck(Collections.singletonList(rd), null);
 		}
 	}
 
@@ -187,55 +236,254 @@ public class QualityCheckSession {
 			issues.clear();
 			return;
 		}
-		startProcess(sourceLocale, targetLocale);
-		for (RawDocument rd : rawDocs.values()) {
-			executeRecheck(rd, sigList);
-		}
+		recheck(new ArrayList<RawDocument>(rawDocs.values()), sigList);
 	}
 
-	private void executeRecheck(RawDocument rd,
+	/**
+	 * Re-checks a list of documents. The documents are checked at the same time (up to
+	 * {@link #getWorkerCount()}), each by its own checker and into its own list of issues.
+	 * The lists replace the issues of their documents in the order of the documents, so
+	 * the issues are the same, and in the same order, as when checking one document after
+	 * the other.
+	 */
+	private void recheck(List<RawDocument> docs,
 			List<String> sigList) {
+		if (incremental) {
+			cache.startProcess(sourceLocale, targetLocale, params);
+		}
+		// A blacklist stream can be read only once
+		int count = Math.min(docs.size(), workerCount);
+		if (params.getCheckBlacklist() && (params.getBlacklistStream() != null)) {
+			count = 1;
+		}
+
+		// Signatures of the issues to keep disabled, for each document
+		Map<URI, List<String>> sigLists = null;
+		if (sigList == null) {
+			sigLists = getDisabledSignatures();
+		}
+
+		if (count <= 1) {
+			Worker worker = new Worker();
+			for (RawDocument rd : docs) {
+				List<String> docSigList = (sigList == null) ? getSigList(sigLists, rd) : sigList;
+				replaceIssues(rd.getInputURI(), worker.check(rd, docSigList));
+			}
+			return;
+		}
+
+		LinkedBlockingQueue<Worker> idle = new LinkedBlockingQueue<Worker>();
+		for (int i = 0; i < count; i++) {
+			idle.add(new Worker());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		LinkedList<PendingDocument> pending = new LinkedList<PendingDocument>();
 		try {
-			// Process the document
-			filter = fcMapper.createFilter(rd.getFilterConfigId(), filter);
-			if (filter == null) {
-				throw new OkapiException("Unsupported filter type.");
+			for (RawDocument rd : docs) {
+				Worker worker = idle.take();
+				List<String> docSigList = (sigList == null) ? getSigList(sigLists, rd) : sigList;
+				pending.add(new PendingDocument(rd, executor.submit(new DocumentTask(worker, rd, docSigList, idle))));
+				// Take the issues of the finished documents, keeping the order of the documents
+				while (!pending.isEmpty() && pending.getFirst().future.isDone()) {
+					completeDocument(pending.removeFirst());
+				}
+			}
+			while (!pending.isEmpty()) {
+				completeDocument(pending.removeFirst());
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while checking the documents.", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-			if (params.getCheckXliffSchema()) {
-				if ("okf_xliff".equals(filter.getName())) {
-					ValidateXliffSchema.validateXliffSchema(rd.getInputURI());
+	private void completeDocument(PendingDocument doc)
+			throws InterruptedException {
+		try {
+			replaceIssues(doc.rd.getInputURI(), doc.future.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new OkapiException("Error when checking a document.", e.getCause());
+		}
+	}
+
+	// Replaces the issues of a document by the ones of its new check
+	private void replaceIssues(URI docId,
+			List<Issue> list) {
+		clearIssues(docId, false);
+		issues.addAll(list);
+	}
+
+	// Gets the signatures of the disabled issues, for each document
+	private Map<URI, List<String>> getDisabledSignatures() {
+		Map<URI, List<String>> map = new HashMap<URI, List<String>>();
+		for (Issue issue : issues) {
+			if (!issue.getEnabled()) {
+				List<String> list = map.get(issue.getDocumentURI());
+				if (list == null) {
+					list = new ArrayList<String>();
+					map.put(issue.getDocumentURI(), list);
 				}
+				list.add(issue.getSignature());
 			}
+		}
+		return map;
+	}
+
+	private List<String> getSigList(Map<URI, List<String>> sigLists,
+			RawDocument rd) {
+		List<String> list = sigLists.get(rd.getInputURI());
+		return (list == null) ? new ArrayList<String>() : list;
+	}
+
+	/**
+	 * Checker, filter and list of issues used by one thread of a re-check.
+	 */
+	private class Worker {
 
-			filter.open(rd);
-			while (filter.hasNext()) {
-				Event event = filter.next();
-				switch (event.getEventType()) {
-					case START_DOCUMENT:
-						StartDocument sd = event.getStartDocument();
-						// If signatures exists, don't create the list from the current issues
-						if (sigList == null) {
-							sigList = clearIssues(rd.getInputURI(), true);
-						} else {
-							clearIssues(rd.getInputURI(), false);
-						}
-						processStartDocument(sd, sigList);
-						break;
-					case START_SUBDOCUMENT:
-						processStartSubDocument(event.getStartSubDocument());
-						break;
-					case TEXT_UNIT:
-						processTextUnit(event.getTextUnit());
-						break;
-					default: // Do nothing
-						break;
+		private final List<Issue> buffer = new ArrayList<Issue>();
+		private final QualityChecker checker = new QualityChecker();
+		private IFilter filter;
+	
+		Worker() {
+			checker.startProcess(sourceLocale, targetLocale, params, buffer);
+		}
+
+		List<Issue> check(RawDocument rd,
+				List<String> sigList) {
+			buffer.clear();
+			try {
+				// Process the document
+				filter = fcMapper.createFilter(rd.getFilterConfigId(), filter);
+				if (filter == null) {
+					throw new OkapiException("Unsupported filter type.");
+				}
+
+				QualityCheckCache.DocumentCheck cacheCheck = null;
+				if (incremental) {
+					cacheCheck = cache.startCheck(rd, filter);
+					List<Issue> list = cacheCheck.getIssues();
+					if (list != null) {
+						// Unchanged document: take the issues of the last check
+						addIssues(list, sigList);
+						return new ArrayList<Issue>(buffer);
+					}
+				}
+
+				if (params.getCheckXliffSchema()) {
+					if ("okf_xliff".equals(filter.getName())) {
+						ValidateXliffSchema.validateXliffSchema(rd.getInputURI());
+					}
+				}
+
+				filter.open(rd);
+				while (filter.hasNext()) {
+					Event event = filter.next();
+					switch (event.getEventType()) {
+						case START_DOCUMENT:
+							StartDocument sd = event.getStartDocument();
+							checker.processStartDocument(sd, sigList);
+							if (cacheCheck != null) {
+								cacheCheck.startDocument(sd);
+							}
+							break;
+						case START_SUBDOCUMENT:
+							checker.processStartSubDocument(event.getStartSubDocument());
+							if (cacheCheck != null) {
+								cacheCheck.startSubDocument(event.getStartSubDocument());
+							}
+							break;
+						case TEXT_UNIT:
+							if (cacheCheck != null) {
+								processTextUnit(event.getTextUnit(), sigList, cacheCheck);
+							} else {
+								checker.processTextUnit(event.getTextUnit());
+							}
+							break;
+						default: // Do nothing
+							break;
+					}
+				}
+				if (cacheCheck != null) {
+					cacheCheck.end();
+				}
+				return new ArrayList<Issue>(buffer);
+			} finally {
+				buffer.clear();
+				if (filter != null) {
+					filter.close();
 				}
 			}
-		} finally {
-			if (filter != null) {
-				filter.close();
+		}
+
+		// Checks a text unit only if it has changed since the last check
+		private void processTextUnit(ITextUnit tu,
+				List<String> sigList,
+				QualityCheckCache.DocumentCheck cacheCheck) {
+			List<Issue> list = cacheCheck.getIssues(tu, targetLocale);
+			if (list != null) {
+				addIssues(list, sigList);
+			} else {
+				int start = buffer.size();
+				checker.processTextUnit(tu);
+				list = new ArrayList<Issue>(buffer.subList(start, buffer.size()));
 			}
+			cacheCheck.addIssues(list, checker.isComplete());
+		}
+
+		// Adds issues of a previous check, disabled as they were
+		private void addIssues(List<Issue> list,
+				List<String> sigList) {
+			for (Issue issue : list) {
+				issue.setEnabled(!sigList.contains(issue.getSignature()));
+				buffer.add(issue);
+			}
+		}
+	}
+
+	private class DocumentTask implements Callable<List<Issue>> {
+
+		private final Worker worker;
+		private final RawDocument rd;
+		private final List<String> sigList;
+		private final LinkedBlockingQueue<Worker> idle;
+
+		DocumentTask(Worker worker,
+				RawDocument rd,
+				List<String> sigList,
+				LinkedBlockingQueue<Worker> idle) {
+			this.worker = worker;
+			this.rd = rd;
+			this.sigList = sigList;
+			this.idle = idle;
+		}
+
+		@Override
+		public List<Issue> call() {
+			try {
+				return worker.check(rd, sigList);
+			} finally {
+				idle.add(worker);
+			}
+		}
+	}
+
+	private static class PendingDocument {
+
+		final RawDocument rd;
+		final Future<List<Issue>> future;
+
+		PendingDocument(RawDocument rd,
+				Future<List<Issue>> future) {
+			this.rd = rd;
+			this.future = future;
 		}
 	}
 
@@ -281,6 +529,9 @@ public class QualityCheckSession {
 		} catch (IOException e) {
 			throw new OkapiIOException("Error while saving session.", e);
 		}
+		if (incremental) {
+			cache.save(path + CACHE_EXTENSION);
+		}
 	}
 
 	private void saveSessionToStream(OutputStream outputStream) {
@@ -338,13 +589,14 @@ public class QualityCheckSession {
 
 	public void loadSession(String path) {
 		try {
-			loadSessionFromStream(new FileInputStream(path));
+			loadSessionFromStream(new FileInputStream(path), path);
 		} catch (Throwable e) {
 			throw new OkapiIOException("Error reading session file.\n" + e.getMessage(), e);
 		}
 	}
 
-	private void loadSessionFromStream(InputStream inputStream) {
+	private void loadSessionFromStream(InputStream inputStream,
+			String path) {
 		reset();
 		DataInputStream dis = null;
 		try {
@@ -397,6 +649,9 @@ public class QualityCheckSession {
 			for (int i = 0; i < count; i++) {
 				sigList.add(dis.readUTF());
 			}
+			if (incremental) {
+				loadCache(path + CACHE_EXTENSION);
+			}
 			recheckAll(sigList);
 			modified = false;
 		} catch (Throwable e) {
@@ -412,6 +667,18 @@ public class QualityCheckSession {
 		}
 	}
 
+	// An outdated or damaged cache only means everything is checked again
+	private void loadCache(String path) {
+		if (!new File(path).isFile()) {
+			return;
+		}
+		try {
+			cache.load(path);
+		} catch (OkapiIOException e) {
+			cache.clear();
+		}
+	}
+
 	public void startProcess(LocaleId srcLoc,
 			LocaleId trgLoc) {
 		checker.startProcess(srcLoc, trgLoc, params, issues);
@@ -253,6 +253,15 @@ class QualityChecker extends AbstractChecker {
 		setAnnotationIds(srcCont, trgCont);
 	}
 	
+	/**
+	 * Indicates if all the requested checks are still done. This is false once the
+	 * LanguageTool server has failed: the next text units are not checked with it.
+	 * @return true if all the requested checks are done.
+	 */
+	boolean isComplete() {
+		return !params.getCheckWithLT() || (ltConn != null);
+	}
+
 	private void harvestExistingAnnotations(TextContainer tc,
 			ITextUnit tu,
 			boolean isTarget) {
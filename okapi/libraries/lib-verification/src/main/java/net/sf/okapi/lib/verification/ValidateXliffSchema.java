@@ -83,7 +83,8 @@ public class ValidateXliffSchema {
             throw new OkapiIOException("XLIFF Schame Validation : internal error, invalid " + xliffSchema);
     }
 
-    public static boolean validateXliffSchema(URI fileURI) {
+    // The validator is not thread-safe
+    public static synchronized boolean validateXliffSchema(URI fileURI) {
         if (validator == null)
             return true;
         try {
@@ -18,6 +18,7 @@ package net.sf.okapi.lib.verification;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -26,6 +27,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -38,12 +40,15 @@ import net.sf.okapi.common.annotation.GenericAnnotationType;
 import net.sf.okapi.common.annotation.GenericAnnotations;
 import net.sf.okapi.common.annotation.IssueType;
 import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.filters.FilterConfigurationMapper;
 import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextFragment.TagType;
 import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.filters.xliff.XLIFFFilter;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -823,6 +828,149 @@ public class QualityCheckerTest {
 		assertEquals(4, issues.size());
 	}
 
+	@Test
+	public void testBlacklistChecker_ReloadSameSize() {
+		BlacklistTB tb = new BlacklistTB(locEN);
+		tb.loadBlacklistStream(new ByteArrayInputStream("BlackTerm1\t\nBlackTerm2\t".getBytes(StandardCharsets.UTF_8)));
+		BlacklistChecker checker = new BlacklistChecker();
+		checker.initialize(tb, locFR);
+
+		ITextUnit tu = new TextUnit("id", "Srcwrd srcwrd");
+		tu.setTarget(locFR, new TextContainer("BlackTerm1 BlackTerm2 OtherTerm"));
+		Segment seg = tu.getTarget(locFR).getFirstSegment();
+		assertEquals(2, checker.verify(null, null, tu, seg, false, false));
+
+		// Same number of terms, but different ones
+		tb.removeAll();
+		tb.loadBlacklistStream(new ByteArrayInputStream("OtherTerm\t\nBlackTerm3\t".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(1, checker.verify(null, null, tu, seg, false, false));
+		assertTrue(checker.getIssues().get(0).getMessage().contains("\"OtherTerm\""));
+	}
+
+	@Test
+	public void testBlacklistChecker_SeveralOccurrences() {
+		// Setup
+		String inPath = location.in("/black_tsv_simple.txt").toString();
+		Parameters params = session.getParameters();
+		params.setCheckBlacklist(true);
+		params.setblacklistPath(inPath);
+
+		// Configure data
+		ITextUnit tu = new TextUnit("id", "Srcwrd srcwrd srcwrd srcwrd srcwrd srcwrd.");
+		tu.setTarget(locFR, new TextContainer("BlackTerm1 BlackTerm2 xBlackTerm4 BlackTerm1"));
+
+		// Reinitialize
+		session.startProcess(locEN, locFR);
+		session.processTextUnit(tu);
+
+		// Get results: the term within a word is not reported
+		List<Issue> issues = session.getIssues();
+		assertEquals(3, issues.size());
+		assertEquals(0, issues.get(0).getTargetStart());
+		assertEquals(34, issues.get(1).getTargetStart());
+		assertEquals(11, issues.get(2).getTargetStart());
+	}
+
+	@Test
+	public void testIncrementalRecheck() throws IOException {
+		File file = location.out("/incremental.xlf").asFile();
+		file.getParentFile().mkdirs();
+		writeXliff(file, "Text with the the error", "Correct text");
+
+		FilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations(XLIFFFilter.class.getName());
+		session.setFilterConfigurationMapper(fcMapper);
+		session.setIncremental(true);
+		RawDocument rd = new RawDocument(file.toURI(), "UTF-8", locEN, locFR);
+		rd.setFilterConfigId("okf_xliff");
+		session.addRawDocument(rd);
+
+		session.recheckAll(null);
+		List<Issue> issues = session.getIssues();
+		assertEquals(1, issues.size());
+		Issue issue = issues.get(0);
+		issue.setEnabled(false);
+
+		// Nothing changed: same issues, still disabled
+		session.recheckAll(null);
+		assertEquals(1, session.getIssues().size());
+		assertSame(issue, session.getIssues().get(0));
+		assertFalse(issue.getEnabled());
+
+		// The unchanged text unit is not checked again
+		writeXliff(file, "Text with the the error", "Other text text");
+		file.setLastModified(file.lastModified() + 2000);
+		session.recheckAll(null);
+		issues = session.getIssues();
+		assertEquals(2, issues.size());
+		assertSame(issue, issues.get(0));
+		assertFalse(issue.getEnabled());
+		assertTrue(issues.get(1).getEnabled());
+
+		// Changing the parameters checks everything again
+		session.getParameters().setDoubledWord(false);
+		session.recheckAll(null);
+		assertEquals(0, session.getIssues().size());
+		session.getParameters().setDoubledWord(true);
+
+		// The cache is saved and loaded with the session
+		String path = location.out("/incremental" + QualityCheckSession.FILE_EXTENSION).toString();
+		session.recheckAll(null);
+		session.saveSession(path);
+		assertTrue(new File(path + QualityCheckSession.CACHE_EXTENSION).exists());
+		QualityCheckSession loaded = new QualityCheckSession();
+		loaded.setFilterConfigurationMapper(fcMapper);
+		loaded.setIncremental(true);
+		loaded.loadSession(path);
+		assertEquals(session.getIssues().toString(), loaded.getIssues().toString());
+	}
+
+	@Test
+	public void testParallelRecheck() throws IOException {
+		FilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations(XLIFFFilter.class.getName());
+		QualityCheckSession sequential = new QualityCheckSession();
+		sequential.setFilterConfigurationMapper(fcMapper);
+		sequential.setWorkerCount(1);
+		QualityCheckSession parallel = new QualityCheckSession();
+		parallel.setFilterConfigurationMapper(fcMapper);
+		parallel.setWorkerCount(4);
+
+		for (int i = 0; i < 12; i++) {
+			File file = location.out("/parallel" + i + ".xlf").asFile();
+			file.getParentFile().mkdirs();
+			writeXliff(file, (i % 3 == 0) ? "Text with the the " + i : "Text " + i, (i % 2 == 0) ? "" : "Other  text");
+			for (QualityCheckSession qcs : new QualityCheckSession[] { sequential, parallel }) {
+				RawDocument rd = new RawDocument(file.toURI(), "UTF-8", locEN, locFR);
+				rd.setFilterConfigId("okf_xliff");
+				qcs.addRawDocument(rd);
+			}
+		}
+		sequential.recheckAll(null);
+		parallel.recheckAll(null);
+		assertEquals(16, sequential.getIssues().size());
+		assertEquals(sequential.getIssues().toString(), parallel.getIssues().toString());
+
+		// Disabled issues stay disabled
+		parallel.getIssues().get(3).setEnabled(false);
+		String expected = parallel.getIssues().toString();
+		parallel.recheckAll(null);
+		assertEquals(expected, parallel.getIssues().toString());
+		assertFalse(parallel.getIssues().get(3).getEnabled());
+	}
+
+	private void writeXliff(File file,
+			String target1,
+			String target2) throws IOException {
+		String xliff = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\">\n"
+				+ "<file original=\"test\" source-language=\"en\" target-language=\"fr\" datatype=\"plaintext\"><body>\n"
+				+ "<trans-unit id=\"1\"><source>Text with an error</source><target>" + target1 + "</target></trans-unit>\n"
+				+ "<trans-unit id=\"2\"><source>Other text</source><target>" + target2 + "</target></trans-unit>\n"
+				+ "</body></file></xliff>";
+		Files.write(file.toPath(), xliff.getBytes(StandardCharsets.UTF_8));
+	}
+
 	@Test
 	public void testBlacklistChecker_JA() {
 		// Setup
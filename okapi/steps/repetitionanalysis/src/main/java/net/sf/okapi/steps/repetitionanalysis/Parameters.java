@@ -28,6 +28,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 
 	private static final String FUZZYTHRESHOLD = "fuzzyThreshold";
 	private static final String MAXHITS = "maxHits";
+	private static final String MAXSEGMENTSINMEMORY = "maxSegmentsInMemory";
 	
 	public Parameters () {
 		super();
@@ -37,6 +38,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		super.reset();
 		setFuzzyThreshold(100);
 		setMaxHits(20);
+		setMaxSegmentsInMemory(500000);
 	}
 	
 	public void setFuzzyThreshold(int fuzzyThreshold) {
@@ -52,6 +54,8 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		ParametersDescription desc = new ParametersDescription(this);
 		desc.add(FUZZYTHRESHOLD, "Fuzzy threshold (1-100)", "Fuzzy threshold for fuzzy repetitions. Leave 100 for exact repetitions only.");
 		desc.add(MAXHITS, "Max hits", "Maximum number of exact and fuzzy repetitions to keep track of for every segment.");
+		desc.add(MAXSEGMENTSINMEMORY, "Max segments in memory", "Maximum number of segments to analyze in memory. "
+			+ "Larger documents are analyzed with a temporary TM on disk. Use 0 to always use a TM on disk.");
 		return desc;
 	}
 	
@@ -60,8 +64,10 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		EditorDescription desc = new EditorDescription("Repetition Analysis");		
 		SpinInputPart sip = desc.addSpinInputPart(paramDesc.get(FUZZYTHRESHOLD));
 		SpinInputPart sip2 = desc.addSpinInputPart(paramDesc.get(MAXHITS));
+		SpinInputPart sip3 = desc.addSpinInputPart(paramDesc.get(MAXSEGMENTSINMEMORY));
 		sip.setRange(1, 100);		
 		sip2.setRange(1, 100);
+		sip3.setRange(0, Integer.MAX_VALUE);
 		return desc;
 	}
 
@@ -73,4 +79,12 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		setInteger(MAXHITS, maxHits);
 	}
 
+	public int getMaxSegmentsInMemory() {
+		return getInteger(MAXSEGMENTSINMEMORY);
+	}
+
+	public void setMaxSegmentsInMemory(int maxSegmentsInMemory) {
+		setInteger(MAXSEGMENTSINMEMORY, maxSegmentsInMemory);
+	}
+
 }
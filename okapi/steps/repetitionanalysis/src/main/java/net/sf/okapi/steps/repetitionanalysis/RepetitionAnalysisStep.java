@@ -18,12 +18,10 @@ package net.sf.okapi.steps.repetitionanalysis;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.common.Util;
 import net.sf.okapi.common.annotation.AltTranslation;
 import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
 import net.sf.okapi.common.pipeline.BasePipelineStep;
@@ -34,14 +32,8 @@ import net.sf.okapi.common.resource.ISegments;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextFragment;
-import net.sf.okapi.tm.pensieve.common.MetadataType;
 import net.sf.okapi.tm.pensieve.common.TmHit;
 import net.sf.okapi.tm.pensieve.common.TranslationUnit;
-import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
-import net.sf.okapi.tm.pensieve.seeker.ITmSeeker;
-import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
-import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
-import net.sf.okapi.tm.pensieve.writer.TmWriterFactory;
 
 /**
  * The step analyzes repetitions in input documents. Either exact or configurable fuzzy search is performed.
@@ -68,9 +60,7 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 	 * Counter of TUs that have at least one non-empty segment (global TU counter).
 	 */
 	private long groupCounter;	
-	private String tmDir;
-	private PensieveWriter tmWriter;
-	private ITmSeeker currentTm;
+	private RepetitionIndex index;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
 
@@ -119,32 +109,22 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 	}
 	
 	private void close() {
-		if (tmWriter != null) {
-			tmWriter.close();
-			tmWriter = null;
+		if (index != null) {
+			index.close();
+			index = null;
 		}
-		if (currentTm != null) {
-			currentTm.close();
-			currentTm = null;
-		}
-		if (tmDir != null) Util.deleteDirectory(tmDir, false);
 	}
 	
 	@Override
 	protected Event handleStartDocument(Event event) {
 		close();
-		// For concurrent pipelines 
-		tmDir = String.format("%s~okapi-step-repetitionanalysis-%s/", 
-				Util.ensureSeparator(Util.getTempDirectory(), true), 
-				UUID.randomUUID().toString());
-		Util.createDirectories(tmDir);
 		searchExact = params.getFuzzyThreshold() >= 100;
 		
 		tuCounter = 0;
 		groupCounter = 1;
 		
-		tmWriter = (PensieveWriter) TmWriterFactory.createFileBasedTmWriter(tmDir, true);
-		currentTm = new PensieveSeeker(tmWriter.getIndexWriter());
+		index = new RepetitionIndex(sourceLocale, targetLocale == null ? sourceLocale : targetLocale,
+				params.getMaxSegmentsInMemory());
 		
 		return super.handleStartDocument(event);
 	}
@@ -200,9 +180,9 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 				SegmentInfo info = new SegmentInfo(tuid, groupId, segId); 
 				
 				List<TmHit> hits = new ArrayList<TmHit>();
-				hits.addAll(currentTm.searchExact(tf, null));
+				hits.addAll(index.searchExact(tf));
 				if (!searchExact) {
-					hits.addAll(currentTm.searchFuzzy(tf, params.getFuzzyThreshold(), params.getMaxHits(), null));
+					hits.addAll(index.searchFuzzy(tf, params.getFuzzyThreshold(), params.getMaxHits()));
 				}
 								
 				if (hits.size() > 0) {
@@ -233,16 +213,6 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 					}					
 				}
 				
-				TranslationUnit ntu = new TranslationUnit(
-						new TranslationUnitVariant(sourceLocale, tf),
-						new TranslationUnitVariant(targetLocale == null ? sourceLocale : targetLocale, 
-								new TextFragment(tuid))); // To have a unique target
-				ntu.setMetadataValue(MetadataType.ID, tuid);
-				
-				// TODO create real MetadataTypes for these
-				ntu.setMetadataValue(MetadataType.GROUP_NAME, groupId);
-				ntu.setMetadataValue(MetadataType.FILE_NAME, segId);
-				
 				// The segment can be referenced from the maps in RSA of other segments, so we create a RSA for it
 				if (seg.getAnnotation(RepetitiveSegmentAnnotation.class) == null) {
 					RepetitiveSegmentAnnotation ann = 
@@ -250,11 +220,9 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 					seg.setAnnotation(ann);
 				}
 				
-				tmWriter.indexTranslationUnit(ntu);
-				
-				// Should be called here after every segment addition to the TM for the situations 
+				// Should be done here after every segment for the situations 
 				// of repetitive segments within a tu
-				tmWriter.commit();
+				index.add(tf.getText(), info);
 			}
 			if (hasTranslationUnits) groupCounter++;
 		}
@@ -0,0 +1,348 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.lib.search.lucene.analysis.NgramAnalyzer;
+import net.sf.okapi.tm.pensieve.common.MetadataType;
+import net.sf.okapi.tm.pensieve.common.TmHit;
+import net.sf.okapi.tm.pensieve.common.TranslationUnit;
+import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
+import net.sf.okapi.tm.pensieve.seeker.ITmSeeker;
+import net.sf.okapi.tm.pensieve.seeker.PensieveSeeker;
+import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
+import net.sf.okapi.tm.pensieve.writer.TmWriterFactory;
+
+/**
+ * Index of the segments already seen by {@link RepetitionAnalysisStep}.
+ * <p>
+ * Segments are kept in memory: exact repetitions are found with a hash lookup, and fuzzy repetitions
+ * with an inverted index of the same 4-grams Pensieve uses. The hits (scores, match types and order)
+ * are the same as the ones returned by a Pensieve TM holding the same segments.
+ * <p>
+ * When the number of segments reaches the given limit, the index is moved to a temporary
+ * Pensieve TM on disk, and the following segments are indexed there.
+ */
+public class RepetitionIndex {
+
+	// Same analyzer and penalty as PensieveWriter and PensieveSeeker
+	private static final NgramAnalyzer ANALYZER = new NgramAnalyzer(Locale.ENGLISH, 4);
+	private static final float ROUGH_CUTOFF = 0.50f;
+	private static final float WHITESPACE_OR_CASE_PENALTY = 2.0f;
+
+	private final LocaleId sourceLocale;
+	private final LocaleId targetLocale;
+	private final int maxInMemory;
+
+	// In-memory mode
+	private List<Entry> entries;
+	private Map<String, List<Entry>> exactMap;
+	private Map<String, Postings> postings;
+	private int[] counts;
+
+	// On-disk mode
+	private String tmDir;
+	private PensieveWriter tmWriter;
+	private ITmSeeker tmSeeker;
+
+	/**
+	 * Creates a new index.
+	 * @param sourceLocale the source locale of the segments.
+	 * @param targetLocale the target locale of the translation units created for the hits.
+	 * @param maxInMemory the maximum number of segments to keep in memory before moving the index
+	 * to disk (0 to always use a TM on disk).
+	 */
+	public RepetitionIndex (LocaleId sourceLocale,
+		LocaleId targetLocale,
+		int maxInMemory)
+	{
+		this.sourceLocale = sourceLocale;
+		this.targetLocale = targetLocale;
+		this.maxInMemory = maxInMemory;
+		entries = new ArrayList<Entry>();
+		exactMap = new HashMap<String, List<Entry>>();
+		postings = new HashMap<String, Postings>();
+		counts = new int[16];
+		if ( maxInMemory <= 0 ) {
+			spill();
+		}
+	}
+
+	/**
+	 * Indicates if this index has been moved to disk.
+	 * @return true if the segments are stored in a temporary TM on disk.
+	 */
+	public boolean isOnDisk () {
+		return (tmWriter != null);
+	}
+
+	/**
+	 * Adds a segment to this index.
+	 * @param text the text of the segment (without codes).
+	 * @param info the identifiers of the segment.
+	 */
+	public void add (String text,
+		SegmentInfo info)
+	{
+		if ( isOnDisk() ) {
+			tmWriter.indexTranslationUnit(createTranslationUnit(text, info));
+			// Commit after every addition for repetitive segments within a text unit
+			tmWriter.commit();
+			return;
+		}
+
+		Set<String> ngrams = getNgrams(text);
+		Entry entry = new Entry(entries.size(), text, info, ngrams.size());
+		entries.add(entry);
+		List<Entry> list = exactMap.get(text);
+		if ( list == null ) {
+			list = new ArrayList<Entry>(1);
+			exactMap.put(text, list);
+		}
+		list.add(entry);
+		for ( String ngram : ngrams ) {
+			Postings p = postings.get(ngram);
+			if ( p == null ) {
+				p = new Postings();
+				postings.put(ngram, p);
+			}
+			p.add(entry.index);
+		}
+
+		if ( entries.size() >= maxInMemory ) {
+			spill();
+		}
+	}
+
+	/**
+	 * Gets the exact repetitions of a given text.
+	 * @param query the text to look for (without codes).
+	 * @return the list of hits, in the order the segments were added.
+	 */
+	public List<TmHit> searchExact (TextFragment query) {
+		if ( isOnDisk() ) {
+			return tmSeeker.searchExact(query, null);
+		}
+		List<TmHit> hits = new ArrayList<TmHit>();
+		List<Entry> list = exactMap.get(query.getCodedText());
+		if ( list != null ) {
+			for ( Entry entry : list ) {
+				hits.add(new TmHit(createTranslationUnit(entry.text, entry.info), MatchType.EXACT, 100.0f));
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Gets the exact and fuzzy repetitions of a given text.
+	 * @param query the text to look for (without codes).
+	 * @param threshold the minimal score of the hits.
+	 * @param max the maximum number of hits to return.
+	 * @return the list of hits, best first.
+	 */
+	public List<TmHit> searchFuzzy (TextFragment query,
+		int threshold,
+		int max)
+	{
+		if ( isOnDisk() ) {
+			return tmSeeker.searchFuzzy(query, threshold, max, null);
+		}
+		if (( threshold < 0 ) || ( threshold > 100 )) {
+			throw new IllegalArgumentException("");
+		}
+
+		String queryText = query.getText();
+		Set<String> ngrams = getNgrams(queryText);
+		int uniqueSize = ngrams.size();
+		int roughThresholdFreq = (int)(uniqueSize * ROUGH_CUTOFF);
+
+		// Count the n-grams shared with each segment
+		if ( counts.length < entries.size() ) {
+			counts = new int[Math.max(entries.size(), counts.length*2)];
+		}
+		Postings touched = new Postings();
+		for ( String ngram : ngrams ) {
+			Postings p = postings.get(ngram);
+			if ( p == null ) continue;
+			for ( int i=0; i<p.size; i++ ) {
+				int doc = p.docs[i];
+				if ( counts[doc]++ == 0 ) touched.add(doc);
+			}
+		}
+
+		// Score the candidates in index order, as Lucene does for equal scores
+		Arrays.sort(touched.docs, 0, touched.size);
+		List<TmHit> hits = new ArrayList<TmHit>();
+		for ( int i=0; i<touched.size; i++ ) {
+			int doc = touched.docs[i];
+			int count = counts[doc];
+			counts[doc] = 0;
+			if ( count <= roughThresholdFreq ) continue;
+			Entry entry = entries.get(doc);
+			float score = (float)((2.0f * (float)count) / (float)(entry.ngramCount + uniqueSize)) * 100.0f;
+			if ( score < threshold ) continue;
+
+			MatchType matchType = MatchType.FUZZY;
+			if ( score >= 100.0f ) {
+				if ( entry.text.equals(queryText) ) {
+					matchType = MatchType.EXACT;
+				}
+				else {
+					// Must be a whitespace or case difference
+					score -= WHITESPACE_OR_CASE_PENALTY;
+					if ( score < threshold ) continue;
+				}
+			}
+			hits.add(new TmHit(createTranslationUnit(entry.text, entry.info), matchType, score));
+		}
+
+		// Stable sort on match type, score and source string
+		Collections.sort(hits);
+		if ( max < hits.size() ) {
+			return hits.subList(0, max);
+		}
+		return hits;
+	}
+
+	/**
+	 * Releases the resources used by this index, and deletes its temporary files if any.
+	 */
+	public void close () {
+		entries = null;
+		exactMap = null;
+		postings = null;
+		if ( tmWriter != null ) {
+			tmWriter.close();
+			tmWriter = null;
+		}
+		if ( tmSeeker != null ) {
+			tmSeeker.close();
+			tmSeeker = null;
+		}
+		if ( tmDir != null ) {
+			Util.deleteDirectory(tmDir, false);
+			tmDir = null;
+		}
+	}
+
+	/**
+	 * Moves the segments of this index to a temporary Pensieve TM.
+	 */
+	private void spill () {
+		// Unique directory for concurrent pipelines
+		tmDir = String.format("%s~okapi-step-repetitionanalysis-%s/",
+				Util.ensureSeparator(Util.getTempDirectory(), true),
+				UUID.randomUUID().toString());
+		Util.createDirectories(tmDir);
+		tmWriter = (PensieveWriter) TmWriterFactory.createFileBasedTmWriter(tmDir, true);
+		for ( Entry entry : entries ) {
+			tmWriter.indexTranslationUnit(createTranslationUnit(entry.text, entry.info));
+		}
+		tmWriter.commit();
+		tmSeeker = new PensieveSeeker(tmWriter.getIndexWriter());
+		entries = null;
+		exactMap = null;
+		postings = null;
+		counts = null;
+	}
+
+	private TranslationUnit createTranslationUnit (String text,
+		SegmentInfo info)
+	{
+		TranslationUnit tu = new TranslationUnit(
+				new TranslationUnitVariant(sourceLocale, new TextFragment(text)),
+				new TranslationUnitVariant(targetLocale, new TextFragment(info.getTuid()))); // To have a unique target
+		tu.setMetadataValue(MetadataType.ID, info.getTuid());
+		// TODO create real MetadataTypes for these
+		tu.setMetadataValue(MetadataType.GROUP_NAME, info.getGroupId());
+		tu.setMetadataValue(MetadataType.FILE_NAME, info.getSegId());
+		return tu;
+	}
+
+	private static Set<String> getNgrams (String text) {
+		Set<String> ngrams = new LinkedHashSet<String>();
+		TokenStream stream = ANALYZER.tokenStream(null, new StringReader(text));
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		try {
+			stream.reset();
+			while ( stream.incrementToken() ) {
+				ngrams.add(termAtt.toString());
+			}
+			stream.end();
+			stream.close();
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException(e.getMessage(), e);
+		}
+		return ngrams;
+	}
+
+	private static class Entry {
+
+		final int index;
+		final String text;
+		final SegmentInfo info;
+		final int ngramCount;
+
+		Entry (int index,
+			String text,
+			SegmentInfo info,
+			int ngramCount)
+		{
+			this.index = index;
+			this.text = text;
+			this.info = info;
+			this.ngramCount = ngramCount;
+		}
+	}
+
+	/**
+	 * Growable list of segment indices.
+	 */
+	private static class Postings {
+
+		int[] docs = new int[4];
+		int size;
+
+		void add (int doc) {
+			if ( size == docs.length ) {
+				docs = Arrays.copyOf(docs, size*2);
+			}
+			docs[size++] = doc;
+		}
+	}
+}
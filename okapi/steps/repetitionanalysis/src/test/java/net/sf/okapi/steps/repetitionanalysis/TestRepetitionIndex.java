@@ -0,0 +1,140 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.tm.pensieve.common.MetadataType;
+import net.sf.okapi.tm.pensieve.common.TmHit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestRepetitionIndex {
+
+	private static final String[] TEXTS = {
+		"Elephants cannot fly.",
+		"Elephants cannot fly.",
+		"Flies can fly.",
+		"Elephants are bigger than flies.",
+		"Elephants can fly.",
+		"elephants cannot  fly.",
+		"Elephants can't fly.",
+		"Flies can swim.",
+		"Elephants are much bigger than flies.",
+		"Fly.",
+		"",
+		"Elephants cannot fly.",
+		"Small flies are smaller than elephants.",
+	};
+
+	@Test
+	public void sameHitsAsTmOnDisk () {
+		compare(100, 20);
+		compare(40, 20);
+		compare(75, 2);
+	}
+
+	@Test
+	public void findsFuzzyRepetitions () {
+		RepetitionIndex index = new RepetitionIndex(LocaleId.ENGLISH, LocaleId.GERMAN, 1000);
+		try {
+			index.add("Elephants cannot fly.", new SegmentInfo("1", "1", "1"));
+			index.add("elephants cannot fly.", new SegmentInfo("2", "1", "2"));
+			index.add("Flies can swim.", new SegmentInfo("3", "2", "1"));
+			List<TmHit> hits = index.searchFuzzy(new TextFragment("Elephants cannot fly."), 50, 10);
+			assertEquals(2, hits.size());
+			assertEquals(MatchType.EXACT, hits.get(0).getMatchType());
+			assertEquals(100.0f, hits.get(0).getScore(), 0.0f);
+			assertEquals(MatchType.FUZZY, hits.get(1).getMatchType());
+			assertEquals(98.0f, hits.get(1).getScore(), 0.0f);
+			assertEquals("2", hits.get(1).getTu().getMetadataValue(MetadataType.ID));
+		}
+		finally {
+			index.close();
+		}
+	}
+
+	@Test
+	public void spillsToDisk () {
+		RepetitionIndex index = new RepetitionIndex(LocaleId.ENGLISH, LocaleId.GERMAN, 3);
+		try {
+			index.add(TEXTS[0], new SegmentInfo("1", "1", "1"));
+			index.add(TEXTS[1], new SegmentInfo("2", "1", "2"));
+			assertFalse(index.isOnDisk());
+			index.add(TEXTS[2], new SegmentInfo("3", "2", "1"));
+			assertTrue(index.isOnDisk());
+			index.add(TEXTS[3], new SegmentInfo("4", "2", "2"));
+			List<TmHit> hits = index.searchExact(new TextFragment(TEXTS[0]));
+			assertEquals(2, hits.size());
+			assertEquals("1", hits.get(0).getTu().getMetadataValue(MetadataType.ID));
+			assertEquals("2", hits.get(1).getTu().getMetadataValue(MetadataType.ID));
+			assertEquals(1, index.searchExact(new TextFragment(TEXTS[3])).size());
+		}
+		finally {
+			index.close();
+		}
+	}
+
+	private void compare (int threshold,
+		int max)
+	{
+		RepetitionIndex memory = new RepetitionIndex(LocaleId.ENGLISH, LocaleId.GERMAN, 1000);
+		RepetitionIndex disk = new RepetitionIndex(LocaleId.ENGLISH, LocaleId.GERMAN, 0);
+		try {
+			assertFalse(memory.isOnDisk());
+			assertTrue(disk.isOnDisk());
+			for ( int i=0; i<TEXTS.length; i++ ) {
+				TextFragment tf = new TextFragment(TEXTS[i]);
+				assertSame(disk.searchExact(tf), memory.searchExact(tf));
+				if ( threshold < 100 ) {
+					assertSame(disk.searchFuzzy(tf, threshold, max), memory.searchFuzzy(tf, threshold, max));
+				}
+				SegmentInfo info = new SegmentInfo(String.valueOf(i+1), "1", String.valueOf(i+1));
+				memory.add(TEXTS[i], info);
+				disk.add(TEXTS[i], info);
+			}
+		}
+		finally {
+			memory.close();
+			disk.close();
+		}
+	}
+
+	private void assertSame (List<TmHit> expected,
+		List<TmHit> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for ( int i=0; i<expected.size(); i++ ) {
+			TmHit exp = expected.get(i);
+			TmHit act = actual.get(i);
+			assertEquals(exp.getMatchType(), act.getMatchType());
+			assertEquals(exp.getScore(), act.getScore(), 0.0f);
+			assertEquals(exp.getTu().getSource().getContent().toText(), act.getTu().getSource().getContent().toText());
+			assertEquals(new SegmentInfo(exp.getTu().getMetadata()), new SegmentInfo(act.getTu().getMetadata()));
+		}
+	}
+}
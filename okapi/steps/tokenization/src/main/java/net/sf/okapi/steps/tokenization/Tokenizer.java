@@ -16,31 +16,35 @@
 
 package net.sf.okapi.steps.tokenization;
 
-import net.sf.okapi.common.Event;
-import net.sf.okapi.common.EventType;
-import net.sf.okapi.common.LocaleFilter;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.resource.ITextUnit;
-import net.sf.okapi.common.resource.StartDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
-import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
 import net.sf.okapi.steps.tokenization.tokens.Tokens;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 
+ * Static helpers to tokenize text with the default configuration.
+ * The methods are thread-safe: they use a shared {@link TokenizerEngine}.
  * 
  * @version 0.1 08.07.2009
  */
 
 public class Tokenizer {
 
-	protected static TokenizationStep ts = new TokenizationStep();
+	private static final TokenizerEngine engine = new TokenizerEngine();
+	
+	/**
+	 * Gets the engine used by this class.
+	 * @return the shared tokenizer engine with the default configuration.
+	 */
+	public static TokenizerEngine getEngine() {
+		return engine;
+	}
 	
 	/**
 	 * Extracts tokens from the given text.
@@ -49,41 +53,8 @@ public class Tokenizer {
 	 * @param tokenNames Optional list of token names. If omitted, all tokens will be extracted.
 	 * @return A list of Token objects.
 	 */
-	protected static synchronized Tokens tokenizeString(String text, LocaleId language, String... tokenNames) {
-			
-		Tokens res = new Tokens();
-		
-		if (ts == null)	return res;
-		
-		Parameters params = (Parameters) ts.getParameters();		
-		params.reset();
-		
-		params.tokenizeSource = true;
-		params.tokenizeTargets = false;
-		
-		params.setLocaleFilter(LocaleFilter.anyOf(language));		
-		params.setTokenNames(tokenNames);
-					
-		ts.handleEvent(new Event(EventType.START_BATCH)); // Calls component_init();
-		
-		StartDocument startDoc = new StartDocument("tokenization");
-		startDoc.setLocale(language);
-		startDoc.setMultilingual(false);		
-		Event event = new Event(EventType.START_DOCUMENT, startDoc);		
-		ts.handleEvent(event);
-				
-		ITextUnit tu = TextUnitUtil.buildTU(text);
-		event = new Event(EventType.TEXT_UNIT, tu);		
-		ts.handleEvent(event);
-		
-		// Move tokens from the event's annotation to result
-		TokensAnnotation ta = TextUnitUtil.getSourceAnnotation(tu, TokensAnnotation.class);
-		if (ta != null)
-			res.addAll(ta.getTokens());
-		
-		ts.handleEvent(new Event(EventType.END_BATCH)); // Calls component_done();
-		
-		return res;
+	protected static Tokens tokenizeString(String text, LocaleId language, String... tokenNames) {
+		return engine.tokenize(text, language, tokenNames);
 	}
 	
 	private static Tokens doTokenize(Object text, LocaleId language, String... tokenNames) {
@@ -0,0 +1,335 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.tokenization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Range;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.steps.tokenization.common.Config;
+import net.sf.okapi.steps.tokenization.common.ILexer;
+import net.sf.okapi.steps.tokenization.common.Lexem;
+import net.sf.okapi.steps.tokenization.common.Lexems;
+import net.sf.okapi.steps.tokenization.common.LexerRule;
+import net.sf.okapi.steps.tokenization.common.LexerRules;
+import net.sf.okapi.steps.tokenization.common.StructureParameters;
+import net.sf.okapi.steps.tokenization.common.StructureParametersItem;
+import net.sf.okapi.steps.tokenization.common.Token;
+import net.sf.okapi.steps.tokenization.tokens.Tokens;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tokenizer working directly on text, without pipeline events or text units.
+ * <p>
+ * The configuration is read once when the engine is created. Lexers keep state while they
+ * process a text, so each thread gets its own set of lexers, created the first time the thread
+ * uses the engine: one engine can be shared by any number of threads.
+ * <p>
+ * The tokens are the same as the ones {@link TokenizationStep} attaches to the text units
+ * for the same configuration: the step uses the same code.
+ */
+public class TokenizerEngine {
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final StructureParameters structureParams;
+
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		@Override
+		protected Worker initialValue() {
+			return new Worker(structureParams);
+		}
+	};
+
+	/**
+	 * Creates an engine with the default configuration of {@link TokenizationStep}.
+	 */
+	public TokenizerEngine() {
+		this(TokenizationStep.class, "config.tprm");
+	}
+
+	/**
+	 * Creates an engine with a given configuration.
+	 * @param classRef the class used to locate the configuration resources.
+	 * @param configLocation the location of the configuration, relative to classRef.
+	 */
+	public TokenizerEngine(Class<?> classRef, String configLocation) {
+		Config config = new Config();
+		config.loadFromResource(classRef, configLocation);
+
+		structureParams = new StructureParameters();
+		String structureLocation = config.getEngineConfig();
+
+		if (Util.isEmpty(structureLocation) || !structureParams.loadFromResource(classRef, structureLocation))
+			logger.debug("Lexers' config file not found.");
+	}
+
+	/**
+	 * Extracts tokens from a given text.
+	 * @param text the text to tokenize (without inline codes).
+	 * @param language the language of the text.
+	 * @param tokenNames optional list of token names. If omitted, all tokens are extracted.
+	 * @return the list of tokens, or null if the language is not set.
+	 */
+	public Tokens tokenize(CharSequence text, LocaleId language, String... tokenNames) {
+		if (text == null) return null;
+		if (Util.isNullOrEmpty(language)) {
+			logger.warn("Language is not set, cannot tokenize.");
+			return null;
+		}
+		List<Integer> noCodes = Collections.emptyList();
+		return workers.get().tokenize(text.toString(), noCodes, language, tokenNames);
+	}
+
+	/**
+	 * Extracts tokens from a given text fragment. The inline codes are removed before
+	 * tokenizing, and the token ranges are given in the coded text of the fragment.
+	 * @param fragment the text fragment to tokenize.
+	 * @param language the language of the text.
+	 * @param tokenNames optional list of token names. If omitted, all tokens are extracted.
+	 * @return the list of tokens, or null if the language is not set.
+	 */
+	public Tokens tokenize(TextFragment fragment, LocaleId language, String... tokenNames) {
+		if (fragment == null) return null;
+		if (Util.isNullOrEmpty(language)) {
+			logger.warn("Language is not set, cannot tokenize.");
+			return null;
+		}
+		List<Integer> positions = new ArrayList<Integer>();
+		String text = TextUnitUtil.getText(fragment, positions);
+		return workers.get().tokenize(text, positions, language, tokenNames);
+	}
+
+	/**
+	 * Lexers and work lists used to tokenize one text at a time. This is the tokenization
+	 * code shared by {@link TokenizerEngine} (one worker per thread) and {@link TokenizationStep}.
+	 */
+	static class Worker {
+		private final Logger logger = LoggerFactory.getLogger(getClass());
+
+		/**
+		 * Lexers generating lexems
+		 */
+		private List<ILexer> lexers = new ArrayList<ILexer>();
+
+		/**
+		 * Lexers not generating lexems, but rather performing sorting, cleaning etc. service tasks. 
+		 * Either have no lexer rules assigned, or the rules have outTokens empty.
+		 */
+		private final List<ILexer> serviceLexers = new ArrayList<ILexer>();
+
+		/**
+		 * The rules not capable of processing the current set of languages and tokens.<p>
+		 * The list is compiled of the rules collected from all installed lexers.
+		 **/
+		private final List<LexerRule> idleRules = new ArrayList<LexerRule>();
+
+		/**
+		 * Lexems for repeated processing (text that was extracted from other lexems and requires tokenization)
+		 */
+		private final LinkedList<Lexem> rawtextLexems = new LinkedList<Lexem>();
+		private boolean allowNewRawText;
+
+		Worker(StructureParameters structureParams) {
+			instantiateLexers(structureParams);
+			updateIdleRules();
+		}
+
+		private void instantiateLexers(StructureParameters structureParams) {
+			for (StructureParametersItem item : structureParams.getItems()) {
+
+				try {
+					if (item == null) continue;
+					if (!item.isEnabled()) continue;
+
+					ILexer lexer = (ILexer) Class.forName(item.getLexerClass()).newInstance();
+
+					LexerRules lexerRules = lexer.getRules(); // Null if the lexer doesn't need rules to operate
+
+					// Load lexer's rules
+					if (lexerRules != null)
+						if (!lexerRules.loadFromResource(lexer.getClass(), item.getRulesLocation())) continue;
+
+					lexer.init();
+
+					if (lexerRules == null || !lexerRules.hasOutTokens())
+						serviceLexers.add(lexer);
+					else
+						lexers.add(lexer);
+
+				} catch (ClassNotFoundException e) {
+					logger.debug("Lexer instantiation falied: {}", e.getMessage());
+				} catch (InstantiationException e) {
+					logger.debug("Lexer instantiation falied: {}", e.getMessage());
+				} catch (IllegalAccessException e) {
+					logger.debug("Lexer instantiation falied: {}", e.getMessage());
+				}
+			}
+		}
+
+		/**
+		 * Fills up idleRules with the rules of the lexers that cannot produce any token.
+		 */
+		void updateIdleRules() {
+			idleRules.clear();
+
+			for (ILexer lexer : lexers) {
+				if (lexer == null) continue;
+				if (lexer.getRules() == null) continue;
+
+				for (LexerRule rule : lexer.getRules()) {
+					// Okapi-B 22, Check if the rule conforms to the current set of tokens and languages
+					if (!rule.isEnabled())
+						idleRules.add(rule);
+
+					if (rule.getInTokenIDs().size() == 0 &&
+							rule.getOutTokenIDs().size() == 0 &&
+							rule.getUserTokenIDs().size() == 0)
+						idleRules.add(rule);
+				}
+			}
+		}
+
+		List<ILexer> getLexers() {
+			return lexers;
+		}
+
+		void setLexers(List<ILexer> lexers) {
+			this.lexers = lexers;
+		}
+
+		List<LexerRule> getIdleRules() {
+			return idleRules;
+		}
+
+		/**
+		 * Extracts the tokens of a given text.
+		 * @param text the text without inline codes.
+		 * @param positions the positions of the inline codes removed from the text (empty if there was none).
+		 * The token ranges are shifted to be in the coded text.
+		 * @param language the language of the text.
+		 * @param tokenNames optional list of token names. If omitted, all tokens are extracted.
+		 * @return the list of tokens.
+		 */
+		Tokens tokenize(String text, List<Integer> positions, LocaleId language, String... tokenNames) {
+			Tokens tokens = new Tokens();
+			if (text.length() == 0) return tokens; // Nothing to tokenize
+
+			Tokens tempTokens = new Tokens();
+			rawtextLexems.clear();
+
+			allowNewRawText = true;
+			runLexers(lexers, text, language, tokens, 0);
+			runLexers(serviceLexers, text, language, tokens, 0);
+			allowNewRawText = false;
+
+			if (rawtextLexems.size() > 0) {
+
+				int saveNumRawtextLexems = 0;
+
+				while (rawtextLexems.size() > 0) {
+
+					// Deadlock and chain-reaction protection
+					if (saveNumRawtextLexems > 0 && rawtextLexems.size() >= saveNumRawtextLexems) {
+						if (rawtextLexems.size() == saveNumRawtextLexems)
+							logger.debug("RAWTEXT lexems are not processed in tokenize()");
+						else
+							logger.debug("RAWTEXT lexems are creating a chain reaction in tokenize()");
+
+						break;
+					}
+
+					tempTokens.clear();
+					saveNumRawtextLexems = rawtextLexems.size();
+
+					Lexem lexem = rawtextLexems.poll();
+					text = lexem.getValue();
+					int textShift = lexem.getRange().start;
+
+					runLexers(lexers, text, language, tempTokens, textShift);
+					tempTokens.setImmutable(true);
+					tokens.addAll(tempTokens);
+				}
+
+				runLexers(serviceLexers, text, language, tokens, 0);
+			}
+			rawtextLexems.clear();
+
+			// Restore codes from positions
+			tokens.fixRanges(positions);
+
+			// Tokens are filtered afterwards, because some tokens are dependent on others internally
+			return tokens.getFilteredList(tokenNames);
+		}
+
+		private void runLexers(List<ILexer> lexers, String text, LocaleId language, Tokens tokens, int textShift) {
+			for (ILexer lexer : lexers) {
+				if (lexer == null) continue;
+
+				// Single-call way
+				Lexems lexems = lexer.process(text, language, tokens);
+
+				if (lexems != null)
+					for (Lexem lexem : lexems)
+						processLexem(lexem, lexer, language, tokens, 0); // 0 - token ranges don't need shifting
+
+				// Iterator way
+				lexer.open(text, language, tokens);
+				try {
+					while (lexer.hasNext())
+						processLexem(lexer.next(), lexer, language, tokens, textShift);
+				}
+				finally {
+					lexer.close();
+				}
+			}
+		}
+
+		private void processLexem(Lexem lexem, ILexer lexer, LocaleId language, Tokens tokens, int textShift) {
+			if (lexem == null) return;
+
+			if (lexem.getId() == TokenizationStep.RAWTEXT) {
+				if (allowNewRawText)
+					rawtextLexems.add(lexem);
+				return;
+			}
+
+			LexerRule rule = lexer.getRules().getRule(lexem.getId());
+			if (rule == null) return;
+			if (idleRules.contains(rule)) return;
+			if (!rule.supportsLanguage(language)) return;
+
+			lexem.setLexerId(lexers.indexOf(lexer) + 1);
+
+			for (int tokenId : rule.getOutTokenIDs()) {
+				if (textShift > 0) {
+					Range r = lexem.getRange();
+					r.start += textShift;
+					r.end += textShift;
+				}
+				tokens.add(new Token(tokenId, lexem, 100));
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.tokenization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleFilter;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
+import net.sf.okapi.steps.tokenization.tokens.Tokens;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TokenizerEngineTest {
+
+	private static final String[] TEXTS = {
+		"NASDAQ is a U.S. stock exchange.",
+		"This is a 1248-th test. U.S.A.F. read-through didn't AT&T, P&G, Johnson&Johnson",
+		"admin@yahoo.com 192.168.0.7, 12:30 and $2.50!",
+		"word1 word2 word3",
+	};
+
+	private final LocaleId locENUS = LocaleId.fromString("en-us");
+	private final TokenizerEngine engine = new TokenizerEngine();
+
+	@Test
+	public void sameTokensAsStep() {
+		for (String text : TEXTS) {
+			assertEquals(tokenizeWithStep(text).toString(), engine.tokenize(text, locENUS).toString());
+			assertEquals(tokenizeWithStep(text, "WORD").toString(), engine.tokenize(text, locENUS, "WORD").toString());
+		}
+	}
+
+	@Test
+	public void tokenizeFragment() {
+		TextFragment tf = new TextFragment("word1 ");
+		tf.append(TextFragment.TagType.OPENING, "b", "<b>");
+		tf.append("word2");
+		tf.append(TextFragment.TagType.CLOSING, "b", "</b>");
+		Tokens tokens = engine.tokenize(tf, locENUS, "WORD");
+		assertEquals(2, tokens.size());
+		assertEquals("word2", tokens.get(1).getValue());
+		// Ranges are shifted for the codes, as TokenizationStep does
+		assertEquals(13, tokens.get(1).getRange().end);
+		assertNull(engine.tokenize("word", LocaleId.EMPTY));
+	}
+
+	@Test
+	public void concurrentTokenization() throws Exception {
+		final int[] expected = new int[TEXTS.length];
+		for (int i = 0; i < TEXTS.length; i++) {
+			expected[i] = engine.tokenize(TEXTS[i], locENUS, "WORD").size();
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (int n = 0; n < 50; n++) {
+							for (int i = 0; i < TEXTS.length; i++) {
+								if (engine.tokenize(TEXTS[i], locENUS, "WORD").size() != expected[i]) return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(true, result.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private Tokens tokenizeWithStep(String text, String... tokenNames) {
+		TokenizationStep ts = new TokenizationStep();
+		Parameters params = (Parameters) ts.getParameters();
+		params.setLocaleFilter(LocaleFilter.anyOf(locENUS));
+		params.setTokenNames(tokenNames);
+		ts.handleEvent(new Event(EventType.START_BATCH));
+
+		StartDocument startDoc = new StartDocument("tokenization");
+		startDoc.setLocale(locENUS);
+		startDoc.setMultilingual(false);
+		ts.handleEvent(new Event(EventType.START_DOCUMENT, startDoc));
+
+		ITextUnit tu = TextUnitUtil.buildTU(text);
+		ts.handleEvent(new Event(EventType.TEXT_UNIT, tu));
+		ts.handleEvent(new Event(EventType.END_BATCH));
+		return TextUnitUtil.getSourceAnnotation(tu, TokensAnnotation.class).getTokens();
+	}
+}
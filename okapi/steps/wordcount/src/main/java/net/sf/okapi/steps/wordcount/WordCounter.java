@@ -44,7 +44,7 @@ public class WordCounter extends BaseCounter {
 
 	private static StructureParameters params;
 	
-	protected static void loadParameters() {
+	protected static synchronized void loadParameters() {
 		
 		if (params != null) return; // Already loaded
 		
@@ -60,7 +60,7 @@ public class WordCounter extends BaseCounter {
 			return countLogographicScript(text, language);
 		}
 		
-		Tokens tokens = Tokenizer.tokenize(text, language, getTokenName());		
+		Tokens tokens = Tokenizer.getEngine().tokenize(text, language, getTokenName());
 		if (tokens == null) return 0;
 		
 		return tokens.size();
@@ -22,12 +22,16 @@ import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.steps.tokenization.Tokenizer;
+import net.sf.okapi.steps.tokenization.TokenizerEngine;
 import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
 import net.sf.okapi.steps.tokenization.tokens.Tokens;
 import net.sf.okapi.steps.wordcount.WordCounter;
 
 public abstract class TokenCountStep extends BaseCountStep {
 
+	// Shared and thread-safe: text units are tokenized directly, without events
+	private final TokenizerEngine tokenizer = Tokenizer.getEngine();
+
 	protected abstract String[] getTokenNames();
 
 	/* To be overridden in steps that need more complex logic. */
@@ -39,7 +43,8 @@ public abstract class TokenCountStep extends BaseCountStep {
 		TokensAnnotation ta = textContainer.getAnnotation(TokensAnnotation.class);
 		
 		Tokens allTokens = ta != null ? ta.getTokens()
-				: Tokenizer.tokenize(textContainer, locale);
+				: tokenizer.tokenize(textContainer.contentIsOneSegment() ? textContainer.getFirstContent()
+					: textContainer.getUnSegmentedContentCopy(), locale);
 		
 		return filterTokens(allTokens);
 	}
@@ -58,7 +63,7 @@ public abstract class TokenCountStep extends BaseCountStep {
 		TokensAnnotation ta = segment.getAnnotation(TokensAnnotation.class);
 		
 		Tokens allTokens = ta != null ? ta.getTokens()
-				: Tokenizer.tokenize(segment.getContent(), locale);
+				: tokenizer.tokenize(segment.getContent(), locale);
 		
 		return filterTokens(allTokens);
 	}
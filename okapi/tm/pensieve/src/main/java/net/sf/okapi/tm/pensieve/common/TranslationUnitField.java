@@ -23,5 +23,8 @@ public enum TranslationUnitField {
     SOURCE_EXACT, SOURCE, TARGET, SOURCE_LANG, TARGET_LANG,
     
     // Added for try out of inline code support
-    SOURCE_CODES, TARGET_CODES
+    SOURCE_CODES, TARGET_CODES,
+    
+    // Number of unique n-grams of the source (used for fuzzy scoring)
+    SOURCE_NGRAM_COUNT
 }
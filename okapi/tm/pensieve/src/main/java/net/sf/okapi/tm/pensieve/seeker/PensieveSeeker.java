@@ -16,15 +16,18 @@
 
 package net.sf.okapi.tm.pensieve.seeker;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.exceptions.OkapiIOException;
@@ -45,6 +48,8 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -63,7 +68,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Used to query the TM
+ * Used to query the TM.
+ * <p>
+ * A single seeker can be used by several threads at the same time: all the searches share the same
+ * index reader. In near-real-time mode (when created with an {@link IndexWriter}), the reader is
+ * re-opened incrementally when the writer has new changes, and a reader is closed only once the
+ * searches using it are done.
  * 
  * @author Christian Hargraves
  * @author HARGRAVEJE
@@ -78,13 +88,15 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 	private static float SINGLE_CODE_DIFF_PENALTY = 0.5f;
 	private static float WHITESPACE_OR_CASE_PENALTY = 2.0f;
 
-	// maxTopDocuments = indexReader.maxDoc * MAX_HITS_CONSTANT
-	private int maxTopDocuments;
 	private Directory indexDir;
 	private IndexReader indexReader;
 	private IndexWriter indexWriter;
 	private IndexSearcher indexSearcher;
 	private boolean nrtMode;
+	// Iterators still holding a reader
+	private final Set<TranslationUnitIterator> openIterators = new HashSet<TranslationUnitIterator>();
+	// Fields needed to create the translation unit of a hit
+	private final FieldSelector hitFields;
 
 	/**
 	 * Creates an instance of TMSeeker
@@ -100,6 +112,7 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		}
 		this.indexDir = indexDir;
 		nrtMode = false;
+		hitFields = createHitFieldSelector();
 	}
 	
 	/**
@@ -117,10 +130,29 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		}
 		this.indexWriter = indexWriter;
 		nrtMode = true;
+		hitFields = createHitFieldSelector();
+	}
+
+	private static FieldSelector createHitFieldSelector() {
+		List<String> names = new ArrayList<String>();
+		names.add(TranslationUnitField.SOURCE_EXACT.name());
+		names.add(TranslationUnitField.SOURCE_CODES.name());
+		names.add(TranslationUnitField.SOURCE_LANG.name());
+		names.add(TranslationUnitField.TARGET.name());
+		names.add(TranslationUnitField.TARGET_CODES.name());
+		names.add(TranslationUnitField.TARGET_LANG.name());
+		for (MetadataType type : MetadataType.values()) {
+			names.add(type.fieldName());
+		}
+		return new MapFieldSelector(names);
 	}
 
 	/**
-	 * gets an iterator to traverse all translation units in the indexdir
+	 * gets an iterator to traverse all translation units in the indexdir.
+	 * <p>
+	 * The iterator keeps its index reader open until the last unit is returned. The iterator
+	 * is also {@link Closeable}: close it to release the reader when the iteration is
+	 * abandoned early. The iterations not done yet are closed when this seeker is closed.
 	 * 
 	 * @return the iterator for translation units
 	 */
@@ -226,76 +258,113 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		return LocaleId.fromString(getFieldValue(doc, field.name()));
 	}
 
-	protected IndexSearcher createIndexSearcher() throws CorruptIndexException, IOException {
-		if (indexSearcher != null) indexSearcher.close();
-		return new IndexSearcher(openIndexReader());
-	}
-
-	protected IndexSearcher getIndexSearcher() throws CorruptIndexException, IOException {
-		if (indexSearcher != null && !nrtMode) {
-			return indexSearcher;
-		}
-		// NRT should create a new index searcher at every search fuzzy call 
-		indexSearcher = createIndexSearcher();
+	/**
+	 * Gets the searcher for the current reader.
+	 * The searcher may be closed at any time by a refresh: use {@link #acquireSearcher()} to
+	 * make sure it stays open while in use.
+	 * 
+	 * @return the current searcher.
+	 */
+	protected synchronized IndexSearcher getIndexSearcher() throws CorruptIndexException, IOException {
+		openIndexReader();
 		return indexSearcher;
 	}
 
-	protected IndexReader openIndexReader() throws CorruptIndexException, IOException {
+	/**
+	 * Gets the current reader, opening it if needed. In NRT mode, the reader is re-opened if the
+	 * writer has changes not visible yet.
+	 * 
+	 * @return the current reader.
+	 */
+	protected synchronized IndexReader openIndexReader() throws CorruptIndexException, IOException {
 		if (indexReader == null) {			
 			indexReader = nrtMode ?
 					IndexReader.open(indexWriter, true) : 
 					IndexReader.open(indexDir, true);
-			maxTopDocuments = (int) ((float) indexReader.maxDoc() * MAX_HITS_RATIO);
-			if (maxTopDocuments < MIN_MAX_HITS) {
-				maxTopDocuments = MIN_MAX_HITS;
-			}
+			indexSearcher = new IndexSearcher(indexReader);
 		}
-		else if (nrtMode) {
-			indexReader = indexReader.reopen();
+		else if (nrtMode && !indexReader.isCurrent()) {
+			// Incremental: the unchanged segments are shared with the previous reader
+			IndexReader newReader = indexReader.reopen();
+			if (newReader != indexReader) {
+				IndexReader oldReader = indexReader;
+				indexReader = newReader;
+				indexSearcher = new IndexSearcher(newReader);
+				// Closed once the searches using it are done
+				oldReader.decRef();
+			}
 		}
 		return indexReader;
 	}
 
-	private List<TmHit> getTopHits(Query query, Metadata metadata) throws IOException {
-		IndexSearcher is = getIndexSearcher();
-		QueryWrapperFilter filter = null;
-		int maxHits = 0;
-		List<TmHit> tmHitCandidates = new ArrayList<TmHit>(maxTopDocuments);
-
-		// create a filter based on the specified metadata
-		if (metadata != null && !metadata.isEmpty()) {
-			filter = new QueryWrapperFilter(createQuery(metadata));
-		}
+	/**
+	 * Gets the current searcher and makes sure its reader stays open until
+	 * {@link #releaseSearcher(IndexSearcher)} is called.
+	 */
+	private synchronized IndexSearcher acquireSearcher() throws CorruptIndexException, IOException {
+		openIndexReader();
+		indexReader.incRef();
+		return indexSearcher;
+	}
 
-		// collect hits in increments of maxTopDocuments until we have all the possible candidate hits
-		TopScoreDocCollector topCollector;
-		do {
-			maxHits += maxTopDocuments;
-			topCollector = TopScoreDocCollector.create(maxHits, true);
-			is.search(query, filter, topCollector);
-		} while (topCollector.getTotalHits() >= maxHits);
-
-		// Go through the candidates and create TmHits from them
-		TopDocs topDocs = topCollector.topDocs();
-		for (int i = 0; i < topDocs.scoreDocs.length; i++) {
-			ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-			TmHit tmHit = new TmHit();
-			tmHit.setDocId(scoreDoc.doc);
-			tmHit.setScore(scoreDoc.score);
-
-			List<Code> tmCodes = Code.stringToCodes(getFieldValue(getIndexSearcher().doc(
-					tmHit.getDocId()), TranslationUnitField.SOURCE_CODES));
-			String tmCodedText = getFieldValue(getIndexSearcher().doc(tmHit.getDocId()),
-					TranslationUnitField.SOURCE_EXACT);
-
-			tmHit.setTu(createTranslationUnit(getIndexSearcher().doc(tmHit.getDocId()),
-					tmCodedText, tmCodes));
-			tmHitCandidates.add(tmHit);
+	private void releaseSearcher(IndexSearcher searcher) throws IOException {
+		searcher.getIndexReader().decRef();
+	}
+
+	private int getMaxTopDocuments(IndexReader reader) {
+		// maxTopDocuments = indexReader.maxDoc * MAX_HITS_CONSTANT
+		int maxTopDocuments = (int) ((float) reader.maxDoc() * MAX_HITS_RATIO);
+		if (maxTopDocuments < MIN_MAX_HITS) {
+			maxTopDocuments = MIN_MAX_HITS;
 		}
+		return maxTopDocuments;
+	}
+
+	private List<TmHit> getTopHits(Query query, Metadata metadata) throws IOException {
+		IndexSearcher is = acquireSearcher();
+		try {
+			QueryWrapperFilter filter = null;
+			int maxTopDocuments = getMaxTopDocuments(is.getIndexReader());
+			int maxHits = 0;
+			List<TmHit> tmHitCandidates = new ArrayList<TmHit>(maxTopDocuments);
+
+			// create a filter based on the specified metadata
+			if (metadata != null && !metadata.isEmpty()) {
+				filter = new QueryWrapperFilter(createQuery(metadata));
+			}
 
-		// remove duplicate hits
-		ArrayList<TmHit> noDups = new ArrayList<TmHit>(new LinkedHashSet<TmHit>(tmHitCandidates));
-		return noDups;
+			// collect hits in increments of maxTopDocuments until we have all the possible candidate hits
+			TopScoreDocCollector topCollector;
+			do {
+				maxHits += maxTopDocuments;
+				topCollector = TopScoreDocCollector.create(maxHits, true);
+				is.search(query, filter, topCollector);
+			} while (topCollector.getTotalHits() >= maxHits);
+
+			// Go through the candidates and create TmHits from them
+			TopDocs topDocs = topCollector.topDocs();
+			for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+				ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+				TmHit tmHit = new TmHit();
+				tmHit.setDocId(scoreDoc.doc);
+				tmHit.setScore(scoreDoc.score);
+
+				// Load the document only once
+				Document doc = is.doc(scoreDoc.doc, hitFields);
+				List<Code> tmCodes = Code.stringToCodes(getFieldValue(doc, TranslationUnitField.SOURCE_CODES));
+				String tmCodedText = getFieldValue(doc, TranslationUnitField.SOURCE_EXACT);
+
+				tmHit.setTu(createTranslationUnit(doc, tmCodedText, tmCodes));
+				tmHitCandidates.add(tmHit);
+			}
+
+			// remove duplicate hits
+			ArrayList<TmHit> noDups = new ArrayList<TmHit>(new LinkedHashSet<TmHit>(tmHitCandidates));
+			return noDups;
+		}
+		finally {
+			releaseSearcher(is);
+		}
 	}
 
 	public List<TmHit> searchExact(TextFragment query, Metadata metadata) {
@@ -354,7 +423,8 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 				.name(), new StringReader(queryText));
 		// get the TermAttribute from the TokenStream
 		TermAttribute termAtt = (TermAttribute) queryTokenStream.addAttribute(TermAttribute.class);
-		TmFuzzyQuery fQuery = new TmFuzzyQuery(searchThreshold, TranslationUnitField.SOURCE.name());
+		TmFuzzyQuery fQuery = new TmFuzzyQuery(searchThreshold, TranslationUnitField.SOURCE.name(),
+				TranslationUnitField.SOURCE_NGRAM_COUNT.name());
 		try {
 			queryTokenStream.reset();
 			while (queryTokenStream.incrementToken()) {
@@ -428,10 +498,10 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		try {
 			tmHitCandidates = getTopHits(query, metadata);
 			for (TmHit tmHit : tmHitCandidates) {
-				List<Code> tmCodes = Code.stringToCodes(getFieldValue(getIndexSearcher().doc(
-						tmHit.getDocId()), TranslationUnitField.SOURCE_CODES));
-				String tmCodedText = getFieldValue(getIndexSearcher().doc(tmHit.getDocId()),
-						TranslationUnitField.SOURCE_EXACT);
+				// The source of the hit has the codes and coded text of the document
+				TextFragment tmSource = tmHit.getTu().getSource().getContent();
+				List<Code> tmCodes = tmSource.getCodes();
+				String tmCodedText = tmSource.getCodedText();
 
 				// remove codes so we can compare text only
 				String sourceTextOnly = TextFragment.getText(tmCodedText);
@@ -579,7 +649,7 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 		return tu;
 	}
 
-	private class TranslationUnitIterator implements Iterator<TranslationUnit> {
+	private class TranslationUnitIterator implements Iterator<TranslationUnit>, Closeable {
 
 		private int currentIndex;
 		private int maxIndex;
@@ -587,7 +657,12 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 
 		TranslationUnitIterator() {
 			try {
-				ir = openIndexReader();
+				synchronized (PensieveSeeker.this) {
+					ir = openIndexReader();
+					// Keep the reader open until the iteration is done or closed
+					ir.incRef();
+					openIterators.add(this);
+				}
 			} catch (CorruptIndexException cie) {
 				throw new OkapiIOException(cie.getMessage(), cie);
 			} catch (IOException ioe) {
@@ -595,6 +670,9 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 			}
 			currentIndex = 0;
 			maxIndex = ir.maxDoc();
+			if (!hasNext()) {
+				close();
+			}
 		}
 
 		public boolean hasNext() {
@@ -610,28 +688,60 @@ public class PensieveSeeker implements ITmSeeker, Iterable<TranslationUnit> {
 					// ensure that we get the inline codes
 					tu = createTranslationUnit(ir.document(currentIndex++));
 				} catch (CorruptIndexException cie) {
+					close();
 					throw new OkapiIOException(cie.getMessage(), cie);
 				} catch (IOException ioe) {
+					close();
 					throw new OkapiIOException(ioe.getMessage(), ioe);
+				} catch (RuntimeException e) {
+					close();
+					throw e;
+				}
+				if (!hasNext()) {
+					close();
 				}
 			}
 			return tu;
 		}
 
+		/**
+		 * Releases the reader of this iterator. Nothing more is returned after this call.
+		 * This is done automatically at the end of the iteration, when an error occurs,
+		 * and when the seeker is closed.
+		 */
+		public void close() {
+			IndexReader reader;
+			synchronized (PensieveSeeker.this) {
+				if (ir == null) return;
+				reader = ir;
+				ir = null;
+				currentIndex = maxIndex;
+				openIterators.remove(this);
+			}
+			try {
+				reader.decRef();
+			} catch (IOException e) {
+				throw new OkapiIOException(e.getMessage(), e);
+			}
+		}
+
 		public void remove() {
 			throw new UnsupportedOperationException(
 					"Will not support remove method - Please remove items via ITmSeeker interface");
 		}
 	}
 
-	public void close() {
+	public synchronized void close() {
+		// Release the iterations not done yet
+		for (TranslationUnitIterator iter : new ArrayList<TranslationUnitIterator>(openIterators)) {
+			iter.close();
+		}
 		try {
-			if (indexSearcher != null) {
-				indexSearcher.close();
-			}
-
 			if (indexReader != null) {
-				indexReader.close();
+				// Closed once the searches using it are done
+				indexReader.decRef();
+				indexReader = null;
+				indexSearcher = null;
 			}
 		} catch (IOException e) {
 			LOGGER.warn("Exception closing Pensieve index.", e); //$NON-NLS-1$
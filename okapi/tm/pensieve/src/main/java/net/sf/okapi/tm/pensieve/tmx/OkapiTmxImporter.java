@@ -28,6 +28,7 @@ import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.tm.pensieve.common.PensieveUtil;
 import net.sf.okapi.tm.pensieve.common.TranslationUnit;
 import net.sf.okapi.tm.pensieve.writer.ITmWriter;
+import net.sf.okapi.tm.pensieve.writer.PensieveWriter;
 
 public class OkapiTmxImporter implements ITmxImporter {
 
@@ -70,6 +71,43 @@ public class OkapiTmxImporter implements ITmxImporter {
         }
     }
 
+    /**
+     * Imports a large TMX to Pensieve in bulk mode: the translation units are analyzed
+     * on several threads and indexed by batches (see {@link PensieveWriter#startBulkLoad(int)}).
+     * @param tmxUri The location of the TMX
+     * @param targetLang The target language to index
+     * @param tmWriter The TMWriter to use when writing to the TM
+     * @param overwrite true to replace the entries with the same source text (the last one is kept)
+     * @param threadCount the number of threads analyzing the translation units
+     * @throws java.io.IOException if there was a problem with the TMX import
+     */
+    public void bulkImportTmx(URI tmxUri, LocaleId targetLang, PensieveWriter tmWriter,
+    	boolean overwrite, int threadCount) throws IOException {
+        checkImportTmxParams(tmxUri, targetLang, tmWriter);
+        tmWriter.startBulkLoad(threadCount);
+        try {
+            tmxFilter.open(new RawDocument(tmxUri, null, sourceLang, targetLang));
+            while (tmxFilter.hasNext()) {
+                Event event = tmxFilter.next();
+                if (event.getEventType() == EventType.TEXT_UNIT) {
+                    tmWriter.indexTranslationUnit(PensieveUtil.convertToTranslationUnit(
+                        sourceLang, targetLang, event.getTextUnit()), overwrite);
+                }
+            }
+            tmWriter.endBulkLoad();
+        } finally {
+            tmxFilter.close();
+            if (tmWriter.isBulkLoad()) {
+                // Failed import: leave the bulk mode and restore the writer settings
+                try {
+                    tmWriter.endBulkLoad();
+                } catch (RuntimeException e) {
+                    // Keep the original error
+                }
+            }
+        }
+    }
+
     private void checkImportTmxParams(URI tmxUri,
     	LocaleId targetLang,
     	ITmWriter tmWriter)
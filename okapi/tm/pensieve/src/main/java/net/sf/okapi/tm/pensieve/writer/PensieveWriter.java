@@ -17,9 +17,23 @@
 package net.sf.okapi.tm.pensieve.writer;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.okapi.common.Util;
+import net.sf.okapi.common.exceptions.OkapiException;
 import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.TextFragment;
@@ -30,14 +44,22 @@ import net.sf.okapi.tm.pensieve.common.TranslationUnit;
 import net.sf.okapi.tm.pensieve.common.TranslationUnitField;
 import net.sf.okapi.tm.pensieve.common.TranslationUnitVariant;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CachingTokenFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.TermVector;
+import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LogMergePolicy;
+import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
@@ -51,7 +73,24 @@ public class PensieveWriter implements ITmWriter {
 	
 	private final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
+	/** Number of translation units analyzed together in bulk mode. */
+	private static final int BULK_BATCH_SIZE = 10000;
+	/** RAM buffer of the index writer in bulk mode: fewer, larger segments are flushed. */
+	private static final double BULK_RAM_BUFFER_SIZE_MB = 256.0;
+	/** Number of segments merged at once in bulk mode: fewer merges during the load. */
+	private static final int BULK_MERGE_FACTOR = 30;
+
 	private IndexWriter indexWriter;
+	private Analyzer analyzer;
+
+	// Bulk mode (null executor when not in bulk mode)
+	private ExecutorService bulkExecutor;
+	private List<TranslationUnit> bulkUnits;
+	private Map<String, List<Integer>> bulkSources;
+	private Map<String, Term> bulkDeleteTerms;
+	private Map<String, Query> bulkDeleteQueries;
+	private double savedRAMBufferSizeMB;
+	private int savedMergeFactor;
 
 	/**
 	 * Creates a PensieveWriter
@@ -64,7 +103,8 @@ public class PensieveWriter implements ITmWriter {
 	 *             if the indexDirectory can not load
 	 */
 	public PensieveWriter(Directory indexDirectory, boolean createNewTmIndex) throws IOException {
-		indexWriter = new IndexWriter(indexDirectory, new NgramAnalyzer(Locale.ENGLISH, 4),
+		analyzer = new NgramAnalyzer(Locale.ENGLISH, 4);
+		indexWriter = new IndexWriter(indexDirectory, analyzer,
 				createNewTmIndex, IndexWriter.MaxFieldLength.UNLIMITED);
 	}
 
@@ -77,6 +117,7 @@ public class PensieveWriter implements ITmWriter {
 	@Override
 	public void close () {
 		try {
+			endBulkLoad();
 			indexWriter.commit();		
 		} catch (IOException e) {
 			throw new OkapiIOException(e); // To change body of catch statement use File | Settings | File Templates.
@@ -96,6 +137,7 @@ public class PensieveWriter implements ITmWriter {
 	@Override
 	public void commit() {
 		try {
+			flushBulkUnits();
 			indexWriter.commit();
 		} catch (IOException e) {
 			throw new OkapiIOException(e);
@@ -113,6 +155,160 @@ public class PensieveWriter implements ITmWriter {
 		return indexWriter;
 	}
 
+	/**
+	 * Starts the bulk mode, for loading a large number of translation units.
+	 * <p>In bulk mode the translation units passed to {@link #indexTranslationUnit(TranslationUnit)} and
+	 * {@link #indexTranslationUnit(TranslationUnit, boolean)} are indexed by batches: the units of a batch
+	 * that are overwritten by a later unit of the same batch are dropped, the deletions of the batch are
+	 * done in one call, and the units are analyzed on several threads. The index writer also uses a larger
+	 * RAM buffer and merges less often during the load.
+	 * <p>The resulting index has the same documents, in the same order, as when indexing the units
+	 * one by one. The pending units are indexed by {@link #commit()}, {@link #endBulkLoad()} and {@link #close()}.
+	 * This method has no effect if the bulk mode is already started.
+	 * @param threadCount number of threads analyzing the translation units.
+	 */
+	public void startBulkLoad (int threadCount) {
+		if ( bulkExecutor != null ) return;
+		bulkExecutor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+		bulkUnits = new ArrayList<TranslationUnit>();
+		bulkSources = new HashMap<String, List<Integer>>();
+		bulkDeleteTerms = new LinkedHashMap<String, Term>();
+		bulkDeleteQueries = new LinkedHashMap<String, Query>();
+
+		savedRAMBufferSizeMB = indexWriter.getRAMBufferSizeMB();
+		indexWriter.setRAMBufferSizeMB(Math.max(savedRAMBufferSizeMB, BULK_RAM_BUFFER_SIZE_MB));
+		savedMergeFactor = setMergeFactor(BULK_MERGE_FACTOR);
+	}
+
+	/**
+	 * Ends the bulk mode: indexes the pending translation units and restores the settings
+	 * of the index writer. This method has no effect if the bulk mode is not started.
+	 * @throws OkapiIOException if the pending translation units cannot be indexed.
+	 */
+	public void endBulkLoad () {
+		if ( bulkExecutor == null ) return;
+		try {
+			flushBulkUnits();
+		}
+		finally {
+			bulkExecutor.shutdownNow();
+			bulkExecutor = null;
+			bulkUnits = null;
+			indexWriter.setRAMBufferSizeMB(savedRAMBufferSizeMB);
+			setMergeFactor(savedMergeFactor);
+		}
+	}
+
+	/**
+	 * Indicates if the bulk mode is started.
+	 * @return true if this writer is in bulk mode.
+	 */
+	public boolean isBulkLoad () {
+		return (bulkExecutor != null);
+	}
+
+	// Sets the number of segments merged at once and returns the previous value
+	private int setMergeFactor (int mergeFactor) {
+		MergePolicy mp = indexWriter.getMergePolicy();
+		int previous = mergeFactor;
+		if ( mp instanceof LogMergePolicy ) {
+			previous = ((LogMergePolicy)mp).getMergeFactor();
+			((LogMergePolicy)mp).setMergeFactor(mergeFactor);
+		}
+		else if ( mp instanceof TieredMergePolicy ) {
+			previous = ((TieredMergePolicy)mp).getMaxMergeAtOnce();
+			((TieredMergePolicy)mp).setMaxMergeAtOnce(mergeFactor);
+			((TieredMergePolicy)mp).setSegmentsPerTier(mergeFactor);
+		}
+		return previous;
+	}
+
+	private void addBulkUnit (TranslationUnit tu,
+		boolean overwrite)
+	{
+		TextFragment srcFrag = tu.getSource().getContent();
+		String key = srcFrag.hasCode()
+			? srcFrag.getCodedText() + "\u0000" + Code.codesToString(srcFrag.getCodes(), true)
+			: srcFrag.getCodedText();
+		List<Integer> positions = bulkSources.get(key);
+		if ( overwrite ) {
+			// The previous units of the batch with the same source would be deleted: drop them
+			if ( positions != null ) {
+				for ( int pos : positions ) {
+					bulkUnits.set(pos, null);
+				}
+				positions.clear();
+			}
+			// The units indexed before the batch are deleted before the batch is added
+			if ( !srcFrag.hasCode() ) {
+				bulkDeleteTerms.put(key, new Term(TranslationUnitField.SOURCE_EXACT.name(), key));
+			}
+			else {
+				bulkDeleteQueries.put(key, createSameSourceQuery(srcFrag));
+			}
+		}
+		if ( positions == null ) {
+			positions = new ArrayList<Integer>(1);
+			bulkSources.put(key, positions);
+		}
+		positions.add(bulkUnits.size());
+		bulkUnits.add(tu);
+		if ( bulkUnits.size() >= BULK_BATCH_SIZE ) {
+			flushBulkUnits();
+		}
+	}
+
+	private void flushBulkUnits () {
+		if (( bulkExecutor == null ) || bulkUnits.isEmpty() ) return;
+		try {
+			if ( !bulkDeleteTerms.isEmpty() ) {
+				indexWriter.deleteDocuments(bulkDeleteTerms.values().toArray(new Term[bulkDeleteTerms.size()]));
+			}
+			if ( !bulkDeleteQueries.isEmpty() ) {
+				indexWriter.deleteDocuments(bulkDeleteQueries.values().toArray(new Query[bulkDeleteQueries.size()]));
+			}
+			// Analyze the units on the worker threads, add them in their original order
+			List<Future<Document>> docs = new ArrayList<Future<Document>>(bulkUnits.size());
+			for ( final TranslationUnit tu : bulkUnits ) {
+				if ( tu == null ) continue;
+				docs.add(bulkExecutor.submit(new Callable<Document>() {
+					@Override
+					public Document call () {
+						return createDocument(tu);
+					}
+				}));
+			}
+			for ( Future<Document> doc : docs ) {
+				Document document = doc.get();
+				if ( document != null ) {
+					indexWriter.addDocument(document);
+				}
+			}
+		}
+		catch ( CorruptIndexException e ) {
+			throw new OkapiIOException("Error adding translationUnits to the TM. Corrupted index.", e);
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error adding translationUnits to the TM.", e);
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while adding translationUnits to the TM.", e);
+		}
+		catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new OkapiException("Error analyzing translationUnits.", e.getCause());
+		}
+		finally {
+			bulkUnits.clear();
+			bulkSources.clear();
+			bulkDeleteTerms.clear();
+			bulkDeleteQueries.clear();
+		}
+	}
+
 	/**
 	 * Adds a TranslationUnit to the index
 	 * 
@@ -128,6 +324,10 @@ public class PensieveWriter implements ITmWriter {
 		if (tu == null) {
 			throw new NullPointerException("TextUnit can not be null");
 		}
+		if (bulkExecutor != null) {
+			addBulkUnit(tu, false);
+			return;
+		}
 		Document doc = createDocument(tu);
 		if (doc != null) {
 			try {
@@ -148,23 +348,15 @@ public class PensieveWriter implements ITmWriter {
 		if ( tu == null ) {
 			throw new NullPointerException("TextUnit can not be null.");
 		}
+		if ( bulkExecutor != null ) {
+			addBulkUnit(tu, overwrite);
+			return;
+		}
 		try {
 			if ( overwrite ) {
 				TextFragment srcFrag = tu.getSource().getContent();
 				if ( srcFrag.hasCode() ) {
-					BooleanQuery bq = new BooleanQuery();
-					bq.add(
-						new TermQuery(
-							new Term(TranslationUnitField.SOURCE_EXACT.name(),
-								srcFrag.getCodedText())
-						),
-						BooleanClause.Occur.MUST);
-					bq.add(
-						new TermQuery(
-							new Term(TranslationUnitField.SOURCE_CODES.name(),
-								Code.codesToString(srcFrag.getCodes(), true))
-						), BooleanClause.Occur.MUST);			
-					indexWriter.deleteDocuments(bq);
+					indexWriter.deleteDocuments(createSameSourceQuery(srcFrag));
 				}
 				else {
 					indexWriter.deleteDocuments(new Term(TranslationUnitField.SOURCE_EXACT.name(),
@@ -182,6 +374,22 @@ public class PensieveWriter implements ITmWriter {
 		indexTranslationUnit(tu);
 	}
 
+	private Query createSameSourceQuery (TextFragment srcFrag) {
+		BooleanQuery bq = new BooleanQuery();
+		bq.add(
+			new TermQuery(
+				new Term(TranslationUnitField.SOURCE_EXACT.name(),
+					srcFrag.getCodedText())
+			),
+			BooleanClause.Occur.MUST);
+		bq.add(
+			new TermQuery(
+				new Term(TranslationUnitField.SOURCE_CODES.name(),
+					Code.codesToString(srcFrag.getCodes(), true))
+			), BooleanClause.Occur.MUST);
+		return bq;
+	}
+
 	/**
 	 * Deletes a TranslationUnit based on the id.
 	 * 
@@ -197,6 +405,7 @@ public class PensieveWriter implements ITmWriter {
 		if (Util.isEmpty(id)) {
 			throw new IllegalArgumentException("id is a required field for delete to happen");
 		}
+		flushBulkUnits();
 		try {
 			indexWriter.deleteDocuments(new Term(MetadataType.ID.fieldName(), id));
 		} catch (CorruptIndexException e) {
@@ -267,8 +476,19 @@ public class PensieveWriter implements ITmWriter {
 				.getContent(), Field.Store.YES, Field.Index.NOT_ANALYZED));
 		// ANALYZED_NO_NORMS: We don't need Lucene to manage this for us, we will implement our own scoring and
 		// normalization.
-		doc.add(createIndexedTextField(TranslationUnitField.SOURCE, tu.getSource().getContent(),
-				Field.Store.NO, Field.Index.ANALYZED_NO_NORMS));
+		// The source is analyzed once: the n-grams are counted on the cached tokens, and the index writer
+		// replays them
+		CachingTokenFilter stream = new CachingTokenFilter(analyzer.tokenStream(
+				TranslationUnitField.SOURCE.name(), new StringReader(tu.getSource().getContent().getText())));
+		int ngramCount = countTerms(stream);
+		Field field = createIndexedTextField(TranslationUnitField.SOURCE, tu.getSource().getContent(),
+				Field.Store.NO, Field.Index.ANALYZED_NO_NORMS);
+		field.setTokenStream(stream);
+		doc.add(field);
+		// Stored as a single-term numeric field so the fuzzy scorer can load all counts at once
+		// instead of reading the term vector of each candidate
+		doc.add(new NumericField(TranslationUnitField.SOURCE_NGRAM_COUNT.name(), Integer.MAX_VALUE,
+				Field.Store.NO, true).setIntValue(ngramCount));
 		doc.add(createCodesField(TranslationUnitField.SOURCE_CODES, tu.getSource().getContent(),
 				Field.Store.YES, Field.Index.NOT_ANALYZED));
 		if (!tu.isTargetEmpty()) {
@@ -288,6 +508,27 @@ public class PensieveWriter implements ITmWriter {
 		return new Field(fieldType.name(), frag.getText(), store, index, TermVector.YES);
 	}
 
+	/**
+	 * Counts the unique terms of a cached token stream, and rewinds it.
+	 * 
+	 * @param stream
+	 *            the stream to read.
+	 * @return the number of unique terms in the stream.
+	 */
+	private int countTerms(CachingTokenFilter stream) {
+		Set<String> terms = new HashSet<String>();
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		try {
+			while (stream.incrementToken()) {
+				terms.add(termAtt.toString());
+			}
+			stream.reset();
+		} catch (IOException e) {
+			throw new OkapiIOException(e.getMessage(), e);
+		}
+		return terms.size();
+	}
+
 	private Field createRawCodedTextField(TranslationUnitField fieldType, TextFragment frag,
 			Field.Store store, Field.Index index) {
 		return new Field(fieldType.name(), frag.getCodedText(), store, index);
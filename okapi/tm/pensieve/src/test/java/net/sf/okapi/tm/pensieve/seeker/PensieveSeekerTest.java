@@ -21,11 +21,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doThrow;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -179,9 +180,9 @@ public class PensieveSeekerTest {
 
         Iterator<TranslationUnit> iterator = seeker.iterator();
 
-        IndexReader mockIndexReader = mock(IndexReader.class);
-        doThrow(new IOException("some exception")).when(mockIndexReader).document(anyInt());
-        Helper.setPrivateMember(iterator, "ir", mockIndexReader);
+        IndexReader spyIndexReader = spy((IndexReader) Helper.getPrivateMember(iterator, "ir"));
+        doThrow(new IOException("some exception")).when(spyIndexReader).document(anyInt());
+        Helper.setPrivateMember(iterator, "ir", spyIndexReader);
 
         iterator.next();
     }
@@ -194,13 +195,71 @@ public class PensieveSeekerTest {
 
         Iterator<TranslationUnit> iterator = seeker.iterator();
 
-        IndexReader mockIndexReader = mock(IndexReader.class);
-        doThrow(new CorruptIndexException("some exception")).when(mockIndexReader).document(anyInt());
-        Helper.setPrivateMember(iterator, "ir", mockIndexReader);
+        IndexReader spyIndexReader = spy((IndexReader) Helper.getPrivateMember(iterator, "ir"));
+        doThrow(new CorruptIndexException("some exception")).when(spyIndexReader).document(anyInt());
+        Helper.setPrivateMember(iterator, "ir", spyIndexReader);
 
         iterator.next();
     }
 
+    @Test
+    public void iteratorNextExceptionReleasesReader() throws Exception {
+        PensieveWriter writer = getWriter();
+        populateIndex(writer, 1, "patents are evil", "unittest");
+        writer.close();
+
+        IndexReader reader = seeker.openIndexReader();
+        int refCount = reader.getRefCount();
+        Iterator<TranslationUnit> iterator = seeker.iterator();
+        // The spy shares the reference count of the reader
+        IndexReader spyIndexReader = spy(reader);
+        doThrow(new IOException("some exception")).when(spyIndexReader).document(anyInt());
+        Helper.setPrivateMember(iterator, "ir", spyIndexReader);
+        try {
+            iterator.next();
+            fail("exception expected");
+        } catch (OkapiIOException e) {
+            // Expected
+        }
+        assertEquals("released", refCount, reader.getRefCount());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void iteratorCloseReleasesReader() throws Exception {
+        PensieveWriter writer = getWriter();
+        populateIndex(writer, 12, "patents are evil", "unittest");
+        writer.close();
+
+        IndexReader reader = seeker.openIndexReader();
+        int refCount = reader.getRefCount();
+        Iterator<TranslationUnit> iterator = seeker.iterator();
+        iterator.next();
+        assertEquals("pinned by the iterator", refCount + 1, reader.getRefCount());
+
+        ((Closeable) iterator).close();
+        assertEquals("released", refCount, reader.getRefCount());
+        assertFalse(iterator.hasNext());
+        assertNull(iterator.next());
+        // Closing again does nothing
+        ((Closeable) iterator).close();
+        assertEquals("released once", refCount, reader.getRefCount());
+    }
+
+    @Test
+    public void seekerCloseReleasesIterators() throws Exception {
+        PensieveWriter writer = getWriter();
+        populateIndex(writer, 12, "patents are evil", "unittest");
+        writer.close();
+
+        Iterator<TranslationUnit> iterator = seeker.iterator();
+        iterator.next();
+        IndexReader reader = seeker.openIndexReader();
+        seeker.close();
+        assertEquals("reader closed", 0, reader.getRefCount());
+        assertFalse(iterator.hasNext());
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void iteratorUnsupportedRemove() throws IOException {
         seeker.iterator().remove();
@@ -662,6 +721,76 @@ public class PensieveSeekerTest {
         assertEquals("type field", type, tu.getMetadata().get(MetadataType.TYPE));
     }
 
+    @Test
+    public void nrtSeekerSeesNewEntries() throws Exception {
+        PensieveWriter writer = new PensieveWriter(new RAMDirectory(), true);
+        PensieveSeeker nrtSeeker = new PensieveSeeker(writer.getIndexWriter());
+        try {
+            populateIndex(writer, 2, STR, "target");
+            writer.commit();
+            assertEquals(1, nrtSeeker.searchExact(new TextFragment(STR + "0"), null).size());
+            assertEquals(0, nrtSeeker.searchExact(new TextFragment("new entry"), null).size());
+            IndexReader reader = nrtSeeker.openIndexReader();
+
+            writer.indexTranslationUnit(new TranslationUnit(new TranslationUnitVariant(LocaleId.fromString("EN"),
+                    new TextFragment("new entry")), TARGET));
+            writer.commit();
+            assertEquals(1, nrtSeeker.searchExact(new TextFragment("new entry"), null).size());
+            assertFalse("reader refreshed", reader == nrtSeeker.openIndexReader());
+            // Nothing new: same reader
+            assertSame(nrtSeeker.openIndexReader(), nrtSeeker.openIndexReader());
+        } finally {
+            nrtSeeker.close();
+            writer.close();
+        }
+    }
+
+    @Test
+    public void concurrentSearches() throws Exception {
+        final PensieveWriter writer = new PensieveWriter(new RAMDirectory(), true);
+        final PensieveSeeker nrtSeeker = new PensieveSeeker(writer.getIndexWriter());
+        try {
+            populateIndex(writer, 50, STR, "target");
+            writer.commit();
+            final List<Throwable> errors = new ArrayList<Throwable>();
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++) {
+                final int n = t;
+                threads.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < 50; i++) {
+                                assertEquals(1, nrtSeeker.searchExact(new TextFragment(STR + i), null).size());
+                                assertEquals(10, nrtSeeker.searchFuzzy(new TextFragment(STR), 80, 10, null).size());
+                                if (n == 0) {
+                                    // Force refreshes while the others are searching
+                                    writer.indexTranslationUnit(new TranslationUnit(new TranslationUnitVariant(
+                                            LocaleId.fromString("EN"), new TextFragment("extra" + i)), TARGET));
+                                    writer.commit();
+                                }
+                            }
+                        } catch (Throwable e) {
+                            synchronized (errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(errors.toString(), errors.isEmpty());
+        } finally {
+            nrtSeeker.close();
+            writer.close();
+        }
+    }
+
     PensieveWriter getWriter() throws Exception {
         return new PensieveWriter(DIR, true);
     }
@@ -47,7 +47,9 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
 import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.ScoreDoc;
@@ -138,6 +140,76 @@ public class PensieveWriterTest {
 				getNumOfHitsFor(MetadataType.ID.fieldName(), "2"));
 	}
 
+	@Test
+	public void ngramCountMatchesTermVector() throws IOException {
+		String[] texts = { "Joe", "Joseph is here", "The the the other one.", "Elephants cannot fly. Flies can fly." };
+		for (int i = 0; i < texts.length; i++) {
+			tmWriter.indexTranslationUnit(Helper.createTU(locEN, locKR, texts[i], "x", String.valueOf(i)));
+		}
+		tmWriter.commit();
+		IndexReader reader = IndexReader.open(dir, true);
+		try {
+			int[] counts = FieldCache.DEFAULT.getInts(reader, TranslationUnitField.SOURCE_NGRAM_COUNT.name(),
+					FieldCache.NUMERIC_UTILS_INT_PARSER);
+			for (int i = 0; i < texts.length; i++) {
+				TermFreqVector tv = reader.getTermFreqVector(i, SOURCE.name());
+				assertEquals(texts[i], tv == null ? 0 : tv.size(), counts[i]);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void bulkLoadSameIndexAsSequential() throws IOException {
+		RAMDirectory bulkDir = new RAMDirectory();
+		PensieveWriter bulkWriter = new PensieveWriter(bulkDir, true);
+		TranslationUnit tu = Helper.createTU(locEN, locKR, "Joe", "Jo", "0");
+		tmWriter.indexTranslationUnit(tu);
+		bulkWriter.indexTranslationUnit(tu);
+		bulkWriter.startBulkLoad(3);
+		String[] texts = { "Joseph is here", "Joe", "The other one", "Joseph is here", "Joe", "The other one" };
+		for (int i = 0; i < texts.length; i++) {
+			tu = Helper.createTU(locEN, locKR, texts[i], "x" + i, String.valueOf(i + 1));
+			if (i % 3 == 2) {
+				tu.getSource().getContent().append(TagType.PLACEHOLDER, "code", "data");
+			}
+			boolean overwrite = (i != 3);
+			tmWriter.indexTranslationUnit(tu, overwrite);
+			bulkWriter.indexTranslationUnit(tu, overwrite);
+		}
+		assertTrue(bulkWriter.isBulkLoad());
+		bulkWriter.endBulkLoad();
+		tmWriter.close();
+		bulkWriter.close();
+
+		IndexReader reader = IndexReader.open(dir, true);
+		IndexReader bulkReader = IndexReader.open(bulkDir, true);
+		try {
+			// 0, 2 and 3 are overwritten, 4 is kept
+			assertEquals(4, bulkReader.numDocs());
+			assertEquals(reader.numDocs(), bulkReader.numDocs());
+			int[] counts = FieldCache.DEFAULT.getInts(reader, TranslationUnitField.SOURCE_NGRAM_COUNT.name(),
+					FieldCache.NUMERIC_UTILS_INT_PARSER);
+			int[] bulkCounts = FieldCache.DEFAULT.getInts(bulkReader, TranslationUnitField.SOURCE_NGRAM_COUNT.name(),
+					FieldCache.NUMERIC_UTILS_INT_PARSER);
+			int j = 0;
+			for (int i = 0; i < reader.maxDoc(); i++) {
+				if (reader.isDeleted(i)) continue;
+				while (bulkReader.isDeleted(j)) j++;
+				assertEquals(reader.document(i).get(MetadataType.ID.fieldName()),
+						bulkReader.document(j).get(MetadataType.ID.fieldName()));
+				assertEquals(counts[i], bulkCounts[j]);
+				assertEquals(String.valueOf(reader.getTermFreqVector(i, SOURCE.name())),
+						String.valueOf(bulkReader.getTermFreqVector(j, SOURCE.name())));
+				j++;
+			}
+		} finally {
+			reader.close();
+			bulkReader.close();
+		}
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void updateNullTu() throws IOException, ParseException {
 		tmWriter.update(null);